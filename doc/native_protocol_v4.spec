@@ -22,6 +22,7 @@ Table of Contents
       4.1.6. EXECUTE
       4.1.7. BATCH
       4.1.8. REGISTER
+      4.1.9. ANN_BATCH
     4.2. Responses
       4.2.1. ERROR
       4.2.2. READY
@@ -183,6 +184,7 @@ Table of Contents
     0x0E    AUTH_CHALLENGE
     0x0F    AUTH_RESPONSE
     0x10    AUTH_SUCCESS
+    0x11    ANN_BATCH
 
   Messages are described in Section 4.
 
@@ -454,6 +456,29 @@ Table of Contents
   multiple times the same event messages, wasting bandwidth.
 
 
+4.1.9. ANN_BATCH
+
+  Executes a prepared SELECT with an ANN OF relation once per set of values,
+  typically binding a different query vector each. The ranges of the ring
+  probed by several of the searches are only read once. The body of the
+  message must be:
+    <id><n><values_1>...<values_n><query_parameters>
+  where:
+    - <id> is the prepared query ID, as in EXECUTE.
+    - <n> is a [short] indicating the number of searches.
+    - <values_i> are the values bound by search i. It is a [short] indicating
+      the number of values followed by that many [value], as the values of a
+      <query_i> of BATCH.
+    - <query_parameters> has the same definition than in QUERY (see Section
+      4.1.4), and applies to every search. Its values are ignored, and paging
+      is not supported.
+
+  The server will respond with a RESULT message of kind Rows. Its first
+  column, "[search]", is an [int] holding the index (starting at 0) of the
+  search of the row, and the following ones are the columns selected by the
+  query. The rows of each search are ordered by distance to its query vector.
+
+
 4.2. Responses
 
   This section describes the content of the frame body for the different
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.IMutation;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.Token;
+
+/**
+ * Coordinator side cache of the candidates of ANN OF queries. Queries whose vectors hash to the same bucket probe the
+ * same ranges, so they rank the cached candidates of the bucket by distance to their own vector instead of reading
+ * them again.
+ *
+ * Writes are counted by table and token prefix, both when they are coordinated and when they are applied locally. An
+ * entry records the number of writes to the prefixes its ranges intersect before its candidates are read, and is
+ * dropped once that number changes. Writes coordinated by another node to ranges this node does not replicate are not
+ * seen, so entries also expire after similarity_cache_validity_in_ms.
+ */
+public class SimilarityCache
+{
+    private final InstrumentingCache<SimilarityCacheKey, SimilarityCacheEntry> cache;
+    private final ConcurrentMap<UUID, AtomicLongArray> writes = new ConcurrentHashMap<>();
+
+    public SimilarityCache(ICache<SimilarityCacheKey, SimilarityCacheEntry> map)
+    {
+        cache = new InstrumentingCache<>("SimilarityCache", map);
+    }
+
+    public boolean isEnabled()
+    {
+        return cache.getCapacity() > 0;
+    }
+
+    public InstrumentingCache<SimilarityCacheKey, SimilarityCacheEntry> getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * @return the candidates cached for a key, or null if there are none or they may be out of date
+     */
+    public List<Row> get(SimilarityCacheKey key)
+    {
+        SimilarityCacheEntry entry = cache.get(key);
+        if (entry == null)
+            return null;
+
+        if (System.currentTimeMillis() > entry.expiresAt || writes(key.cfId, entry.prefixes) != entry.writes)
+        {
+            cache.remove(key);
+            return null;
+        }
+        return entry.candidates;
+    }
+
+    /**
+     * Caches the candidates read from the ranges of some prefixes.
+     *
+     * @param writes the number of writes to the prefixes, as returned by {@link #writes(UUID, int[])} before the
+     * candidates were read
+     */
+    public void put(SimilarityCacheKey key, int[] prefixes, long writes, List<Row> candidates)
+    {
+        long expiresAt = System.currentTimeMillis() + DatabaseDescriptor.getSimilarityCacheValidity();
+        cache.put(key, new SimilarityCacheEntry(candidates, prefixes, writes, expiresAt));
+    }
+
+    /**
+     * @return the prefixes of the histogram ring that a set of ranges intersects, in ring order
+     */
+    public static int[] prefixes(Collection<Range<Token>> ranges)
+    {
+        int bits = SimilarityPartitioner.histogramPrefixBits();
+        boolean[] intersected = new boolean[1 << bits];
+        int count = 0;
+        for (Range<Token> range : ranges)
+        {
+            int left = SimilarityPartitioner.prefix(range.left, bits);
+            int right = SimilarityPartitioner.prefix(range.right, bits);
+            // a wrapping range, including the whole ring, also covers the prefixes past its left bound
+            int last = range.left.compareTo(range.right) < 0 ? right : right + intersected.length;
+            for (int i = left; i <= last; i++)
+            {
+                if (!intersected[i % intersected.length])
+                {
+                    intersected[i % intersected.length] = true;
+                    count++;
+                }
+            }
+        }
+
+        int[] prefixes = new int[count];
+        for (int i = 0, j = 0; i < intersected.length; i++)
+        {
+            if (intersected[i])
+                prefixes[j++] = i;
+        }
+        return prefixes;
+    }
+
+    /**
+     * @return the number of writes to some prefixes of a table so far
+     */
+    public long writes(UUID cfId, int[] prefixes)
+    {
+        AtomicLongArray counts = writes.get(cfId);
+        if (counts == null)
+            return 0;
+
+        long sum = 0;
+        for (int prefix : prefixes)
+            sum += counts.get(prefix);
+        return sum;
+    }
+
+    /**
+     * Counts a write to every table of a mutation, so that the cached candidates of its prefix are dropped.
+     */
+    public void invalidate(IMutation mutation, Token token)
+    {
+        if (!isEnabled() || !(token instanceof SimilarityPartitioner.BinaryToken))
+            return;
+
+        for (UUID cfId : mutation.getColumnFamilyIds())
+            invalidate(cfId, token);
+    }
+
+    public void invalidate(UUID cfId, Token token)
+    {
+        if (!isEnabled() || !(token instanceof SimilarityPartitioner.BinaryToken))
+            return;
+
+        AtomicLongArray counts = writes.get(cfId);
+        if (counts == null)
+        {
+            AtomicLongArray created = new AtomicLongArray(1 << SimilarityPartitioner.histogramPrefixBits());
+            counts = writes.putIfAbsent(cfId, created);
+            if (counts == null)
+                counts = created;
+        }
+        counts.incrementAndGet(SimilarityPartitioner.prefix(token, SimilarityPartitioner.histogramPrefixBits()));
+    }
+
+    /**
+     * Drops the cached candidates of a table, e.g. once it is truncated.
+     */
+    public void invalidate(UUID cfId)
+    {
+        Iterator<SimilarityCacheKey> keyIter = cache.keyIterator();
+        while (keyIter.hasNext())
+        {
+            SimilarityCacheKey key = keyIter.next();
+            if (key.cfId.equals(cfId))
+                keyIter.remove();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.utils.ObjectSizes;
+
+/**
+ * The candidates read by an ANN OF query, before they are ranked by distance to its vector, along with what is
+ * needed to tell whether they are still current.
+ */
+public class SimilarityCacheEntry implements IMeasurableMemory
+{
+    private static final long EMPTY_SIZE = ObjectSizes.measure(new SimilarityCacheEntry(Collections.<Row>emptyList(), new int[0], 0, 0));
+
+    public final List<Row> candidates;
+    /** the token prefixes intersecting the probed ranges */
+    public final int[] prefixes;
+    /** the number of writes to these prefixes before the candidates were read */
+    public final long writes;
+    public final long expiresAt;
+    private final long heapSize;
+
+    public SimilarityCacheEntry(List<Row> candidates, int[] prefixes, long writes, long expiresAt)
+    {
+        this.candidates = candidates;
+        this.prefixes = prefixes;
+        this.writes = writes;
+        this.expiresAt = expiresAt;
+
+        long size = ObjectSizes.sizeOfArray(prefixes) + ObjectSizes.sizeOfReferenceArray(candidates.size());
+        for (Row row : candidates)
+        {
+            size += ObjectSizes.sizeOnHeapOf(row.key.getKey());
+            if (row.cf == null)
+                continue;
+            size += row.cf.deletionInfo().unsharedHeapSize();
+            for (Cell cell : row.cf)
+                size += cell.unsharedHeapSizeExcludingData() + cell.cellDataSize();
+        }
+        this.heapSize = size;
+    }
+
+    public long unsharedHeapSize()
+    {
+        return EMPTY_SIZE + heapSize;
+    }
+}
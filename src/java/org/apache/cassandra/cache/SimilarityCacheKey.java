@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.utils.*;
+
+/**
+ * Identifies the candidates of the ANN OF queries of a table whose vectors share a bucket: they probe the same
+ * ranges, with the same column filter, at the same consistency level.
+ */
+public final class SimilarityCacheKey extends CacheKey
+{
+    private static final long EMPTY_SIZE = ObjectSizes.measure(new SimilarityCacheKey(null, null, ByteBufferUtil.EMPTY_BYTE_BUFFER, 0, null, ByteBufferUtil.EMPTY_BYTE_BUFFER));
+
+    public final UUID cfId;
+    public final byte[] bucket;
+    public final int radius;
+    public final ConsistencyLevel consistency;
+    public final byte[] filter;
+
+    public SimilarityCacheKey(Pair<String, String> ksAndCFName, UUID cfId, ByteBuffer bucket, int radius, ConsistencyLevel consistency, ByteBuffer filter)
+    {
+        super(ksAndCFName);
+        this.cfId = cfId;
+        this.bucket = ByteBufferUtil.getArray(bucket);
+        this.radius = radius;
+        this.consistency = consistency;
+        this.filter = ByteBufferUtil.getArray(filter);
+    }
+
+    public long unsharedHeapSize()
+    {
+        return EMPTY_SIZE
+               + ObjectSizes.sizeOfArray(bucket)
+               + ObjectSizes.sizeOfArray(filter);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("SimilarityCacheKey(%s, %s, %d, %s)",
+                             ksAndCFName,
+                             ByteBufferUtil.bytesToHex(ByteBuffer.wrap(bucket)),
+                             radius,
+                             consistency);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.deepHashCode(new Object[]{ cfId, bucket, radius, consistency, filter });
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof SimilarityCacheKey))
+            return false;
+
+        SimilarityCacheKey sck = (SimilarityCacheKey) o;
+
+        return cfId.equals(sck.cfId)
+            && radius == sck.radius
+            && consistency == sck.consistency
+            && Arrays.equals(bucket, sck.bucket)
+            && Arrays.equals(filter, sck.filter);
+    }
+}
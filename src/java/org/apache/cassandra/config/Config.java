@@ -373,4 +373,11 @@ public class Config
      */
     public Integer identifier_length;
     public List<List<Double>> vectors;
+    public List<List<Double>> previous_vectors;
+    public int similarity_probe_radius = 0;
+    public int similarity_max_probes = 1024;
+    public boolean similarity_data_aware_allocation = false;
+    public long similarity_cache_size_in_mb = 0;
+    public int similarity_cache_validity_in_ms = 2000;
+    public Integer concurrent_similarity_reads;
 }
@@ -78,6 +78,7 @@ import org.apache.cassandra.scheduler.NoScheduler;
 import org.apache.cassandra.service.CacheService;
 import org.apache.cassandra.thrift.ThriftServer;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.RandomHyperplaneHash;
 import org.apache.cassandra.utils.memory.HeapPool;
 import org.apache.cassandra.utils.memory.MemtablePool;
 import org.apache.cassandra.utils.memory.NativePool;
@@ -105,6 +106,11 @@ public class DatabaseDescriptor
     private static IPartitioner partitioner;
     private static String paritionerName;
 
+    /* Similarity search hyperplanes, flattened once from the yaml */
+    private static RandomHyperplaneHash hyperplaneHash;
+    /* The hyperplanes being replaced by the configured ones, while existing keys are re-hashed */
+    private static RandomHyperplaneHash previousHyperplaneHash;
+
     private static Config.DiskAccessMode indexAccessMode;
 
     private static Config conf;
@@ -688,6 +694,48 @@ public class DatabaseDescriptor
         }
         if (seedProvider.getSeeds().size() == 0)
             throw new ConfigurationException("The seed provider lists no seeds.", false);
+
+        if (conf.vectors != null)
+        {
+            if (conf.identifier_length == null || conf.identifier_length != conf.vectors.size())
+                throw new ConfigurationException("identifier_length must be equal to the number of vectors (" + conf.vectors.size() + ")", false);
+            try
+            {
+                hyperplaneHash = new RandomHyperplaneHash(getVectors());
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ConfigurationException("Invalid vectors: " + e.getMessage(), false);
+            }
+        }
+
+        if (conf.previous_vectors != null)
+        {
+            if (conf.vectors == null)
+                throw new ConfigurationException("previous_vectors can only be set along with vectors", false);
+            if (conf.previous_vectors.size() != conf.identifier_length)
+                throw new ConfigurationException("previous_vectors must have as many vectors as identifier_length (" + conf.identifier_length + ")", false);
+            try
+            {
+                previousHyperplaneHash = new RandomHyperplaneHash(toArray(conf.previous_vectors));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ConfigurationException("Invalid previous_vectors: " + e.getMessage(), false);
+            }
+            if (previousHyperplaneHash.dimension() != hyperplaneHash.dimension())
+                throw new ConfigurationException("previous_vectors must have the dimension of vectors (" + hyperplaneHash.dimension() + ")", false);
+        }
+
+        if (conf.similarity_probe_radius < 0)
+            throw new ConfigurationException("similarity_probe_radius must be non-negative", false);
+        if (conf.similarity_max_probes < 1)
+            throw new ConfigurationException("similarity_max_probes must be positive", false);
+
+        if (conf.concurrent_similarity_reads == null)
+            conf.concurrent_similarity_reads = FBUtilities.getAvailableProcessors();
+        if (conf.concurrent_similarity_reads < 1)
+            throw new ConfigurationException("concurrent_similarity_reads must be positive", false);
     }
 
     private static FileStore guessFileStore(String dir) throws IOException
@@ -1808,7 +1856,6 @@ public class DatabaseDescriptor
     }
 
     // TODO - check if there are settings
-    // TODO - check if identifier_length == vectors.size
     /*
      * Similarity search configurations
      */
@@ -1818,14 +1865,119 @@ public class DatabaseDescriptor
     }
 
     public static double[][] getVectors()
+    {
+        return toArray(conf.vectors);
+    }
+
+    private static double[][] toArray(List<List<Double>> lists)
     {
         // TODO - converting in a better way
-        double[][] vectors = new double[conf.vectors.size()][];
+        double[][] vectors = new double[lists.size()][];
         int i = 0;
-        for (List<Double> list : conf.vectors)
+        for (List<Double> list : lists)
         {
             vectors[i++] = Doubles.toArray(list);
         }
         return vectors;
     }
+
+    /**
+     * @return the hash built from the configured vectors, or null if none are configured
+     */
+    public static RandomHyperplaneHash getHyperplaneHash()
+    {
+        return hyperplaneHash;
+    }
+
+    /**
+     * @return the hash built from the previous_vectors, or null unless the keys hashed with them are being re-hashed
+     */
+    public static RandomHyperplaneHash getPreviousHyperplaneHash()
+    {
+        return previousHyperplaneHash;
+    }
+
+    public static boolean isRehashingHyperplanes()
+    {
+        return previousHyperplaneHash != null;
+    }
+
+    // Do not use outside unit tests and benchmarks.
+    @VisibleForTesting
+    public static void setVectors(double[][] vectors)
+    {
+        hyperplaneHash = new RandomHyperplaneHash(vectors);
+        conf.vectors = toList(vectors);
+        conf.identifier_length = vectors.length;
+    }
+
+    // Do not use outside unit tests.
+    @VisibleForTesting
+    public static void setPreviousVectors(double[][] vectors)
+    {
+        previousHyperplaneHash = vectors == null ? null : new RandomHyperplaneHash(vectors);
+        conf.previous_vectors = vectors == null ? null : toList(vectors);
+    }
+
+    private static List<List<Double>> toList(double[][] vectors)
+    {
+        List<List<Double>> list = new ArrayList<>(vectors.length);
+        for (double[] vector : vectors)
+            list.add(Doubles.asList(vector.clone()));
+        return list;
+    }
+
+    /**
+     * @return the Hamming radius of the buckets probed around the hash of an ANN OF query vector
+     */
+    public static int getSimilarityProbeRadius()
+    {
+        return conf.similarity_probe_radius;
+    }
+
+    /**
+     * @return the number of buckets above which an ANN OF query scans the whole ring rather than probing them
+     */
+    public static int getSimilarityMaxProbes()
+    {
+        return conf.similarity_max_probes;
+    }
+
+    @VisibleForTesting
+    public static void setSimilarityMaxProbes(int maxProbes)
+    {
+        conf.similarity_max_probes = maxProbes;
+    }
+
+    /**
+     * @return whether bootstrapping nodes pick their tokens from the distribution of the keys of the cluster
+     */
+    public static boolean isSimilarityDataAwareAllocation()
+    {
+        return conf.similarity_data_aware_allocation;
+    }
+
+    /**
+     * @return the capacity of the coordinator cache of ANN OF candidates, 0 if it is disabled
+     */
+    public static long getSimilarityCacheSizeInMB()
+    {
+        return conf.similarity_cache_size_in_mb;
+    }
+
+    /**
+     * @return how long the cached candidates of an ANN OF query are used at most, in milliseconds
+     */
+    public static int getSimilarityCacheValidity()
+    {
+        return conf.similarity_cache_validity_in_ms;
+    }
+
+    /**
+     * @return the number of threads scanning the sub-ranges of the ANN OF range reads of a replica
+     */
+    public static int getConcurrentSimilarityReads()
+    {
+        return conf.concurrent_similarity_reads;
+    }
 }
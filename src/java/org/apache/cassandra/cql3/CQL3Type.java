@@ -54,6 +54,7 @@ import org.apache.cassandra.db.marshal.TypeParser;
 import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.cassandra.db.marshal.UUIDType;
 import org.apache.cassandra.db.marshal.UserType;
+import org.apache.cassandra.db.marshal.VectorType;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.apache.cassandra.exceptions.SyntaxException;
@@ -331,6 +332,53 @@ public interface CQL3Type
         }
     }
 
+    public static class Vector implements CQL3Type
+    {
+        private final VectorType type;
+
+        private Vector(VectorType type)
+        {
+            this.type = type;
+        }
+
+        public static Vector create(VectorType type)
+        {
+            return new Vector(type);
+        }
+
+        public boolean isCollection()
+        {
+            return false;
+        }
+
+        public AbstractType<?> getType()
+        {
+            return type;
+        }
+
+        @Override
+        public final boolean equals(Object o)
+        {
+            if(!(o instanceof Vector))
+                return false;
+
+            Vector that = (Vector)o;
+            return type.equals(that.type);
+        }
+
+        @Override
+        public final int hashCode()
+        {
+            return type.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "vector<" + type.getElementType().asCQL3Type() + ", " + type.dimension() + ">";
+        }
+    }
+
     // For UserTypes, we need to know the current keyspace to resolve the
     // actual type used, so Raw is a "not yet prepared" CQL3Type.
     public abstract class Raw
@@ -402,6 +450,11 @@ public interface CQL3Type
             return new RawTuple(ts);
         }
 
+        public static Raw vector(CQL3Type.Raw t, int dimension)
+        {
+            return new RawVector(t, dimension);
+        }
+
         public static Raw frozen(CQL3Type.Raw t) throws InvalidRequestException
         {
             t.freeze();
@@ -639,5 +692,39 @@ public interface CQL3Type
                 return sb.toString();
             }
         }
+
+        private static class RawVector extends Raw
+        {
+            private final CQL3Type.Raw elementType;
+            private final int dimension;
+
+            private RawVector(CQL3Type.Raw elementType, int dimension)
+            {
+                this.elementType = elementType;
+                this.dimension = dimension;
+            }
+
+            protected boolean supportsFreezing()
+            {
+                return false;
+            }
+
+            public CQL3Type prepare(String keyspace) throws InvalidRequestException
+            {
+                AbstractType<?> type = elementType.prepare(keyspace).getType();
+                if (!VectorType.isSupportedElementType(type))
+                    throw new InvalidRequestException(String.format("Vectors can only hold double, float or tinyint components (got %s)", elementType));
+                if (dimension <= 0)
+                    throw new InvalidRequestException(String.format("Vectors must have a strictly positive dimension (got %d)", dimension));
+
+                return new Vector(VectorType.getInstance(type, dimension));
+            }
+
+            @Override
+            public String toString()
+            {
+                return "vector<" + elementType + ", " + dimension + ">";
+            }
+        }
     }
 }
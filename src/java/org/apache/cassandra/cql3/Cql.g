@@ -1358,6 +1358,7 @@ relation[List<Relation> clauses]
         { $clauses.add(SingleColumnRelation.createInRelation($name.id, inValues)); }
     | name=cident K_CONTAINS { Operator rt = Operator.CONTAINS; } (K_KEY { rt = Operator.CONTAINS_KEY; })?
         t=term { $clauses.add(new SingleColumnRelation(name, rt, t)); }
+    | name=cident K_ANN K_OF t=term { $clauses.add(new SingleColumnRelation(name, Operator.ANN, t)); }
     | name=cident '[' key=term ']' type=relationType t=term { $clauses.add(new SingleColumnRelation(name, key, type, t)); }
     | ids=tupleOfIdentifiers
       ( K_IN
@@ -1421,6 +1422,7 @@ comparatorType returns [CQL3Type.Raw t]
     : n=native_type     { $t = CQL3Type.Raw.from(n); }
     | c=collection_type { $t = c; }
     | tt=tuple_type     { $t = tt; }
+    | vt=vector_type    { $t = vt; }
     | id=userTypeName   { $t = CQL3Type.Raw.userType(id); }
     | K_FROZEN '<' f=comparatorType '>'
       {
@@ -1484,6 +1486,11 @@ tuple_type returns [CQL3Type.Raw t]
       '>' { $t = CQL3Type.Raw.tuple(types); }
     ;
 
+vector_type returns [CQL3Type.Raw t]
+    : K_VECTOR '<' et=comparatorType ',' d=INTEGER '>'
+        { if (et != null) $t = CQL3Type.Raw.vector(et, Integer.parseInt($d.text)); }
+    ;
+
 username
     : IDENT
     | STRING_LITERAL
@@ -1539,9 +1546,11 @@ basic_unreserved_keyword returns [String str]
         | K_TRIGGER
         | K_DISTINCT
         | K_CONTAINS
+        | K_ANN
         | K_STATIC
         | K_FROZEN
         | K_TUPLE
+        | K_VECTOR
         | K_FUNCTION
         | K_FUNCTIONS
         | K_AGGREGATE
@@ -1613,6 +1622,7 @@ K_ALLOW:       A L L O W;
 K_FILTERING:   F I L T E R I N G;
 K_IF:          I F;
 K_CONTAINS:    C O N T A I N S;
+K_ANN:         A N N;
 
 K_GRANT:       G R A N T;
 K_ALL:         A L L;
@@ -1669,6 +1679,7 @@ K_LIST:        L I S T;
 K_NAN:         N A N;
 K_INFINITY:    I N F I N I T Y;
 K_TUPLE:       T U P L E;
+K_VECTOR:      V E C T O R;
 
 K_TRIGGER:     T R I G G E R;
 K_STATIC:      S T A T I C;
@@ -167,6 +167,13 @@ public class MultiColumnRelation extends Relation
         throw invalidRequest("%s cannot be used for Multi-column relations", operator());
     }
 
+    @Override
+    protected Restriction newANNRestriction(CFMetaData cfm,
+                                            VariableSpecifications boundNames) throws InvalidRequestException
+    {
+        throw invalidRequest("%s cannot be used for Multi-column relations", operator());
+    }
+
     @Override
     protected Term toTerm(List<? extends ColumnSpecification> receivers,
                           Raw raw,
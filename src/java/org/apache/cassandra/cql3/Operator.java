@@ -108,6 +108,14 @@ public enum Operator
         {
             return "!=";
         }
+    },
+    ANN(9)
+    {
+        @Override
+        public String toString()
+        {
+            return "ANN OF";
+        }
     };
 
     /**
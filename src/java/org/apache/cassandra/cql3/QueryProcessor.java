@@ -484,6 +484,30 @@ public class QueryProcessor implements QueryHandler
         return batch.execute(queryState, options);
     }
 
+    /**
+     * Executes a prepared ANN OF search once per options, reading the ranges probed by several of the searches once.
+     *
+     * @return the result of each search, in the order of the options
+     */
+    public List<ResultMessage.Rows> processANNBatch(SelectStatement statement, QueryState queryState, List<QueryOptions> options)
+    throws RequestExecutionException, RequestValidationException
+    {
+        for (QueryOptions queryOptions : options)
+        {
+            if (queryOptions.getValues().size() != statement.getBoundTerms())
+                throw new InvalidRequestException(String.format("there were %d markers(?) in CQL but %d bound variables",
+                                                                statement.getBoundTerms(),
+                                                                queryOptions.getValues().size()));
+        }
+
+        ClientState clientState = queryState.getClientState();
+        statement.checkAccess(clientState);
+        statement.validate(clientState);
+
+        metrics.preparedStatementsExecuted.inc(options.size());
+        return statement.executeANNBatch(queryState, options);
+    }
+
     public static ParsedStatement.Prepared getStatement(String queryStr, ClientState clientState)
     throws RequestValidationException
     {
@@ -98,6 +98,16 @@ public abstract class Relation {
         return relationType == Operator.EQ;
     }
 
+    /**
+     * Checks if the operator of this relation is a <code>ANN OF</code>.
+     * @return <code>true</code>  if the operator of this relation is a <code>ANN OF</code>, <code>false</code>
+     * otherwise.
+     */
+    public final boolean isANN()
+    {
+        return relationType == Operator.ANN;
+    }
+
     /**
      * Checks if the operator of this relation is a <code>Slice</code> (GT, GTE, LTE, LT).
      *
@@ -132,6 +142,7 @@ public abstract class Relation {
             case IN: return newINRestriction(cfm, boundNames);
             case CONTAINS: return newContainsRestriction(cfm, boundNames, false);
             case CONTAINS_KEY: return newContainsRestriction(cfm, boundNames, true);
+            case ANN: return newANNRestriction(cfm, boundNames);
             default: throw invalidRequest("Unsupported \"!=\" relation: %s", this);
         }
     }
@@ -186,6 +197,17 @@ public abstract class Relation {
                                                           VariableSpecifications boundNames,
                                                           boolean isKey) throws InvalidRequestException;
 
+    /**
+     * Creates a new approximate nearest neighbour (<code>ANN OF</code>) restriction instance.
+     *
+     * @param cfm the Column Family meta data
+     * @param boundNames the variables specification where to collect the bind variables
+     * @return a new ANN <code>Restriction</code> instance
+     * @throws InvalidRequestException if the <code>Relation</code> is not valid
+     */
+    protected abstract Restriction newANNRestriction(CFMetaData cfm,
+                                                     VariableSpecifications boundNames) throws InvalidRequestException;
+
     /**
      * Converts the specified <code>Raw</code> into a <code>Term</code>.
      * @param receivers the columns to which the values must be associated at
@@ -185,6 +185,15 @@ public final class SingleColumnRelation extends Relation
         return new SingleColumnRestriction.Contains(columnDef, term, isKey);
     }
 
+    @Override
+    protected Restriction newANNRestriction(CFMetaData cfm,
+                                            VariableSpecifications boundNames) throws InvalidRequestException
+    {
+        ColumnDefinition columnDef = toColumnDefinition(cfm, entity);
+        Term term = toTerm(toReceivers(columnDef), value, cfm.ksName, boundNames);
+        return new SingleColumnRestriction.ANN(columnDef, term);
+    }
+
     /**
      * Returns the receivers for this relation.
      * @param columnDef the column definition
@@ -220,6 +229,12 @@ public final class SingleColumnRelation extends Relation
             // index with filtering, we'll need to handle it though.
             checkFalse(columnDef.isPartitionKey(), "Only EQ and IN relation are supported on the partition key (unless you use the token() function)");
         }
+        else if (isANN())
+        {
+            // The neighbourhood is located through the partitioner, so only the partition key can be searched
+            checkTrue(columnDef.isPartitionKey(), "ANN OF relations are only supported on the partition key (%s is not)", columnDef.name);
+            checkFalse(mapKey != null, "ANN OF relations are not supported on map entries");
+        }
 
         checkFalse(isContainsKey() && !(receiver.type instanceof MapType), "Cannot use CONTAINS KEY on non-map column %s", receiver.name);
 
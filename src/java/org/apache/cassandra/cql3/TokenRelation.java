@@ -95,6 +95,13 @@ public final class TokenRelation extends Relation
         throw invalidRequest("%s cannot be used with the token function", operator());
     }
 
+    @Override
+    protected Restriction newANNRestriction(CFMetaData cfm,
+                                            VariableSpecifications boundNames) throws InvalidRequestException
+    {
+        throw invalidRequest("%s cannot be used with the token function", operator());
+    }
+
     @Override
     protected Term toTerm(List<? extends ColumnSpecification> receivers,
                           Raw raw,
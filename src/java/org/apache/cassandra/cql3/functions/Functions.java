@@ -59,6 +59,11 @@ public abstract class Functions
         declare(TimeFcts.dateToTimestamp);
         declare(TimeFcts.dateToUnixTimestamp);
         declare(UuidFcts.uuidFct);
+        declare(VectorFcts.cosineSimilarityFct);
+        declare(VectorFcts.dotProductFct);
+        declare(VectorFcts.squaredL2DistanceFct);
+        declare(VectorFcts.hammingDistanceFct);
+        declare(VectorFcts.topKByDistanceFct);
 
         for (CQL3Type type : CQL3Type.Native.values())
         {
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3.functions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.BinaryType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.ListType;
+import org.apache.cassandra.db.marshal.VectorType;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.serializers.CollectionSerializer;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.NearestNeighbourHeap;
+import org.apache.cassandra.utils.VectorEncoding;
+
+/**
+ * Native functions comparing vectors, and the Hamming distance between {@code binary} values.
+ *
+ * The vectors are read in place from the buffers of the arguments, one component at a time. The declared functions
+ * take blobs of big-endian doubles, while the instances taking {@code vector} columns are created on lookup for their
+ * types (see {@link #getInstance(FunctionName, List)}). A blob compared to a vector is read as doubles, and must
+ * have the dimension of that vector.
+ */
+public abstract class VectorFcts
+{
+    public static final FunctionName COSINE_SIMILARITY = FunctionName.nativeFunction("cosine_similarity");
+    public static final FunctionName DOT_PRODUCT = FunctionName.nativeFunction("dot_product");
+    public static final FunctionName SQUARED_L2_DISTANCE = FunctionName.nativeFunction("squared_l2_distance");
+    public static final FunctionName TOP_K_BY_DISTANCE = FunctionName.nativeFunction("top_k_by_distance");
+
+    private static final ConcurrentMap<List<Object>, Function> instances = new ConcurrentHashMap<>();
+
+    public static final Function cosineSimilarityFct = new CosineSimilarityFct(BytesType.instance, BytesType.instance);
+    public static final Function dotProductFct = new DotProductFct(BytesType.instance, BytesType.instance);
+    public static final Function squaredL2DistanceFct = new SquaredL2DistanceFct(BytesType.instance, BytesType.instance);
+    public static final Function topKByDistanceFct = new TopKByDistanceFct(BytesType.instance, BytesType.instance);
+
+    /**
+     * The number of bits that differ between two {@code binary} values. The shortest value is considered padded with
+     * zeros, as trailing zeros are not serialized.
+     */
+    public static final Function hammingDistanceFct = new NativeScalarFunction("hamming_distance",
+                                                                               Int32Type.instance,
+                                                                               BinaryType.instance,
+                                                                               BinaryType.instance)
+    {
+        public ByteBuffer execute(int protocolVersion, List<ByteBuffer> parameters)
+        {
+            ByteBuffer b1 = parameters.get(0);
+            ByteBuffer b2 = parameters.get(1);
+            if (b1 == null || b2 == null)
+                return null;
+
+            if (b1.remaining() > b2.remaining())
+            {
+                ByteBuffer tmp = b1;
+                b1 = b2;
+                b2 = tmp;
+            }
+
+            int p1 = b1.position();
+            int p2 = b2.position();
+            int n = b1.remaining();
+            int count = 0;
+            int i = 0;
+            for (; i + 8 <= n; i += 8)
+                count += Long.bitCount(b1.getLong(p1 + i) ^ b2.getLong(p2 + i));
+            for (; i < n; i++)
+                count += Integer.bitCount((b1.get(p1 + i) ^ b2.get(p2 + i)) & 0xFF);
+            for (; i < b2.remaining(); i++)
+                count += Integer.bitCount(b2.get(p2 + i) & 0xFF);
+
+            return ByteBufferUtil.bytes(count);
+        }
+    };
+
+    /**
+     * Returns the instance of a vector function for arguments of the specified types, if one of the vectors it
+     * compares is a {@code vector}.
+     *
+     * @return the function instance, or {@code null} if the name is not the one of a vector function or if the
+     * arguments are not vectors, in which case the function is looked up as usual.
+     * @throws InvalidRequestException if the two vectors have different dimensions
+     */
+    public static Function getInstance(FunctionName name, List<AbstractType<?>> argTypes) throws InvalidRequestException
+    {
+        if (argTypes.size() < 2)
+            return null;
+
+        AbstractType<?> type1 = argTypes.get(0);
+        AbstractType<?> type2 = argTypes.get(1);
+        if (!isVectorOrBlob(type1) || !isVectorOrBlob(type2))
+            return null;
+        if (!(type1 instanceof VectorType) && !(type2 instanceof VectorType))
+            return null;
+        if (type1 instanceof VectorType && type2 instanceof VectorType
+            && ((VectorType) type1).dimension() != ((VectorType) type2).dimension())
+            throw new InvalidRequestException(String.format("%s() cannot compare vectors of different dimensions (%s and %s)",
+                                                            name, type1.asCQL3Type(), type2.asCQL3Type()));
+
+        List<Object> key = Arrays.<Object>asList(name, type1, type2);
+        Function fun = instances.get(key);
+        if (fun == null)
+        {
+            if (name.equalsNativeFunction(COSINE_SIMILARITY))
+                fun = new CosineSimilarityFct(type1, type2);
+            else if (name.equalsNativeFunction(DOT_PRODUCT))
+                fun = new DotProductFct(type1, type2);
+            else if (name.equalsNativeFunction(SQUARED_L2_DISTANCE))
+                fun = new SquaredL2DistanceFct(type1, type2);
+            else if (name.equalsNativeFunction(TOP_K_BY_DISTANCE))
+                fun = new TopKByDistanceFct(type1, type2);
+            else
+                return null;
+            instances.put(key, fun);
+        }
+        return fun;
+    }
+
+    private static boolean isVectorOrBlob(AbstractType<?> type)
+    {
+        return type instanceof VectorType || type instanceof BytesType;
+    }
+
+    /**
+     * @return the dimension of the vectors of the specified types, or -1 if both are blobs
+     */
+    private static int dimension(AbstractType<?> type1, AbstractType<?> type2)
+    {
+        if (type1 instanceof VectorType)
+            return ((VectorType) type1).dimension();
+        if (type2 instanceof VectorType)
+            return ((VectorType) type2).dimension();
+        return -1;
+    }
+
+    /**
+     * @return the dimension of two vectors, that of their types if known, else that of two blobs of doubles
+     */
+    private static int dimension(String function, int dimension, ByteBuffer v1, ByteBuffer v2) throws InvalidRequestException
+    {
+        if (dimension >= 0)
+            return dimension;
+
+        if (v1.remaining() != v2.remaining() || (v1.remaining() & 7) != 0)
+            throw new InvalidRequestException(String.format("%s() expects two vectors of doubles of the same dimension (got %d and %d bytes)",
+                                                            function, v1.remaining(), v2.remaining()));
+        return VectorEncoding.DOUBLE.dimension(v1.remaining());
+    }
+
+    /**
+     * @return the encoding of a vector of the specified type and dimension, doubles for a blob
+     */
+    private static VectorEncoding encoding(String function, AbstractType<?> type, ByteBuffer vector, int dimension) throws InvalidRequestException
+    {
+        VectorEncoding encoding = VectorType.encodingOf(type);
+        if (vector.remaining() != encoding.serializedSize(dimension))
+            throw new InvalidRequestException(String.format("%s() expects a vector of dimension %d encoded as %s, i.e. %d bytes (got %d bytes)",
+                                                            function, dimension, encoding, encoding.serializedSize(dimension), vector.remaining()));
+        return encoding;
+    }
+
+    /**
+     * Returns the cosine of the angle between two vectors. A zero vector has no direction and its similarity to any
+     * other vector is 0, consistently with {@link org.apache.cassandra.utils.VectorUtil#cosineDistance}.
+     */
+    private static double cosineSimilarity(VectorEncoding e1, ByteBuffer v1, VectorEncoding e2, ByteBuffer v2, int dimension)
+    {
+        int p1 = v1.position();
+        int p2 = v2.position();
+
+        double dot = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (int i = 0; i < dimension; i++)
+        {
+            double x = e1.get(v1, p1, i);
+            double y = e2.get(v2, p2, i);
+            dot += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0)
+            return 0.0;
+
+        return dot / Math.sqrt(norm1 * norm2);
+    }
+
+    /**
+     * A function of two vectors returning a double.
+     */
+    private static abstract class VectorFct extends NativeScalarFunction
+    {
+        private final int dimension;
+
+        protected VectorFct(FunctionName name, AbstractType<?> type1, AbstractType<?> type2)
+        {
+            super(name.name, DoubleType.instance, type1, type2);
+            this.dimension = VectorFcts.dimension(type1, type2);
+        }
+
+        public ByteBuffer execute(int protocolVersion, List<ByteBuffer> parameters) throws InvalidRequestException
+        {
+            ByteBuffer v1 = parameters.get(0);
+            ByteBuffer v2 = parameters.get(1);
+            if (v1 == null || v2 == null)
+                return null;
+
+            int n = VectorFcts.dimension(name.name, dimension, v1, v2);
+            VectorEncoding e1 = encoding(name.name, argTypes.get(0), v1, n);
+            VectorEncoding e2 = encoding(name.name, argTypes.get(1), v2, n);
+            return ByteBufferUtil.bytes(compute(e1, v1, e2, v2, n));
+        }
+
+        protected abstract double compute(VectorEncoding e1, ByteBuffer v1, VectorEncoding e2, ByteBuffer v2, int dimension);
+    }
+
+    private static class CosineSimilarityFct extends VectorFct
+    {
+        private CosineSimilarityFct(AbstractType<?> type1, AbstractType<?> type2)
+        {
+            super(COSINE_SIMILARITY, type1, type2);
+        }
+
+        protected double compute(VectorEncoding e1, ByteBuffer v1, VectorEncoding e2, ByteBuffer v2, int dimension)
+        {
+            return cosineSimilarity(e1, v1, e2, v2, dimension);
+        }
+    }
+
+    private static class DotProductFct extends VectorFct
+    {
+        private DotProductFct(AbstractType<?> type1, AbstractType<?> type2)
+        {
+            super(DOT_PRODUCT, type1, type2);
+        }
+
+        protected double compute(VectorEncoding e1, ByteBuffer v1, VectorEncoding e2, ByteBuffer v2, int dimension)
+        {
+            int p1 = v1.position();
+            int p2 = v2.position();
+
+            double sum = 0.0;
+            for (int i = 0; i < dimension; i++)
+                sum += e1.get(v1, p1, i) * e2.get(v2, p2, i);
+            return sum;
+        }
+    }
+
+    private static class SquaredL2DistanceFct extends VectorFct
+    {
+        private SquaredL2DistanceFct(AbstractType<?> type1, AbstractType<?> type2)
+        {
+            super(SQUARED_L2_DISTANCE, type1, type2);
+        }
+
+        protected double compute(VectorEncoding e1, ByteBuffer v1, VectorEncoding e2, ByteBuffer v2, int dimension)
+        {
+            int p1 = v1.position();
+            int p2 = v2.position();
+
+            double sum = 0.0;
+            for (int i = 0; i < dimension; i++)
+            {
+                double d = e1.get(v1, p1, i) - e2.get(v2, p2, i);
+                sum += d * d;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Aggregates the {@code k} vectors of a column nearest to a query vector by cosine distance, the distance
+     * {@code ANN OF} ranks partitions by, into a list ordered by increasing distance. The vectors are kept in a heap
+     * bounded by {@code k}, which is read from the first row.
+     */
+    private static class TopKByDistanceFct extends NativeAggregateFunction
+    {
+        private final int dimension;
+
+        private TopKByDistanceFct(AbstractType<?> vectorType, AbstractType<?> queryType)
+        {
+            super(TOP_K_BY_DISTANCE.name, ListType.getInstance(vectorType, false), vectorType, queryType, Int32Type.instance);
+            this.dimension = VectorFcts.dimension(vectorType, queryType);
+        }
+
+        public Aggregate newAggregate()
+        {
+            return new Aggregate()
+            {
+                private NearestNeighbourHeap<ByteBuffer> nearest;
+
+                public void reset()
+                {
+                    nearest = null;
+                }
+
+                public ByteBuffer compute(int protocolVersion)
+                {
+                    List<ByteBuffer> vectors = nearest == null ? Collections.<ByteBuffer>emptyList() : nearest.drain();
+                    return CollectionSerializer.pack(vectors, vectors.size(), protocolVersion);
+                }
+
+                public void addInput(int protocolVersion, List<ByteBuffer> values) throws InvalidRequestException
+                {
+                    ByteBuffer vector = values.get(0);
+                    ByteBuffer query = values.get(1);
+                    ByteBuffer k = values.get(2);
+                    if (vector == null || query == null || k == null)
+                        return;
+
+                    if (nearest == null)
+                    {
+                        int size = ByteBufferUtil.toInt(k);
+                        if (size <= 0)
+                            throw new InvalidRequestException(String.format("%s() expects a strictly positive number of vectors (got %d)",
+                                                                            name.name, size));
+                        nearest = new NearestNeighbourHeap<>(size);
+                    }
+
+                    int n = VectorFcts.dimension(name.name, dimension, vector, query);
+                    VectorEncoding e1 = encoding(name.name, argTypes.get(0), vector, n);
+                    VectorEncoding e2 = encoding(name.name, argTypes.get(1), query, n);
+                    nearest.offer(1.0 - cosineSimilarity(e1, vector, e2, query, n), vector);
+                }
+            };
+        }
+    }
+}
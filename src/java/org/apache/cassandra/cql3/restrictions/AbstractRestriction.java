@@ -70,6 +70,12 @@ abstract class AbstractRestriction  implements Restriction
         return false;
     }
 
+    @Override
+    public boolean isANN()
+    {
+        return false;
+    }
+
     @Override
     public boolean hasBound(Bound b)
     {
@@ -164,6 +164,12 @@ abstract class ForwardingPrimaryKeyRestrictions implements PrimaryKeyRestriction
         return getDelegate().isContains();
     }
 
+    @Override
+    public boolean isANN()
+    {
+        return getDelegate().isANN();
+    }
+
     @Override
     public boolean isMultiColumn()
     {
@@ -149,6 +149,11 @@ final class PrimaryKeyRestrictionSet extends AbstractPrimaryKeyRestrictions
     @Override
     public PrimaryKeyRestrictions mergeWith(Restriction restriction) throws InvalidRequestException
     {
+        // An ANN OF relation selects ranges of the ring rather than key values, see StatementRestrictions
+        checkFalse(restriction.isANN(),
+                   "%s cannot be restricted by more than one relation if it includes an ANN OF",
+                   restriction.getColumnDefs().iterator().next().name);
+
         if (restriction.isOnToken())
         {
             if (isEmpty())
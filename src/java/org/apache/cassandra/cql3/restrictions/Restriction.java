@@ -42,6 +42,7 @@ public interface Restriction
     public boolean isEQ();
     public boolean isIN();
     public boolean isContains();
+    public boolean isANN();
     public boolean isMultiColumn();
 
     /**
@@ -618,4 +618,99 @@ public abstract class SingleColumnRestriction extends AbstractRestriction
             super(columnDef);
         }
     }
+
+    /**
+     * An approximate nearest neighbour restriction (<code>key ANN OF ?</code>) on the partition key.
+     * <p>The bound value is the query vector: it is hashed by the partitioner to locate the candidate partitions,
+     * which are then ranked by their exact distance to the query vector.</p>
+     */
+    public static final class ANN extends SingleColumnRestriction
+    {
+        private final Term value;
+
+        public ANN(ColumnDefinition columnDef, Term value)
+        {
+            super(columnDef);
+            this.value = value;
+        }
+
+        /**
+         * Returns the query vector bound to this restriction.
+         *
+         * @param options the query options
+         * @return the query vector
+         * @throws InvalidRequestException if the query vector is unset or <code>null</code>
+         */
+        public ByteBuffer vector(QueryOptions options) throws InvalidRequestException
+        {
+            ByteBuffer vector = value.bindAndGet(options);
+            checkNotNull(vector, "Invalid null value for %s ANN OF", columnDef.name);
+            checkBindValueSet(vector, "Invalid unset value for %s ANN OF", columnDef.name);
+            return vector;
+        }
+
+        @Override
+        public Iterable<Function> getFunctions()
+        {
+            return value.getFunctions();
+        }
+
+        @Override
+        public boolean isANN()
+        {
+            return true;
+        }
+
+        /**
+         * Never called: an ANN OF restriction cannot be converted, and merging it with any other restriction is
+         * rejected by {@link #doMergeWith(Restriction)}.
+         */
+        @Override
+        MultiColumnRestriction toMultiColumnRestriction()
+        {
+            throw new UnsupportedOperationException("ANN OF restrictions cannot be converted to multi-column restrictions");
+        }
+
+        @Override
+        boolean canBeConvertedToMultiColumnRestriction()
+        {
+            return false;
+        }
+
+        /**
+         * Never called: the query vector locates ranges of the ring, not partition keys, so ANN OF restrictions are
+         * kept apart by {@link StatementRestrictions} and rejected by {@link PrimaryKeyRestrictionSet#mergeWith}.
+         */
+        @Override
+        public CompositesBuilder appendTo(CompositesBuilder builder, QueryOptions options)
+        {
+            throw new UnsupportedOperationException("ANN OF restrictions do not restrict the partition key to values");
+        }
+
+        @Override
+        public void addIndexExpressionTo(List<IndexExpression> expressions,
+                                         SecondaryIndexManager indexManager,
+                                         QueryOptions options) throws InvalidRequestException
+        {
+            expressions.add(new IndexExpression(columnDef.name.bytes, Operator.ANN, vector(options)));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("ANN OF(%s)", value);
+        }
+
+        @Override
+        public Restriction doMergeWith(Restriction otherRestriction) throws InvalidRequestException
+        {
+            throw invalidRequest("%s cannot be restricted by more than one relation if it includes an ANN OF", columnDef.name);
+        }
+
+        @Override
+        protected boolean isSupportedBy(SecondaryIndex index)
+        {
+            return index.supportsOperator(Operator.ANN);
+        }
+    }
 }
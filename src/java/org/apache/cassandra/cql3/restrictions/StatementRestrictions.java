@@ -25,16 +25,19 @@ import com.google.common.collect.Iterables;
 
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.*;
 import org.apache.cassandra.cql3.functions.Function;
 import org.apache.cassandra.cql3.statements.Bound;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
+import org.apache.cassandra.db.marshal.VectorType;
 import org.apache.cassandra.dht.*;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.VectorEncoding;
 
 import static org.apache.cassandra.cql3.statements.RequestValidations.checkFalse;
 import static org.apache.cassandra.cql3.statements.RequestValidations.checkNotNull;
@@ -56,6 +59,11 @@ public final class StatementRestrictions
      */
     private PrimaryKeyRestrictions partitionKeyRestrictions;
 
+    /**
+     * Approximate nearest neighbour restriction on the partition key, if any
+     */
+    private SingleColumnRestriction.ANN annRestriction;
+
     /**
      * Restrictions on clustering columns
      */
@@ -76,6 +84,11 @@ public final class StatementRestrictions
      */
     private boolean usesSecondaryIndexing;
 
+    /**
+     * <code>true</code> if the ANN OF restriction is answered by an index rather than by probing the ring.
+     */
+    private boolean annUsesIndex;
+
     /**
      * Specify if the query will return a range of partition keys.
      */
@@ -132,6 +145,13 @@ public final class StatementRestrictions
         // At this point, the select statement if fully constructed, but we still have a few things to validate
         processPartitionKeyRestrictions(hasQueriableIndex);
 
+        if (annRestriction != null && annRestriction.hasSupportingIndex(secondaryIndexManager))
+        {
+            annUsesIndex = true;
+            usesSecondaryIndexing = true;
+            indexRestrictions.add(new RestrictionSet().addRestriction(annRestriction));
+        }
+
         // Some but not all of the partition key columns have been specified;
         // hence we need turn these restrictions into index expressions.
         if (usesSecondaryIndexing)
@@ -159,6 +179,10 @@ public final class StatementRestrictions
             indexRestrictions.add(nonPrimaryKeyRestrictions);
         }
 
+        // The index only answers the ANN OF expression, so the candidates it returns are never filtered
+        checkFalse(annUsesIndex && (!nonPrimaryKeyRestrictions.isEmpty() || clusteringColumnsRestrictions.isContains()),
+                   "ANN OF relations answered by an index cannot be combined with other indexed restrictions");
+
         if (usesSecondaryIndexing)
             validateSecondaryIndexSelections(selectsOnlyStaticColumns);
     }
@@ -175,15 +199,22 @@ public final class StatementRestrictions
 
     public Iterable<Function> getFunctions()
     {
-        return Iterables.concat(partitionKeyRestrictions.getFunctions(),
-                                clusteringColumnsRestrictions.getFunctions(),
-                                nonPrimaryKeyRestrictions.getFunctions());
+        Iterable<Function> functions = Iterables.concat(partitionKeyRestrictions.getFunctions(),
+                                                        clusteringColumnsRestrictions.getFunctions(),
+                                                        nonPrimaryKeyRestrictions.getFunctions());
+        return annRestriction == null ? functions : Iterables.concat(functions, annRestriction.getFunctions());
     }
 
     private void addSingleColumnRestriction(SingleColumnRestriction restriction) throws InvalidRequestException
     {
         ColumnDefinition def = restriction.columnDef;
-        if (def.isPartitionKey())
+        if (restriction.isANN())
+        {
+            checkTrue(annRestriction == null,
+                      "%s cannot be restricted by more than one relation if it includes an ANN OF", def.name);
+            annRestriction = (SingleColumnRestriction.ANN) restriction;
+        }
+        else if (def.isPartitionKey())
             partitionKeyRestrictions = partitionKeyRestrictions.mergeWith(restriction);
         else if (def.isClusteringColumn())
             clusteringColumnsRestrictions = clusteringColumnsRestrictions.mergeWith(restriction);
@@ -212,6 +243,38 @@ public final class StatementRestrictions
         return this.isKeyRange;
     }
 
+    /**
+     * Checks if the query is an approximate nearest neighbour search (<code>key ANN OF ?</code>).
+     *
+     * @return <code>true</code> if the query is an approximate nearest neighbour search, <code>false</code> otherwise.
+     */
+    public boolean isANN()
+    {
+        return annRestriction != null;
+    }
+
+    /**
+     * Returns the query vector of an approximate nearest neighbour search.
+     *
+     * @param options the query options
+     * @return the query vector
+     * @throws InvalidRequestException if the query vector is not valid
+     */
+    public ByteBuffer getANNVector(QueryOptions options) throws InvalidRequestException
+    {
+        ByteBuffer vector = annRestriction.vector(options);
+        int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+        // the vector is bound to the partition key and is in the encoding of its type, doubles for a blob key
+        VectorEncoding encoding = VectorType.encodingOf(annRestriction.columnDef.type);
+        checkTrue(vector.remaining() == encoding.serializedSize(dimension),
+                  "Invalid ANN OF vector for %s: expected a vector of dimension %d (%d bytes) but got %d bytes",
+                  annRestriction.columnDef.name,
+                  dimension,
+                  encoding.serializedSize(dimension),
+                  vector.remaining());
+        return vector;
+    }
+
     /**
      * Checks if the secondary index need to be queried.
      *
@@ -230,6 +293,20 @@ public final class StatementRestrictions
         // - Is it queriable without 2ndary index, which is always more efficient
         // If a component of the partition key is restricted by a relation, all preceding
         // components must have a EQ. Only the last partition key component can be in IN relation.
+        if (annRestriction != null)
+        {
+            // The neighbourhood is a range of the ring, located by hashing the query vector with the partitioner.
+            checkTrue(partitionKeyRestrictions.isEmpty(),
+                      "%s cannot be restricted by more than one relation if it includes an ANN OF",
+                      annRestriction.columnDef.name);
+            checkTrue(cfm.partitionKeyColumns().size() == 1,
+                      "ANN OF relations are not supported on composite partition keys");
+            checkTrue(StorageService.getPartitioner() instanceof SimilarityPartitioner,
+                      "ANN OF relations are only supported with the SimilarityPartitioner");
+            isKeyRange = true;
+            return;
+        }
+
         if (partitionKeyRestrictions.isOnToken())
             isKeyRange = true;
 
@@ -370,6 +447,11 @@ public final class StatementRestrictions
     {
         IPartitioner p = StorageService.getPartitioner();
 
+        if (annRestriction != null)
+        {
+            return getPartitionKeyBoundsForANN(p, options);
+        }
+
         if (partitionKeyRestrictions.isOnToken())
         {
             return getPartitionKeyBoundsForTokenRestrictions(p, options);
@@ -433,6 +515,68 @@ public final class StatementRestrictions
         return new Range<>(start, end);
     }
 
+    private AbstractBounds<RowPosition> getPartitionKeyBoundsForANN(IPartitioner p,
+                                                                    QueryOptions options) throws InvalidRequestException
+    {
+        // All the keys sharing the hash of the query vector, i.e. the bucket at its Gray-code position on the ring
+        Token token = p.getToken(getANNVector(options));
+        return new Bounds<RowPosition>(token.minKeyBound(), token.maxKeyBound());
+    }
+
+    /**
+     * Returns the ranges to read for an approximate nearest neighbour search: the bucket of the query vector and,
+     * depending on the configured probe radius, the buckets whose hash is close to it, under both the configured and
+     * the previous hyperplanes while the latter are replaced. Each range comes with the smallest angle between the
+     * query vector and the vectors it can hold. When an index answers the search, the whole ring is read and each
+     * replica looks the candidates up in its index.
+     *
+     * @param options the query options
+     * @return the probed ranges, in ring order
+     * @throws InvalidRequestException if the query vector is not valid
+     */
+    public List<MultiProbeRangePlanner.Probe> getANNProbes(QueryOptions options) throws InvalidRequestException
+    {
+        // The index finds the candidates wherever they are on the ring
+        if (annUsesIndex)
+        {
+            Token minToken = StorageService.getPartitioner().getMinimumToken();
+            return Collections.singletonList(new MultiProbeRangePlanner.Probe(new Range<>(minToken, minToken), 0.0));
+        }
+
+        ByteBuffer vector = getANNVector(options);
+        int radius = DatabaseDescriptor.getSimilarityProbeRadius();
+        SimilarityPartitioner partitioner = (SimilarityPartitioner) StorageService.getPartitioner();
+        List<MultiProbeRangePlanner.Probe> probes = MultiProbeRangePlanner.getProbes(partitioner.getToken(vector),
+                                                                                     radius,
+                                                                                     partitioner.hyperplanes().angles(vector));
+
+        // While the hyperplanes are replaced, the partitions yet to be re-hashed are in the buckets of the previous ones
+        SimilarityPartitioner previous = SimilarityPartitioner.previous();
+        if (previous != null)
+        {
+            List<MultiProbeRangePlanner.Probe> all = new ArrayList<>(probes);
+            all.addAll(MultiProbeRangePlanner.getProbes(previous.getToken(vector), radius, previous.hyperplanes().angles(vector)));
+
+            List<Range<Token>> ranges = new ArrayList<>(all.size());
+            for (MultiProbeRangePlanner.Probe probe : all)
+                ranges.add(probe.range);
+
+            // overlapping ranges are read once, bounded by the closest of their buckets
+            probes = new ArrayList<>();
+            for (Range<Token> range : Range.normalize(ranges))
+            {
+                double angle = Double.MAX_VALUE;
+                for (MultiProbeRangePlanner.Probe probe : all)
+                {
+                    if (range.intersects(probe.range))
+                        angle = Math.min(angle, probe.angle);
+                }
+                probes.add(new MultiProbeRangePlanner.Probe(range, angle));
+            }
+        }
+        return probes;
+    }
+
     private Token getTokenBound(Bound b, QueryOptions options, IPartitioner p) throws InvalidRequestException
     {
         if (!partitionKeyRestrictions.hasBound(b))
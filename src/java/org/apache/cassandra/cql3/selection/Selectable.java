@@ -144,10 +144,12 @@ public abstract class Selectable
 
             // We need to circumvent the normal function lookup process for toJson() because instances of the function
             // are not pre-declared (because it can accept any type of argument).
+            // The vector functions are in the same situation when given vector columns, whose encoding and dimension
+            // are part of their types.
             Function fun;
             if (functionName.equalsNativeFunction(ToJsonFct.NAME))
                 fun = ToJsonFct.getInstance(factories.getReturnTypes());
-            else
+            else if ((fun = VectorFcts.getInstance(functionName, factories.getReturnTypes())) == null)
                 fun = Functions.get(cfm.ksName, functionName, factories.newInstances(), cfm.ksName, cfm.cfName, null);
 
             if (fun == null)
@@ -127,7 +127,8 @@ public class CreateIndexStatement extends SchemaAlteringStatement
         if (cd.isStatic())
             throw new InvalidRequestException("Secondary indexes are not allowed on static columns");
 
-        if (cd.kind == ColumnDefinition.Kind.PARTITION_KEY && cd.isOnAllComponents())
+        // custom indexes, such as the LSHIndex, may index a whole partition key
+        if (cd.kind == ColumnDefinition.Kind.PARTITION_KEY && cd.isOnAllComponents() && !properties.isCustom)
             throw new InvalidRequestException(String.format("Cannot create secondary index on partition key column %s", target.column));
     }
 
@@ -32,11 +32,13 @@ import org.apache.cassandra.cql3.ColumnIdentifier;
 import org.apache.cassandra.db.ColumnFamilyType;
 import org.apache.cassandra.db.composites.*;
 import org.apache.cassandra.db.marshal.*;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.exceptions.*;
 import org.apache.cassandra.io.compress.CompressionParameters;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.MigrationManager;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.transport.Event;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
@@ -272,6 +274,7 @@ public class CreateTableStatement extends SchemaAlteringStatement
                 keyTypes.add(t);
             }
             stmt.keyValidator = keyTypes.size() == 1 ? keyTypes.get(0) : CompositeType.getInstance(keyTypes);
+            validateVectorPartitionKey(kAliases, keyTypes);
 
             // Dense means that no part of the comparator stores a CQL column name. This means
             // COMPACT STORAGE with at least one columnAliases (otherwise it's a thrift "static" CF).
@@ -420,6 +423,31 @@ public class CreateTableStatement extends SchemaAlteringStatement
             return new ParsedStatement.Prepared(stmt);
         }
 
+        /**
+         * The SimilarityPartitioner hashes partition keys as vectors of doubles of the dimension of its hyperplanes,
+         * so a vector partition key must be the whole partition key and have that exact shape. The partitioner only
+         * sees the bytes of the keys, not their types, and cannot tell float or tinyint vectors from doubles.
+         */
+        private static void validateVectorPartitionKey(List<ColumnIdentifier> kAliases, List<AbstractType<?>> keyTypes) throws InvalidRequestException
+        {
+            if (!(StorageService.getPartitioner() instanceof SimilarityPartitioner))
+                return;
+
+            for (int i = 0; i < keyTypes.size(); i++)
+            {
+                if (!(keyTypes.get(i) instanceof VectorType))
+                    continue;
+
+                VectorType type = (VectorType) keyTypes.get(i);
+                int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+                if (keyTypes.size() > 1)
+                    throw new InvalidRequestException(String.format("Vector column %s cannot be part of a composite partition key", kAliases.get(i)));
+                if (type.getElementType() != DoubleType.instance || type.dimension() != dimension)
+                    throw new InvalidRequestException(String.format("Invalid type %s for partition key %s: the SimilarityPartitioner hashes vector<double, %d> keys",
+                                                                    type.asCQL3Type(), kAliases.get(i), dimension));
+            }
+        }
+
         private AbstractType<?> getTypeAndRemove(Map<ColumnIdentifier, AbstractType> columns, ColumnIdentifier t) throws InvalidRequestException
         {
             AbstractType type = columns.get(t);
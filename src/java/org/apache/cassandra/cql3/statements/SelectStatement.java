@@ -17,9 +17,11 @@
  */
 package org.apache.cassandra.cql3.statements;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
@@ -29,8 +31,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.auth.Permission;
+import org.apache.cassandra.cache.SimilarityCache;
+import org.apache.cassandra.cache.SimilarityCacheKey;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.*;
 import org.apache.cassandra.cql3.functions.Function;
 import org.apache.cassandra.cql3.restrictions.StatementRestrictions;
@@ -43,20 +48,34 @@ import org.apache.cassandra.db.index.SecondaryIndexManager;
 import org.apache.cassandra.db.marshal.CollectionType;
 import org.apache.cassandra.db.marshal.CompositeType;
 import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.VectorType;
 import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.MultiProbeRangePlanner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.*;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.serializers.MarshalException;
+import org.apache.cassandra.service.CacheService;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.service.pager.Pageable;
 import org.apache.cassandra.service.pager.QueryPager;
 import org.apache.cassandra.service.pager.QueryPagers;
 import org.apache.cassandra.thrift.ThriftValidation;
+import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.transport.messages.ResultMessage;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.NearestNeighbourHeap;
+import org.apache.cassandra.utils.VectorEncoding;
+import org.apache.cassandra.utils.VectorUtil;
 
 import static org.apache.cassandra.cql3.statements.RequestValidations.checkFalse;
 import static org.apache.cassandra.cql3.statements.RequestValidations.checkNotNull;
@@ -169,6 +188,18 @@ public class SelectStatement implements CQLStatement
 
         int limit = getLimit(options);
         long now = System.currentTimeMillis();
+
+        // ANN searches are never paged, see getANNCommands()
+        if (restrictions.isANN())
+        {
+            List<MultiProbeRangePlanner.Probe> probes = restrictions.getANNProbes(options);
+            List<RangeSliceCommand> commands = getANNCommands(probes, options, limit, now);
+            List<Row> rows = commands.isEmpty()
+                           ? Collections.<Row>emptyList()
+                           : gatherNearest(commands, probes, options, limit, now);
+            return processResults(rows, options, limit, now);
+        }
+
         Pageable command = getPageableCommand(options, limit, now);
         int pageSize = getPageSize(options);
 
@@ -181,7 +212,8 @@ public class SelectStatement implements CQLStatement
 
     private Pageable getPageableCommand(QueryOptions options, int limit, long now) throws RequestValidationException
     {
-        int limitForQuery = updateLimitForQuery(limit);
+        // An ANN search reads every candidate of its bucket: the LIMIT only applies once they are ranked by distance
+        int limitForQuery = restrictions.isANN() ? Integer.MAX_VALUE : updateLimitForQuery(limit);
         if (restrictions.isKeyRange() || restrictions.usesSecondaryIndexing())
             return getRangeCommand(options, limitForQuery, now);
 
@@ -293,6 +325,15 @@ public class SelectStatement implements CQLStatement
     {
         int limit = getLimit(options);
         long now = System.currentTimeMillis();
+
+        if (restrictions.isANN())
+        {
+            List<Row> rows = new ArrayList<>();
+            for (RangeSliceCommand command : getANNCommands(restrictions.getANNProbes(options), options, limit, now))
+                rows.addAll(command.executeLocally());
+            return processResults(rows, options, limit, now);
+        }
+
         Pageable command = getPageableCommand(options, limit, now);
         int pageSize = getPageSize(options);
 
@@ -382,6 +423,361 @@ public class SelectStatement implements CQLStatement
              : new RangeSliceCommand(keyspace(), columnFamily(), now,  filter, keyBounds, expressions, limit, !parameters.isDistinct, false);
     }
 
+    @VisibleForTesting
+    public List<RangeSliceCommand> getANNCommands(QueryOptions options) throws RequestValidationException
+    {
+        return getANNCommands(restrictions.getANNProbes(options), options, getLimit(options), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns one range command per range of buckets probed by an ANN search. The commands read every candidate of
+     * their buckets, since the LIMIT only applies once the candidates are ranked by distance. When nothing else needs
+     * every candidate and a single replica is read, the query vector is passed along with the LIMIT so that the
+     * replica only returns the {@code limit} partitions of the range nearest to it, without reading the data of the
+     * farther ones. The nearest partitions of several replicas cannot be reconciled that way: once a partition one
+     * of them returned is found deleted on another, the next nearest one may have been left out by both.
+     */
+    private List<RangeSliceCommand> getANNCommands(List<MultiProbeRangePlanner.Probe> probes, QueryOptions options, int limit, long now)
+    throws RequestValidationException
+    {
+        IDiskAtomFilter filter = makeFilter(options, Integer.MAX_VALUE);
+        if (filter == null)
+            return Collections.emptyList();
+
+        List<IndexExpression> expressions = getValidatedIndexExpressions(options);
+        int maxResults = Integer.MAX_VALUE;
+        if (expressions.isEmpty()
+            && limit < Integer.MAX_VALUE
+            && !selection.isAggregate()
+            && !parameters.isDistinct
+            && !isANNCacheable()
+            && options.getConsistency().blockFor(Keyspace.open(keyspace())) == 1)
+        {
+            expressions = Collections.singletonList(new IndexExpression(cfm.partitionKeyColumns().get(0).name.bytes,
+                                                                        Operator.ANN,
+                                                                        restrictions.getANNVector(options)));
+            maxResults = limit;
+        }
+
+        List<RangeSliceCommand> commands = new ArrayList<>(probes.size());
+        for (MultiProbeRangePlanner.Probe probe : probes)
+        {
+            AbstractBounds<RowPosition> bounds = Range.makeRowRange(probe.range);
+            commands.add(new RangeSliceCommand(keyspace(), columnFamily(), now, filter, bounds, expressions, maxResults, !parameters.isDistinct, false));
+        }
+        return commands;
+    }
+
+    /**
+     * Reads the candidates of an ANN search from all its probed ranges at once, keeping the {@code limit} closest
+     * partitions holding live data as they arrive. Reading stops once the ranges left cannot hold a closer partition:
+     * no vector of a range is closer to the query vector than the smallest angle of the range allows. Aggregates
+     * consider every candidate.
+     */
+    private List<Row> gatherNearest(List<RangeSliceCommand> commands,
+                                    List<MultiProbeRangePlanner.Probe> probes,
+                                    QueryOptions options,
+                                    int limit,
+                                    final long now)
+    throws RequestExecutionException, RequestValidationException
+    {
+        double[] distanceBounds = new double[probes.size()];
+        for (int i = 0; i < distanceBounds.length; i++)
+            // zero vectors, which have no angle, are at distance 1 of any vector
+            distanceBounds[i] = Math.min(1.0, 1.0 - Math.cos(probes.get(i).angle));
+
+        if (selection.isAggregate())
+        {
+            List<Row> rows = new ArrayList<>();
+            readCandidates(commands, probes, distanceBounds, collectAll(rows), options);
+            return rows;
+        }
+
+        final ByteBuffer vector = restrictions.getANNVector(options);
+        final int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+        // the query vector is bound to the partition key, so both are in the encoding of its type
+        final VectorEncoding encoding = VectorType.encodingOf(cfm.getKeyValidator());
+        final NearestNeighbourHeap<Row> heap = new NearestNeighbourHeap<>(limit);
+        readCandidates(commands, probes, distanceBounds, new StorageProxy.RangeSliceCollector()
+        {
+            public void collect(Row row)
+            {
+                if (row.cf != null && !row.cf.hasOnlyTombstones(now))
+                    heap.offer(VectorUtil.cosineDistance(row.key.getKey(), encoding, vector, encoding, dimension), row);
+            }
+
+            public boolean isComplete(double distanceBound)
+            {
+                return heap.isFull() && (heap.size() == 0 || heap.farthest() <= distanceBound);
+            }
+        }, options);
+        return heap.drain();
+    }
+
+    /**
+     * Executes the ANN search of this statement once per options, typically binding a different query vector each.
+     * The searches whose columns are selected alike read the union of the ranges they probe at once, with a single
+     * command per range, and each row read is ranked for every search probing it as it arrives. Searches answered by
+     * an index are executed one by one.
+     *
+     * @return the result of each search, in the order of the options
+     */
+    public List<ResultMessage.Rows> executeANNBatch(QueryState state, List<QueryOptions> options)
+    throws RequestExecutionException, RequestValidationException
+    {
+        List<ResultMessage.Rows> results = new ArrayList<>(options.size());
+        if (!restrictions.isANN() || restrictions.usesSecondaryIndexing())
+        {
+            for (QueryOptions queryOptions : options)
+                results.add(execute(state, queryOptions));
+            return results;
+        }
+
+        ConsistencyLevel cl = options.get(0).getConsistency();
+        checkNotNull(cl, "Invalid empty consistency level");
+        cl.validateForRead(keyspace());
+
+        long now = System.currentTimeMillis();
+        // the searches reading their rows with the same column filter, by serialized filter
+        Map<ByteBuffer, List<Integer>> groups = new LinkedHashMap<>();
+        Map<ByteBuffer, IDiskAtomFilter> filters = new HashMap<>();
+        for (int i = 0; i < options.size(); i++)
+        {
+            QueryOptions queryOptions = options.get(i);
+            checkTrue(queryOptions.getConsistency() == cl, "All the searches of an ANN OF batch must use the same consistency level");
+            results.add(null);
+
+            IDiskAtomFilter filter = makeFilter(queryOptions, Integer.MAX_VALUE);
+            if (filter == null)
+            {
+                results.set(i, processResults(Collections.<Row>emptyList(), queryOptions, getLimit(queryOptions), now));
+                continue;
+            }
+
+            ByteBuffer key = serialize(filter);
+            List<Integer> group = groups.get(key);
+            if (group == null)
+            {
+                group = new ArrayList<>();
+                groups.put(key, group);
+                filters.put(key, filter);
+            }
+            group.add(i);
+        }
+
+        for (Map.Entry<ByteBuffer, List<Integer>> group : groups.entrySet())
+            gatherNearest(filters.get(group.getKey()), group.getValue(), options, cl, now, results);
+        return results;
+    }
+
+    /**
+     * Reads the ranges probed by a group of the searches of an ANN batch, each of them once, and ranks the rows of
+     * each range for the searches probing it.
+     */
+    private void gatherNearest(IDiskAtomFilter filter,
+                               List<Integer> searches,
+                               List<QueryOptions> options,
+                               ConsistencyLevel cl,
+                               final long now,
+                               List<ResultMessage.Rows> results)
+    throws RequestExecutionException, RequestValidationException
+    {
+        final int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+        final VectorEncoding encoding = VectorType.encodingOf(cfm.getKeyValidator());
+        final int size = searches.size();
+        final ByteBuffer[] vectors = new ByteBuffer[size];
+        final List<List<Range<Token>>> probed = new ArrayList<>(size);
+        final List<NearestNeighbourHeap<Row>> heaps = new ArrayList<>(size);
+        final List<List<Row>> candidates = new ArrayList<>(size);
+        List<Range<Token>> all = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+        {
+            QueryOptions queryOptions = options.get(searches.get(i));
+            vectors[i] = restrictions.getANNVector(queryOptions);
+            List<Range<Token>> ranges = new ArrayList<>();
+            for (MultiProbeRangePlanner.Probe probe : restrictions.getANNProbes(queryOptions))
+                ranges.add(probe.range);
+            probed.add(ranges);
+            all.addAll(ranges);
+            // aggregates consider every candidate
+            heaps.add(selection.isAggregate() ? null : new NearestNeighbourHeap<Row>(getLimit(queryOptions)));
+            candidates.add(selection.isAggregate() ? new ArrayList<Row>() : null);
+        }
+
+        // the probed ranges overlap when the buckets of the searches are close, but each range is only read once
+        final List<Range<Token>> ranges = Range.normalize(all);
+        final List<List<Integer>> searchesByRange = new ArrayList<>(ranges.size());
+        List<RangeSliceCommand> commands = new ArrayList<>(ranges.size());
+        for (Range<Token> range : ranges)
+        {
+            List<Integer> searching = new ArrayList<>();
+            for (int i = 0; i < size; i++)
+            {
+                for (Range<Token> probe : probed.get(i))
+                {
+                    if (probe.intersects(range))
+                    {
+                        searching.add(i);
+                        break;
+                    }
+                }
+            }
+            searchesByRange.add(searching);
+            commands.add(new RangeSliceCommand(keyspace(), columnFamily(), now, filter, Range.makeRowRange(range), Collections.<IndexExpression>emptyList(), Integer.MAX_VALUE, !parameters.isDistinct, false));
+        }
+        Tracing.trace("Reading {} ranges for {} ANN searches", ranges.size(), size);
+
+        StorageProxy.getRangeSlices(commands, new double[commands.size()], new StorageProxy.RangeSliceCollector()
+        {
+            // the rows mostly arrive in the order of the ranges
+            private int current = 0;
+
+            public void collect(Row row)
+            {
+                Token token = row.key.getToken();
+                int steps = 0;
+                while (!ranges.get(current).contains(token))
+                {
+                    // a row out of every range read is not a candidate of any search
+                    if (++steps == ranges.size())
+                        return;
+                    current = (current + 1) % ranges.size();
+                }
+
+                boolean live = row.cf != null && !row.cf.hasOnlyTombstones(now);
+                for (int i : searchesByRange.get(current))
+                {
+                    if (!contains(probed.get(i), token))
+                        continue;
+
+                    if (candidates.get(i) != null)
+                        candidates.get(i).add(row);
+                    else if (live)
+                        heaps.get(i).offer(VectorUtil.cosineDistance(row.key.getKey(), encoding, vectors[i], encoding, dimension), row);
+                }
+            }
+
+            public boolean isComplete(double distanceBound)
+            {
+                return false;
+            }
+        }, cl);
+
+        for (int i = 0; i < size; i++)
+        {
+            QueryOptions queryOptions = options.get(searches.get(i));
+            List<Row> rows = candidates.get(i) != null ? candidates.get(i) : heaps.get(i).drain();
+            results.set(searches.get(i), processResults(rows, queryOptions, getLimit(queryOptions), now));
+        }
+    }
+
+    private static boolean contains(List<Range<Token>> ranges, Token token)
+    {
+        for (Range<Token> range : ranges)
+        {
+            if (range.contains(token))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Passes the candidates of an ANN search to a collector, from the similarity cache if it holds them. Otherwise,
+     * when the search can be cached, every candidate is read without stopping early, so that the next searches whose
+     * vector is in the same bucket can rank them by their own distance.
+     */
+    private void readCandidates(List<RangeSliceCommand> commands,
+                                List<MultiProbeRangePlanner.Probe> probes,
+                                double[] distanceBounds,
+                                StorageProxy.RangeSliceCollector collector,
+                                QueryOptions options)
+    throws RequestExecutionException, RequestValidationException
+    {
+        SimilarityCacheKey key = getANNCacheKey(commands, options);
+        if (key == null)
+        {
+            StorageProxy.getRangeSlices(commands, distanceBounds, collector, options.getConsistency());
+            return;
+        }
+
+        SimilarityCache cache = CacheService.instance.similarityCache;
+        List<Row> candidates = cache.get(key);
+        if (candidates == null)
+        {
+            List<Range<Token>> ranges = new ArrayList<>(probes.size());
+            for (MultiProbeRangePlanner.Probe probe : probes)
+                ranges.add(probe.range);
+            int[] prefixes = SimilarityCache.prefixes(ranges);
+            // counted before reading, so that the entry is dropped by the writes racing with the read
+            long writes = cache.writes(key.cfId, prefixes);
+
+            candidates = new ArrayList<>();
+            StorageProxy.getRangeSlices(commands, distanceBounds, collectAll(candidates), options.getConsistency());
+            cache.put(key, prefixes, writes, candidates);
+        }
+
+        for (Row row : candidates)
+            collector.collect(row);
+    }
+
+    /**
+     * @return the key of the candidates of an ANN search in the similarity cache, or null if the search is not
+     * cached: the cache is disabled, the candidates are found by an index or filtered on other columns, or the
+     * hyperplanes are being replaced, so that the buckets probed also depend on the previous hash of the vector
+     */
+    private SimilarityCacheKey getANNCacheKey(List<RangeSliceCommand> commands, QueryOptions options)
+    throws InvalidRequestException
+    {
+        if (!isANNCacheable() || !commands.get(0).rowFilter.isEmpty())
+            return null;
+
+        IPartitioner partitioner = StorageService.getPartitioner();
+        ByteBuffer bucket = partitioner.getTokenFactory().toByteArray(partitioner.getToken(restrictions.getANNVector(options)));
+        return new SimilarityCacheKey(cfm.ksAndCFName,
+                                      cfm.cfId,
+                                      bucket,
+                                      DatabaseDescriptor.getSimilarityProbeRadius(),
+                                      options.getConsistency(),
+                                      serialize(commands.get(0).predicate));
+    }
+
+    private ByteBuffer serialize(IDiskAtomFilter filter)
+    {
+        DataOutputBuffer out = new DataOutputBuffer();
+        try
+        {
+            cfm.comparator.diskAtomFilterSerializer().serialize(filter, out, MessagingService.current_version);
+        }
+        catch (IOException e)
+        {
+            throw new AssertionError(e);
+        }
+        return out.buffer();
+    }
+
+    private boolean isANNCacheable()
+    {
+        return CacheService.instance.similarityCache.isEnabled()
+            && !restrictions.usesSecondaryIndexing()
+            && SimilarityPartitioner.previous() == null;
+    }
+
+    private static StorageProxy.RangeSliceCollector collectAll(final List<Row> rows)
+    {
+        return new StorageProxy.RangeSliceCollector()
+        {
+            public void collect(Row row)
+            {
+                rows.add(row);
+            }
+
+            public boolean isComplete(double distanceBound)
+            {
+                return false;
+            }
+        };
+    }
+
     private ColumnSlice makeStaticSlice()
     {
         // Note: we could use staticPrefix.start() for the start bound, but EMPTY gives us the
@@ -635,6 +1031,9 @@ public class SelectStatement implements CQLStatement
 
     private ResultSet process(List<Row> rows, QueryOptions options, int limit, long now) throws InvalidRequestException
     {
+        if (restrictions.isANN())
+            rows = nearest(rows, restrictions.getANNVector(options), limit, now);
+
         Selection.ResultSetBuilder result = selection.resultSetBuilder(now, parameters.isJson);
         for (Row row : rows)
         {
@@ -658,6 +1057,25 @@ public class SelectStatement implements CQLStatement
         return cqlRows;
     }
 
+    /**
+     * Re-ranks the candidates of an ANN search by the exact cosine distance between their partition key and the query
+     * vector, returning the closest first. Each CQL row has at least one live cell, so keeping the {@code limit}
+     * closest partitions holding live data is enough to answer the query; aggregates consider every candidate.
+     */
+    private List<Row> nearest(List<Row> rows, ByteBuffer vector, int limit, long now)
+    {
+        int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+        VectorEncoding encoding = VectorType.encodingOf(cfm.getKeyValidator());
+        int k = selection.isAggregate() ? rows.size() : Math.min(limit, rows.size());
+        NearestNeighbourHeap<Row> heap = new NearestNeighbourHeap<>(k);
+        for (Row row : rows)
+        {
+            if (row.cf != null && !row.cf.hasOnlyTombstones(now))
+                heap.offer(VectorUtil.cosineDistance(row.key.getKey(), encoding, vector, encoding, dimension), row);
+        }
+        return heap.drain();
+    }
+
     // Used by ModificationStatement for CAS operations
     void processColumnFamily(ByteBuffer key, ColumnFamily cf, QueryOptions options, long now, Selection.ResultSetBuilder result)
     throws InvalidRequestException
@@ -873,6 +1291,7 @@ public class SelectStatement implements CQLStatement
         private static void verifyOrderingIsAllowed(StatementRestrictions restrictions) throws InvalidRequestException
         {
             checkFalse(restrictions.usesSecondaryIndexing(), "ORDER BY with 2ndary indexes is not supported.");
+            checkFalse(restrictions.isANN(), "ORDER BY is not supported with ANN OF, rows are ordered by distance to the query vector.");
             checkFalse(restrictions.isKeyRange(), "ORDER BY is only supported when the partition key is restricted by an EQ or an IN.");
         }
 
@@ -57,10 +57,12 @@ import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.filter.ColumnSlice;
 import org.apache.cassandra.db.filter.ExtendedFilter;
 import org.apache.cassandra.db.filter.IDiskAtomFilter;
+import org.apache.cassandra.db.filter.NearestNeighbourFilter;
 import org.apache.cassandra.db.filter.QueryFilter;
 import org.apache.cassandra.db.filter.SliceQueryFilter;
 import org.apache.cassandra.db.index.SecondaryIndex;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
+import org.apache.cassandra.db.marshal.VectorType;
 import org.apache.cassandra.dht.*;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.exceptions.ConfigurationException;
@@ -113,6 +115,20 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                                                                                             new NamedThreadFactory("MemtableReclaimMemory"),
                                                                                             "internal");
 
+    // scans the sub-ranges of the ANN OF range reads in parallel, see getNearest()
+    private static final ForkJoinPool similarityReadPool = new ForkJoinPool(DatabaseDescriptor.getConcurrentSimilarityReads(),
+                                                                            new ForkJoinPool.ForkJoinWorkerThreadFactory()
+                                                                            {
+                                                                                public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+                                                                                {
+                                                                                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                                                                                    thread.setName("SimilarityRead:" + thread.getPoolIndex());
+                                                                                    return thread;
+                                                                                }
+                                                                            },
+                                                                            null,
+                                                                            false);
+
     private static final String[] COUNTER_NAMES = new String[]{"raw", "count", "error", "string"};
     private static final String[] COUNTER_DESCS = new String[]
     { "partition key in raw hex bytes",
@@ -163,6 +179,9 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
      */
     private final Tracker data;
 
+    /* Keep the sstables placed with the previous hyperplanes out of compactions until they are re-hashed */
+    private final List<LifecycleTransaction> rehashing = new ArrayList<>();
+
     /* The read order, used to track accesses to off-heap memtable storage */
     public final OpOrder readOrdering = new OpOrder();
 
@@ -246,6 +265,20 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    public static Runnable getRehashTaskSubmitter()
+    {
+        return new Runnable()
+        {
+            public void run()
+            {
+                for (Keyspace keyspace : Keyspace.all())
+                    for (ColumnFamilyStore cfs : keyspace.getColumnFamilyStores())
+                        if (!cfs.getRehashPendingSSTables().isEmpty())
+                            CompactionManager.instance.submitRehash(cfs);
+            }
+        };
+    }
+
     public static Runnable getBackgroundCompactionTaskSubmitter()
     {
         return new Runnable()
@@ -389,6 +422,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             Directories.SSTableLister sstableFiles = directories.sstableLister().skipTemporary(true);
             Collection<SSTableReader> sstables = SSTableReader.openAll(sstableFiles.list().entrySet(), metadata, this.partitioner);
             data.addInitialSSTables(sstables);
+            markRehashPending(sstables);
         }
 
         // compaction strategy should be created after the CFS has been prepared
@@ -479,6 +513,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         latencyCalculator.cancel(false);
         SystemKeyspace.removeTruncationRecord(metadata.cfId);
+        synchronized (this)
+        {
+            for (LifecycleTransaction txn : rehashing)
+                txn.abort();
+            rehashing.clear();
+        }
         data.dropSSTables();
         indexManager.invalidate();
 
@@ -802,6 +842,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         try (Refs<SSTableReader> refs = Refs.ref(newSSTables))
         {
             data.addSSTables(newSSTables);
+            markRehashPending(newSSTables);
             indexManager.maybeBuildSecondaryIndexes(newSSTables, indexManager.allIndexesNames());
         }
 
@@ -1601,6 +1642,71 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return data.getUncompacting();
     }
 
+    /**
+     * @return the sstables placed with the previous hyperplanes, that are yet to be re-hashed
+     */
+    public synchronized Set<SSTableReader> getRehashPendingSSTables()
+    {
+        if (rehashing.isEmpty())
+            return Collections.emptySet();
+
+        ImmutableSet.Builder<SSTableReader> sstables = ImmutableSet.builder();
+        for (LifecycleTransaction txn : rehashing)
+            sstables.addAll(txn.originals());
+        return sstables.build();
+    }
+
+    /**
+     * Keeps the given sstables that are placed with the previous hyperplanes out of compactions until they are
+     * re-hashed.
+     */
+    private synchronized void markRehashPending(Collection<SSTableReader> sstables)
+    {
+        List<SSTableReader> rehashPending = new ArrayList<>();
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.isRehashPending())
+                rehashPending.add(sstable);
+        }
+        if (rehashPending.isEmpty())
+            return;
+
+        LifecycleTransaction txn = data.tryModify(rehashPending, OperationType.REHASH);
+        if (txn == null)
+        {
+            logger.warn("{} sstables of {}.{} are placed with the previous hyperplanes but are already compacting, they will not be re-hashed",
+                        rehashPending.size(), keyspace.getName(), name);
+            return;
+        }
+        logger.info("{} sstables of {}.{} are placed with the previous hyperplanes and will be re-hashed", rehashPending.size(), keyspace.getName(), name);
+        rehashing.add(txn);
+    }
+
+    /**
+     * Deletes an sstable placed with the previous hyperplanes once its partitions have been written again.
+     */
+    public synchronized void markRehashed(SSTableReader sstable)
+    {
+        LifecycleTransaction pending = null;
+        for (LifecycleTransaction txn : rehashing)
+        {
+            if (txn.originals().contains(sstable))
+                pending = txn;
+        }
+        assert pending != null : sstable;
+
+        LifecycleTransaction txn = pending.split(Collections.singleton(sstable));
+        txn.obsoleteOriginals();
+        txn.finish();
+        if (pending.originals().isEmpty())
+        {
+            pending.close();
+            rehashing.remove(pending);
+            if (rehashing.isEmpty())
+                logger.info("Every sstable of {}.{} has been re-hashed", keyspace.getName(), name);
+        }
+    }
+
     public ColumnFamily getColumnFamily(DecoratedKey key,
                                         Composite start,
                                         Composite finish,
@@ -1920,7 +2026,25 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         {
             public List<SSTableReader> apply(View view)
             {
-                return compactionStrategyWrapper.filterSSTablesForReads(view.intervalTree.search(key));
+                List<SSTableReader> sstables = view.intervalTree.search(key);
+                // sstables placed with the previous hyperplanes hold the key at its previous position
+                SimilarityPartitioner previous = partitioner instanceof SimilarityPartitioner ? SimilarityPartitioner.previous() : null;
+                if (previous != null)
+                {
+                    List<SSTableReader> current = sstables;
+                    sstables = new ArrayList<>(current.size());
+                    for (SSTableReader sstable : current)
+                    {
+                        if (!sstable.isRehashPending())
+                            sstables.add(sstable);
+                    }
+                    for (SSTableReader sstable : view.intervalTree.search(previous.decorateKey(key.getKey())))
+                    {
+                        if (sstable.isRehashPending())
+                            sstables.add(sstable);
+                    }
+                }
+                return compactionStrategyWrapper.filterSSTablesForReads(sstables);
             }
         };
     }
@@ -2004,11 +2128,27 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             columns = controller.getTopLevelColumns(Memtable.MEMORY_POOL.needToCopyOnHeap());
         }
         if (columns != null)
+        {
             metric.samplers.get(Sampler.READS).addSample(filter.key.getKey(), filter.key.hashCode(), 1);
+            sampleBucket(filter.key);
+        }
         metric.updateSSTableIterated(controller.getSstablesIterated());
         return columns;
     }
 
+    /**
+     * Counts a read of the bucket of a key, while the buckets of a SimilarityPartitioner table are sampled.
+     */
+    private void sampleBucket(DecoratedKey key)
+    {
+        TopKSampler<ByteBuffer> sampler = metric.samplers.get(Sampler.BUCKETS);
+        if (sampler.isEnabled() && key.getToken() instanceof SimilarityPartitioner.BinaryToken)
+        {
+            ByteBuffer bucket = partitioner.getTokenFactory().toByteArray(key.getToken());
+            sampler.addSample(bucket, bucket.hashCode(), 1);
+        }
+    }
+
     public void beginLocalSampling(String sampler, int capacity)
     {
         metric.samplers.get(Sampler.valueOf(sampler)).beginSampling(capacity);
@@ -2018,20 +2158,67 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     {
         SamplerResult<ByteBuffer> samplerResults = metric.samplers.get(Sampler.valueOf(sampler))
                 .finishSampling(count);
+        boolean buckets = Sampler.valueOf(sampler) == Sampler.BUCKETS;
         TabularDataSupport result = new TabularDataSupport(COUNTER_TYPE);
         for (Counter<ByteBuffer> counter : samplerResults.topK)
         {
             byte[] key = counter.getItem().array();
+            // buckets are sampled as tokens, shown as their hash
+            String string = buckets
+                          ? partitioner.getTokenFactory().fromByteArray(ByteBuffer.wrap(key)).toString()
+                          : metadata.getKeyValidator().getString(ByteBuffer.wrap(key));
             result.put(new CompositeDataSupport(COUNTER_COMPOSITE_TYPE, COUNTER_NAMES, new Object[] {
                     Hex.bytesToHex(key), // raw
                     counter.getCount(),  // count
                     counter.getError(),  // error
-                    metadata.getKeyValidator().getString(ByteBuffer.wrap(key)) })); // string
+                    string })); // string
         }
         return new CompositeDataSupport(SAMPLING_RESULT, SAMPLER_NAMES, new Object[]{
                 samplerResults.cardinality, result});
     }
 
+    public double[][] trainHyperplanes(int bits, int samples, boolean balanced, long seed)
+    {
+        try (RefViewFragment view = selectAndReference(CANONICAL_SSTABLES))
+        {
+            return trainHyperplanes(view.sstables, bits, samples, balanced ? HyperplaneTrainer.Mode.BALANCED : HyperplaneTrainer.Mode.PCA, seed);
+        }
+    }
+
+    /**
+     * Derives hyperplanes from the principal directions of the keys of the specified sstables, read from their index
+     * summaries.
+     *
+     * @param bits the number of hyperplanes, or 0 for the configured identifier_length
+     * @param samples the number of keys to sample, at most: summary entries are kept with equal chances
+     */
+    public static double[][] trainHyperplanes(Collection<SSTableReader> sstables, int bits, int samples, HyperplaneTrainer.Mode mode, long seed)
+    {
+        RandomHyperplaneHash hash = DatabaseDescriptor.getHyperplaneHash();
+        if (hash == null)
+            throw new IllegalStateException("Hyperplanes can only be trained when vectors are configured, to know the dimension of the keys");
+
+        long entries = 0;
+        for (SSTableReader sstable : sstables)
+            entries += sstable.getIndexSummarySize();
+        double chance = entries <= samples ? 1.0 : (double) samples / entries;
+
+        Random random = new Random(seed);
+        HyperplaneTrainer trainer = new HyperplaneTrainer(hash.dimension());
+        for (SSTableReader sstable : sstables)
+        {
+            Token minimum = sstable.partitioner.getMinimumToken();
+            VectorEncoding encoding = VectorType.encodingOf(sstable.metadata.getKeyValidator());
+            for (DecoratedKey key : sstable.getKeySamples(new Range<>(minimum, minimum)))
+            {
+                if (random.nextDouble() < chance)
+                    trainer.add(key.getKey(), encoding);
+            }
+        }
+        logger.info("Training {} hyperplanes on {} sampled keys", bits > 0 ? bits : hash.bits(), trainer.count());
+        return trainer.train(bits > 0 ? bits : hash.bits(), mode, random);
+    }
+
     public void cleanupCache()
     {
         Collection<Range<Token>> ranges = StorageService.instance.getLocalRanges(keyspace.getName());
@@ -2069,30 +2256,80 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     /**
       * Iterate over a range of rows and columns from memtables/sstables.
       *
+      * The sstables yet to be re-hashed are ordered by the previous tokens of their partitions, so they are left out
+      * of the scan: their partitions whose current token is in the range are read by key instead, merging their data
+      * at both positions, in ring order with the scanned ones. They are taken from the same view as the scanned
+      * sstables, so that an sstable re-hashed meanwhile is neither missed nor read twice.
+      *
       * @param range The range of keys and columns within those keys to fetch
      */
     @SuppressWarnings("resource")
-    private AbstractScanIterator getSequentialIterator(final DataRange range, long now)
+    private AbstractScanIterator getSequentialIterator(final DataRange range, final long now)
     {
         assert !(range.keyRange() instanceof Range) || !((Range<?>)range.keyRange()).isWrapAround() || range.keyRange().right.isMinimum() : range.keyRange();
 
-        final ViewFragment view = select(viewFilter(range.keyRange()));
-        Tracing.trace("Executing seq scan across {} sstables for {}", view.sstables.size(), range.keyRange().getString(metadata.getKeyValidator()));
+        ViewFragment view;
+        List<SSTableReader> sstables = new ArrayList<>();
+        List<SSTableReader> rehashPending = new ArrayList<>();
+        Refs<SSTableReader> rehashPendingRefs;
+        do
+        {
+            view = select(viewFilterWithRehashPending(range.keyRange()));
+            sstables.clear();
+            rehashPending.clear();
+            for (SSTableReader sstable : view.sstables)
+            {
+                if (sstable.isRehashPending())
+                    rehashPending.add(sstable);
+                else
+                    sstables.add(sstable);
+            }
+            // an sstable released meanwhile has been re-hashed, a new view holds its partitions at their current position
+            rehashPendingRefs = Refs.tryRef(rehashPending);
+        }
+        while (rehashPendingRefs == null);
+        Tracing.trace("Executing seq scan across {} sstables for {}", sstables.size(), range.keyRange().getString(metadata.getKeyValidator()));
 
-        final CloseableIterator<Row> iterator = RowIteratorFactory.getIterator(view.memtables, view.sstables, range, this, now);
+        final CloseableIterator<Row> iterator = RowIteratorFactory.getIterator(view.memtables, sstables, range, this, now);
+        final Refs<SSTableReader> rehashPendingReferenced = rehashPendingRefs;
+        final PeekingIterator<DecoratedKey> rehashPendingKeys = Iterators.peekingIterator(new RehashPendingKeys(rehashPending, range));
 
         // todo this could be pushed into SSTableScanner
         return new AbstractScanIterator()
         {
+            // the scanned row following the re-hash pending partition returned last
+            private Row scanned;
+
             protected Row computeNext()
             {
                 while (true)
                 {
                     // pull a row out of the iterator
-                    if (!iterator.hasNext())
+                    Row current = scanned != null ? scanned : iterator.hasNext() ? iterator.next() : null;
+                    scanned = null;
+
+                    if (rehashPendingKeys.hasNext() && (current == null || rehashPendingKeys.peek().compareTo(current.key) <= 0))
+                    {
+                        DecoratedKey key = rehashPendingKeys.next();
+                        // the partition read by key includes the scanned data of the same key
+                        if (current != null && !current.key.equals(key))
+                            scanned = current;
+                        // read as the scanned rows are, sampled and counted once returned
+                        QueryFilter filter = new QueryFilter(key, name, range.columnFilter(key.getKey()), now);
+                        CollationController controller = new CollationController(ColumnFamilyStore.this, filter, gcBefore(now));
+                        ColumnFamily data;
+                        try (OpOrder.Group op = readOrdering.start())
+                        {
+                            data = controller.getTopLevelColumns(Memtable.MEMORY_POOL.needToCopyOnHeap());
+                        }
+                        if (data == null)
+                            continue;
+                        current = new Row(key, data);
+                    }
+
+                    if (current == null)
                         return endOfData();
 
-                    Row current = iterator.next();
                     DecoratedKey key = current.key;
 
                     if (!range.stopKey().isMinimum() && range.stopKey().compareTo(key) < 0)
@@ -2111,11 +2348,113 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
             public void close() throws IOException
             {
-                iterator.close();
+                try
+                {
+                    iterator.close();
+                }
+                finally
+                {
+                    rehashPendingReferenced.release();
+                }
             }
         };
     }
 
+    /**
+     * @return the sstables that may hold rows within @param rowBounds, as {@link #viewFilter(AbstractBounds)} does, and
+     * every sstable yet to be re-hashed: those are bounded by the previous tokens of their partitions
+     */
+    private Function<View, List<SSTableReader>> viewFilterWithRehashPending(final AbstractBounds<RowPosition> rowBounds)
+    {
+        final Function<View, List<SSTableReader>> inBounds = viewFilter(rowBounds);
+        return new Function<View, List<SSTableReader>>()
+        {
+            public List<SSTableReader> apply(View view)
+            {
+                List<SSTableReader> sstables = new ArrayList<>();
+                for (SSTableReader sstable : inBounds.apply(view))
+                {
+                    if (!sstable.isRehashPending())
+                        sstables.add(sstable);
+                }
+                for (SSTableReader sstable : view.sstables)
+                {
+                    if (sstable.isRehashPending())
+                        sstables.add(sstable);
+                }
+                return sstables;
+            }
+        };
+    }
+
+    /**
+     * Iterates, in ring order, over the keys of sstables yet to be re-hashed whose current position is in a range.
+     *
+     * Their indexes are ordered by the previous tokens, so every pass reads them whole, but only the next
+     * {@link #PAGE_SIZE} keys in ring order are kept on heap, and another pass is made only once those are consumed:
+     * a read returning fewer rows than that makes a single pass.
+     */
+    private static class RehashPendingKeys extends AbstractIterator<DecoratedKey>
+    {
+        private static final int PAGE_SIZE = 1024;
+
+        private final List<SSTableReader> sstables;
+        private final DataRange range;
+
+        private Iterator<DecoratedKey> page = Collections.emptyIterator();
+        private DecoratedKey last;
+        private boolean exhausted;
+
+        private RehashPendingKeys(List<SSTableReader> sstables, DataRange range)
+        {
+            this.sstables = sstables;
+            this.range = range;
+            this.exhausted = sstables.isEmpty();
+        }
+
+        protected DecoratedKey computeNext()
+        {
+            if (!page.hasNext())
+            {
+                if (exhausted)
+                    return endOfData();
+                page = nextPage();
+                if (!page.hasNext())
+                    return endOfData();
+            }
+            return page.next();
+        }
+
+        private Iterator<DecoratedKey> nextPage()
+        {
+            TreeSet<DecoratedKey> keys = new TreeSet<>();
+            boolean truncated = false;
+            for (SSTableReader sstable : sstables)
+            {
+                try (KeyIterator iterator = new KeyIterator(sstable.descriptor))
+                {
+                    while (iterator.hasNext())
+                    {
+                        DecoratedKey key = iterator.next();
+                        if ((last != null && key.compareTo(last) <= 0) || !range.contains(key))
+                            continue;
+
+                        keys.add(key);
+                        if (keys.size() > PAGE_SIZE)
+                        {
+                            keys.pollLast();
+                            truncated = true;
+                        }
+                    }
+                }
+            }
+            exhausted = !truncated;
+            if (!keys.isEmpty())
+                last = keys.last();
+            return keys.iterator();
+        }
+    }
+
     @VisibleForTesting
     public List<Row> getRangeSlice(final AbstractBounds<RowPosition> range,
                                    List<IndexExpression> rowFilter,
@@ -2199,6 +2538,10 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         long start = System.nanoTime();
         try (OpOrder.Group op = readOrdering.start())
         {
+            NearestNeighbourFilter nearest = filter.dataRange.nearest();
+            if (nearest != null)
+                return getNearest(filter, nearest);
+
             return filter(getSequentialIterator(filter.dataRange, filter.timestamp), filter);
         }
         finally
@@ -2207,6 +2550,128 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    /**
+     * Reads the partitions of an ANN OF range nearest to its query vector. The range is split at keys sampled from
+     * the sstables, into sub-ranges of similar sizes that are scanned in parallel by similarityReadPool. Each sub-range
+     * merges the memtables and the sstables as a sequential scan does, so every partition is reconciled before it is
+     * ranked, and the sub-ranges share the nearest partitions found so far, so that each of them skips the data of the
+     * partitions too far to be one of them.
+     */
+    private List<Row> getNearest(ExtendedFilter filter, NearestNeighbourFilter nearest)
+    {
+        DataRange dataRange = filter.dataRange;
+        List<AbstractBounds<RowPosition>> splits = dataRange instanceof DataRange.Paging
+                                                 ? Collections.singletonList(dataRange.keyRange())
+                                                 : splitForSamples(dataRange.keyRange(), nearestSplitPoints(dataRange.keyRange(), similarityReadPool.getParallelism()), similarityReadPool.getParallelism());
+        if (splits.size() == 1)
+        {
+            filter(getSequentialIterator(dataRange, filter.timestamp), filter);
+            return nearest.rows();
+        }
+
+        Tracing.trace("Executing parallel seq scan of {} sub-ranges for {}", splits.size(), dataRange.keyRange().getString(metadata.getKeyValidator()));
+        List<ExtendedFilter> filters = new ArrayList<>(splits.size());
+        for (AbstractBounds<RowPosition> split : splits)
+        {
+            DataRange splitRange = new DataRange(split, dataRange.columnFilter(null).cloneShallow());
+            splitRange.setNearest(nearest);
+            // no limit is counted, the rows are kept by the shared filter
+            filters.add(ExtendedFilter.create(this, splitRange, filter.getClause(), Integer.MAX_VALUE, false, filter.timestamp));
+        }
+        similarityReadPool.invoke(new NearestScan(filters, 0, filters.size()));
+        return nearest.rows();
+    }
+
+    /**
+     * @return the keys sampled from the sstables in the range or, when there are none, e.g. while every partition is
+     * in the memtables, the bounds splitting its tokens in {@code count} sub-ranges of the same size
+     */
+    private List<RowPosition> nearestSplitPoints(AbstractBounds<RowPosition> keyRange, int count)
+    {
+        Range<Token> tokens = new Range<>(keyRange.left.getToken(), keyRange.right.getToken());
+        List<RowPosition> points = new ArrayList<>();
+        for (DecoratedKey key : keySamples(tokens))
+            points.add(key);
+        if (!points.isEmpty() || !(partitioner instanceof SimilarityPartitioner))
+            return points;
+
+        try
+        {
+            List<Range<Token>> splits = ((SimilarityPartitioner) partitioner).splitRange(tokens, count);
+            for (Range<Token> split : splits.subList(0, splits.size() - 1))
+                points.add(split.right.maxKeyBound());
+        }
+        catch (IllegalArgumentException e)
+        {
+            // the range holds fewer tokens than sub-ranges, it is scanned at once
+        }
+        return points;
+    }
+
+    /**
+     * Splits a range in at most {@code count} sub-ranges holding a similar number of the sampled positions.
+     */
+    @VisibleForTesting
+    public static List<AbstractBounds<RowPosition>> splitForSamples(AbstractBounds<RowPosition> keyRange, List<? extends RowPosition> samples, int count)
+    {
+        List<RowPosition> keys = new ArrayList<>(samples.size());
+        for (RowPosition key : samples)
+        {
+            if (keyRange.contains(key))
+                keys.add(key);
+        }
+        Collections.sort(keys);
+
+        List<AbstractBounds<RowPosition>> splits = new ArrayList<>(count);
+        AbstractBounds<RowPosition> remaining = keyRange;
+        RowPosition last = null;
+        for (int i = 1; i < count && !keys.isEmpty(); i++)
+        {
+            RowPosition key = keys.get(i * keys.size() / count);
+            if (last != null && key.compareTo(last) <= 0)
+                continue;
+
+            Pair<AbstractBounds<RowPosition>, AbstractBounds<RowPosition>> split = remaining.split(key);
+            if (split == null)
+                continue;
+
+            splits.add(split.left);
+            remaining = split.right;
+            last = key;
+        }
+        splits.add(remaining);
+        return splits;
+    }
+
+    /**
+     * Scans sub-ranges of an ANN OF range read, forking until a task scans a single one.
+     */
+    private class NearestScan extends RecursiveAction
+    {
+        private final List<ExtendedFilter> filters;
+        private final int from, to;
+
+        private NearestScan(List<ExtendedFilter> filters, int from, int to)
+        {
+            this.filters = filters;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                ExtendedFilter filter = filters.get(from);
+                filter(getSequentialIterator(filter.dataRange, filter.timestamp), filter);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new NearestScan(filters, from, middle), new NearestScan(filters, middle, to));
+        }
+    }
+
     @VisibleForTesting
     public List<Row> search(AbstractBounds<RowPosition> range,
                             List<IndexExpression> clause,
@@ -2238,6 +2703,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         int columnsCount = 0;
         int total = 0, matched = 0;
         boolean ignoreTombstonedPartitions = filter.ignoreTombstonedPartitions();
+        // an ANN OF search keeps the rows nearest to its query in the filter of its range instead, see getNearest()
+        NearestNeighbourFilter nearest = filter.dataRange.nearest();
 
         try
         {
@@ -2272,7 +2739,11 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                     removeDroppedColumns(data);
                 }
 
-                rows.add(new Row(rawRow.key, data));
+                if (nearest == null)
+                    rows.add(new Row(rawRow.key, data));
+                else
+                    nearest.add(new Row(rawRow.key, data), filter.timestamp);
+                sampleBucket(rawRow.key);
                 if (!ignoreTombstonedPartitions || !data.hasOnlyTombstones(filter.timestamp))
                     matched++;
 
@@ -2510,6 +2981,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     {
         CacheService.instance.invalidateKeyCacheForCf(metadata.ksAndCFName);
         CacheService.instance.invalidateRowCacheForCf(metadata.ksAndCFName);
+        CacheService.instance.similarityCache.invalidate(metadata.cfId);
         if (metadata.isCounter())
             CacheService.instance.invalidateCounterCacheForCf(metadata.ksAndCFName);
     }
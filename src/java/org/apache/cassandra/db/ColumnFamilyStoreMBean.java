@@ -170,4 +170,16 @@ public interface ColumnFamilyStoreMBean
      * @return top <i>count</i> items for the sampler since beginLocalSampling was called
      */
     public CompositeData finishLocalSampling(String sampler, int count) throws OpenDataException;
+
+    /**
+     * Derives hyperplanes for the SimilarityPartitioner from the principal directions of keys sampled from the
+     * sstables of this table.
+     *
+     * @param bits the number of hyperplanes, or 0 for the configured identifier_length
+     * @param samples the maximum number of keys to sample
+     * @param balanced whether to rotate the principal directions into projections of similar variances
+     * @param seed the seed of the sampling and of the random rotations
+     * @return the normals of the hyperplanes, to be set as vectors in cassandra.yaml
+     */
+    public double[][] trainHyperplanes(int bits, int samples, boolean balanced, long seed);
 }
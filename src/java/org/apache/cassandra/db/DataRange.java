@@ -47,6 +47,8 @@ public class DataRange
     protected final AbstractBounds<RowPosition> keyRange;
     protected IDiskAtomFilter columnFilter;
     protected final boolean selectFullRow;
+    // the ANN OF search the range is read for, if any
+    protected NearestNeighbourFilter nearest;
 
     public DataRange(AbstractBounds<RowPosition> range, IDiskAtomFilter columnFilter)
     {
@@ -131,6 +133,29 @@ public class DataRange
         return selectFullRow;
     }
 
+    /**
+     * Sets the ANN OF search this range is read for, so that the partitions that cannot be among the nearest to its
+     * query vector are skipped.
+     */
+    public void setNearest(NearestNeighbourFilter nearest)
+    {
+        this.nearest = nearest;
+    }
+
+    public NearestNeighbourFilter nearest()
+    {
+        return nearest;
+    }
+
+    /**
+     * @return false if the partition of the key cannot be one of the nearest the range is read for, so that its data
+     * need not be read
+     */
+    public boolean mayBeNearest(ByteBuffer rowKey)
+    {
+        return nearest == null || nearest.mayBeNearest(rowKey);
+    }
+
     /**
      * Returns a column filter that should be used for a particular row key.  Note that in the case of paging,
      * slice starts and ends may change depending on the row key.
@@ -38,6 +38,7 @@ import org.apache.cassandra.db.index.SecondaryIndex;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.locator.AbstractReplicationStrategy;
+import org.apache.cassandra.service.CacheService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.service.pager.QueryPagers;
 import org.apache.cassandra.tracing.Tracing;
@@ -399,6 +400,7 @@ public class Keyspace
                     continue;
                 }
 
+                CacheService.instance.similarityCache.invalidate(cf.id(), key.getToken());
                 Tracing.trace("Adding to {} memtable", cf.metadata().cfName);
                 SecondaryIndexManager.Updater updater = updateIndexes
                                                       ? cfs.indexManager.updaterFor(key, cf, opGroup)
@@ -60,6 +60,7 @@ import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.RequestExecutionException;
 import org.apache.cassandra.io.sstable.*;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.SSTableWriter;
@@ -123,6 +124,7 @@ public class CompactionManager implements CompactionManagerMBean
 
     private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor);
     private final Multiset<ColumnFamilyStore> compactingCF = ConcurrentHashMultiset.create();
+    private final Set<ColumnFamilyStore> rehashingCF = Sets.newConcurrentHashSet();
 
     private final RateLimiter compactionRateLimiter = RateLimiter.create(Double.MAX_VALUE);
 
@@ -1287,6 +1289,65 @@ public class CompactionManager implements CompactionManagerMBean
         return executor.submit(runnable);
     }
 
+    /**
+     * Re-hashes the sstables of a table placed with the previous hyperplanes, one at a time. Each sstable is deleted
+     * once all its partitions have been written again; the others are left for a later submission if a partition
+     * cannot be written, e.g. when its new replicas are down.
+     */
+    public Future<?> submitRehash(final ColumnFamilyStore cfs)
+    {
+        Runnable runnable = new Runnable()
+        {
+            public void run()
+            {
+                // a single task re-hashes a table
+                if (!rehashingCF.add(cfs))
+                    return;
+                try
+                {
+                    if (cfs.metadata.isCounter())
+                    {
+                        logger.warn("Counter table {}.{} cannot be re-hashed: its sstables are kept with the previous hyperplanes",
+                                    cfs.keyspace.getName(), cfs.name);
+                        return;
+                    }
+
+                    for (SSTableReader sstable : cfs.getRehashPendingSSTables())
+                    {
+                        Rehasher rehasher = new Rehasher(cfs, sstable, getRateLimiter());
+                        metrics.beginCompaction(rehasher);
+                        try
+                        {
+                            long partitions = rehasher.rehash();
+                            cfs.markRehashed(sstable);
+                            logger.info("Re-hashed {} partitions of {}", partitions, sstable);
+                        }
+                        catch (RequestExecutionException e)
+                        {
+                            logger.warn("Could not re-hash {}, it will be retried: {}", sstable, e.getMessage());
+                            return;
+                        }
+                        finally
+                        {
+                            metrics.finishCompaction(rehasher);
+                        }
+                    }
+                }
+                finally
+                {
+                    rehashingCF.remove(cfs);
+                }
+            }
+        };
+        if (executor.isShutdown())
+        {
+            logger.info("Compaction executor has shut down, not submitting rehash");
+            return null;
+        }
+
+        return executor.submit(runnable);
+    }
+
     public Future<?> submitCacheWrite(final AutoSavingCache.Writer writer)
     {
         Runnable runnable = new Runnable()
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.columniterator.OnDiskAtomIterator;
+import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.utils.UUIDGen;
+
+/**
+ * Writes the partitions of an sstable placed with the previous hyperplanes of the SimilarityPartitioner again,
+ * through the write path: their mutations are placed with the configured hyperplanes, hence reach the replicas
+ * that now own them, this node included. The partitions keep their timestamps and tombstones, so writing them
+ * again never shadows a more recent update. Runs on the compaction manager, throttled like compactions.
+ */
+public class Rehasher extends CompactionInfo.Holder
+{
+    private final ColumnFamilyStore cfs;
+    private final SSTableReader sstable;
+    private final ISSTableScanner scanner;
+    private final UUID rehashCompactionId;
+
+    public Rehasher(ColumnFamilyStore cfs, SSTableReader sstable, RateLimiter limiter)
+    {
+        assert sstable.isRehashPending() : sstable;
+        this.cfs = cfs;
+        this.sstable = sstable;
+        this.scanner = sstable.getScanner(limiter);
+        this.rehashCompactionId = UUIDGen.getTimeUUID();
+    }
+
+    public CompactionInfo getCompactionInfo()
+    {
+        return new CompactionInfo(sstable.metadata,
+                                  OperationType.REHASH,
+                                  scanner.getCurrentPosition(),
+                                  scanner.getLengthInBytes(),
+                                  rehashCompactionId);
+    }
+
+    /**
+     * Writes every partition of the sstable again, at consistency level ONE: each replica of the previous position
+     * of a partition sends it to all its new replicas.
+     *
+     * @return the number of partitions written
+     * @throws RequestExecutionException if a partition could not be written, in which case the sstable must be kept
+     */
+    public long rehash() throws RequestExecutionException
+    {
+        long partitions = 0;
+        try
+        {
+            while (scanner.hasNext())
+            {
+                if (isStopRequested())
+                    throw new CompactionInterruptedException(getCompactionInfo());
+
+                OnDiskAtomIterator partition = scanner.next();
+                ColumnFamily cf = ArrayBackedSortedColumns.factory.create(cfs.metadata);
+                cf.delete(partition.getColumnFamily());
+                while (partition.hasNext())
+                    cf.addAtom(partition.next());
+
+                Mutation mutation = new Mutation(cfs.keyspace.getName(), partition.getKey().getKey(), cf);
+                StorageProxy.mutate(Collections.singletonList(mutation), ConsistencyLevel.ONE);
+                partitions++;
+            }
+        }
+        finally
+        {
+            FileUtils.closeQuietly(scanner);
+        }
+        return partitions;
+    }
+}
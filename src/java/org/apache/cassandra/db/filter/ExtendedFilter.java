@@ -18,6 +18,7 @@
 package org.apache.cassandra.db.filter;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +42,7 @@ import org.apache.cassandra.db.IndexExpression;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.marshal.*;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 
 /**
  * Extends a column filter (IFilter) to include a number of IndexExpression.
@@ -66,9 +68,43 @@ public abstract class ExtendedFilter
         if (clause == null || clause.isEmpty())
             return new EmptyClauseFilter(cfs, dataRange, maxResults, countCQL3Rows, timestamp);
 
+        IndexExpression nearest = getNearestExpression(cfs, clause);
+        if (nearest != null)
+        {
+            // the maxResults nearest partitions are kept by the range, which reads all the others to find them
+            dataRange.setNearest(new NearestNeighbourFilter(nearest.value,
+                                                            VectorType.encodingOf(cfs.metadata.getKeyValidator()),
+                                                            DatabaseDescriptor.getHyperplaneHash().dimension(),
+                                                            maxResults));
+            List<IndexExpression> others = new ArrayList<>(clause);
+            others.remove(nearest);
+            return create(cfs, dataRange, others, Integer.MAX_VALUE, countCQL3Rows, timestamp);
+        }
+
         return new WithClauses(cfs, dataRange, clause, maxResults, countCQL3Rows, timestamp);
     }
 
+    /**
+     * @return the ANN OF expression on the partition key of a SimilarityPartitioner table that no index answers,
+     * which ranks the partitions of the range rather than filtering them, or null
+     */
+    private static IndexExpression getNearestExpression(ColumnFamilyStore cfs, List<IndexExpression> clause)
+    {
+        if (!(cfs.partitioner instanceof SimilarityPartitioner) || cfs.indexManager.hasIndexFor(clause))
+            return null;
+
+        for (IndexExpression expression : clause)
+        {
+            if (expression.operator != Operator.ANN)
+                continue;
+
+            ColumnDefinition def = cfs.metadata.getColumnDefinition(expression.column);
+            if (def != null && def.isPartitionKey())
+                return expression;
+        }
+        return null;
+    }
+
     protected ExtendedFilter(ColumnFamilyStore cfs, DataRange dataRange, int maxResults, boolean countCQL3Rows, long timestamp)
     {
         assert cfs != null;
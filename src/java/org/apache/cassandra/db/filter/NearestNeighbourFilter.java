@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.filter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.utils.NearestNeighbourHeap;
+import org.apache.cassandra.utils.VectorEncoding;
+import org.apache.cassandra.utils.VectorUtil;
+
+/**
+ * Keeps the rows of a range read that may be among the {@code k} partitions nearest to a query vector, so that a
+ * replica returns the candidates of an {@code ANN OF} search already ranked rather than every partition of the range.
+ *
+ * The key of a partition is the vector it is ranked by, so a partition farther from the query than the k nearest
+ * live partitions found so far cannot be part of the result. The sstable scanners skip the data of such partitions
+ * (see {@link org.apache.cassandra.db.DataRange#mayBeNearest(ByteBuffer)}) and the merged rows are only kept while
+ * they are close enough. That distance only decreases as rows are added, so a partition skipped by one scanner is
+ * farther than the final k-th nearest one, and whatever the other sources return of it is dropped as well.
+ *
+ * Partitions without live data do not count towards {@code k}, but are returned when they are closer than the k-th
+ * nearest live one, so that their tombstones still shadow the data of the other replicas.
+ *
+ * The sub-ranges of a range may be scanned concurrently, all adding their rows to the same filter.
+ */
+public class NearestNeighbourFilter
+{
+    private static final Comparator<Row> keyComparator = new Comparator<Row>()
+    {
+        public int compare(Row r1, Row r2)
+        {
+            return r1.key.compareTo(r2.key);
+        }
+    };
+
+    private final ByteBuffer vector;
+    private final VectorEncoding encoding;
+    private final int dimension;
+    private final NearestNeighbourHeap<Row> live;
+    private final List<Row> dead = new ArrayList<>();
+
+    // the distance of the k-th nearest live partition added so far
+    private volatile double threshold = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param vector the query vector
+     * @param encoding the encoding of the query vector and of the keys, that of the partition key type
+     * @param dimension the dimension of the vectors
+     * @param k the number of live partitions to return
+     */
+    public NearestNeighbourFilter(ByteBuffer vector, VectorEncoding encoding, int dimension, int k)
+    {
+        assert k > 0;
+        this.vector = vector;
+        this.encoding = encoding;
+        this.dimension = dimension;
+        this.live = new NearestNeighbourHeap<>(k);
+    }
+
+    public double distance(ByteBuffer key)
+    {
+        return VectorUtil.cosineDistance(key, encoding, vector, encoding, dimension);
+    }
+
+    /**
+     * @return false if the partition of the key is farther from the query than the k nearest live partitions
+     * already added, and can be skipped
+     */
+    public boolean mayBeNearest(ByteBuffer key)
+    {
+        return distance(key) <= threshold;
+    }
+
+    /**
+     * Adds a row of the range, once merged from the memtables and the sstables.
+     */
+    public synchronized void add(Row row, long now)
+    {
+        double distance = distance(row.key.getKey());
+        if (distance > threshold)
+            return;
+
+        if (row.cf == null || row.cf.hasOnlyTombstones(now))
+            dead.add(row);
+        else if (live.offer(distance, row) && live.isFull())
+            threshold = live.farthest();
+    }
+
+    /**
+     * @return the rows kept, in partition order
+     */
+    public synchronized List<Row> rows()
+    {
+        List<Row> rows = live.drain();
+        for (Row row : dead)
+        {
+            if (distance(row.key.getKey()) <= threshold)
+                rows.add(row);
+        }
+        Collections.sort(rows, keyComparator);
+        return rows;
+    }
+}
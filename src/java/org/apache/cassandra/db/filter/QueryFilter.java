@@ -59,7 +59,7 @@ public class QueryFilter
 
     public OnDiskAtomIterator getSSTableColumnIterator(SSTableReader sstable)
     {
-        return filter.getSSTableColumnIterator(sstable, key);
+        return filter.getSSTableColumnIterator(sstable, sstable.placed(key));
     }
 
     public void collateOnDiskAtom(ColumnFamily returnCF,
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.index.lsh;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNames;
+import org.apache.cassandra.db.composites.SimpleDenseCellNameType;
+import org.apache.cassandra.db.index.PerRowSecondaryIndex;
+import org.apache.cassandra.db.index.SecondaryIndex;
+import org.apache.cassandra.db.index.SecondaryIndexManager;
+import org.apache.cassandra.db.index.SecondaryIndexSearcher;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.VectorType;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.RandomHyperplaneHash;
+import org.apache.cassandra.utils.VectorEncoding;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * A locality sensitive hashing index on the partition key of a table holding vectors.
+ *
+ * The partitioner already buckets vectors by one random hyperplane hash, so a query only finds the neighbours that
+ * share the bucket of its vector (or of one of its probes). This index keeps {@code tables} more hash families, each
+ * with its own random hyperplanes, in a second column family whose row keys are (family, hash) and whose column
+ * names are the base partition keys. An {@code ANN OF} query reads the bucket of its vector in every family and
+ * returns the union of the candidates, which makes a near neighbour missed by one family likely to be caught by
+ * another.
+ *
+ * The hyperplanes of a family are derived from the {@code seed} option, so every node hashes keys identically:
+ * <pre>
+ * CREATE CUSTOM INDEX ON vectors(key) USING 'org.apache.cassandra.db.index.lsh.LSHIndex'
+ *     WITH OPTIONS = {'tables': '8', 'bits': '12', 'seed': '42'};
+ * </pre>
+ */
+public class LSHIndex extends PerRowSecondaryIndex
+{
+    public static final String TABLES_OPTION_NAME = "tables";
+    public static final String BITS_OPTION_NAME = "bits";
+    public static final String SEED_OPTION_NAME = "seed";
+
+    public static final int DEFAULT_TABLES = 4;
+
+    private ColumnFamilyStore indexCfs;
+    private ColumnDefinition columnDef;
+    private RandomHyperplaneHash[] families;
+    private VectorEncoding encoding;
+
+    public void init()
+    {
+        assert baseCfs != null && columnDefs.size() == 1;
+
+        columnDef = columnDefs.iterator().next();
+        encoding = VectorType.encodingOf(columnDef.type);
+        Map<String, String> options = columnDef.getIndexOptions();
+        families = createFamilies(getTables(options),
+                                  getBits(options),
+                                  getSeed(options),
+                                  DatabaseDescriptor.getHyperplaneHash().dimension());
+
+        CFMetaData indexedCfMetadata = CFMetaData.newIndexMetadata(baseCfs.metadata,
+                                                                   columnDef,
+                                                                   new SimpleDenseCellNameType(SecondaryIndex.keyComparator))
+                                                 .keyValidator(BytesType.instance);
+        indexCfs = ColumnFamilyStore.createColumnFamilyStore(baseCfs.keyspace,
+                                                             indexedCfMetadata.cfName,
+                                                             new LocalPartitioner(BytesType.instance),
+                                                             indexedCfMetadata,
+                                                             baseCfs.getTracker().loadsstables);
+    }
+
+    /**
+     * Creates the hash families of an index. Family {@code i} draws its hyperplanes from a generator seeded with
+     * {@code seed + i}.
+     */
+    static RandomHyperplaneHash[] createFamilies(int tables, int bits, long seed, int dimension)
+    {
+        RandomHyperplaneHash[] families = new RandomHyperplaneHash[tables];
+        for (int i = 0; i < tables; i++)
+        {
+            Random random = new Random(seed + i);
+            double[][] vectors = new double[bits][dimension];
+            for (int j = 0; j < bits; j++)
+                for (int k = 0; k < dimension; k++)
+                    vectors[j][k] = random.nextGaussian();
+            families[i] = new RandomHyperplaneHash(vectors);
+        }
+        return families;
+    }
+
+    /**
+     * @return the number of hash families, and so of buckets read by a query
+     */
+    public int tables()
+    {
+        return families.length;
+    }
+
+    /**
+     * Returns the key of the index row holding the bucket of a vector in one of the hash families: the family
+     * number followed by the words of the hash.
+     */
+    ByteBuffer getIndexKey(int family, ByteBuffer vector)
+    {
+        long[] words = families[family].hash(vector, encoding);
+        ByteBuffer key = ByteBuffer.allocate(4 + words.length * 8);
+        key.putInt(family);
+        for (long word : words)
+            key.putLong(word);
+        key.flip();
+        return key;
+    }
+
+    /**
+     * @return whether the specified key is a vector of the dimension of the hash families, in the encoding of the
+     * indexed column
+     */
+    boolean isHashable(ByteBuffer key)
+    {
+        return key.remaining() == encoding.serializedSize(families[0].dimension());
+    }
+
+    public void index(ByteBuffer rowKey, ColumnFamily cf)
+    {
+        // deletions leave the index entries in place: they are purged when a query finds them stale
+        long now = System.currentTimeMillis();
+        if (cf == null || cf.hasOnlyTombstones(now) || !isHashable(rowKey))
+            return;
+
+        CellName name = CellNames.simpleDense(rowKey);
+        long timestamp = cf.maxTimestamp();
+        try (OpOrder.Group opGroup = baseCfs.keyspace.writeOrder.start())
+        {
+            for (int family = 0; family < families.length; family++)
+            {
+                ColumnFamily cfi = ArrayBackedSortedColumns.factory.create(indexCfs.metadata, false, 1);
+                cfi.addColumn(new BufferCell(name, ByteBufferUtil.EMPTY_BYTE_BUFFER, timestamp));
+                indexCfs.apply(indexCfs.partitioner.decorateKey(getIndexKey(family, rowKey)), cfi, SecondaryIndexManager.nullUpdater, opGroup, null);
+            }
+        }
+    }
+
+    public void delete(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        if (!isHashable(key.getKey()))
+            return;
+
+        delete(key.getKey(), FBUtilities.timestampMicros(), opGroup);
+    }
+
+    /**
+     * Removes a base partition key from its bucket in every hash family.
+     */
+    void delete(ByteBuffer rowKey, long timestamp, OpOrder.Group opGroup)
+    {
+        CellName name = CellNames.simpleDense(rowKey);
+        int localDeletionTime = (int) (System.currentTimeMillis() / 1000);
+        for (int family = 0; family < families.length; family++)
+        {
+            ColumnFamily cfi = ArrayBackedSortedColumns.factory.create(indexCfs.metadata, false, 1);
+            cfi.addTombstone(name, localDeletionTime, timestamp);
+            indexCfs.apply(indexCfs.partitioner.decorateKey(getIndexKey(family, rowKey)), cfi, SecondaryIndexManager.nullUpdater, opGroup, null);
+        }
+    }
+
+    public void validateOptions() throws ConfigurationException
+    {
+        for (ColumnDefinition def : columnDefs)
+        {
+            if (!def.isPartitionKey() || !def.isOnAllComponents())
+                throw new ConfigurationException(String.format("%s can only index a single column partition key, not %s",
+                                                               getClass().getSimpleName(), def.name));
+
+            Map<String, String> options = def.getIndexOptions();
+            getTables(options);
+            getBits(options);
+            getSeed(options);
+        }
+    }
+
+    private static int getTables(Map<String, String> options) throws ConfigurationException
+    {
+        return getPositiveInt(options, TABLES_OPTION_NAME, DEFAULT_TABLES);
+    }
+
+    private static int getBits(Map<String, String> options) throws ConfigurationException
+    {
+        return getPositiveInt(options, BITS_OPTION_NAME, DatabaseDescriptor.getIdentifierLength());
+    }
+
+    private static long getSeed(Map<String, String> options) throws ConfigurationException
+    {
+        String value = options == null ? null : options.get(SEED_OPTION_NAME);
+        if (value == null)
+            return 0;
+
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("Invalid %s option '%s': not a number", SEED_OPTION_NAME, value));
+        }
+    }
+
+    private static int getPositiveInt(Map<String, String> options, String name, int defaultValue) throws ConfigurationException
+    {
+        String value = options == null ? null : options.get(name);
+        if (value == null)
+            return defaultValue;
+
+        int parsed;
+        try
+        {
+            parsed = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("Invalid %s option '%s': not a number", name, value));
+        }
+        if (parsed <= 0)
+            throw new ConfigurationException(String.format("Invalid %s option '%s': must be strictly positive", name, value));
+        return parsed;
+    }
+
+    public boolean indexes(CellName name)
+    {
+        // every cell belongs to a partition whose key is indexed
+        return true;
+    }
+
+    @Override
+    public boolean supportsOperator(Operator operator)
+    {
+        return operator == Operator.ANN;
+    }
+
+    protected SecondaryIndexSearcher createSecondaryIndexSearcher(Set<ByteBuffer> columns)
+    {
+        return new LSHSearcher(baseCfs.indexManager, columns);
+    }
+
+    public void removeIndex(ByteBuffer columnName)
+    {
+        indexCfs.invalidate();
+    }
+
+    public void forceBlockingFlush()
+    {
+        Future<?> wait;
+        // we synchronise on the baseCfs to make sure we are ordered correctly with other flushes to the base CFS
+        synchronized (baseCfs.getTracker())
+        {
+            wait = indexCfs.forceFlush();
+        }
+        FBUtilities.waitOnFuture(wait);
+    }
+
+    public void invalidate()
+    {
+        indexCfs.invalidate();
+    }
+
+    public void truncateBlocking(long truncatedAt)
+    {
+        indexCfs.discardSSTables(truncatedAt);
+    }
+
+    public ColumnFamilyStore getIndexCfs()
+    {
+        return indexCfs;
+    }
+
+    public String getIndexName()
+    {
+        return indexCfs.name;
+    }
+
+    public void reload()
+    {
+        indexCfs.metadata.reloadSecondaryIndexMetadata(baseCfs.metadata);
+        indexCfs.reload();
+    }
+
+    public long estimateResultRows()
+    {
+        return indexCfs.getMeanColumns() * families.length;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.index.lsh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.composites.Composites;
+import org.apache.cassandra.db.filter.ExtendedFilter;
+import org.apache.cassandra.db.filter.QueryFilter;
+import org.apache.cassandra.db.index.SecondaryIndexManager;
+import org.apache.cassandra.db.index.SecondaryIndexSearcher;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * Answers an {@code ANN OF} expression with the union of the buckets of the query vector in every hash family of an
+ * {@link LSHIndex}. The candidates are returned in partition order; ranking them by distance is left to the
+ * coordinator.
+ */
+public class LSHSearcher extends SecondaryIndexSearcher
+{
+    private static final Logger logger = LoggerFactory.getLogger(LSHSearcher.class);
+
+    public LSHSearcher(SecondaryIndexManager indexManager, Set<ByteBuffer> columns)
+    {
+        super(indexManager, columns);
+    }
+
+    @Override
+    public void validate(IndexExpression indexExpression) throws InvalidRequestException
+    {
+        if (indexExpression.operator != Operator.ANN)
+            return;
+
+        LSHIndex index = (LSHIndex) indexManager.getIndexForColumn(indexExpression.column);
+        if (!index.isHashable(indexExpression.value))
+            throw new InvalidRequestException(String.format("Invalid ANN OF vector of %d bytes for index %s",
+                                                            indexExpression.value.remaining(),
+                                                            index.getIndexName()));
+    }
+
+    @Override
+    public List<Row> search(ExtendedFilter filter)
+    {
+        assert filter.getClause() != null && !filter.getClause().isEmpty();
+        IndexExpression primary = null;
+        for (IndexExpression expression : filter.getClause())
+            if (expression.operator == Operator.ANN && columns.contains(expression.column))
+                primary = expression;
+        assert primary != null;
+
+        LSHIndex index = (LSHIndex) indexManager.getIndexForColumn(primary.column);
+        // as in KeysSearcher, the writeOp is kept open for the duration so stale entries can be purged
+        try (OpOrder.Group writeOp = baseCfs.keyspace.writeOrder.start(); OpOrder.Group baseOp = baseCfs.readOrdering.start(); OpOrder.Group indexOp = index.getIndexCfs().readOrdering.start())
+        {
+            return baseCfs.filter(getCandidateIterator(writeOp, filter, getCandidates(filter, primary, index), index), filter);
+        }
+    }
+
+    /**
+     * Reads the bucket of the query vector in every hash family and returns the live candidates within the range
+     * of the query, in partition order.
+     */
+    private SortedMap<DecoratedKey, Long> getCandidates(ExtendedFilter filter, IndexExpression primary, LSHIndex index)
+    {
+        ColumnFamilyStore indexCfs = index.getIndexCfs();
+        AbstractBounds<RowPosition> range = filter.dataRange.keyRange();
+
+        // the candidates, with the most recent timestamp of their index entries
+        SortedMap<DecoratedKey, Long> candidates = new TreeMap<>();
+        for (int family = 0; family < index.tables(); family++)
+        {
+            DecoratedKey indexKey = indexCfs.partitioner.decorateKey(index.getIndexKey(family, primary.value));
+            ColumnFamily bucket = indexCfs.getColumnFamily(QueryFilter.getIdentityFilter(indexKey, indexCfs.name, filter.timestamp));
+            if (bucket == null)
+                continue;
+
+            for (Cell cell : bucket)
+            {
+                if (!cell.isLive(filter.timestamp))
+                    continue;
+
+                DecoratedKey dk = baseCfs.partitioner.decorateKey(cell.name().toByteBuffer());
+                if (!range.contains(dk))
+                    continue;
+
+                Long timestamp = candidates.get(dk);
+                if (timestamp == null || timestamp < cell.timestamp())
+                    candidates.put(dk, cell.timestamp());
+            }
+        }
+
+        Tracing.trace("Found {} candidates in {} hash families", candidates.size(), index.tables());
+        return candidates;
+    }
+
+    private ColumnFamilyStore.AbstractScanIterator getCandidateIterator(final OpOrder.Group writeOp,
+                                                                        final ExtendedFilter filter,
+                                                                        final SortedMap<DecoratedKey, Long> candidates,
+                                                                        final LSHIndex index)
+    {
+        final Iterator<Map.Entry<DecoratedKey, Long>> iterator = candidates.entrySet().iterator();
+        return new ColumnFamilyStore.AbstractScanIterator()
+        {
+            protected Row computeNext()
+            {
+                while (iterator.hasNext())
+                {
+                    Map.Entry<DecoratedKey, Long> candidate = iterator.next();
+                    DecoratedKey dk = candidate.getKey();
+
+                    ColumnFamily data = baseCfs.getColumnFamily(new QueryFilter(dk, baseCfs.name, filter.columnFilter(dk.getKey()), filter.timestamp));
+                    if (data != null && !data.hasOnlyTombstones(filter.timestamp))
+                        return new Row(dk, data);
+
+                    // the query may select no cell of a live partition, so only purge the entries of empty ones
+                    if (isStale(dk, filter.timestamp))
+                    {
+                        logger.trace("Removing stale index entries for {}", dk);
+                        index.delete(dk.getKey(), candidate.getValue(), writeOp);
+                    }
+                }
+                return endOfData();
+            }
+
+            @Override
+            public boolean needsFiltering()
+            {
+                // the only expression is the ANN OF one, which ranks rather than filters
+                return false;
+            }
+
+            public void close() throws IOException {}
+        };
+    }
+
+    private boolean isStale(DecoratedKey dk, long now)
+    {
+        ColumnFamily data = baseCfs.getColumnFamily(QueryFilter.getSliceFilter(dk, baseCfs.name, Composites.EMPTY, Composites.EMPTY, false, 1, now));
+        return data == null || data.hasOnlyTombstones(now);
+    }
+}
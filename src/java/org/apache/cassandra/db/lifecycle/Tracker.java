@@ -142,6 +142,7 @@ public class Tracker
             try
             {
                 add += sstable.bytesOnDisk();
+                cfstore.metric.tokenPrefixOccupancy.add(sstable);
             }
             catch (Throwable t)
             {
@@ -156,6 +157,7 @@ public class Tracker
             try
             {
                 subtract += sstable.bytesOnDisk();
+                cfstore.metric.tokenPrefixOccupancy.remove(sstable);
             }
             catch (Throwable t)
             {
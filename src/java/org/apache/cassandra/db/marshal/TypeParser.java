@@ -224,6 +224,49 @@ public class TypeParser
         throw new SyntaxException(String.format("Syntax error parsing '%s' at char %d: unexpected end of string", str, idx));
     }
 
+    /**
+     * Parses the parameters of a vector type: its element type followed by its dimension, as in
+     * {@code (org.apache.cassandra.db.marshal.DoubleType,128)}.
+     */
+    public Pair<AbstractType<?>, Integer> getVectorParameters() throws SyntaxException, ConfigurationException
+    {
+        if (isEOS() || str.charAt(idx) != '(')
+            throw new IllegalStateException();
+
+        ++idx; // skipping '('
+        skipBlank();
+
+        AbstractType<?> elementType;
+        try
+        {
+            elementType = parse();
+        }
+        catch (SyntaxException e)
+        {
+            SyntaxException ex = new SyntaxException(String.format("Exception while parsing '%s' around char %d", str, idx));
+            ex.initCause(e);
+            throw ex;
+        }
+
+        if (!skipBlankAndComma())
+            throw new SyntaxException(String.format("Syntax error parsing '%s' at char %d: unexpected end of string", str, idx));
+
+        String dimension = readNextIdentifier();
+        skipBlank();
+        if (isEOS() || str.charAt(idx) != ')')
+            throwSyntaxError("expecting ')' after the dimension of the vector");
+        ++idx; // skipping ')'
+
+        try
+        {
+            return Pair.<AbstractType<?>, Integer>create(elementType, Integer.valueOf(dimension));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new SyntaxException(String.format("Syntax error parsing '%s': invalid vector dimension '%s'", str, dimension));
+        }
+    }
+
     public Map<Byte, AbstractType<?>> getAliasParameters() throws SyntaxException, ConfigurationException
     {
         Map<Byte, AbstractType<?>> map = new HashMap<>();
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.marshal;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cassandra.cql3.CQL3Type;
+import org.apache.cassandra.cql3.Constants;
+import org.apache.cassandra.cql3.Term;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.exceptions.SyntaxException;
+import org.apache.cassandra.serializers.MarshalException;
+import org.apache.cassandra.serializers.VectorSerializer;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.VectorEncoding;
+
+/**
+ * A vector of a fixed number of components: {@code vector<double, N>}, {@code vector<float, N>} or
+ * {@code vector<tinyint, N>} in CQL, respectively serialized with the DOUBLE, FLOAT and INT8
+ * {@link VectorEncoding}s. The last two trade precision for a footprint 2 and almost 8 times smaller, and are read
+ * in place by {@link org.apache.cassandra.utils.RandomHyperplaneHash} and {@link org.apache.cassandra.utils.VectorUtil}.
+ *
+ * Values are validated by their length only. They can be written as a blob literal, or as a string of comma
+ * separated components, optionally between brackets: the components of a {@code vector<tinyint, N>} are then
+ * quantized.
+ */
+public class VectorType extends AbstractType<double[]>
+{
+    // interning instances
+    private static final Map<Pair<AbstractType<?>, Integer>, VectorType> instances = new HashMap<>();
+
+    private final AbstractType<?> elementType;
+    private final int dimension;
+    private final VectorSerializer serializer;
+
+    public static VectorType getInstance(TypeParser parser) throws ConfigurationException, SyntaxException
+    {
+        Pair<AbstractType<?>, Integer> parameters = parser.getVectorParameters();
+        if (!isSupportedElementType(parameters.left))
+            throw new ConfigurationException("VectorType only supports DoubleType, FloatType and ByteType elements, not " + parameters.left);
+        if (parameters.right <= 0)
+            throw new ConfigurationException("VectorType dimension must be strictly positive, not " + parameters.right);
+
+        return getInstance(parameters.left, parameters.right);
+    }
+
+    public static synchronized VectorType getInstance(AbstractType<?> elementType, int dimension)
+    {
+        assert isSupportedElementType(elementType) && dimension > 0;
+
+        Pair<AbstractType<?>, Integer> key = Pair.<AbstractType<?>, Integer>create(elementType, dimension);
+        VectorType t = instances.get(key);
+        if (t == null)
+        {
+            t = new VectorType(elementType, dimension);
+            instances.put(key, t);
+        }
+        return t;
+    }
+
+    public static boolean isSupportedElementType(AbstractType<?> elementType)
+    {
+        return encoding(elementType) != null;
+    }
+
+    /**
+     * @return the encoding of the values of a type: that of a vector type, and doubles for any other type, such as
+     * the blobs vectors were stored as before vector types existed
+     */
+    public static VectorEncoding encodingOf(AbstractType<?> type)
+    {
+        return type instanceof VectorType ? ((VectorType) type).encoding() : VectorEncoding.DOUBLE;
+    }
+
+    private static VectorEncoding encoding(AbstractType<?> elementType)
+    {
+        if (elementType == DoubleType.instance)
+            return VectorEncoding.DOUBLE;
+        if (elementType == FloatType.instance)
+            return VectorEncoding.FLOAT;
+        if (elementType == ByteType.instance)
+            return VectorEncoding.INT8;
+        return null;
+    }
+
+    private VectorType(AbstractType<?> elementType, int dimension)
+    {
+        this.elementType = elementType;
+        this.dimension = dimension;
+        this.serializer = new VectorSerializer(encoding(elementType), dimension);
+    }
+
+    public AbstractType<?> getElementType()
+    {
+        return elementType;
+    }
+
+    public int dimension()
+    {
+        return dimension;
+    }
+
+    public VectorEncoding encoding()
+    {
+        return serializer.encoding();
+    }
+
+    public int compare(ByteBuffer o1, ByteBuffer o2)
+    {
+        // vectors have no natural order, the byte order is enough to store and look them up
+        return ByteBufferUtil.compareUnsigned(o1, o2);
+    }
+
+    @Override
+    public boolean isByteOrderComparable()
+    {
+        return true;
+    }
+
+    public ByteBuffer fromString(String source) throws MarshalException
+    {
+        // Return an empty ByteBuffer for an empty string.
+        if (source.isEmpty())
+            return ByteBufferUtil.EMPTY_BYTE_BUFFER;
+
+        ByteBuffer bytes;
+        if (source.startsWith("0x"))
+        {
+            try
+            {
+                bytes = ByteBufferUtil.hexToBytes(source.substring(2));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new MarshalException(String.format("cannot parse '%s' as hex bytes", source), e);
+            }
+        }
+        else
+        {
+            String components = source.trim();
+            if (components.startsWith("[") && components.endsWith("]"))
+                components = components.substring(1, components.length() - 1);
+
+            String[] parts = components.split(",");
+            double[] vector = new double[parts.length];
+            try
+            {
+                for (int i = 0; i < parts.length; i++)
+                    vector[i] = Double.parseDouble(parts[i].trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new MarshalException(String.format("Unable to make %s from '%s'", asCQL3Type(), source), e);
+            }
+            bytes = serializer.serialize(vector);
+        }
+
+        serializer.validate(bytes);
+        return bytes;
+    }
+
+    @Override
+    public Term fromJSONObject(Object parsed) throws MarshalException
+    {
+        if (parsed instanceof String)
+            return new Constants.Value(fromString((String) parsed));
+
+        if (!(parsed instanceof List))
+            throw new MarshalException(String.format(
+                    "Expected a list of numbers for %s, but got a %s: %s", asCQL3Type(), parsed.getClass().getSimpleName(), parsed));
+
+        List<?> list = (List<?>) parsed;
+        double[] vector = new double[list.size()];
+        for (int i = 0; i < vector.length; i++)
+        {
+            Object component = list.get(i);
+            if (!(component instanceof Number))
+                throw new MarshalException(String.format(
+                        "Expected a number for the component %d of %s, but got a %s: %s", i, asCQL3Type(), component.getClass().getSimpleName(), component));
+            vector[i] = ((Number) component).doubleValue();
+        }
+        return new Constants.Value(serializer.serialize(vector));
+    }
+
+    @Override
+    public String toJSONString(ByteBuffer buffer, int protocolVersion)
+    {
+        return serializer.toString(serializer.deserialize(buffer));
+    }
+
+    @Override
+    public CQL3Type asCQL3Type()
+    {
+        return CQL3Type.Vector.create(this);
+    }
+
+    public VectorSerializer getSerializer()
+    {
+        return serializer;
+    }
+
+    @Override
+    public boolean references(AbstractType<?> check)
+    {
+        return super.references(check) || elementType.references(check);
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getName() + "(" + elementType + "," + dimension + ")";
+    }
+}
@@ -17,12 +17,17 @@
  */
 package org.apache.cassandra.dht;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,13 +37,18 @@ import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.gms.ApplicationState;
+import org.apache.cassandra.gms.EndpointState;
 import org.apache.cassandra.gms.FailureDetector;
+import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.gms.VersionedValue;
 import org.apache.cassandra.io.IVersionedSerializer;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.locator.AbstractReplicationStrategy;
 import org.apache.cassandra.locator.TokenMetadata;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.streaming.*;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 import org.apache.cassandra.utils.progress.ProgressEvent;
 import org.apache.cassandra.utils.progress.ProgressEventNotifierSupport;
 import org.apache.cassandra.utils.progress.ProgressEventType;
@@ -178,21 +188,117 @@ public class BootStrapper extends ProgressEventNotifierSupport
         if (numTokens == 1)
             logger.warn("Picking random token for a single vnode.  You should probably add more vnodes; failing that, you should probably specify the token manually");
 
+        if (DatabaseDescriptor.isSimilarityDataAwareAllocation() && StorageService.getPartitioner() instanceof SimilarityPartitioner)
+            return getDataAwareTokens(metadata, gossipedTokenPrefixHistogram(), numTokens);
+
         return getRandomTokens(metadata, numTokens);
     }
 
     public static Collection<Token> getRandomTokens(TokenMetadata metadata, int numTokens)
     {
         Set<Token> tokens = new HashSet<>(numTokens);
+        addRandomTokens(metadata, tokens, numTokens);
+        return tokens;
+    }
+
+    private static void addRandomTokens(TokenMetadata metadata, Set<Token> tokens, int numTokens)
+    {
         while (tokens.size() < numTokens)
         {
             Token token = StorageService.getPartitioner().getRandomToken();
             if (metadata.getEndpoint(token) == null)
                 tokens.add(token);
         }
+    }
+
+    /**
+     * Picks tokens such that each of them takes an equal share of the keys of the cluster once they have all joined
+     * the ring: every new token splits the range holding the most keys, taking either that share or half of the keys
+     * of the range, whichever is smaller. Tokens are completed with random ones if the cluster holds no key, or if
+     * the ranges holding the most keys are too narrow to be split.
+     *
+     * @param histogram the token prefixes of the keys of the cluster
+     */
+    @VisibleForTesting
+    static Collection<Token> getDataAwareTokens(TokenMetadata metadata, TokenPrefixHistogram histogram, int numTokens)
+    {
+        Set<Token> tokens = new HashSet<>(numTokens);
+        List<Token> sortedTokens = metadata.sortedTokens();
+        if (histogram.total() > 0 && !sortedTokens.isEmpty())
+        {
+            KeyDistribution distribution = new KeyDistribution(histogram);
+            double share = distribution.total() / (sortedTokens.size() + numTokens);
+
+            PriorityQueue<WeightedRange> ranges = new PriorityQueue<>(sortedTokens.size());
+            Token previous = sortedTokens.get(sortedTokens.size() - 1);
+            for (Token token : sortedTokens)
+            {
+                ranges.add(new WeightedRange(previous, token, distribution.count(previous, token)));
+                previous = token;
+            }
+
+            while (tokens.size() < numTokens && !ranges.isEmpty())
+            {
+                WeightedRange range = ranges.poll();
+                double count = Math.min(share, range.count / 2);
+                Token token = distribution.tokenAfter(range.range.left, count);
+                if (!range.range.contains(token) || token.equals(range.range.right) || !tokens.add(token))
+                    continue;
+
+                // the first keys of the range are now the new node's, the rest are still left to split
+                ranges.add(new WeightedRange(token, range.range.right, range.count - count));
+            }
+            logger.info("Picked {} tokens from the distribution of {} keys", tokens.size(), (long) distribution.total());
+        }
+        addRandomTokens(metadata, tokens, numTokens);
         return tokens;
     }
 
+    /**
+     * @return the sum of the token prefix histograms gossiped by the nodes of the cluster
+     */
+    private static TokenPrefixHistogram gossipedTokenPrefixHistogram()
+    {
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(SimilarityPartitioner.histogramPrefixBits());
+        for (Map.Entry<InetAddress, EndpointState> entry : Gossiper.instance.getEndpointStates())
+        {
+            VersionedValue value = entry.getValue().getApplicationState(ApplicationState.TOKEN_HISTOGRAM);
+            if (value == null)
+                continue;
+
+            try
+            {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(value.value.getBytes(ISO_8859_1)));
+                TokenPrefixHistogram endpointHistogram = TokenPrefixHistogram.serializer.deserialize(in);
+                if (endpointHistogram.size() == histogram.size())
+                    histogram.merge(endpointHistogram);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Ignoring the invalid token histogram gossiped by {}", entry.getKey(), e);
+            }
+        }
+        return histogram;
+    }
+
+    private static class WeightedRange implements Comparable<WeightedRange>
+    {
+        final Range<Token> range;
+        final double count;
+
+        WeightedRange(Token left, Token right, double count)
+        {
+            this.range = new Range<>(left, right);
+            this.count = count;
+        }
+
+        // the range holding the most keys first
+        public int compareTo(WeightedRange other)
+        {
+            return Double.compare(other.count, count);
+        }
+    }
+
     public static class StringSerializer implements IVersionedSerializer<String>
     {
         public static final StringSerializer instance = new StringSerializer();
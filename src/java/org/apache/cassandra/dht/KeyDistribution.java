@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.dht;
+
+import org.apache.cassandra.utils.TokenPrefixHistogram;
+
+/**
+ * The distribution of keys over the ring of the {@link SimilarityPartitioner}, estimated from a histogram of their
+ * token prefixes. Within a prefix, keys are assumed to be evenly spread. An empty histogram stands for keys evenly
+ * spread over the whole ring, so that counts fall back to fractions of the token space.
+ */
+class KeyDistribution
+{
+    // the number of keys before each prefix, followed by the total
+    private final double[] cumulative;
+    private final int bits;
+
+    KeyDistribution(TokenPrefixHistogram histogram)
+    {
+        boolean uniform = histogram.total() == 0;
+        cumulative = new double[histogram.size() + 1];
+        for (int i = 0; i < histogram.size(); i++)
+            cumulative[i + 1] = cumulative[i] + (uniform ? 1 : histogram.get(i));
+        bits = histogram.prefixBits();
+    }
+
+    double total()
+    {
+        return cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * @return the estimated number of keys in the range (left, right], which wraps around the ring unless left is
+     * smaller than right
+     */
+    double count(Token left, Token right)
+    {
+        double before = countBefore(SimilarityPartitioner.position(left, bits));
+        double upTo = countBefore(SimilarityPartitioner.position(right, bits));
+        return left.compareTo(right) < 0 ? upTo - before : total() - before + upTo;
+    }
+
+    /**
+     * @return the token {@code t} such that the range (left, t] holds about {@code count} keys, {@code count} being
+     * smaller than the total
+     */
+    Token tokenAfter(Token left, double count)
+    {
+        double target = countBefore(SimilarityPartitioner.position(left, bits)) + count;
+        if (target > total())
+            target -= total();
+
+        // the first non-empty prefix reaching the target
+        int prefix = 0;
+        while (prefix < cumulative.length - 2 && (cumulative[prefix + 1] < target || cumulative[prefix + 1] == cumulative[prefix]))
+            prefix++;
+
+        double keys = cumulative[prefix + 1] - cumulative[prefix];
+        double position = prefix + (keys == 0 ? 0 : Math.max(0, target - cumulative[prefix]) / keys);
+        return SimilarityPartitioner.tokenAt(position, bits);
+    }
+
+    /**
+     * @return the estimated number of keys before a position of the ring, interpolated within its prefix
+     */
+    private double countBefore(double position)
+    {
+        int prefix = Math.min((int) position, cumulative.length - 2);
+        return cumulative[prefix] + (position - prefix) * (cumulative[prefix + 1] - cumulative[prefix]);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.dht;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.dht.SimilarityPartitioner.BinaryToken;
+import org.apache.cassandra.utils.BinaryReflectedGrayCode;
+
+/**
+ * Plans the token ranges to read for a multi-probe similarity lookup under the {@link SimilarityPartitioner}.
+ *
+ * The buckets probed are every hash within a given Hamming distance of the query hash. Flipping bit {@code i} of a
+ * Gray code flips bits {@code 0..i} of its binary value, so the neighbours are enumerated directly on the decoded
+ * ring positions of the tokens. The buckets are then sorted in ring order and consecutive positions are merged, so
+ * that each returned range covers a maximal run of probed buckets.
+ *
+ * A vector hashed into a bucket lies on the other side of each flipped hyperplane from the query vector, which bounds
+ * from below its angle, hence its cosine distance, to the query: reads can stop once the buckets left to read cannot
+ * hold a closer vector than the ones already found.
+ */
+public final class MultiProbeRangePlanner
+{
+    private static final Comparator<Bucket> RING_ORDER = new Comparator<Bucket>()
+    {
+        public int compare(Bucket b1, Bucket b2)
+        {
+            return BinaryReflectedGrayCode.compareBinary(b1.binary, b2.binary);
+        }
+    };
+
+    private MultiProbeRangePlanner()
+    {
+    }
+
+    /**
+     * A range of probed buckets, along with the smallest angle between the query vector and any vector hashed into
+     * one of them.
+     */
+    public static final class Probe
+    {
+        public final Range<Token> range;
+        public final double angle;
+
+        public Probe(Range<Token> range, double angle)
+        {
+            this.range = range;
+            this.angle = angle;
+        }
+
+        @Override
+        public String toString()
+        {
+            return range + "@" + angle;
+        }
+    }
+
+    /**
+     * A probed ring position and the angle below which no vector can be hashed to it.
+     */
+    private static final class Bucket
+    {
+        private final long[] binary;
+        private final double angle;
+
+        private Bucket(long[] binary, double angle)
+        {
+            this.binary = binary;
+            this.angle = angle;
+        }
+    }
+
+    /**
+     * Returns the fewest ranges covering every bucket within {@code radius} bits of the specified token, in ring
+     * order. A radius of 0 gives the single range of the token's own bucket.
+     *
+     * @param query the token of the query vector
+     * @param radius the maximum Hamming distance of the probed buckets
+     */
+    public static List<Range<Token>> getRanges(Token query, int radius)
+    {
+        List<Probe> probes = getProbes(query, radius, new double[DatabaseDescriptor.getIdentifierLength()]);
+        List<Range<Token>> ranges = new ArrayList<>(probes.size());
+        for (Probe probe : probes)
+            ranges.add(probe.range);
+        return ranges;
+    }
+
+    /**
+     * Returns the fewest ranges covering every bucket within {@code radius} bits of the specified token, in ring
+     * order, each with the smallest angle between the query vector and the vectors of its buckets. A vector whose hash
+     * differs from the query's in bits {@code S} is at least at the largest of {@code angles[j]}, for j in S, from it.
+     * If there are more than {@link DatabaseDescriptor#getSimilarityMaxProbes()} such buckets, the whole ring is
+     * returned instead, as a single range with no bound on the angle.
+     *
+     * @param query the token of the query vector
+     * @param radius the maximum Hamming distance of the probed buckets
+     * @param angles the angles between the query vector and each hyperplane, see {@link org.apache.cassandra.utils.RandomHyperplaneHash#angles}
+     */
+    public static List<Probe> getProbes(Token query, int radius, double[] angles)
+    {
+        assert !query.isMinimum();
+        int bits = DatabaseDescriptor.getIdentifierLength();
+        if (probeCount(bits, radius) > DatabaseDescriptor.getSimilarityMaxProbes())
+            return Collections.singletonList(new Probe(new Range<Token>(SimilarityPartitioner.MINIMUM, SimilarityPartitioner.MINIMUM), 0.0));
+
+        List<Bucket> buckets = new ArrayList<>();
+        addNeighbours(((BinaryToken) query).token.clone(), 0.0, 0, bits, Math.min(radius, bits), angles, buckets);
+        Collections.sort(buckets, RING_ORDER);
+
+        List<Probe> probes = new ArrayList<>();
+        Bucket first = buckets.get(0);
+        Bucket last = first;
+        double angle = first.angle;
+        for (int i = 1; i < buckets.size(); i++)
+        {
+            Bucket bucket = buckets.get(i);
+            if (!Arrays.equals(increment(last.binary.clone()), bucket.binary))
+            {
+                probes.add(new Probe(range(first.binary, last.binary), angle));
+                first = bucket;
+                angle = bucket.angle;
+            }
+            last = bucket;
+            angle = Math.min(angle, bucket.angle);
+        }
+        probes.add(new Probe(range(first.binary, last.binary), angle));
+        return probes;
+    }
+
+    /**
+     * Returns the number of hashes of {@code bits} bits within {@code radius} bits of a given one, that is the sum of
+     * C(bits, i) for i up to {@code radius}, or {@link Long#MAX_VALUE} if it does not fit in an {@code int}.
+     */
+    static long probeCount(int bits, int radius)
+    {
+        long count = 0;
+        long combinations = 1;
+        for (int i = 0; i <= Math.min(radius, bits); i++)
+        {
+            count += combinations;
+            if (count > Integer.MAX_VALUE)
+                return Long.MAX_VALUE;
+            combinations = combinations * (bits - i) / (i + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Adds the specified ring position and, up to {@code radius} more flipped Gray bits, the positions obtained by
+     * flipping Gray bits {@code from} and above. Each subset of flipped bits is visited once.
+     */
+    private static void addNeighbours(long[] binary, double angle, int from, int bits, int radius, double[] angles, List<Bucket> buckets)
+    {
+        buckets.add(new Bucket(binary, angle));
+        if (radius == 0)
+            return;
+
+        for (int i = from; i < bits; i++)
+        {
+            long[] neighbour = binary.clone();
+            flipLowBits(neighbour, i + 1);
+            addNeighbours(neighbour, Math.max(angle, angles[i]), i + 1, bits, radius - 1, angles, buckets);
+        }
+    }
+
+    /**
+     * Flips the {@code n} least significant bits of a binary value.
+     */
+    private static void flipLowBits(long[] words, int n)
+    {
+        int full = n >>> 6;
+        for (int i = 0; i < full; i++)
+            words[i] = ~words[i];
+        if ((n & 63) != 0)
+            words[full] ^= (1L << (n & 63)) - 1;
+    }
+
+    /**
+     * The range (predecessor of first, last] holding the buckets first to last.
+     */
+    private static Range<Token> range(long[] first, long[] last)
+    {
+        Token left = isZero(first) ? SimilarityPartitioner.MINIMUM : BinaryToken.fromBinary(decrement(first.clone()));
+        return new Range<Token>(left, BinaryToken.fromBinary(last));
+    }
+
+    private static boolean isZero(long[] words)
+    {
+        for (long word : words)
+            if (word != 0)
+                return false;
+        return true;
+    }
+
+    private static long[] increment(long[] words)
+    {
+        for (int i = 0; i < words.length && ++words[i] == 0; i++);
+        return words;
+    }
+
+    private static long[] decrement(long[] words)
+    {
+        for (int i = 0; i < words.length && words[i]-- == 0; i++);
+        return words;
+    }
+}
@@ -18,7 +18,6 @@
 
 package org.apache.cassandra.dht;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -26,32 +25,73 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.cassandra.config.CFMetaData;
-import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.BinaryType;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.serializers.BinarySerializer;
-import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.BinaryReflectedGrayCode;
+import org.apache.cassandra.utils.BinaryReflectedGrayCodeUtil;
 import org.apache.cassandra.utils.ByteBufferUtil;
-import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.ObjectSizes;
-import org.apache.cassandra.utils.Pair;
 import org.apache.cassandra.utils.RandomHyperplaneHash;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 
 public class SimilarityPartitioner implements IPartitioner
 {
-    public static final BinaryToken MINIMUM = new BinaryToken(new BitSet());
-
-    public static final BigInteger BYTE_MASK = new BigInteger("255");
+    public static final BinaryToken MINIMUM = new BinaryToken(new long[0]);
 
     private static final long EMPTY_SIZE = ObjectSizes.measure(MINIMUM);
 
     public static final SimilarityPartitioner instance = new SimilarityPartitioner();
 
+    private static volatile SimilarityPartitioner previous;
+
+    // the hyperplanes keys are hashed with, or null for the configured ones
+    private final RandomHyperplaneHash hyperplanes;
+
+    public SimilarityPartitioner()
+    {
+        this(null);
+    }
+
+    private SimilarityPartitioner(RandomHyperplaneHash hyperplanes)
+    {
+        this.hyperplanes = hyperplanes;
+    }
+
+    /**
+     * Returns a partitioner placing keys with the previous_vectors, the order of the sstables written before the
+     * hyperplanes were replaced. Its tokens share the ring of the configured hyperplanes, so that the partitions of
+     * these sstables are read where they are until they are re-hashed.
+     *
+     * @return the partitioner of the previous hyperplanes, or null if none are configured
+     */
+    public static SimilarityPartitioner previous()
+    {
+        RandomHyperplaneHash hash = DatabaseDescriptor.getPreviousHyperplaneHash();
+        if (hash == null)
+            return null;
+
+        SimilarityPartitioner current = previous;
+        if (current == null || current.hyperplanes != hash)
+            previous = current = new SimilarityPartitioner(hash);
+        return current;
+    }
+
+    /**
+     * @return the hash of the hyperplanes keys are placed with
+     */
+    public RandomHyperplaneHash hyperplanes()
+    {
+        return hyperplanes == null ? DatabaseDescriptor.getHyperplaneHash() : hyperplanes;
+    }
+
     /**
      * Transform key to object representation of the on-disk format.
      *
@@ -73,46 +113,116 @@ public class SimilarityPartitioner implements IPartitioner
      */
     public Token midpoint(Token lToken, Token rToken)
     {
-        BinaryToken lt = (BinaryToken) lToken;
-        BinaryToken rt = (BinaryToken) rToken;
-
-        int sigbytes = Math.max(lt.token.toByteArray().length, rt.token.toByteArray().length);
-        BigInteger left = bigForBinary(lt.token, sigbytes);
-        BigInteger right = bigForBinary(rt.token, sigbytes);
+        // the ring spans identifier_length bits; the symbolic MINIMUM token acts as zero
+        int bits = DatabaseDescriptor.getIdentifierLength();
+        long[] left = ((BinaryToken) lToken).token;
+        long[] distance = distance(left, ((BinaryToken) rToken).token, bits);
+        // discard the remainder
+        divide(distance, 2);
+        return BinaryToken.fromBinary(add(left, distance, 0, bits));
+    }
 
-        Pair<BigInteger, Boolean> midpair = FBUtilities.midpoint(left, right, 8 * sigbytes);
-        return new BinaryToken(binaryForBig(midpair.left, sigbytes, midpair.right));
+    /**
+     * Splits a range into {@code n} contiguous sub-ranges, in ring order, whose numbers of tokens differ by one at
+     * most. As with {@link #midpoint(Token, Token)}, a range whose left token is not smaller than its right one wraps
+     * around the ring, and the minimum token acts as zero.
+     *
+     * @throws IllegalArgumentException if the range holds fewer than {@code n} tokens
+     */
+    public List<Range<Token>> splitRange(Range<Token> range, int n)
+    {
+        assert n > 0;
+        int bits = DatabaseDescriptor.getIdentifierLength();
+        long[] left = ((BinaryToken) range.left).token;
+        long[] step = distance(left, ((BinaryToken) range.right).token, bits);
+        // every sub-range holds step tokens, and remainder of them, evenly spread, hold one more
+        long remainder = divide(step, n);
+        if (n > 1 && BinaryReflectedGrayCode.compareBinary(step, MINIMUM.token) == 0)
+            throw new IllegalArgumentException(String.format("Cannot split %s in %d ranges", range, n));
+
+        List<Range<Token>> ranges = new ArrayList<>(n);
+        Token start = range.left;
+        long[] offset = left;
+        long accumulated = 0;
+        for (int k = 1; k < n; k++)
+        {
+            accumulated += remainder;
+            long carry = accumulated >= n ? 1 : 0;
+            accumulated -= carry * n;
+            offset = add(offset, step, carry, bits);
+
+            Token end = BinaryToken.fromBinary(offset);
+            ranges.add(new Range<>(start, end));
+            start = end;
+        }
+        ranges.add(new Range<>(start, range.right));
+        return ranges;
     }
 
-    private BigInteger bigForBinary(BitSet binary, int sigbytes)
+    /**
+     * @return the number of tokens from left (excluded) to right (included), going around the ring of {@code bits}
+     * bits unless left is smaller than right, in one more word than the ring values so that the whole ring fits
+     */
+    private static long[] distance(long[] left, long[] right, int bits)
     {
-        byte[] b, bytes = binary.toByteArray();
-        if (sigbytes != bytes.length)
+        long[] distance = new long[words(bits) + 1];
+        System.arraycopy(right, 0, distance, 0, Math.min(right.length, distance.length));
+        if (BinaryReflectedGrayCode.compareBinary(left, right) >= 0)
+            distance[bits >>> 6] |= 1L << bits;
+
+        long borrow = 0;
+        for (int i = 0; i < distance.length; i++)
         {
-            b = new byte[sigbytes];
-            System.arraycopy(bytes, 0, b, 0, bytes.length);
+            long x = distance[i];
+            long y = i < left.length ? left[i] : 0L;
+            long difference = x - y - borrow;
+            borrow = ((~x & y) | (~(x ^ y) & difference)) >>> 63;
+            distance[i] = difference;
         }
-        else
-            b = bytes;
-        return new BigInteger(1, b);
+        return distance;
     }
 
-    private BitSet binaryForBig(BigInteger big, int sigbytes, Boolean remainder)
+    /**
+     * @return {@code (a + b + carry) mod 2^bits}, in as many words as a value of the ring
+     */
+    private static long[] add(long[] a, long[] b, long carry, int bits)
     {
-        byte[] bytes = new byte[sigbytes + (remainder ? 1 : 0)];
-        if (remainder)
+        long[] sum = new long[words(bits)];
+        for (int i = 0; i < sum.length; i++)
         {
-            // remaining bit is the most significant in the last byte
-            bytes[sigbytes] |= 0x80;
+            long x = i < a.length ? a[i] : 0L;
+            long y = i < b.length ? b[i] : 0L;
+            long z = x + y + carry;
+            carry = ((x & y) | ((x | y) & ~z)) >>> 63;
+            sum[i] = z;
         }
-        // bitmask for a single byte
-        for (int i = 0; i < sigbytes; i++)
+        if ((bits & 63) != 0)
+            sum[sum.length - 1] &= (1L << bits) - 1;
+        return sum;
+    }
+
+    /**
+     * Divides a value by a positive int, in place, 32 bits at a time so that every partial dividend fits in a long.
+     *
+     * @return the remainder
+     */
+    private static long divide(long[] value, int divisor)
+    {
+        long remainder = 0;
+        for (int i = value.length - 1; i >= 0; i--)
         {
-            int maskpos = 8 * (sigbytes - (i + 1));
-            // apply bitmask and get byte value
-            bytes[i] = (byte) (big.and(BYTE_MASK.shiftLeft(maskpos)).shiftRight(maskpos).intValue() & 0xFF);
+            long high = (remainder << 32) | (value[i] >>> 32);
+            remainder = high % divisor;
+            long low = (remainder << 32) | (value[i] & 0xFFFFFFFFL);
+            remainder = low % divisor;
+            value[i] = ((high / divisor) << 32) | (low / divisor);
         }
-        return BitSet.valueOf(bytes);
+        return remainder;
+    }
+
+    private static int words(int bits)
+    {
+        return Math.max(1, (bits + 63) >>> 6);
     }
 
     /**
@@ -134,8 +244,8 @@ public class SimilarityPartitioner implements IPartitioner
     {
         if (key.remaining() == 0)
             return MINIMUM;
-        // TODO implement validation for ByteBuffer multiple of 8 bytes (double type)
-        return new BinaryToken(new RandomHyperplaneHash().rhh(key));
+        // keys are hashed as doubles, the partitioner not knowing their types: vector keys are vector<double, N>
+        return new BinaryToken(hyperplanes().hash(key));
     }
 
     /**
@@ -143,20 +253,46 @@ public class SimilarityPartitioner implements IPartitioner
      */
     public Token getRandomToken()
     {
-        return new BinaryToken(new RandomHyperplaneHash().rhh());
+        return new BinaryToken(hyperplanes().randomHash());
     }
 
     private final Token.TokenFactory tokenFactory = new Token.TokenFactory()
     {
+        /*
+         * The Gray code of the token, least significant byte first, padded with zeros to identifier_length bits
+         * so that a key hashing to zero is not confused with the minimum token, which has no bytes at all.
+         * Shorter, unpadded, arrays are still read as the same token.
+         */
         public ByteBuffer toByteArray(Token token)
         {
             BinaryToken binaryToken = (BinaryToken) token;
-            return ByteBuffer.wrap(binaryToken.token.toByteArray());
+            if (binaryToken.token.length == 0)
+                return ByteBufferUtil.EMPTY_BYTE_BUFFER;
+
+            long[] gray = BinaryReflectedGrayCodeUtil.binaryToGray(binaryToken.token.clone());
+            int length = (DatabaseDescriptor.getIdentifierLength() + 7) / 8;
+            int highest = gray.length - 1;
+            while (highest >= 0 && gray[highest] == 0L)
+                highest--;
+            if (highest >= 0)
+                length = Math.max(length, 8 * highest + (71 - Long.numberOfLeadingZeros(gray[highest])) / 8);
+
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            for (int i = 0; i < length && i / 8 <= highest; i++)
+                bytes.put(i, (byte) (gray[i / 8] >>> (8 * (i % 8))));
+            return bytes;
         }
 
         public Token fromByteArray(ByteBuffer bytes)
         {
-            return new BinaryToken(BitSet.valueOf(bytes));
+            if (!bytes.hasRemaining())
+                return MINIMUM;
+
+            int position = bytes.position();
+            long[] gray = new long[(bytes.remaining() + 7) / 8];
+            for (int i = 0; i < bytes.remaining(); i++)
+                gray[i / 8] |= (bytes.get(position + i) & 0xFFL) << (8 * (i % 8));
+            return new BinaryToken(gray);
         }
 
         public String toString(Token token)
@@ -167,27 +303,31 @@ public class SimilarityPartitioner implements IPartitioner
 
         public void validate(String token) throws ConfigurationException
         {
-            try
-            {
-                // TODO validade token correctly (probably number of bits)
-                BitSet.valueOf(ByteBufferUtil.bytes(token));
-            }
-            catch (Exception e)
+            int bits = DatabaseDescriptor.getIdentifierLength();
+            if (token.length() > bits)
+                throw new ConfigurationException(String.format("Token %s is longer than identifier_length (%d bits)", token, bits));
+
+            for (int i = 0; i < token.length(); i++)
             {
-                throw new ConfigurationException(e.getMessage());
+                char c = token.charAt(i);
+                if (c != '0' && c != '1')
+                    throw new ConfigurationException(String.format("Token %s is not a binary string", token));
             }
         }
 
         public Token fromString(String string)
         {
-            BitSet bits = new BitSet(string.length());
-            String reverseString = new StringBuilder(string).reverse().toString();
-            for (int i = 0; i < reverseString.length(); i++)
+            if (string.isEmpty())
+                return MINIMUM;
+
+            // the last character is the least significant bit
+            long[] gray = new long[words(string.length())];
+            for (int i = 0; i < string.length(); i++)
             {
-                bits.set(i, reverseString.charAt(i) == '1');
+                if (string.charAt(string.length() - 1 - i) == '1')
+                    gray[i >>> 6] |= 1L << i;
             }
-            return new BinaryToken(bits);
-//            return new BinaryToken(BitSet.valueOf(ByteBufferUtil.bytes(string)));
+            return new BinaryToken(gray);
         }
     };
 
@@ -196,19 +336,124 @@ public class SimilarityPartitioner implements IPartitioner
         return tokenFactory;
     }
 
+    /**
+     * @return the number of bytes of the byte-comparable form of the tokens, see {@link #toComparableBytes(Token)}
+     */
+    public static int comparableWidth()
+    {
+        return (DatabaseDescriptor.getIdentifierLength() + 7) / 8;
+    }
+
+    /**
+     * Serializes a token so that tokens compare as their bytes do, unsigned, with
+     * {@link org.apache.cassandra.utils.FastByteOperations#compareUnsigned}: the binary value of the token, rather
+     * than its Gray code, most significant byte first, in {@link #comparableWidth()} bytes. The minimum token has no
+     * bytes, so that it sorts before every other one.
+     *
+     * Unlike the bytes of the token factory, these are not the token as a BinaryType value, whose comparator knows
+     * nothing about Gray codes; they are meant for ordered structures that search tokens without decoding them.
+     */
+    public static byte[] toComparableBytes(Token token)
+    {
+        long[] binary = ((BinaryToken) token).token;
+        if (binary.length == 0)
+            return new byte[0];
+
+        byte[] bytes = new byte[comparableWidth()];
+        for (int i = 0; i < bytes.length && i / 8 < binary.length; i++)
+            bytes[bytes.length - 1 - i] = (byte) (binary[i / 8] >>> (8 * (i % 8)));
+        return bytes;
+    }
+
+    /**
+     * @return the token serialized by {@link #toComparableBytes(Token)}
+     */
+    public static Token fromComparableBytes(ByteBuffer bytes)
+    {
+        if (!bytes.hasRemaining())
+            return MINIMUM;
+
+        int length = bytes.remaining();
+        long[] binary = new long[(length + 7) / 8];
+        for (int i = 0; i < length; i++)
+            binary[i / 8] |= (bytes.get(bytes.position() + length - 1 - i) & 0xFFL) << (8 * (i % 8));
+        return BinaryToken.fromBinary(binary);
+    }
+
     public static class BinaryToken extends Token
     {
-        final BitSet token;
+        private static final long serialVersionUID = 1L;
+
+        /*
+         * The Gray code of the token, already converted to its binary value so that tokens compare as unsigned
+         * integers, least significant word first. Words missing from the shorter of two tokens are zero. The
+         * minimum token is the only one without words, so that it sorts before every key, including the ones
+         * hashing to zero.
+         */
+        final long[] token;
 
         public BinaryToken(BitSet token)
         {
-            this.token = token;
+            this(token.toLongArray());
+        }
+
+        /**
+         * @param gray Gray code packed into longs, least significant word first; converted in place
+         */
+        public BinaryToken(long[] gray)
+        {
+            this(gray, true);
+        }
+
+        private BinaryToken(long[] words, boolean gray)
+        {
+            this.token = gray ? BinaryReflectedGrayCodeUtil.grayToBinary(words) : words;
+        }
+
+        /**
+         * @param binary binary value packed into longs, least significant word first
+         */
+        static BinaryToken fromBinary(long[] binary)
+        {
+            return new BinaryToken(binary, false);
         }
 
         public int compareTo(Token token)
         {
-            BinaryToken o = (BinaryToken) token;
-            return new BinaryReflectedGrayCode().compare(this.token, o.token);
+            long[] other = ((BinaryToken) token).token;
+
+            if (this.token.length == 0 || other.length == 0)
+                return (this.token.length == 0 ? 0 : 1) - (other.length == 0 ? 0 : 1);
+
+            return BinaryReflectedGrayCode.compareBinary(this.token, other);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (obj == null || this.getClass() != obj.getClass())
+                return false;
+
+            return compareTo((BinaryToken) obj) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            if (token.length == 0)
+                return 0;
+
+            // skip the zero high words, so that tokens that are equal hash equally whatever their number of words
+            int i = token.length - 1;
+            while (i > 0 && token[i] == 0L)
+                i--;
+
+            int hash = 1;
+            for (; i >= 0; i--)
+                hash = 31 * hash + (int) (token[i] ^ (token[i] >>> 32));
+            return hash;
         }
 
         @Override
@@ -220,19 +465,24 @@ public class SimilarityPartitioner implements IPartitioner
         @Override
         public long getHeapSize()
         {
-            return EMPTY_SIZE + ObjectSizes.sizeOfArray(token.toByteArray());
+            return EMPTY_SIZE + ObjectSizes.sizeOfArray(token);
         }
 
+        /**
+         * @return the Gray code of the token
+         */
         @Override
         public Object getTokenValue()
         {
-            return token;
+            return BitSet.valueOf(BinaryReflectedGrayCodeUtil.binaryToGray(token.clone()));
         }
 
         @Override
         public String toString()
         {
-            return ((BinarySerializer) getPartitioner().getTokenValidator().getSerializer()).toString(token);
+            if (token.length == 0)
+                return "";
+            return ((BinarySerializer) getPartitioner().getTokenValidator().getSerializer()).toString((BitSet) getTokenValue());
         }
     }
 
@@ -246,47 +496,124 @@ public class SimilarityPartitioner implements IPartitioner
     }
 
     /**
-     * Calculate the deltas between tokens in the ring in order to compare
-     * relative sizes.
+     * Estimates ownership from the keys stored locally rather than from the token space, since keys are far from
+     * evenly spread over the ring. The keys are counted by token prefix in the metadata of every sstable, so that
+     * the estimate is computed in memory, in time linear in the number of tokens. Within a prefix, keys are assumed
+     * to be evenly spread; without any key, ownership falls back to the fraction of the token space.
      *
      * @param sortedTokens a sorted List of Tokens
      * @return the mapping from 'token' to 'percentage of the ring owned by that token'.
      */
     public Map<Token, Float> describeOwnership(List<Token> sortedTokens)
     {
-        // allTokens will contain the count and be returned, sorted_ranges is shorthand for token<->token math.
-        Map<Token, Float> allTokens = new HashMap<Token, Float>();
-        List<Range<Token>> sortedRanges = new ArrayList<Range<Token>>(sortedTokens.size());
+        KeyDistribution distribution = new KeyDistribution(localTokenPrefixHistogram());
 
-        // this initializes the counts to 0 and calcs the ranges in order.
+        Map<Token, Float> ownership = new HashMap<>();
         Token lastToken = sortedTokens.get(sortedTokens.size() - 1);
         for (Token node : sortedTokens)
         {
-            allTokens.put(node, new Float(0.0));
-            sortedRanges.add(new Range<Token>(lastToken, node));
+            ownership.put(node, (float) (distribution.count(lastToken, node) / distribution.total()));
             lastToken = node;
         }
+        return ownership;
+    }
 
-        for (String ks : Schema.instance.getKeyspaces())
+    /**
+     * @return the sum of the token prefix histograms of every local sstable
+     */
+    public static TokenPrefixHistogram localTokenPrefixHistogram()
+    {
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(histogramPrefixBits());
+        for (Keyspace keyspace : Keyspace.all())
         {
-            for (CFMetaData cfmd : Schema.instance.getKSMetaData(ks).cfMetaData().values())
+            for (ColumnFamilyStore cfs : keyspace.getColumnFamilyStores())
             {
-                for (Range<Token> r : sortedRanges)
+                for (SSTableReader sstable : cfs.getSSTables())
                 {
-                    // Looping over every KS:CF:Range, get the splits size and add it to the count
-                    allTokens.put(r.right, allTokens.get(r.right) + StorageService.instance.getSplits(ks, cfmd.cfName, r, 1).size());
+                    // sstables written without a histogram, with another identifier_length or with the previous
+                    // hyperplanes are not counted
+                    TokenPrefixHistogram sstableHistogram = sstable.getSSTableMetadata().tokenPrefixHistogram;
+                    if (sstableHistogram.size() == histogram.size() && !sstable.isRehashPending())
+                        histogram.merge(sstableHistogram);
                 }
             }
         }
+        return histogram;
+    }
 
-        // Sum every count up and divide count/total for the fractional ownership.
-        Float total = new Float(0.0);
-        for (Float f : allTokens.values())
-            total += f;
-        for (Map.Entry<Token, Float> row : allTokens.entrySet())
-            allTokens.put(row.getKey(), row.getValue() / total);
+    /**
+     * @return the position of a token on a ring of {@code 2^bits} prefixes, the fractional part standing for the
+     * bits following the prefix
+     */
+    static double position(Token token, int bits)
+    {
+        int length = DatabaseDescriptor.getIdentifierLength();
+        int significant = Math.min(length, 62);
+        return Math.scalb((double) topBits(((BinaryToken) token).token, length, significant), bits - significant);
+    }
 
-        return allTokens;
+    /**
+     * @return the token at a position of a ring of {@code 2^bits} prefixes, the inverse of
+     * {@link #position(Token, int)} up to the precision of a double
+     */
+    static Token tokenAt(double position, int bits)
+    {
+        int length = DatabaseDescriptor.getIdentifierLength();
+        int significant = Math.min(length, 62);
+        long top = Math.min((long) Math.scalb(position, significant - bits), (1L << significant) - 1);
+        return BinaryToken.fromBinary(fromTopBits(Math.max(top, 0L), length, significant));
+    }
+
+    /**
+     * @return the number of prefix bits of the token histograms, the ring having no more than identifier_length bits
+     */
+    public static int histogramPrefixBits()
+    {
+        return Math.min(TokenPrefixHistogram.DEFAULT_PREFIX_BITS, DatabaseDescriptor.getIdentifierLength());
+    }
+
+    /**
+     * @return the {@code bits} most significant bits of a token, {@code bits} being at most identifier_length
+     */
+    public static int prefix(Token token, int bits)
+    {
+        assert bits < 32;
+        return (int) topBits(((BinaryToken) token).token, DatabaseDescriptor.getIdentifierLength(), bits);
+    }
+
+    /**
+     * @param binary binary value packed into longs, least significant word first
+     * @param length the number of bits of the value
+     * @param n the number of bits to return, at most 63
+     * @return the {@code n} most significant bits of the value
+     */
+    static long topBits(long[] binary, int length, int n)
+    {
+        int start = length - n;
+        int word = start >>> 6;
+        int offset = start & 63;
+
+        long bits = word < binary.length ? binary[word] >>> offset : 0L;
+        if (offset + n > 64 && word + 1 < binary.length)
+            bits |= binary[word + 1] << (64 - offset);
+        return bits & ((1L << n) - 1);
+    }
+
+    /**
+     * @return the binary value of {@code length} bits whose {@code n} most significant bits are {@code bits}, and
+     * whose other bits are zero: the inverse of {@link #topBits(long[], int, int)}
+     */
+    static long[] fromTopBits(long bits, int length, int n)
+    {
+        long[] binary = new long[words(length)];
+        int start = length - n;
+        int word = start >>> 6;
+        int offset = start & 63;
+
+        binary[word] = bits << offset;
+        if (offset + n > 64)
+            binary[word + 1] = bits >>> (64 - offset);
+        return binary;
     }
 
     public AbstractType<?> getTokenValidator()
@@ -34,8 +34,8 @@ public enum ApplicationState
     HOST_ID,
     TOKENS,
     RPC_READY,
+    TOKEN_HISTOGRAM,
     // pad to allow adding new states to existing cluster
-    X1,
     X2,
     X3,
     X4,
@@ -31,9 +31,11 @@ import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -193,6 +195,20 @@ public class VersionedValue implements Comparable<VersionedValue>
             return new VersionedValue(new String(bos.toByteArray(), ISO_8859_1));
         }
 
+        public VersionedValue tokenHistogram(TokenPrefixHistogram histogram)
+        {
+            DataOutputBuffer out = new DataOutputBuffer();
+            try
+            {
+                TokenPrefixHistogram.serializer.serialize(histogram, out);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+            return new VersionedValue(new String(out.toByteArray(), ISO_8859_1));
+        }
+
         public VersionedValue removingNonlocal(UUID hostId)
         {
             return new VersionedValue(versionString(VersionedValue.REMOVING_TOKEN, hostId.toString()));
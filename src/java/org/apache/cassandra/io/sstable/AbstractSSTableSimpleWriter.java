@@ -62,6 +62,11 @@ public abstract class AbstractSSTableSimpleWriter implements Closeable
     }
 
     protected SSTableWriter getWriter()
+    {
+        return getWriter(directory);
+    }
+
+    protected SSTableWriter getWriter(File directory)
     {
         return SSTableWriter.create(createDescriptor(directory, metadata.ksName, metadata.cfName, formatType), 0, ActiveRepairService.UNREPAIRED_SSTABLE);
     }
@@ -40,6 +40,7 @@ import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.apache.cassandra.exceptions.RequestValidationException;
 import org.apache.cassandra.io.sstable.format.SSTableFormat;
@@ -299,6 +300,8 @@ public class CQLSSTableWriter implements Closeable
 
         private boolean sorted = false;
         private long bufferSizeInMB = 128;
+        private int bulkThreads = 0;
+        private Collection<Token> splitTokens = Collections.emptyList();
 
         protected Builder() {}
 
@@ -504,6 +507,45 @@ public class CQLSSTableWriter implements Closeable
             return this;
         }
 
+        /**
+         * Creates a CQLSSTableWriter for bulk loads, which hashes and sorts the rows on several threads.
+         * <p>
+         * Rows are buffered by partition key up to the buffer size (see withBufferSizeInMB), and their keys are only
+         * hashed when the buffer is full, by {@code threads} threads that also sort their share of the buffer. Each
+         * sorted buffer is written to a temporary sstable while the next one is filled. On close, these are merged by
+         * token into the resulting sstables, one per range of the split tokens (see splitAt), on {@code threads}
+         * threads as well. This mostly pays off with partitioners whose tokens are expensive to compute, such as the
+         * SimilarityPartitioner.
+         * <p>
+         * This option cannot be used together with sorted().
+         *
+         * @param threads the number of threads to use, e.g. the number of available processors.
+         * @return this builder.
+         */
+        public Builder bulk(int threads)
+        {
+            if (threads <= 0)
+                throw new IllegalArgumentException("The number of threads must be positive");
+            this.bulkThreads = threads;
+            return this;
+        }
+
+        /**
+         * The tokens at which the rows are split between the created sstables, in bulk mode.
+         * <p>
+         * Each created sstable holds the rows of the range of the ring ending at one of the tokens. If these are the
+         * tokens of the cluster the sstables are loaded into, every sstable is owned by a single replica set, so
+         * that sstableloader streams each of them to these replicas only. Without tokens, a single sstable is created.
+         *
+         * @param tokens the tokens of the target cluster.
+         * @return this builder.
+         */
+        public Builder splitAt(Collection<Token> tokens)
+        {
+            this.splitTokens = tokens;
+            return this;
+        }
+
         private static <T extends CQLStatement> Pair<T, List<ColumnSpecification>> getStatement(String query, Class<T> klass, String type)
         {
             try
@@ -534,9 +576,18 @@ public class CQLSSTableWriter implements Closeable
             if (insert == null)
                 throw new IllegalStateException("No insert statement specified, you should provide an insert statement through using()");
 
-            AbstractSSTableSimpleWriter writer = sorted
-                                               ? new SSTableSimpleWriter(directory, schema, partitioner)
-                                               : new BufferedWriter(directory, schema, partitioner, bufferSizeInMB);
+            if (sorted && bulkThreads > 0)
+                throw new IllegalStateException("A sorted writer cannot be used in bulk mode");
+            if (!splitTokens.isEmpty() && bulkThreads == 0)
+                throw new IllegalStateException("Split tokens can only be used in bulk mode, see bulk()");
+
+            AbstractSSTableSimpleWriter writer;
+            if (sorted)
+                writer = new SSTableSimpleWriter(directory, schema, partitioner);
+            else if (bulkThreads > 0)
+                writer = new SSTableBulkWriter(directory, schema, partitioner, bufferSizeInMB, bulkThreads, splitTokens);
+            else
+                writer = new BufferedWriter(directory, schema, partitioner, bufferSizeInMB);
 
             if (formatType != null)
                 writer.setSSTableFormatType(formatType);
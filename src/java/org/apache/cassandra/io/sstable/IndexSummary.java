@@ -30,9 +30,12 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.RowPosition;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.util.*;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.FastByteOperations;
 import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
 import org.apache.cassandra.utils.memory.MemoryUtil;
 
@@ -47,6 +50,11 @@ import static org.apache.cassandra.io.sstable.Downsampling.BASE_SAMPLING_LEVEL;
  *     to find the position in the Memory to start reading the actual index summary entry.
  *     (This is necessary because keys can have different lengths.)
  *  2.  A sequence of (DecoratedKey, position) pairs, where position is the offset into the actual index file.
+ *
+ * With the SimilarityPartitioner, a third region holds the token of every entry, in the fixed-width byte-comparable
+ * form of SimilarityPartitioner.toComparableBytes(), so that binarySearch() compares tokens with memcmp rather than
+ * by hashing the key of every entry it visits. It is not serialized: it is filled from the tokens the keys were
+ * already decorated with when the summary is built, and by hashing every key once when it is loaded.
  */
 public class IndexSummary extends WrappedSharedCloseable
 {
@@ -70,6 +78,9 @@ public class IndexSummary extends WrappedSharedCloseable
     // entries is a list of (partition key, index file offset) pairs
     private final Memory entries;
     private final long entriesLength;
+    // the byte-comparable token of each entry, in rows of tokenWidth bytes, or null
+    private final Memory tokens;
+    private final int tokenWidth;
 
     /**
      * A value between 1 and BASE_SAMPLING_LEVEL that represents how many of the original
@@ -82,7 +93,18 @@ public class IndexSummary extends WrappedSharedCloseable
     public IndexSummary(IPartitioner partitioner, Memory offsets, int offsetCount, Memory entries, long entriesLength,
                         int sizeAtFullSampling, int minIndexInterval, int samplingLevel)
     {
-        super(new Memory[] { offsets, entries });
+        this(partitioner, offsets, offsetCount, entries, entriesLength, sizeAtFullSampling, minIndexInterval, samplingLevel,
+             comparableTokens(partitioner, offsets, offsetCount, entries, entriesLength));
+    }
+
+    /**
+     * @param tokens the byte-comparable tokens of the entries, in rows of SimilarityPartitioner.comparableWidth() bytes,
+     *               or null to compare the entries by their keys
+     */
+    IndexSummary(IPartitioner partitioner, Memory offsets, int offsetCount, Memory entries, long entriesLength,
+                 int sizeAtFullSampling, int minIndexInterval, int samplingLevel, Memory tokens)
+    {
+        super(tokens == null ? new Memory[] { offsets, entries } : new Memory[] { offsets, entries, tokens });
         assert offsets.getInt(0) == 0;
         this.partitioner = partitioner;
         this.minIndexInterval = minIndexInterval;
@@ -92,7 +114,10 @@ public class IndexSummary extends WrappedSharedCloseable
         this.offsets = offsets;
         this.entries = entries;
         this.samplingLevel = samplingLevel;
+        this.tokens = tokens;
+        this.tokenWidth = tokens == null ? 0 : SimilarityPartitioner.comparableWidth();
         assert samplingLevel > 0;
+        assert tokens == null || tokens.size() >= (long) offsetCount * tokenWidth;
     }
 
     private IndexSummary(IndexSummary copy)
@@ -106,6 +131,38 @@ public class IndexSummary extends WrappedSharedCloseable
         this.offsets = copy.offsets;
         this.entries = copy.entries;
         this.samplingLevel = copy.samplingLevel;
+        this.tokens = copy.tokens;
+        this.tokenWidth = copy.tokenWidth;
+    }
+
+    /**
+     * Hashes the key of every entry, if the partitioner is the SimilarityPartitioner.
+     *
+     * @return the byte-comparable tokens of the entries, or null if the partitioner is another one, or if a key has
+     * the minimum token, which has no fixed-width form
+     */
+    private static Memory comparableTokens(IPartitioner partitioner, Memory offsets, int offsetCount, Memory entries, long entriesLength)
+    {
+        if (!(partitioner instanceof SimilarityPartitioner) || offsetCount == 0)
+            return null;
+
+        int width = SimilarityPartitioner.comparableWidth();
+        ByteBuffer hollow = MemoryUtil.getHollowDirectByteBuffer().order(ByteOrder.BIG_ENDIAN);
+        Memory tokens = Memory.allocate((long) offsetCount * width);
+        for (int i = 0; i < offsetCount; i++)
+        {
+            long start = offsets.getInt(i << 2);
+            long end = i == offsetCount - 1 ? entriesLength : offsets.getInt((i + 1) << 2);
+            entries.setByteBuffer(hollow, start, (int) (end - start - 8L));
+            byte[] token = SimilarityPartitioner.toComparableBytes(partitioner.getToken(hollow));
+            if (token.length != width)
+            {
+                tokens.free();
+                return null;
+            }
+            tokens.setBytes((long) i * width, token, 0, width);
+        }
+        return tokens;
     }
 
     // binary search is notoriously more difficult to get right than it looks; this is lifted from
@@ -114,12 +171,20 @@ public class IndexSummary extends WrappedSharedCloseable
     {
         // We will be comparing non-native Keys, so use a buffer with appropriate byte order
         ByteBuffer hollow = MemoryUtil.getHollowDirectByteBuffer().order(ByteOrder.BIG_ENDIAN);
+        byte[] token = tokens == null ? null : SimilarityPartitioner.toComparableBytes(key.getToken());
         int low = 0, mid = offsetCount, high = mid - 1, result = -1;
         while (low <= high)
         {
             mid = (low + high) >> 1;
-            fillTemporaryKey(mid, hollow);
-            result = -DecoratedKey.compareTo(partitioner, hollow, key);
+            if (token == null)
+            {
+                fillTemporaryKey(mid, hollow);
+                result = -DecoratedKey.compareTo(partitioner, hollow, key);
+            }
+            else
+            {
+                result = -compareTo(mid, hollow, token, key);
+            }
             if (result > 0)
             {
                 low = mid + 1;
@@ -137,6 +202,27 @@ public class IndexSummary extends WrappedSharedCloseable
         return -mid - (result < 0 ? 1 : 2);
     }
 
+    /**
+     * Compares an entry to a position as DecoratedKey.compareTo(IPartitioner, ByteBuffer, RowPosition) does, but
+     * by the byte-comparable tokens, so that the key of the entry is only read if the tokens are equal.
+     *
+     * @param token the byte-comparable token of the position
+     */
+    private int compareTo(int index, ByteBuffer hollow, byte[] token, RowPosition position)
+    {
+        tokens.setByteBuffer(hollow, (long) index * tokenWidth, tokenWidth);
+        int cmp = FastByteOperations.compareUnsigned(hollow, token, 0, token.length);
+        if (cmp != 0)
+            return cmp;
+
+        // a bound comes before or after every key of its token
+        if (!(position instanceof DecoratedKey))
+            return ((Token.KeyBound) position).isMinimumBound ? 1 : -1;
+
+        fillTemporaryKey(index, hollow);
+        return ByteBufferUtil.compareUnsigned(hollow, ((DecoratedKey) position).getKey());
+    }
+
     /**
      * Gets the position of the actual index summary entry in our Memory attribute, 'bytes'.
      * @param index The index of the entry or key to get the position for
@@ -235,7 +321,25 @@ public class IndexSummary extends WrappedSharedCloseable
         return entries;
     }
 
+    Memory getTokens()
+    {
+        return tokens;
+    }
+
+    int getTokenWidth()
+    {
+        return tokenWidth;
+    }
+
     public long getOffHeapSize()
+    {
+        return getSerializedSize() + (tokens == null ? 0 : (long) offsetCount * tokenWidth);
+    }
+
+    /**
+     * Returns the size of the offsets and the entries, the part of the summary that is serialized.
+     */
+    long getSerializedSize()
     {
         return offsetCount * 4 + entriesLength;
     }
@@ -265,7 +369,7 @@ public class IndexSummary extends WrappedSharedCloseable
         {
             out.writeInt(t.minIndexInterval);
             out.writeInt(t.offsetCount);
-            out.writeLong(t.getOffHeapSize());
+            out.writeLong(t.getSerializedSize());
             if (withSamplingLevel)
             {
                 out.writeInt(t.samplingLevel);
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.io.util.Memory;
 import org.apache.cassandra.io.util.SafeMemoryWriter;
 
@@ -39,6 +40,9 @@ public class IndexSummaryBuilder implements AutoCloseable
     // the offset in the keys memory region to look for a given summary boundary
     private final SafeMemoryWriter offsets;
     private final SafeMemoryWriter entries;
+    // the byte-comparable tokens of the entries, if keys are decorated by the SimilarityPartitioner
+    private SafeMemoryWriter tokens;
+    private final long maxExpectedEntries;
 
     private final int minIndexInterval;
     private final int samplingLevel;
@@ -110,6 +114,7 @@ public class IndexSummaryBuilder implements AutoCloseable
         maxExpectedEntries = Math.max(1, (maxExpectedEntries * samplingLevel) / BASE_SAMPLING_LEVEL);
         offsets = new SafeMemoryWriter(4 * maxExpectedEntries).order(ByteOrder.nativeOrder());
         entries = new SafeMemoryWriter(40 * maxExpectedEntries).order(ByteOrder.nativeOrder());
+        this.maxExpectedEntries = maxExpectedEntries;
 
         // the summary will always contain the first index entry (downsampling will never remove it)
         nextSamplePosition = 0;
@@ -173,6 +178,7 @@ public class IndexSummaryBuilder implements AutoCloseable
             offsets.writeInt((int) entries.length());
             entries.write(decoratedKey.getKey());
             entries.writeLong(indexStart);
+            maybeAddToken(decoratedKey);
             setNextSamplePosition(keysWritten);
         }
         else if (dataEnd != 0 && keysWritten + 1 == nextSamplePosition)
@@ -187,6 +193,28 @@ public class IndexSummaryBuilder implements AutoCloseable
         return this;
     }
 
+    // record the byte-comparable token of the entry just added, which the key was already decorated with
+    private void maybeAddToken(DecoratedKey decoratedKey) throws IOException
+    {
+        boolean first = offsets.length() == 4;
+        if (!(decoratedKey.getToken() instanceof SimilarityPartitioner.BinaryToken) || (tokens == null && !first))
+            return;
+
+        byte[] token = SimilarityPartitioner.toComparableBytes(decoratedKey.getToken());
+        if (token.length != SimilarityPartitioner.comparableWidth())
+        {
+            // the minimum token has no fixed-width form: the summary will compare this sstable by keys
+            if (tokens != null)
+                tokens.close();
+            tokens = null;
+            return;
+        }
+
+        if (first)
+            tokens = new SafeMemoryWriter(token.length * maxExpectedEntries);
+        tokens.write(token);
+    }
+
     // calculate the next key we will store to our summary
     private void setNextSamplePosition(long position)
     {
@@ -209,6 +237,8 @@ public class IndexSummaryBuilder implements AutoCloseable
         // memory we're using to the exact amount required to represent it before building our summary
         entries.setCapacity(entries.length());
         offsets.setCapacity(offsets.length());
+        if (tokens != null)
+            tokens.setCapacity(tokens.length());
     }
 
     public IndexSummary build(IPartitioner partitioner)
@@ -234,7 +264,8 @@ public class IndexSummaryBuilder implements AutoCloseable
         assert count > 0;
         return new IndexSummary(partitioner, offsets.currentBuffer().sharedCopy(),
                                 count, entries.currentBuffer().sharedCopy(), entriesLength,
-                                sizeAtFullSampling, minIndexInterval, samplingLevel);
+                                sizeAtFullSampling, minIndexInterval, samplingLevel,
+                                tokens == null ? null : tokens.currentBuffer().sharedCopy());
     }
 
     // close the builder and release any associated memory
@@ -242,12 +273,16 @@ public class IndexSummaryBuilder implements AutoCloseable
     {
         entries.close();
         offsets.close();
+        if (tokens != null)
+            tokens.close();
     }
 
     public Throwable close(Throwable accumulate)
     {
         accumulate = entries.close(accumulate);
         accumulate = offsets.close(accumulate);
+        if (tokens != null)
+            accumulate = tokens.close(accumulate);
         return accumulate;
     }
 
@@ -312,6 +347,9 @@ public class IndexSummaryBuilder implements AutoCloseable
         Memory oldEntries = existing.getEntries();
         Memory newOffsets = Memory.allocate(newKeyCount * 4);
         Memory newEntries = Memory.allocate(newEntriesLength);
+        Memory oldTokens = existing.getTokens();
+        int tokenWidth = existing.getTokenWidth();
+        Memory newTokens = oldTokens == null ? null : Memory.allocate((long) newKeyCount * tokenWidth);
 
         // Copy old entries to our new Memory.
         int i = 0;
@@ -329,6 +367,8 @@ public class IndexSummaryBuilder implements AutoCloseable
 
             // write the position of the actual entry in the index summary (4 bytes)
             newOffsets.setInt(i * 4, newEntriesOffset);
+            if (newTokens != null)
+                newTokens.put((long) i * tokenWidth, oldTokens, (long) oldSummaryIndex * tokenWidth, tokenWidth);
             i++;
             long start = existing.getPositionInSummary(oldSummaryIndex);
             long length = existing.getEndInSummary(oldSummaryIndex) - start;
@@ -337,6 +377,6 @@ public class IndexSummaryBuilder implements AutoCloseable
         }
         assert newEntriesOffset == newEntriesLength;
         return new IndexSummary(partitioner, newOffsets, newKeyCount, newEntries, newEntriesLength,
-                                existing.getMaxNumberOfEntries(), minIndexInterval, newSamplingLevel);
+                                existing.getMaxNumberOfEntries(), minIndexInterval, newSamplingLevel, newTokens);
     }
 }
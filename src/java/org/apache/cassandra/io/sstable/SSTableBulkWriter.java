@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.columniterator.OnDiskAtomIterator;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.MergeIterator;
+import org.apache.cassandra.utils.Pair;
+
+/**
+ * A SSTable writer for bulk loads, which doesn't assume rows are in sorted order and hashes their keys in parallel.
+ *
+ * Like SSTableSimpleUnsortedWriter, rows are buffered in memory up to a configurable size, but by partition key
+ * rather than by token: keys are only hashed when the buffer is full, by several threads, which also sort their share
+ * of the buffer. With a partitioner whose tokens are expensive to compute, such as the SimilarityPartitioner, this
+ * is most of the work. Each sorted buffer is written as a temporary sstable, a run, while the next one is filled.
+ *
+ * On close, the runs and the last buffer are merged by token, with bounded memory, into one sstable per range of a
+ * set of split tokens, in parallel. With the tokens of the target cluster, every written sstable is owned by a single
+ * replica set, so that sstableloader streams it to these replicas only.
+ *
+ * @see CQLSSTableWriter.Builder#bulk(int)
+ */
+class SSTableBulkWriter extends AbstractSSTableSimpleWriter
+{
+    private static final Comparator<Pair<DecoratedKey, ColumnFamily>> BY_KEY = new Comparator<Pair<DecoratedKey, ColumnFamily>>()
+    {
+        public int compare(Pair<DecoratedKey, ColumnFamily> p1, Pair<DecoratedKey, ColumnFamily> p2)
+        {
+            return p1.left.compareTo(p2.left);
+        }
+    };
+
+    private final long bufferSize;
+    private final int threads;
+    private final List<Range<Token>> ranges;
+    private final ExecutorService executor;
+    private final File runDirectory;
+
+    private Map<ByteBuffer, ColumnFamily> buffer = new HashMap<>();
+    private long currentSize;
+    private boolean needsSync = false;
+
+    private final List<Descriptor> runs = new ArrayList<>();
+    private Future<Descriptor> pendingRun;
+
+    /**
+     * @param threads the number of threads hashing the keys, and writing the sstables once the rows are sorted
+     * @param splitTokens the tokens of the ring the sstables are written for, each sstable holding the rows of the
+     * range ending at one of them. With no token, a single sstable is written.
+     */
+    public SSTableBulkWriter(File directory, CFMetaData metadata, IPartitioner partitioner, long bufferSizeInMB, int threads, Collection<Token> splitTokens)
+    {
+        super(directory, metadata, partitioner);
+        this.bufferSize = bufferSizeInMB * 1024L * 1024L;
+        this.threads = threads;
+        this.ranges = splitRanges(splitTokens, partitioner);
+        this.executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("SSTableBulkWriter"));
+        this.runDirectory = new File(directory, "runs-" + UUID.randomUUID());
+    }
+
+    /**
+     * @return the ranges ending at each of the split tokens, in ring order, or the whole ring if there are none
+     */
+    static List<Range<Token>> splitRanges(Collection<Token> splitTokens, IPartitioner partitioner)
+    {
+        if (splitTokens.isEmpty())
+            return Collections.singletonList(new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken()));
+
+        List<Token> sorted = new ArrayList<>(new TreeSet<>(splitTokens));
+        List<Range<Token>> ranges = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++)
+            ranges.add(new Range<>(sorted.get(i == 0 ? sorted.size() - 1 : i - 1), sorted.get(i)));
+        return ranges;
+    }
+
+    /**
+     * Starts a new row without hashing its key, which is done once the buffer is full.
+     */
+    @Override
+    public void newRow(ByteBuffer key) throws IOException
+    {
+        currentKey = new BufferDecoratedKey(DatabaseDescriptor.getPartitioner().getMinimumToken(), key);
+        columnFamily = getColumnFamily();
+    }
+
+    protected void writeRow(DecoratedKey key, ColumnFamily columnFamily)
+    {
+        // Nothing to do since the buffer is sorted and written in sync().
+    }
+
+    protected ColumnFamily getColumnFamily()
+    {
+        ColumnFamily previous = buffer.get(currentKey.getKey());
+        // If the CF already exist in memory, we'll just continue adding to it
+        if (previous == null)
+        {
+            previous = createColumnFamily();
+            buffer.put(currentKey.getKey(), previous);
+
+            // the row key (2 bytes size + key size bytes) and the row level deletion infos (4 + 8 bytes)
+            currentSize += 14 + currentKey.getKey().remaining();
+        }
+        return previous;
+    }
+
+    /**
+     * CQLSSTableWriter adds cells directly to the ColumnFamily, so they are counted by the ColumnFamily, and the
+     * buffer is written once the row is complete, see CQLSSTableWriter.BufferedWriter.
+     */
+    private ColumnFamily createColumnFamily()
+    {
+        return new ArrayBackedSortedColumns(metadata, false)
+        {
+            @Override
+            public void addColumn(Cell cell)
+            {
+                super.addColumn(cell);
+                currentSize += cell.serializedSize(metadata.comparator, TypeSizes.NATIVE);
+                if (currentSize > bufferSize)
+                    needsSync = true;
+            }
+        };
+    }
+
+    @Override
+    boolean shouldStartNewRow() throws IOException
+    {
+        if (needsSync)
+        {
+            needsSync = false;
+            sync();
+            return true;
+        }
+        return super.shouldStartNewRow();
+    }
+
+    /**
+     * Sorts the buffer, then writes it as a run in the background, once the previous run is written.
+     */
+    private void sync() throws IOException
+    {
+        if (buffer.isEmpty())
+            return;
+
+        final List<Pair<DecoratedKey, ColumnFamily>> rows = sort(buffer);
+        buffer = new HashMap<>();
+        currentSize = 0;
+        currentKey = null;
+        columnFamily = null;
+
+        waitForPendingRun();
+        if (!runDirectory.exists() && !runDirectory.mkdirs())
+            throw new IOException("Cannot create " + runDirectory);
+        pendingRun = executor.submit(new Callable<Descriptor>()
+        {
+            public Descriptor call()
+            {
+                try (SSTableWriter writer = getWriter(runDirectory))
+                {
+                    for (Pair<DecoratedKey, ColumnFamily> row : rows)
+                        writer.append(row.left, row.right);
+                    writer.finish(false);
+                    return writer.descriptor.asType(Descriptor.Type.FINAL);
+                }
+            }
+        });
+    }
+
+    private void waitForPendingRun()
+    {
+        if (pendingRun != null)
+            runs.add(FBUtilities.waitOnFuture(pendingRun));
+        pendingRun = null;
+    }
+
+    /**
+     * Hashes the keys of the buffer and sorts its rows, each thread taking a slice of the buffer.
+     */
+    private List<Pair<DecoratedKey, ColumnFamily>> sort(Map<ByteBuffer, ColumnFamily> buffer)
+    {
+        final List<Map.Entry<ByteBuffer, ColumnFamily>> entries = new ArrayList<>(buffer.entrySet());
+        final IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        int sliceSize = (entries.size() + threads - 1) / threads;
+
+        List<Future<List<Pair<DecoratedKey, ColumnFamily>>>> slices = new ArrayList<>(threads);
+        for (int start = 0; start < entries.size(); start += sliceSize)
+        {
+            final int from = start;
+            final int to = Math.min(start + sliceSize, entries.size());
+            slices.add(executor.submit(new Callable<List<Pair<DecoratedKey, ColumnFamily>>>()
+            {
+                public List<Pair<DecoratedKey, ColumnFamily>> call()
+                {
+                    List<Pair<DecoratedKey, ColumnFamily>> slice = new ArrayList<>(to - from);
+                    for (Map.Entry<ByteBuffer, ColumnFamily> entry : entries.subList(from, to))
+                    {
+                        if (entry.getValue().getColumnCount() > 0 || entry.getValue().isMarkedForDelete())
+                            slice.add(Pair.create(partitioner.decorateKey(entry.getKey()), entry.getValue()));
+                    }
+                    Collections.sort(slice, BY_KEY);
+                    return slice;
+                }
+            }));
+        }
+
+        List<Iterator<Pair<DecoratedKey, ColumnFamily>>> sorted = new ArrayList<>(slices.size());
+        for (List<Pair<DecoratedKey, ColumnFamily>> slice : FBUtilities.waitOnFutures(slices))
+            sorted.add(slice.iterator());
+
+        List<Pair<DecoratedKey, ColumnFamily>> rows = new ArrayList<>(entries.size());
+        Iterators.addAll(rows, Iterators.mergeSorted(sorted, BY_KEY));
+        return rows;
+    }
+
+    public Descriptor getCurrentDescriptor()
+    {
+        // can be implemented, but isn't necessary
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Merges the runs and the last buffer into one sstable per split range, in parallel, then deletes the runs.
+     */
+    public void close() throws IOException
+    {
+        List<SSTableReader> sstables = new ArrayList<>();
+        try
+        {
+            final List<Pair<DecoratedKey, ColumnFamily>> last = buffer.isEmpty()
+                                                              ? Collections.<Pair<DecoratedKey, ColumnFamily>>emptyList()
+                                                              : sort(buffer);
+            buffer = new HashMap<>();
+            waitForPendingRun();
+
+            for (Descriptor run : runs)
+                sstables.add(SSTableReader.openForBatch(run, SSTable.componentsFor(run), metadata, DatabaseDescriptor.getPartitioner()));
+
+            List<Future<?>> writes = new ArrayList<>(ranges.size());
+            for (final Range<Token> range : ranges)
+            {
+                final List<SSTableReader> runReaders = sstables;
+                writes.add(executor.submit(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        write(range, runReaders, last);
+                        return null;
+                    }
+                }));
+            }
+            FBUtilities.waitOnFutures(writes);
+        }
+        finally
+        {
+            for (SSTableReader sstable : sstables)
+                sstable.selfRef().release();
+            if (runDirectory.exists())
+                FileUtils.deleteRecursive(runDirectory);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes the rows of a range, from the runs and the sorted last buffer, to a new sstable if there are any.
+     */
+    private void write(Range<Token> range, List<SSTableReader> runs, List<Pair<DecoratedKey, ColumnFamily>> last)
+    {
+        List<ISSTableScanner> scanners = new ArrayList<>(runs.size());
+        try
+        {
+            List<Iterator<Pair<DecoratedKey, ColumnFamily>>> sources = new ArrayList<>(runs.size() + 1);
+            for (SSTableReader run : runs)
+            {
+                ISSTableScanner scanner = run.getScanner(range, null);
+                scanners.add(scanner);
+                sources.add(Iterators.transform(scanner, new Function<OnDiskAtomIterator, Pair<DecoratedKey, ColumnFamily>>()
+                {
+                    public Pair<DecoratedKey, ColumnFamily> apply(OnDiskAtomIterator row)
+                    {
+                        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+                        cf.delete(row.getColumnFamily());
+                        while (row.hasNext())
+                            cf.addAtom(row.next());
+                        return Pair.create(row.getKey(), cf);
+                    }
+                }));
+            }
+            for (Range<Token> unwrapped : range.unwrap())
+                sources.add(slice(last, unwrapped).iterator());
+
+            Iterator<Pair<DecoratedKey, ColumnFamily>> rows = MergeIterator.get(sources, BY_KEY, new Merger());
+            if (!rows.hasNext())
+                return;
+
+            try (SSTableWriter writer = getWriter())
+            {
+                while (rows.hasNext())
+                {
+                    Pair<DecoratedKey, ColumnFamily> row = rows.next();
+                    writer.append(row.left, row.right);
+                }
+                writer.finish(false);
+            }
+        }
+        finally
+        {
+            for (ISSTableScanner scanner : scanners)
+                FileUtils.closeQuietly(scanner);
+        }
+    }
+
+    /**
+     * @return the rows of a sorted list whose token is in a range that does not wrap
+     */
+    static List<Pair<DecoratedKey, ColumnFamily>> slice(List<Pair<DecoratedKey, ColumnFamily>> rows, Range<Token> range)
+    {
+        int from = after(rows, range.left);
+        int to = range.right.isMinimum() ? rows.size() : after(rows, range.right);
+        return rows.subList(from, Math.max(from, to));
+    }
+
+    /**
+     * @return the index of the first row of a sorted list whose token is greater than a token
+     */
+    private static int after(List<Pair<DecoratedKey, ColumnFamily>> rows, Token token)
+    {
+        int low = 0, high = rows.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (rows.get(mid).left.getToken().compareTo(token) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Merges the parts of a partition written to several runs.
+     */
+    private class Merger extends MergeIterator.Reducer<Pair<DecoratedKey, ColumnFamily>, Pair<DecoratedKey, ColumnFamily>>
+    {
+        private DecoratedKey key;
+        private ColumnFamily merged;
+
+        public void reduce(Pair<DecoratedKey, ColumnFamily> current)
+        {
+            if (merged == null)
+            {
+                key = current.left;
+                merged = current.right;
+            }
+            else
+            {
+                ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+                cf.addAll(merged);
+                cf.addAll(current.right);
+                merged = cf;
+            }
+        }
+
+        protected Pair<DecoratedKey, ColumnFamily> getReduced()
+        {
+            return Pair.create(key, merged);
+        }
+
+        protected void onKeyChange()
+        {
+            key = null;
+            merged = null;
+        }
+    }
+}
@@ -401,6 +401,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             System.exit(1);
         }
 
+        partitioner = placedWith(partitioner, statsMetadata);
         logger.debug("Opening {} ({} bytes)", descriptor, new File(descriptor.filenameFor(Component.DATA)).length());
         SSTableReader sstable = internalOpen(descriptor, components, metadata, partitioner, System.currentTimeMillis(),
                 statsMetadata, OpenReason.NORMAL);
@@ -421,6 +422,22 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         }
     }
 
+    /**
+     * While the hyperplanes of the SimilarityPartitioner are replaced, the sstables written with the previous ones
+     * keep the order of their keys: they are read with the previous hyperplanes until they are re-hashed.
+     */
+    private static IPartitioner placedWith(IPartitioner partitioner, StatsMetadata statsMetadata)
+    {
+        if (!(partitioner instanceof SimilarityPartitioner) || statsMetadata == null)
+            return partitioner;
+
+        SimilarityPartitioner previous = SimilarityPartitioner.previous();
+        // sstables written before the hyperplanes were recorded predate the configured ones
+        if (previous != null && statsMetadata.hyperplanes != ((SimilarityPartitioner) partitioner).hyperplanes().fingerprint())
+            return previous;
+        return partitioner;
+    }
+
     public static SSTableReader open(Descriptor descriptor,
                                       Set<Component> components,
                                       CFMetaData metadata,
@@ -448,6 +465,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             System.exit(1);
         }
 
+        partitioner = placedWith(partitioner, statsMetadata);
         logger.debug("Opening {} ({} bytes)", descriptor, new File(descriptor.filenameFor(Component.DATA)).length());
         SSTableReader sstable = internalOpen(descriptor, components, metadata, partitioner, System.currentTimeMillis(),
                                              statsMetadata, OpenReason.NORMAL);
@@ -1769,6 +1787,24 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return sstableMetadata.repairedAt != ActiveRepairService.UNREPAIRED_SSTABLE;
     }
 
+    /**
+     * @return true if the keys of this sstable are placed with the hyperplanes the configured ones replace
+     */
+    public boolean isRehashPending()
+    {
+        return partitioner instanceof SimilarityPartitioner
+               && ((SimilarityPartitioner) partitioner).hyperplanes() != DatabaseDescriptor.getHyperplaneHash();
+    }
+
+    /**
+     * @return the key as placed in this sstable, which differs from its position on the ring while the sstable
+     * is yet to be re-hashed
+     */
+    public DecoratedKey placed(DecoratedKey key)
+    {
+        return isRehashPending() ? partitioner.decorateKey(key.getKey()) : key;
+    }
+
     /**
      * TODO: Move someplace reusable
      */
@@ -52,6 +52,12 @@ public abstract class Version
 
     public abstract boolean hasNewFileName();
 
+    public abstract boolean hasTokenPrefixHistogram();
+
+    public abstract boolean hasHyperplanes();
+
+    public abstract boolean hasTokenPrefixSizes();
+
     public String getVersion()
     {
         return version;
@@ -19,6 +19,7 @@ package org.apache.cassandra.io.sstable.format.big;
 
 import com.google.common.collect.ImmutableList;
 import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.AbstractCell;
 import org.apache.cassandra.db.ColumnSerializer;
 import org.apache.cassandra.db.OnDiskAtom;
@@ -28,6 +29,7 @@ import org.apache.cassandra.db.compaction.AbstractCompactedRow;
 import org.apache.cassandra.db.compaction.CompactionController;
 import org.apache.cassandra.db.compaction.LazilyCompactedRow;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.IndexHelper;
@@ -49,6 +51,7 @@ public class BigFormat implements SSTableFormat
 {
     public static final BigFormat instance = new BigFormat();
     public static final BigVersion latestVersion = new BigVersion(BigVersion.current_version);
+    public static final BigVersion similarityVersion = new BigVersion(BigVersion.similarity_version);
     private static final SSTableReader.Factory readerFactory = new ReaderFactory();
     private static final SSTableWriter.Factory writerFactory = new WriterFactory();
 
@@ -57,10 +60,14 @@ public class BigFormat implements SSTableFormat
 
     }
 
+    /**
+     * Only nodes using the SimilarityPartitioner, which stock Cassandra cannot read the data of anyway, write the
+     * similarity metadata: the sstables of any other node keep the stock 2.2 version and can be read by stock nodes.
+     */
     @Override
     public Version getLatestVersion()
     {
-        return latestVersion;
+        return DatabaseDescriptor.getPartitioner() instanceof SimilarityPartitioner ? similarityVersion : latestVersion;
     }
 
     @Override
@@ -126,6 +133,7 @@ public class BigFormat implements SSTableFormat
     static class BigVersion extends Version
     {
         public static final String current_version = "la";
+        public static final String similarity_version = "ld";
         public static final String earliest_supported_version = "jb";
 
         // jb (2.0.1): switch from crc32 to adler32 for compression checksums
@@ -135,32 +143,41 @@ public class BigFormat implements SSTableFormat
         //             switch uncompressed checksums to adler32
         //             tracks presense of legacy (local and remote) counter shards
         // la (2.2.0): new file name format
+        // lb: histogram of token prefixes in the stats metadata
+        // lc: fingerprint of the similarity hyperplanes in the stats metadata
+        // ld: histogram of row sizes by token prefix in the stats metadata
+        //
+        // lb to ld are only written with the SimilarityPartitioner, see BigFormat#getLatestVersion
 
-        private final boolean isLatestVersion;
         private final boolean hasSamplingLevel;
         private final boolean newStatsFile;
         private final boolean hasAllAdlerChecksums;
         private final boolean hasRepairedAt;
         private final boolean tracksLegacyCounterShards;
         private final boolean newFileName;
+        private final boolean hasTokenPrefixHistogram;
+        private final boolean hasHyperplanes;
+        private final boolean hasTokenPrefixSizes;
 
         public BigVersion(String version)
         {
             super(instance,version);
 
-            isLatestVersion = version.compareTo(current_version) == 0;
             hasSamplingLevel = version.compareTo("ka") >= 0;
             newStatsFile = version.compareTo("ka") >= 0;
             hasAllAdlerChecksums = version.compareTo("ka") >= 0;
             hasRepairedAt = version.compareTo("ka") >= 0;
             tracksLegacyCounterShards = version.compareTo("ka") >= 0;
             newFileName = version.compareTo("la") >= 0;
+            hasTokenPrefixHistogram = version.compareTo("lb") >= 0;
+            hasHyperplanes = version.compareTo("lc") >= 0;
+            hasTokenPrefixSizes = version.compareTo("ld") >= 0;
         }
 
         @Override
         public boolean isLatestVersion()
         {
-            return isLatestVersion;
+            return equals(instance.getLatestVersion());
         }
 
         @Override
@@ -199,6 +216,24 @@ public class BigFormat implements SSTableFormat
             return newFileName;
         }
 
+        @Override
+        public boolean hasTokenPrefixHistogram()
+        {
+            return hasTokenPrefixHistogram;
+        }
+
+        @Override
+        public boolean hasHyperplanes()
+        {
+            return hasHyperplanes;
+        }
+
+        @Override
+        public boolean hasTokenPrefixSizes()
+        {
+            return hasTokenPrefixSizes;
+        }
+
         @Override
         public boolean isCompatible()
         {
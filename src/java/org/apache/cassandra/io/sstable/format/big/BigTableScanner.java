@@ -249,64 +249,71 @@ public class BigTableScanner implements ISSTableScanner
         {
             try
             {
-                if (nextEntry == null)
+                while (true)
                 {
-                    do
+                    if (nextEntry == null)
                     {
-                        // we're starting the first range or we just passed the end of the previous range
-                        if (!rangeIterator.hasNext())
-                            return endOfData();
+                        do
+                        {
+                            // we're starting the first range or we just passed the end of the previous range
+                            if (!rangeIterator.hasNext())
+                                return endOfData();
 
-                        currentRange = rangeIterator.next();
-                        seekToCurrentRangeStart();
+                            currentRange = rangeIterator.next();
+                            seekToCurrentRangeStart();
 
-                        if (ifile.isEOF())
-                            return endOfData();
+                            if (ifile.isEOF())
+                                return endOfData();
 
-                        currentKey = sstable.partitioner.decorateKey(ByteBufferUtil.readWithShortLength(ifile));
-                        currentEntry = rowIndexEntrySerializer.deserialize(ifile, sstable.descriptor.version);
-                    } while (!currentRange.contains(currentKey));
-                }
-                else
-                {
-                    // we're in the middle of a range
-                    currentKey = nextKey;
-                    currentEntry = nextEntry;
-                }
-
-                if (ifile.isEOF())
-                {
-                    nextEntry = null;
-                    nextKey = null;
-                }
-                else
-                {
-                    // we need the position of the start of the next key, regardless of whether it falls in the current range
-                    nextKey = sstable.partitioner.decorateKey(ByteBufferUtil.readWithShortLength(ifile));
-                    nextEntry = rowIndexEntrySerializer.deserialize(ifile, sstable.descriptor.version);
+                            currentKey = sstable.partitioner.decorateKey(ByteBufferUtil.readWithShortLength(ifile));
+                            currentEntry = rowIndexEntrySerializer.deserialize(ifile, sstable.descriptor.version);
+                        } while (!currentRange.contains(currentKey));
+                    }
+                    else
+                    {
+                        // we're in the middle of a range
+                        currentKey = nextKey;
+                        currentEntry = nextEntry;
+                    }
 
-                    if (!currentRange.contains(nextKey))
+                    if (ifile.isEOF())
                     {
-                        nextKey = null;
                         nextEntry = null;
+                        nextKey = null;
+                    }
+                    else
+                    {
+                        // we need the position of the start of the next key, regardless of whether it falls in the current range
+                        nextKey = sstable.partitioner.decorateKey(ByteBufferUtil.readWithShortLength(ifile));
+                        nextEntry = rowIndexEntrySerializer.deserialize(ifile, sstable.descriptor.version);
+
+                        if (!currentRange.contains(nextKey))
+                        {
+                            nextKey = null;
+                            nextEntry = null;
+                        }
                     }
-                }
 
-                if (dataRange == null || dataRange.selectsFullRowFor(currentKey.getKey()))
-                {
-                    dfile.seek(currentEntry.position + currentEntry.headerOffset());
-                    ByteBufferUtil.readWithShortLength(dfile); // key
-                    return new SSTableIdentityIterator(sstable, dfile, currentKey);
-                }
+                    // the key is the vector ranked by an ANN OF search, so the data of a partition too far from the
+                    // query to be one of the nearest need not be read
+                    if (dataRange != null && !dataRange.mayBeNearest(currentKey.getKey()))
+                        continue;
 
-                return new LazyColumnIterator(currentKey, new IColumnIteratorFactory()
-                {
-                    public OnDiskAtomIterator create()
+                    if (dataRange == null || dataRange.selectsFullRowFor(currentKey.getKey()))
                     {
-                        return dataRange.columnFilter(currentKey.getKey()).getSSTableColumnIterator(sstable, dfile, currentKey, currentEntry);
+                        dfile.seek(currentEntry.position + currentEntry.headerOffset());
+                        ByteBufferUtil.readWithShortLength(dfile); // key
+                        return new SSTableIdentityIterator(sstable, dfile, currentKey);
                     }
-                });
 
+                    return new LazyColumnIterator(currentKey, new IColumnIteratorFactory()
+                    {
+                        public OnDiskAtomIterator create()
+                        {
+                            return dataRange.columnFilter(currentKey.getKey()).getSSTableColumnIterator(sstable, dfile, currentKey, currentEntry);
+                        }
+                    });
+                }
             }
             catch (CorruptSSTableException | IOException e)
             {
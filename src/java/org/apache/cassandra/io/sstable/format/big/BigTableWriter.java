@@ -109,9 +109,10 @@ public class BigTableWriter extends SSTableWriter
         return (lastWrittenKey == null) ? 0 : dataFile.getFilePointer();
     }
 
-    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, RowIndexEntry index) throws IOException
+    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, long rowSize, RowIndexEntry index) throws IOException
     {
         metadataCollector.addKey(decoratedKey.getKey());
+        metadataCollector.addToken(decoratedKey.getToken(), rowSize);
         lastWrittenKey = decoratedKey;
         last = lastWrittenKey;
         if (first == null)
@@ -140,7 +141,7 @@ public class BigTableWriter extends SSTableWriter
             long rowSize = endPosition - startPosition;
             maybeLogLargePartitionWarning(row.key, rowSize);
             metadataCollector.update(rowSize, row.columnStats());
-            afterAppend(row.key, endPosition, entry);
+            afterAppend(row.key, endPosition, rowSize, entry);
             return entry;
         }
         catch (IOException e)
@@ -165,7 +166,7 @@ public class BigTableWriter extends SSTableWriter
         {
             RowIndexEntry entry = rawAppend(cf, startPosition, decoratedKey, dataFile.stream);
             endPosition = dataFile.getFilePointer();
-            afterAppend(decoratedKey, endPosition, entry);
+            afterAppend(decoratedKey, endPosition, endPosition - startPosition, entry);
         }
         catch (IOException e)
         {
@@ -272,17 +273,18 @@ public class BigTableWriter extends SSTableWriter
             throw new FSWriteError(e, dataFile.getPath());
         }
 
+        long rowSize = dataFile.getFilePointer() - currentPosition;
         metadataCollector.updateMinTimestamp(minTimestampTracker.get())
                          .updateMaxTimestamp(maxTimestampTracker.get())
                          .updateMaxLocalDeletionTime(maxDeletionTimeTracker.get())
-                         .addRowSize(dataFile.getFilePointer() - currentPosition)
+                         .addRowSize(rowSize)
                          .addColumnCount(columnIndexer.writtenAtomCount())
                          .mergeTombstoneHistogram(tombstones)
                          .updateMinColumnNames(minColumnNames)
                          .updateMaxColumnNames(maxColumnNames)
                          .updateHasLegacyCounterShards(hasLegacyCounterShards);
 
-        afterAppend(key, currentPosition, RowIndexEntry.create(currentPosition, cf.deletionInfo().getTopLevelDeletion(), columnIndexer.build()));
+        afterAppend(key, currentPosition, rowSize, RowIndexEntry.create(currentPosition, cf.deletionInfo().getTopLevelDeletion(), columnIndexer.build()));
         return currentPosition;
     }
 
@@ -433,7 +435,7 @@ public class BigTableWriter extends SSTableWriter
         File file = new File(desc.filenameFor(Component.STATS));
         try (SequentialWriter out = SequentialWriter.open(file);)
         {
-            desc.getMetadataSerializer().serialize(components, out.stream);
+            desc.getMetadataSerializer().serialize(components, desc.version, out.stream);
             out.setDescriptor(desc).finish();
         }
         catch (IOException e)
@@ -32,20 +32,22 @@ public interface IMetadataComponentSerializer<T extends MetadataComponent>
      * Calculate and return serialized size.
      *
      * @param component MetadataComponent to calculate serialized size
+     * @param version the version of the sstable the component is serialized for
      * @return serialized size of this component
      * @throws IOException
      */
-    int serializedSize(T component) throws IOException;
+    int serializedSize(T component, Version version) throws IOException;
 
     /**
      * Serialize metadata component to given output.
      *
      *
      * @param component MetadataComponent to serialize
+     * @param version the version of the sstable the component is serialized for
      * @param out  serialize destination
      * @throws IOException
      */
-    void serialize(T component, DataOutputPlus out) throws IOException;
+    void serialize(T component, Version version, DataOutputPlus out) throws IOException;
 
     /**
      * Deserialize metadata component from given input.
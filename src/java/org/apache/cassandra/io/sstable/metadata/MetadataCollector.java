@@ -31,8 +31,11 @@ import com.google.common.collect.Maps;
 
 import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
 import com.clearspring.analytics.stream.cardinality.ICardinality;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.ColumnNameHelper;
 import org.apache.cassandra.io.sstable.ColumnStats;
 import org.apache.cassandra.io.sstable.Component;
@@ -42,6 +45,7 @@ import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.utils.EstimatedHistogram;
 import org.apache.cassandra.utils.MurmurHash;
 import org.apache.cassandra.utils.StreamingHistogram;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 
 public class MetadataCollector
 {
@@ -78,7 +82,10 @@ public class MetadataCollector
                                  Collections.<ByteBuffer>emptyList(),
                                  Collections.<ByteBuffer>emptyList(),
                                  true,
-                                 ActiveRepairService.UNREPAIRED_SSTABLE);
+                                 ActiveRepairService.UNREPAIRED_SSTABLE,
+                                 TokenPrefixHistogram.empty(),
+                                 TokenPrefixHistogram.empty(),
+                                 0);
     }
 
     protected EstimatedHistogram estimatedRowSize = defaultRowSizeHistogram();
@@ -94,6 +101,9 @@ public class MetadataCollector
     protected List<ByteBuffer> minColumnNames = Collections.emptyList();
     protected List<ByteBuffer> maxColumnNames = Collections.emptyList();
     protected boolean hasLegacyCounterShards = false;
+    protected TokenPrefixHistogram tokenPrefixHistogram = TokenPrefixHistogram.empty();
+    protected TokenPrefixHistogram tokenPrefixSizes = TokenPrefixHistogram.empty();
+    protected long hyperplanes = 0;
 
     /**
      * Default cardinality estimation method is to use HyperLogLog++.
@@ -141,6 +151,27 @@ public class MetadataCollector
         return this;
     }
 
+    /**
+     * Counts the token of a key, and the size of its row, in the histograms of token prefixes, if the partitioner
+     * keeps them, and records the hyperplanes the token was hashed with.
+     */
+    public MetadataCollector addToken(Token token, long rowSize)
+    {
+        if (token instanceof SimilarityPartitioner.BinaryToken)
+        {
+            if (tokenPrefixHistogram.isEmpty())
+            {
+                tokenPrefixHistogram = new TokenPrefixHistogram(SimilarityPartitioner.histogramPrefixBits());
+                tokenPrefixSizes = new TokenPrefixHistogram(tokenPrefixHistogram.prefixBits());
+                hyperplanes = DatabaseDescriptor.getHyperplaneHash().fingerprint();
+            }
+            int prefix = SimilarityPartitioner.prefix(token, tokenPrefixHistogram.prefixBits());
+            tokenPrefixHistogram.add(prefix);
+            tokenPrefixSizes.add(prefix, rowSize);
+        }
+        return this;
+    }
+
     public MetadataCollector addRowSize(long rowSize)
     {
         estimatedRowSize.add(rowSize);
@@ -267,7 +298,10 @@ public class MetadataCollector
                                                              ImmutableList.copyOf(minColumnNames),
                                                              ImmutableList.copyOf(maxColumnNames),
                                                              hasLegacyCounterShards,
-                                                             repairedAt));
+                                                             repairedAt,
+                                                             tokenPrefixHistogram,
+                                                             tokenPrefixSizes,
+                                                             hyperplanes));
         components.put(MetadataType.COMPACTION, new CompactionMetadata(ancestors, cardinality));
         return components;
     }
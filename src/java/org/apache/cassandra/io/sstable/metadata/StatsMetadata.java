@@ -33,6 +33,7 @@ import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.EstimatedHistogram;
 import org.apache.cassandra.utils.StreamingHistogram;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 
 /**
  * SSTable metadata that always stay on heap.
@@ -54,6 +55,11 @@ public class StatsMetadata extends MetadataComponent
     public final List<ByteBuffer> minColumnNames;
     public final boolean hasLegacyCounterShards;
     public final long repairedAt;
+    public final TokenPrefixHistogram tokenPrefixHistogram;
+    // bytes of the rows by token prefix, alongside the counts of tokenPrefixHistogram
+    public final TokenPrefixHistogram tokenPrefixSizes;
+    // fingerprint of the hyperplanes the keys were hashed with, 0 if unknown
+    public final long hyperplanes;
 
     public StatsMetadata(EstimatedHistogram estimatedRowSize,
                          EstimatedHistogram estimatedColumnCount,
@@ -67,7 +73,10 @@ public class StatsMetadata extends MetadataComponent
                          List<ByteBuffer> minColumnNames,
                          List<ByteBuffer> maxColumnNames,
                          boolean hasLegacyCounterShards,
-                         long repairedAt)
+                         long repairedAt,
+                         TokenPrefixHistogram tokenPrefixHistogram,
+                         TokenPrefixHistogram tokenPrefixSizes,
+                         long hyperplanes)
     {
         this.estimatedRowSize = estimatedRowSize;
         this.estimatedColumnCount = estimatedColumnCount;
@@ -82,6 +91,9 @@ public class StatsMetadata extends MetadataComponent
         this.maxColumnNames = maxColumnNames;
         this.hasLegacyCounterShards = hasLegacyCounterShards;
         this.repairedAt = repairedAt;
+        this.tokenPrefixHistogram = tokenPrefixHistogram;
+        this.tokenPrefixSizes = tokenPrefixSizes;
+        this.hyperplanes = hyperplanes;
     }
 
     public MetadataType getType()
@@ -127,7 +139,10 @@ public class StatsMetadata extends MetadataComponent
                                  minColumnNames,
                                  maxColumnNames,
                                  hasLegacyCounterShards,
-                                 repairedAt);
+                                 repairedAt,
+                                 tokenPrefixHistogram,
+                                 tokenPrefixSizes,
+                                 hyperplanes);
     }
 
     public StatsMetadata mutateRepairedAt(long newRepairedAt)
@@ -144,7 +159,10 @@ public class StatsMetadata extends MetadataComponent
                                  minColumnNames,
                                  maxColumnNames,
                                  hasLegacyCounterShards,
-                                 newRepairedAt);
+                                 newRepairedAt,
+                                 tokenPrefixHistogram,
+                                 tokenPrefixSizes,
+                                 hyperplanes);
     }
 
     @Override
@@ -168,6 +186,9 @@ public class StatsMetadata extends MetadataComponent
                        .append(maxColumnNames, that.maxColumnNames)
                        .append(minColumnNames, that.minColumnNames)
                        .append(hasLegacyCounterShards, that.hasLegacyCounterShards)
+                       .append(tokenPrefixHistogram, that.tokenPrefixHistogram)
+                       .append(tokenPrefixSizes, that.tokenPrefixSizes)
+                       .append(hyperplanes, that.hyperplanes)
                        .build();
     }
 
@@ -188,12 +209,15 @@ public class StatsMetadata extends MetadataComponent
                        .append(maxColumnNames)
                        .append(minColumnNames)
                        .append(hasLegacyCounterShards)
+                       .append(tokenPrefixHistogram)
+                       .append(tokenPrefixSizes)
+                       .append(hyperplanes)
                        .build();
     }
 
     public static class StatsMetadataSerializer implements IMetadataComponentSerializer<StatsMetadata>
     {
-        public int serializedSize(StatsMetadata component) throws IOException
+        public int serializedSize(StatsMetadata component, Version version) throws IOException
         {
             int size = 0;
             size += EstimatedHistogram.serializer.serializedSize(component.estimatedRowSize, TypeSizes.NATIVE);
@@ -211,10 +235,16 @@ public class StatsMetadata extends MetadataComponent
             for (ByteBuffer columnName : component.maxColumnNames)
                 size += 2 + columnName.remaining(); // with short length
             size += TypeSizes.NATIVE.sizeof(component.hasLegacyCounterShards);
+            if (version.hasTokenPrefixHistogram())
+                size += TokenPrefixHistogram.serializer.serializedSize(component.tokenPrefixHistogram, TypeSizes.NATIVE);
+            if (version.hasHyperplanes())
+                size += TypeSizes.NATIVE.sizeof(component.hyperplanes);
+            if (version.hasTokenPrefixSizes())
+                size += TokenPrefixHistogram.serializer.serializedSize(component.tokenPrefixSizes, TypeSizes.NATIVE);
             return size;
         }
 
-        public void serialize(StatsMetadata component, DataOutputPlus out) throws IOException
+        public void serialize(StatsMetadata component, Version version, DataOutputPlus out) throws IOException
         {
             EstimatedHistogram.serializer.serialize(component.estimatedRowSize, out);
             EstimatedHistogram.serializer.serialize(component.estimatedColumnCount, out);
@@ -233,6 +263,12 @@ public class StatsMetadata extends MetadataComponent
             for (ByteBuffer columnName : component.maxColumnNames)
                 ByteBufferUtil.writeWithShortLength(columnName, out);
             out.writeBoolean(component.hasLegacyCounterShards);
+            if (version.hasTokenPrefixHistogram())
+                TokenPrefixHistogram.serializer.serialize(component.tokenPrefixHistogram, out);
+            if (version.hasHyperplanes())
+                out.writeLong(component.hyperplanes);
+            if (version.hasTokenPrefixSizes())
+                TokenPrefixHistogram.serializer.serialize(component.tokenPrefixSizes, out);
         }
 
         public StatsMetadata deserialize(Version version, DataInput in) throws IOException
@@ -264,6 +300,16 @@ public class StatsMetadata extends MetadataComponent
             if (version.tracksLegacyCounterShards())
                 hasLegacyCounterShards = in.readBoolean();
 
+            TokenPrefixHistogram tokenPrefixHistogram = version.hasTokenPrefixHistogram()
+                                                      ? TokenPrefixHistogram.serializer.deserialize(in)
+                                                      : TokenPrefixHistogram.empty();
+
+            long hyperplanes = version.hasHyperplanes() ? in.readLong() : 0;
+
+            TokenPrefixHistogram tokenPrefixSizes = version.hasTokenPrefixSizes()
+                                                  ? TokenPrefixHistogram.serializer.deserialize(in)
+                                                  : TokenPrefixHistogram.empty();
+
             return new StatsMetadata(rowSizes,
                                      columnCounts,
                                      replayPosition,
@@ -276,7 +322,10 @@ public class StatsMetadata extends MetadataComponent
                                      minColumnNames,
                                      maxColumnNames,
                                      hasLegacyCounterShards,
-                                     repairedAt);
+                                     repairedAt,
+                                     tokenPrefixHistogram,
+                                     tokenPrefixSizes,
+                                     hyperplanes);
         }
     }
 }
@@ -67,6 +67,16 @@ public class ColumnFamilyMetrics
     public final Gauge<Long> estimatedRowCount;
     /** Histogram of estimated number of columns. */
     public final Gauge<long[]> estimatedColumnCountHistogram;
+    /** Partition and byte counts by bucket prefix of the SimilarityPartitioner, updated at flush and compaction */
+    public final TokenPrefixOccupancy tokenPrefixOccupancy = new TokenPrefixOccupancy();
+    /** Number of partitions of each bucket prefix, in ring order. */
+    public final Gauge<long[]> bucketPartitions;
+    /** Size in bytes of the partitions of each bucket prefix, in ring order. */
+    public final Gauge<long[]> bucketBytes;
+    /** Number of partitions of the largest bucket prefix. */
+    public final Gauge<Long> maxBucketPartitions;
+    /** Size in bytes of the largest bucket prefix. */
+    public final Gauge<Long> maxBucketBytes;
     /** Histogram of the number of sstable data files accessed per read */
     public final ColumnFamilyHistogram sstablesPerReadHistogram;
     /** (Local) read metrics */
@@ -161,6 +171,14 @@ public class ColumnFamilyMetrics
         public EstimatedHistogram getHistogram(SSTableReader reader);
     }
 
+    private static long max(long[] values)
+    {
+        long max = 0;
+        for (long value : values)
+            max = Math.max(max, value);
+        return max;
+    }
+
     private static long[] combineHistograms(Iterable<SSTableReader> sstables, GetHistogram getHistogram)
     {
         Iterator<SSTableReader> iterator = sstables.iterator();
@@ -306,6 +324,34 @@ public class ColumnFamilyMetrics
                 });
             }
         });
+        bucketPartitions = Metrics.register(factory.createMetricName("BucketPartitions"), new Gauge<long[]>()
+        {
+            public long[] getValue()
+            {
+                return tokenPrefixOccupancy.partitions();
+            }
+        });
+        bucketBytes = Metrics.register(factory.createMetricName("BucketBytes"), new Gauge<long[]>()
+        {
+            public long[] getValue()
+            {
+                return tokenPrefixOccupancy.bytes();
+            }
+        });
+        maxBucketPartitions = Metrics.register(factory.createMetricName("MaxBucketPartitions"), new Gauge<Long>()
+        {
+            public Long getValue()
+            {
+                return max(tokenPrefixOccupancy.partitions());
+            }
+        });
+        maxBucketBytes = Metrics.register(factory.createMetricName("MaxBucketBytes"), new Gauge<Long>()
+        {
+            public Long getValue()
+            {
+                return max(tokenPrefixOccupancy.bytes());
+            }
+        });
         sstablesPerReadHistogram = createColumnFamilyHistogram("SSTablesPerReadHistogram", cfs.keyspace.metric.sstablesPerReadHistogram);
         compressionRatio = createColumnFamilyGauge("CompressionRatio", new Gauge<Double>()
         {
@@ -640,6 +686,10 @@ public class ColumnFamilyMetrics
         Metrics.remove(factory.createMetricName("EstimatedRowSizeHistogram"));
         Metrics.remove(factory.createMetricName("EstimatedRowCount"));
         Metrics.remove(factory.createMetricName("EstimatedColumnCountHistogram"));
+        Metrics.remove(factory.createMetricName("BucketPartitions"));
+        Metrics.remove(factory.createMetricName("BucketBytes"));
+        Metrics.remove(factory.createMetricName("MaxBucketPartitions"));
+        Metrics.remove(factory.createMetricName("MaxBucketBytes"));
         Metrics.remove(factory.createMetricName("KeyCacheHitRate"));
         Metrics.remove(factory.createMetricName("CoordinatorReadLatency"));
         Metrics.remove(factory.createMetricName("CoordinatorScanLatency"));
@@ -792,6 +842,7 @@ public class ColumnFamilyMetrics
 
     public static enum Sampler
     {
-        READS, WRITES
+        // BUCKETS counts the partitions read from each bucket of the SimilarityPartitioner
+        READS, WRITES, BUCKETS
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
+
+/**
+ * Partition and byte counts of a table by token prefix, i.e. by the buckets of the SimilarityPartitioner ring.
+ *
+ * The counts are updated as sstables are flushed, compacted and dropped, from the histograms in their stats
+ * metadata, rather than merged from every live sstable on each read. Sstables placed with the previous hyperplanes,
+ * or whose histograms have another number of prefix bits than the first one tracked, are not counted. Sstables
+ * written before the row sizes were recorded only add to the partition counts.
+ */
+public class TokenPrefixOccupancy
+{
+    private long[] partitions = new long[0];
+    private long[] bytes = new long[0];
+
+    public void add(SSTableReader sstable)
+    {
+        update(sstable, 1);
+    }
+
+    public void remove(SSTableReader sstable)
+    {
+        update(sstable, -1);
+    }
+
+    private synchronized void update(SSTableReader sstable, int sign)
+    {
+        StatsMetadata stats = sstable.getSSTableMetadata();
+        TokenPrefixHistogram counts = stats.tokenPrefixHistogram;
+        if (counts.isEmpty() || sstable.isRehashPending())
+            return;
+
+        if (partitions.length == 0)
+        {
+            partitions = new long[counts.size()];
+            bytes = new long[counts.size()];
+        }
+        if (counts.size() != partitions.length)
+            return;
+
+        boolean hasSizes = stats.tokenPrefixSizes.size() == partitions.length;
+        for (int i = 0; i < partitions.length; i++)
+        {
+            partitions[i] += sign * counts.get(i);
+            if (hasSizes)
+                bytes[i] += sign * stats.tokenPrefixSizes.get(i);
+        }
+    }
+
+    /**
+     * @return the number of partitions of each bucket, in ring order, or an empty array if none is tracked
+     */
+    public synchronized long[] partitions()
+    {
+        return partitions.clone();
+    }
+
+    /**
+     * @return the uncompressed size in bytes of the partitions of each bucket, in ring order
+     */
+    public synchronized long[] bytes()
+    {
+        return bytes.clone();
+    }
+}
@@ -28,16 +28,6 @@ public class BinarySerializer implements TypeSerializer<BitSet>
 {
     public static final BinarySerializer instance = new BinarySerializer();
 
-    private static long toLong(BitSet bits)
-    {
-        long value = 0L;
-        for (int i = 0; i < bits.length(); ++i)
-        {
-            value += bits.get(i) ? (1L << i) : 0L;
-        }
-        return value;
-    }
-
     public BitSet deserialize(ByteBuffer bytes)
     {
         return bytes.hasRemaining() ? BitSet.valueOf(bytes) : null;
@@ -53,9 +43,19 @@ public class BinarySerializer implements TypeSerializer<BitSet>
         // all binary are legal.
     }
 
+    /**
+     * @return the bits of the value, most significant first, left padded with zeros to the identifier length
+     */
     public String toString(BitSet value)
     {
-        return value == null ? "" : String.format("%" + DatabaseDescriptor.getIdentifierLength() + "s", Long.toBinaryString(toLong(value))).replace(" ", "0");
+        if (value == null)
+            return "";
+
+        int length = Math.max(value.length(), DatabaseDescriptor.getIdentifierLength());
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = length - 1; i >= 0; i--)
+            sb.append(value.get(i) ? '1' : '0');
+        return sb.toString();
     }
 
     public Class<BitSet> getType()
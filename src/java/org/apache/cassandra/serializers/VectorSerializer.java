@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.serializers;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.VectorEncoding;
+
+/**
+ * Serializes vectors of a fixed dimension with one of the {@link VectorEncoding}s, with no header.
+ *
+ * Besides the usual conversion to and from {@code double[]}, the serializer gives access to the components in place,
+ * so that the read path can work on the cell buffers without copying nor boxing them.
+ */
+public class VectorSerializer implements TypeSerializer<double[]>
+{
+    private final VectorEncoding encoding;
+    private final int dimension;
+
+    public VectorSerializer(VectorEncoding encoding, int dimension)
+    {
+        this.encoding = encoding;
+        this.dimension = dimension;
+    }
+
+    public VectorEncoding encoding()
+    {
+        return encoding;
+    }
+
+    public int dimension()
+    {
+        return dimension;
+    }
+
+    /**
+     * @return the size in bytes of a serialized vector
+     */
+    public int serializedSize()
+    {
+        return encoding.serializedSize(dimension);
+    }
+
+    /**
+     * Reads the {@code i}th component of a serialized vector, without modifying the buffer position.
+     */
+    public double get(ByteBuffer bytes, int i)
+    {
+        return encoding.get(bytes, bytes.position(), i);
+    }
+
+    /**
+     * @return a view of the components of a serialized vector of doubles, sharing the buffer content
+     */
+    public DoubleBuffer asDoubleBuffer(ByteBuffer bytes)
+    {
+        assert encoding == VectorEncoding.DOUBLE;
+        return bytes.duplicate().asDoubleBuffer();
+    }
+
+    /**
+     * @return a view of the components of a serialized vector of floats, sharing the buffer content
+     */
+    public FloatBuffer asFloatBuffer(ByteBuffer bytes)
+    {
+        assert encoding == VectorEncoding.FLOAT;
+        return bytes.duplicate().asFloatBuffer();
+    }
+
+    public double[] deserialize(ByteBuffer bytes)
+    {
+        if (bytes.remaining() == 0)
+            return null;
+
+        double[] vector = new double[dimension];
+        for (int i = 0; i < dimension; i++)
+            vector[i] = get(bytes, i);
+        return vector;
+    }
+
+    public ByteBuffer serialize(double[] value)
+    {
+        if (value == null)
+            return ByteBufferUtil.EMPTY_BYTE_BUFFER;
+
+        if (value.length != dimension)
+            throw new MarshalException(String.format("Expected %d components for a vector but got %d", dimension, value.length));
+
+        ByteBuffer bytes = ByteBuffer.allocate(serializedSize());
+        encoding.encode(value, bytes, 0);
+        return bytes;
+    }
+
+    public void validate(ByteBuffer bytes) throws MarshalException
+    {
+        if (bytes.remaining() != serializedSize() && bytes.remaining() != 0)
+            throw new MarshalException(String.format("Expected %d or 0 byte value for a %s vector of dimension %d (%d)",
+                                                     serializedSize(), encoding.name().toLowerCase(), dimension, bytes.remaining()));
+    }
+
+    public String toString(double[] value)
+    {
+        if (value == null)
+            return "";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < value.length; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            // components are printed with the precision they were stored with
+            sb.append(encoding == VectorEncoding.DOUBLE ? String.valueOf(value[i]) : String.valueOf((float) value[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    public Class<double[]> getType()
+    {
+        return double[].class;
+    }
+}
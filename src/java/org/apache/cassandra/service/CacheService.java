@@ -84,6 +84,7 @@ public class CacheService implements CacheServiceMBean
     public final AutoSavingCache<KeyCacheKey, RowIndexEntry> keyCache;
     public final AutoSavingCache<RowCacheKey, IRowCacheEntry> rowCache;
     public final AutoSavingCache<CounterCacheKey, ClockAndCount> counterCache;
+    public final SimilarityCache similarityCache;
 
     private CacheService()
     {
@@ -101,6 +102,7 @@ public class CacheService implements CacheServiceMBean
         keyCache = initKeyCache();
         rowCache = initRowCache();
         counterCache = initCounterCache();
+        similarityCache = initSimilarityCache();
     }
 
     /**
@@ -179,6 +181,17 @@ public class CacheService implements CacheServiceMBean
         return cache;
     }
 
+    /**
+     * @return the cache of the candidates of ANN OF queries, which is not saved
+     */
+    private SimilarityCache initSimilarityCache()
+    {
+        logger.info("Initializing similarity cache with capacity of {} MBs", DatabaseDescriptor.getSimilarityCacheSizeInMB());
+
+        long capacity = DatabaseDescriptor.getSimilarityCacheSizeInMB() * 1024 * 1024;
+
+        return new SimilarityCache(ConcurrentLinkedHashCache.<SimilarityCacheKey, SimilarityCacheEntry>create(capacity));
+    }
 
     public int getRowCacheSavePeriodInSeconds()
     {
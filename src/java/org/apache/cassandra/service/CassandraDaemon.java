@@ -329,6 +329,11 @@ public class CassandraDaemon
         // due to scheduling errors or race conditions
         ScheduledExecutors.optionalTasks.scheduleWithFixedDelay(ColumnFamilyStore.getBackgroundCompactionTaskSubmitter(), 5, 1, TimeUnit.MINUTES);
 
+        // schedule the re-hash of the sstables placed with the previous hyperplanes, retrying those that could not
+        // be written again, e.g. while some of their new replicas were down
+        if (DatabaseDescriptor.isRehashingHyperplanes())
+            ScheduledExecutors.optionalTasks.scheduleWithFixedDelay(ColumnFamilyStore.getRehashTaskSubmitter(), 1, 5, TimeUnit.MINUTES);
+
         // schedule periodic dumps of table size estimates into SystemKeyspace.SIZE_ESTIMATES_CF
         // set cassandra.size_recorder_interval to 0 to disable
         int sizeRecorderInterval = Integer.getInteger("cassandra.size_recorder_interval", 5 * 60);
@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.concurrent.ScheduledExecutors;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.gms.*;
 
 public class LoadBroadcaster implements IEndpointStateChangeSubscriber
@@ -91,6 +92,10 @@ public class LoadBroadcaster implements IEndpointStateChangeSubscriber
                     logger.trace("Disseminating load info ...");
                 Gossiper.instance.addLocalApplicationState(ApplicationState.LOAD,
                                                            StorageService.instance.valueFactory.load(StorageMetrics.load.getCount()));
+                // the distribution of the keys, for the nodes picking their tokens from it
+                if (StorageService.getPartitioner() instanceof SimilarityPartitioner)
+                    Gossiper.instance.addLocalApplicationState(ApplicationState.TOKEN_HISTOGRAM,
+                                                               StorageService.instance.valueFactory.tokenHistogram(SimilarityPartitioner.localTokenPrefixHistogram()));
             }
         };
         ScheduledExecutors.scheduledTasks.scheduleWithFixedDelay(runnable, 2 * Gossiper.intervalInMillis, BROADCAST_INTERVAL, TimeUnit.MILLISECONDS);
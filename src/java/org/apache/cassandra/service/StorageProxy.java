@@ -806,6 +806,8 @@ public class StorageProxy implements StorageProxyMBean
         // exit early if we can't fulfill the CL at this time
         responseHandler.assureSufficientLiveNodes();
 
+        CacheService.instance.similarityCache.invalidate(mutation, tk);
+
         performer.apply(mutation, Iterables.concat(naturalEndpoints, pendingEndpoints), responseHandler, localDataCenter, consistency_level);
         return responseHandler;
     }
@@ -819,6 +821,7 @@ public class StorageProxy implements StorageProxyMBean
         List<InetAddress> naturalEndpoints = StorageService.instance.getNaturalEndpoints(keyspaceName, tk);
         Collection<InetAddress> pendingEndpoints = StorageService.instance.getTokenMetadata().pendingEndpointsFor(tk, keyspaceName);
         AbstractWriteResponseHandler<IMutation> responseHandler = rs.getWriteResponseHandler(naturalEndpoints, pendingEndpoints, consistency_level, null, writeType);
+        CacheService.instance.similarityCache.invalidate(mutation, tk);
         return new WriteResponseHandlerWrapper(responseHandler, mutation);
     }
 
@@ -1782,28 +1785,7 @@ public class StorageProxy implements StorageProxyMBean
                     }
 
                     AbstractRangeCommand nodeCmd = command.forSubRange(range);
-
-                    // collect replies and resolve according to consistency level
-                    RangeSliceResponseResolver resolver = new RangeSliceResponseResolver(nodeCmd.keyspace, command.timestamp);
-                    List<InetAddress> minimalEndpoints = filteredEndpoints.subList(0, Math.min(filteredEndpoints.size(), consistency_level.blockFor(keyspace)));
-                    ReadCallback<RangeSliceReply, Iterable<Row>> handler = new ReadCallback<>(resolver, consistency_level, nodeCmd, minimalEndpoints);
-                    handler.assureSufficientLiveNodes();
-                    resolver.setSources(filteredEndpoints);
-                    if (filteredEndpoints.size() == 1
-                        && filteredEndpoints.get(0).equals(FBUtilities.getBroadcastAddress())
-                        && OPTIMIZE_LOCAL_REQUESTS)
-                    {
-                        StageManager.getStage(Stage.READ).execute(new LocalRangeSliceRunnable(nodeCmd, handler), Tracing.instance.get());
-                    }
-                    else
-                    {
-                        MessageOut<? extends AbstractRangeCommand> message = nodeCmd.createMessage();
-                        for (InetAddress endpoint : filteredEndpoints)
-                        {
-                            Tracing.trace("Enqueuing request to {}", endpoint);
-                            MessagingService.instance().sendRRWithFailure(message, endpoint, handler);
-                        }
-                    }
+                    ReadCallback<RangeSliceReply, Iterable<Row>> handler = sendRangeSlice(keyspace, nodeCmd, filteredEndpoints, consistency_level);
                     scanHandlers.add(Pair.create(nodeCmd, handler));
                 }
                 Tracing.trace("Submitted {} concurrent range requests covering {} ranges", concurrentRequests, i - concurrentFetchStartingIndex);
@@ -1910,6 +1892,174 @@ public class StorageProxy implements StorageProxyMBean
         return command.postReconciliationProcessing(rows);
     }
 
+    /**
+     * Sends a range command to the specified endpoints, or runs it locally when this node is the only one.
+     *
+     * @return the callback collecting the replies and resolving them according to the consistency level
+     */
+    private static ReadCallback<RangeSliceReply, Iterable<Row>> sendRangeSlice(Keyspace keyspace,
+                                                                               AbstractRangeCommand nodeCmd,
+                                                                               List<InetAddress> filteredEndpoints,
+                                                                               ConsistencyLevel consistency_level)
+    throws UnavailableException
+    {
+        // collect replies and resolve according to consistency level
+        RangeSliceResponseResolver resolver = new RangeSliceResponseResolver(nodeCmd.keyspace, nodeCmd.timestamp);
+        List<InetAddress> minimalEndpoints = filteredEndpoints.subList(0, Math.min(filteredEndpoints.size(), consistency_level.blockFor(keyspace)));
+        ReadCallback<RangeSliceReply, Iterable<Row>> handler = new ReadCallback<>(resolver, consistency_level, nodeCmd, minimalEndpoints);
+        handler.assureSufficientLiveNodes();
+        resolver.setSources(filteredEndpoints);
+        if (filteredEndpoints.size() == 1
+            && filteredEndpoints.get(0).equals(FBUtilities.getBroadcastAddress())
+            && OPTIMIZE_LOCAL_REQUESTS)
+        {
+            StageManager.getStage(Stage.READ).execute(new LocalRangeSliceRunnable(nodeCmd, handler), Tracing.instance.get());
+        }
+        else
+        {
+            MessageOut<? extends AbstractRangeCommand> message = nodeCmd.createMessage();
+            for (InetAddress endpoint : filteredEndpoints)
+            {
+                Tracing.trace("Enqueuing request to {}", endpoint);
+                MessagingService.instance().sendRRWithFailure(message, endpoint, handler);
+            }
+        }
+        return handler;
+    }
+
+    /**
+     * Reads the ranges of a similarity search. Unlike {@link #getRangeSlice}, which walks the ranges of a command a
+     * few at a time, every per-replica sub-range of every command is requested at once, so that the latency is that
+     * of the slowest replica rather than the sum of their round trips.
+     *
+     * The responses are then gathered by increasing distance bound and their rows handed to the collector. Once the
+     * collector holds enough rows closer than the bound of the ranges not gathered yet, these cannot change the
+     * result: the search stops without waiting for their responses, which are dropped when they arrive.
+     *
+     * @param commands the range commands of the search, one per range of probed buckets
+     * @param distanceBounds for each command, a lower bound of the distance to the query of the rows it can return
+     * @param collector receives the rows, in the order of the distance bounds of their commands
+     * @param consistency_level the consistency level of each range read
+     */
+    public static void getRangeSlices(List<? extends AbstractRangeCommand> commands,
+                                      double[] distanceBounds,
+                                      RangeSliceCollector collector,
+                                      ConsistencyLevel consistency_level)
+    throws UnavailableException, ReadFailureException, ReadTimeoutException
+    {
+        assert commands.size() == distanceBounds.length;
+        if (commands.isEmpty())
+            return;
+
+        long startTime = System.nanoTime();
+        AbstractRangeCommand first = commands.get(0);
+        Keyspace keyspace = Keyspace.open(first.keyspace);
+        int gathered = 0;
+        List<ScatteredRangeSlice> scattered = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < commands.size(); i++)
+            {
+                AbstractRangeCommand command = commands.get(i);
+                List<? extends AbstractBounds<RowPosition>> ranges = keyspace.getReplicationStrategy() instanceof LocalStrategy
+                                                                   ? command.keyRange.unwrap()
+                                                                   : getRestrictedRanges(command.keyRange);
+                for (AbstractBounds<RowPosition> range : ranges)
+                {
+                    List<InetAddress> filteredEndpoints = consistency_level.filterForQuery(keyspace, getLiveSortedEndpoints(keyspace, range.right));
+                    AbstractRangeCommand nodeCmd = command.forSubRange(range);
+                    scattered.add(new ScatteredRangeSlice(command, sendRangeSlice(keyspace, nodeCmd, filteredEndpoints, consistency_level), distanceBounds[i]));
+                }
+            }
+            Tracing.trace("Submitted {} range requests for {} range commands", scattered.size(), commands.size());
+
+            Collections.sort(scattered);
+            List<AsyncOneResponse> repairResponses = new ArrayList<>();
+            for (ScatteredRangeSlice slice : scattered)
+            {
+                if (collector.isComplete(slice.distanceBound))
+                    break;
+
+                RangeSliceResponseResolver resolver = (RangeSliceResponseResolver) slice.handler.resolver;
+                try
+                {
+                    List<Row> rows = new ArrayList<>();
+                    for (Row row : slice.handler.get())
+                        rows.add(row);
+                    for (Row row : slice.command.postReconciliationProcessing(rows))
+                        collector.collect(row);
+                    repairResponses.addAll(resolver.repairResults);
+                }
+                catch (ReadTimeoutException|ReadFailureException ex)
+                {
+                    if (Tracing.isTracing())
+                        Tracing.trace("{}; received {} of {} responses for range {} of {}",
+                                      ex instanceof ReadTimeoutException ? "Timed out" : "Failed",
+                                      resolver.responses.size(), consistency_level.blockFor(keyspace), gathered + 1, scattered.size());
+                    throw ex;
+                }
+                catch (DigestMismatchException e)
+                {
+                    throw new AssertionError(e); // no digests in range slices yet
+                }
+                gathered++;
+            }
+            if (gathered < scattered.size())
+                Tracing.trace("Gathered {} of {} range requests, the others cannot hold closer rows", gathered, scattered.size());
+
+            try
+            {
+                FBUtilities.waitOnFutures(repairResponses, DatabaseDescriptor.getWriteRpcTimeout());
+            }
+            catch (TimeoutException ex)
+            {
+                // We got all responses, but timed out while repairing
+                int blockFor = consistency_level.blockFor(keyspace);
+                Tracing.trace("Timed out while read-repairing after receiving all {} data and digest responses", blockFor);
+                throw new ReadTimeoutException(consistency_level, blockFor-1, blockFor, true);
+            }
+        }
+        finally
+        {
+            long latency = System.nanoTime() - startTime;
+            rangeMetrics.addNano(latency);
+            keyspace.getColumnFamilyStore(first.columnFamily).metric.coordinatorScanLatency.update(latency, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Receives the rows of the range reads of a similarity search, see {@link #getRangeSlices}.
+     */
+    public interface RangeSliceCollector
+    {
+        public void collect(Row row);
+
+        /**
+         * @return true if no row at a distance of at least {@code distanceBound} from the query can change the rows
+         * collected
+         */
+        public boolean isComplete(double distanceBound);
+    }
+
+    private static class ScatteredRangeSlice implements Comparable<ScatteredRangeSlice>
+    {
+        private final AbstractRangeCommand command;
+        private final ReadCallback<RangeSliceReply, Iterable<Row>> handler;
+        private final double distanceBound;
+
+        private ScatteredRangeSlice(AbstractRangeCommand command, ReadCallback<RangeSliceReply, Iterable<Row>> handler, double distanceBound)
+        {
+            this.command = command;
+            this.handler = handler;
+            this.distanceBound = distanceBound;
+        }
+
+        public int compareTo(ScatteredRangeSlice other)
+        {
+            return Double.compare(distanceBound, other.distanceBound);
+        }
+    }
+
     public Map<String, List<String>> getSchemaVersions()
     {
         return describeSchemaVersions();
@@ -680,6 +680,12 @@ public class NodeProbe implements AutoCloseable
         return cfsProxy.getSSTablesForKey(key);
     }
 
+    public double[][] trainHyperplanes(String keyspace, String cf, int bits, int samples, boolean balanced, long seed)
+    {
+        ColumnFamilyStoreMBean cfsProxy = getCfsProxy(keyspace, cf);
+        return cfsProxy.trainHyperplanes(bits, samples, balanced, seed);
+    }
+
     public Set<StreamState> getStreamStatus()
     {
         return Sets.newHashSet(Iterables.transform(streamProxy.getCurrentStreams(), new Function<CompositeData, StreamState>()
@@ -1082,12 +1088,16 @@ public class NodeProbe implements AutoCloseable
                 case "BloomFilterOffHeapMemoryUsed":
                 case "IndexSummaryOffHeapMemoryUsed":
                 case "CompressionMetadataOffHeapMemoryUsed":
+                case "BucketBytes":
+                case "BucketPartitions":
                 case "CompressionRatio":
                 case "EstimatedColumnCountHistogram":
                 case "EstimatedRowSizeHistogram":
                 case "EstimatedRowCount":
                 case "KeyCacheHitRate":
                 case "LiveSSTableCount":
+                case "MaxBucketBytes":
+                case "MaxBucketPartitions":
                 case "MaxRowSize":
                 case "MeanRowSize":
                 case "MemtableColumnsCount":
@@ -128,6 +128,8 @@ public class NodeTool
                 TruncateHints.class,
                 TpStats.class,
                 TopPartitions.class,
+                BucketStats.class,
+                TrainHyperplanes.class,
                 SetLoggingLevel.class,
                 GetLoggingLevels.class
         );
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.tools;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.HyperplaneTrainer;
+
+/**
+ * Derives hyperplanes for the SimilarityPartitioner from the principal directions of the keys of a table, sampled
+ * from the index summaries of its sstables, and prints them as the vectors block of cassandra.yaml.
+ *
+ * This is the offline counterpart of nodetool trainhyperplanes.
+ */
+public class SSTableHyperplanes
+{
+    private static final String USAGE = "Usage: sstablehyperplanes [--balanced] [-b <bits>] [-s <samples>] [--seed <seed>] <keyspace> <table>";
+
+    public static void main(String[] args)
+    {
+        PrintStream out = System.out;
+        int bits = 0;
+        int samples = 100000;
+        long seed = 0;
+        boolean balanced = false;
+        List<String> arguments = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--balanced":
+                        balanced = true;
+                        break;
+                    case "-b":
+                        bits = Integer.parseInt(args[++i]);
+                        break;
+                    case "-s":
+                        samples = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        arguments.add(args[i]);
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            arguments.clear();
+        }
+        if (arguments.size() != 2)
+        {
+            out.println(USAGE);
+            System.exit(1);
+        }
+
+        String keyspace = arguments.get(0);
+        String columnfamily = arguments.get(1);
+        Schema.instance.loadFromDisk(false);
+        if (Schema.instance.getCFMetaData(keyspace, columnfamily) == null)
+            throw new IllegalArgumentException(String.format("Unknown keyspace/table %s.%s",
+                                                             keyspace,
+                                                             columnfamily));
+
+        Keyspace ks = Keyspace.openWithoutSSTables(keyspace);
+        ColumnFamilyStore cfs = ks.getColumnFamilyStore(columnfamily);
+        List<SSTableReader> sstables = new ArrayList<>();
+        for (Map.Entry<Descriptor, Set<Component>> sstable : cfs.directories.sstableLister().skipTemporary(true).list().entrySet())
+        {
+            if (sstable.getKey() != null)
+            {
+                try
+                {
+                    sstables.add(SSTableReader.open(sstable.getKey()));
+                }
+                catch (Throwable t)
+                {
+                    out.println("Couldn't open sstable: " + sstable.getKey().filenameFor(Component.DATA) + " (" + t.getMessage() + ")");
+                }
+            }
+        }
+        if (sstables.isEmpty())
+        {
+            out.println("No sstables for " + keyspace + "." + columnfamily);
+            System.exit(1);
+        }
+
+        try
+        {
+            double[][] vectors = ColumnFamilyStore.trainHyperplanes(sstables, bits, samples, balanced ? HyperplaneTrainer.Mode.BALANCED : HyperplaneTrainer.Mode.PCA, seed);
+            printVectors(out, vectors);
+        }
+        catch (IllegalStateException e)
+        {
+            out.println(e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Prints hyperplanes as the identifier_length and vectors settings of cassandra.yaml.
+     */
+    public static void printVectors(PrintStream out, double[][] vectors)
+    {
+        out.println("# Move the vectors currently configured to previous_vectors when replacing them,");
+        out.println("# so that the existing partitions are re-hashed with the new ones");
+        out.println("identifier_length: " + vectors.length);
+        out.println("vectors:");
+        for (double[] vector : vectors)
+        {
+            StringBuilder sb = new StringBuilder("    - [");
+            for (int i = 0; i < vector.length; i++)
+            {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append(vector[i]);
+            }
+            out.println(sb.append(']'));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.tools.nodetool;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import io.airlift.command.Arguments;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.OpenDataException;
+
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.metrics.ColumnFamilyMetrics.Sampler;
+import org.apache.cassandra.tools.NodeProbe;
+import org.apache.cassandra.tools.NodeTool.NodeToolCmd;
+
+import com.google.common.collect.Lists;
+
+@Command(name = "bucketstats", description = "Print the partition and byte counts of the similarity buckets of a column family, and optionally sample the most read ones")
+public class BucketStats extends NodeToolCmd
+{
+    @Arguments(usage = "<keyspace> <cfname> [duration]", description = "The keyspace, column family name, and duration in milliseconds of the sampling of reads")
+    private List<String> args = new ArrayList<>();
+    @Option(name = "-s", description = "Capacity of stream summary, closer to the actual number of buckets will yield more accurate results (Default: 256)")
+    private int size = 256;
+    @Option(name = "-k", description = "Number of the most read buckets to list (Default: 10)")
+    private int topCount = 10;
+
+    @Override
+    public void execute(NodeProbe probe)
+    {
+        checkArgument(args.size() == 2 || args.size() == 3, "bucketstats requires keyspace, column family name, and an optional duration");
+        checkArgument(topCount < size, "TopK count (-k) option must be smaller than the summary capacity (-s)");
+        String keyspace = args.get(0);
+        String cfname = args.get(1);
+
+        long[] partitions = (long[]) probe.getColumnFamilyMetric(keyspace, cfname, "BucketPartitions");
+        long[] bytes = (long[]) probe.getColumnFamilyMetric(keyspace, cfname, "BucketBytes");
+        if (partitions.length == 0)
+        {
+            System.out.println("No bucket counts for " + keyspace + "." + cfname + " (not a SimilarityPartitioner table, or nothing flushed yet)");
+        }
+        else
+        {
+            int bits = Integer.numberOfTrailingZeros(partitions.length);
+            long totalPartitions = 0, totalBytes = 0, maxPartitions = 0;
+            int used = 0;
+            System.out.printf("%-" + Math.max(bits, 6) + "s%15s%15s%n", "Bucket", "Partitions", "Size");
+            for (int i = 0; i < partitions.length; i++)
+            {
+                if (partitions[i] == 0)
+                    continue;
+                used++;
+                totalPartitions += partitions[i];
+                totalBytes += bytes[i];
+                maxPartitions = Math.max(maxPartitions, partitions[i]);
+                System.out.printf("%-" + Math.max(bits, 6) + "s%15d%15s%n", prefix(i, bits), partitions[i], FileUtils.stringifyFileSize(bytes[i]));
+            }
+            double mean = (double) totalPartitions / partitions.length;
+            System.out.println();
+            System.out.printf("Buckets used: %d of %d%n", used, partitions.length);
+            System.out.printf("Partitions: %d (%s)%n", totalPartitions, FileUtils.stringifyFileSize(totalBytes));
+            System.out.printf("Max partitions per bucket: %d%n", maxPartitions);
+            System.out.printf("Mean partitions per bucket: %.2f%n", mean);
+            System.out.printf("Skew (max / mean): %.2f%n", mean == 0 ? 0 : maxPartitions / mean);
+        }
+
+        if (args.size() == 3)
+        {
+            Integer duration = Integer.parseInt(args.get(2));
+            CompositeData sampling;
+            try
+            {
+                sampling = probe.getPartitionSample(keyspace, cfname, size, duration, topCount, Lists.newArrayList(Sampler.BUCKETS)).get(Sampler.BUCKETS);
+            } catch (OpenDataException e)
+            {
+                throw new RuntimeException(e);
+            }
+            System.out.println();
+            System.out.printf("Top %d read buckets (~%d sampled):%n", topCount, (long) sampling.get("cardinality"));
+            TopPartitions.printSample(sampling, "Bucket");
+        }
+    }
+
+    private static String prefix(int bucket, int bits)
+    {
+        StringBuilder builder = new StringBuilder(bits);
+        for (int i = bits - 1; i >= 0; i--)
+            builder.append((bucket >>> i) & 1);
+        return builder.toString();
+    }
+}
@@ -33,7 +33,6 @@ import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.OpenDataException;
 import javax.management.openmbean.TabularDataSupport;
 
-import org.apache.cassandra.metrics.ColumnFamilyMetrics;
 import org.apache.cassandra.metrics.ColumnFamilyMetrics.Sampler;
 import org.apache.cassandra.tools.NodeProbe;
 import org.apache.cassandra.tools.NodeTool.NodeToolCmd;
@@ -50,8 +49,8 @@ public class TopPartitions extends NodeToolCmd
     private int size = 256;
     @Option(name = "-k", description = "Number of the top partitions to list (Default: 10)")
     private int topCount = 10;
-    @Option(name = "-a", description = "Comma separated list of samplers to use (Default: all)")
-    private String samplers = join(ColumnFamilyMetrics.Sampler.values(), ',');
+    @Option(name = "-a", description = "Comma separated list of samplers to use (Default: READS,WRITES)")
+    private String samplers = join(new Sampler[] { Sampler.READS, Sampler.WRITES }, ',');
     @Override
     public void execute(NodeProbe probe)
     {
@@ -85,33 +84,41 @@ public class TopPartitions extends NodeToolCmd
         for(Entry<Sampler, CompositeData> result : results.entrySet())
         {
             CompositeData sampling = result.getValue();
-            // weird casting for http://bugs.sun.com/view_bug.do?bug_id=6548436
-            List<CompositeData> topk = (List<CompositeData>) (Object) Lists.newArrayList(((TabularDataSupport) sampling.get("partitions")).values());
-            Collections.sort(topk, new Ordering<CompositeData>()
-            {
-                public int compare(CompositeData left, CompositeData right)
-                {
-                    return Long.compare((long) right.get("count"), (long) left.get("count"));
-                }
-            });
             if(!first)
                 System.out.println();
             System.out.println(result.getKey().toString()+ " Sampler:");
             System.out.printf("  Cardinality: ~%d (%d capacity)%n", (long) sampling.get("cardinality"), size);
             System.out.printf("  Top %d partitions:%n", topCount);
-            if (topk.size() == 0)
-            {
-                System.out.println("\tNothing recorded during sampling period...");
-            } else
+            printSample(sampling, "Partition");
+            first = false;
+        }
+    }
+
+    /**
+     * Prints the sampled items, the most frequent first, in a table whose first column has the given header.
+     */
+    static void printSample(CompositeData sampling, String header)
+    {
+        // weird casting for http://bugs.sun.com/view_bug.do?bug_id=6548436
+        List<CompositeData> topk = (List<CompositeData>) (Object) Lists.newArrayList(((TabularDataSupport) sampling.get("partitions")).values());
+        Collections.sort(topk, new Ordering<CompositeData>()
+        {
+            public int compare(CompositeData left, CompositeData right)
             {
-                int offset = 0;
-                for (CompositeData entry : topk)
-                    offset = Math.max(offset, entry.get("string").toString().length());
-                System.out.printf("\t%-" + offset + "s%10s%10s%n", "Partition", "Count", "+/-");
-                for (CompositeData entry : topk)
-                    System.out.printf("\t%-" + offset + "s%10d%10d%n", entry.get("string").toString(), entry.get("count"), entry.get("error"));
+                return Long.compare((long) right.get("count"), (long) left.get("count"));
             }
-            first = false;
+        });
+        if (topk.size() == 0)
+        {
+            System.out.println("\tNothing recorded during sampling period...");
+        } else
+        {
+            int offset = 0;
+            for (CompositeData entry : topk)
+                offset = Math.max(offset, entry.get("string").toString().length());
+            System.out.printf("\t%-" + offset + "s%10s%10s%n", header, "Count", "+/-");
+            for (CompositeData entry : topk)
+                System.out.printf("\t%-" + offset + "s%10d%10d%n", entry.get("string").toString(), entry.get("count"), entry.get("error"));
         }
     }
-}
\ No newline at end of file
+}
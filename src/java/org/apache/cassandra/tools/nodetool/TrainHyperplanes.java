@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.tools.nodetool;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import io.airlift.command.Arguments;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.tools.NodeProbe;
+import org.apache.cassandra.tools.NodeTool.NodeToolCmd;
+import org.apache.cassandra.tools.SSTableHyperplanes;
+
+@Command(name = "trainhyperplanes", description = "Print hyperplanes for the SimilarityPartitioner, along the principal directions of keys sampled from the sstables of a column family")
+public class TrainHyperplanes extends NodeToolCmd
+{
+    @Arguments(usage = "<keyspace> <cfname>", description = "The keyspace and column family name")
+    private List<String> args = new ArrayList<>();
+    @Option(name = "-b", description = "Number of hyperplanes (Default: identifier_length)")
+    private int bits = 0;
+    @Option(name = "-s", description = "Maximum number of keys to sample (Default: 100000)")
+    private int samples = 100000;
+    @Option(name = "--balanced", description = "Rotate the principal directions into projections of similar variances")
+    private boolean balanced = false;
+    @Option(name = "--seed", description = "Seed of the sampling and of the rotations (Default: 0)")
+    private long seed = 0;
+
+    @Override
+    public void execute(NodeProbe probe)
+    {
+        checkArgument(args.size() == 2, "trainhyperplanes requires keyspace and column family name");
+        checkArgument(bits >= 0, "The number of hyperplanes (-b) cannot be negative");
+        checkArgument(samples > 1, "At least two keys must be sampled (-s)");
+
+        SSTableHyperplanes.printVectors(System.out, probe.trainHyperplanes(args.get(0), args.get(1), bits, samples, balanced, seed));
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport.messages;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+
+import org.apache.cassandra.cql3.*;
+import org.apache.cassandra.cql3.statements.ParsedStatement;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.exceptions.PreparedQueryNotFoundException;
+import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.exceptions.RequestValidationException;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.transport.*;
+import org.apache.cassandra.utils.JVMStabilityInspector;
+import org.apache.cassandra.utils.MD5Digest;
+import org.apache.cassandra.utils.UUIDGen;
+
+/**
+ * Executes a prepared ANN OF SELECT once per set of values, typically one per query vector. The ranges probed by
+ * several of the searches are only read once, see {@link SelectStatement#executeANNBatch}. The rows of all the
+ * searches are returned in a single result, each preceded by the index of its search.
+ */
+public class ANNBatchMessage extends Message.Request
+{
+    public static final Message.Codec<ANNBatchMessage> codec = new Message.Codec<ANNBatchMessage>()
+    {
+        public ANNBatchMessage decode(ByteBuf body, int version)
+        {
+            if (version < Server.VERSION_4)
+                throw new ProtocolException("ANN_BATCH messages are only supported from version 4 of the protocol");
+
+            byte[] id = CBUtil.readBytes(body);
+            int n = body.readUnsignedShort();
+            List<List<ByteBuffer>> values = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                values.add(CBUtil.readValueList(body, version));
+            QueryOptions options = QueryOptions.codec.decode(body, version);
+
+            return new ANNBatchMessage(MD5Digest.wrap(id), values, options);
+        }
+
+        public void encode(ANNBatchMessage msg, ByteBuf dest, int version)
+        {
+            CBUtil.writeBytes(msg.statementId.bytes, dest);
+            dest.writeShort(msg.values.size());
+            for (List<ByteBuffer> searchValues : msg.values)
+                CBUtil.writeValueList(searchValues, dest);
+            QueryOptions.codec.encode(msg.options, dest, version);
+        }
+
+        public int encodedSize(ANNBatchMessage msg, int version)
+        {
+            int size = CBUtil.sizeOfBytes(msg.statementId.bytes);
+            size += 2; // nb searches
+            for (List<ByteBuffer> searchValues : msg.values)
+                size += CBUtil.sizeOfValueList(searchValues);
+            size += QueryOptions.codec.encodedSize(msg.options, version);
+            return size;
+        }
+    };
+
+    public final MD5Digest statementId;
+    public final List<List<ByteBuffer>> values;
+    public final QueryOptions options;
+
+    public ANNBatchMessage(MD5Digest statementId, List<List<ByteBuffer>> values, QueryOptions options)
+    {
+        super(Message.Type.ANN_BATCH);
+        this.statementId = statementId;
+        this.values = values;
+        this.options = options;
+    }
+
+    public Message.Response execute(QueryState state)
+    {
+        try
+        {
+            UUID tracingId = null;
+            if (isTracingRequested())
+            {
+                tracingId = UUIDGen.getTimeUUID();
+                state.prepareTracingSession(tracingId);
+            }
+
+            if (state.traceNextQuery())
+            {
+                state.createTracingSession();
+
+                ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+                builder.put("searches", Integer.toString(values.size()));
+                if(options.getConsistency() != null)
+                    builder.put("consistency_level", options.getConsistency().name());
+
+                Tracing.instance.begin("Execute batch of CQL3 ANN OF searches", state.getClientAddress(), builder.build());
+            }
+
+            QueryHandler handler = ClientState.getCQLQueryHandler();
+            ParsedStatement.Prepared prepared = handler.getPrepared(statementId);
+            if (prepared == null)
+                throw new PreparedQueryNotFoundException(statementId);
+            if (!(prepared.statement instanceof SelectStatement))
+                throw new InvalidRequestException("Invalid statement in ANN_BATCH: only SELECT statements are allowed.");
+            if (values.isEmpty())
+                throw new InvalidRequestException("ANN_BATCH messages must hold at least one search");
+
+            SelectStatement statement = (SelectStatement) prepared.statement;
+            List<Object> ids = Collections.<Object>nCopies(values.size(), statementId);
+            BatchQueryOptions batchOptions = BatchQueryOptions.withPerStatementVariables(options, values, ids);
+            List<QueryOptions> searchOptions = new ArrayList<>(values.size());
+            for (int i = 0; i < values.size(); i++)
+            {
+                batchOptions.prepareStatement(i, prepared.boundNames);
+                searchOptions.add(batchOptions.forStatement(i));
+            }
+
+            ResultMessage.Rows response = merge(statement, process(handler, statement, state, searchOptions));
+            if (options.skipMetadata())
+                response.result.metadata.setSkipMetadata();
+
+            if (tracingId != null)
+                response.setTracingId(tracingId);
+
+            return response;
+        }
+        catch (Exception e)
+        {
+            JVMStabilityInspector.inspectThrowable(e);
+            return ErrorMessage.fromException(e);
+        }
+        finally
+        {
+            Tracing.instance.stopSession();
+        }
+    }
+
+    /**
+     * Runs the searches through the configured query handler: together, so they share their range reads, when it is
+     * the default one, and one at a time otherwise since {@link QueryHandler} has no batch of searches.
+     */
+    private List<ResultMessage.Rows> process(QueryHandler handler, SelectStatement statement, QueryState state, List<QueryOptions> searchOptions)
+    throws RequestExecutionException, RequestValidationException
+    {
+        if (handler instanceof QueryProcessor)
+            return ((QueryProcessor) handler).processANNBatch(statement, state, searchOptions);
+
+        List<ResultMessage.Rows> results = new ArrayList<>(searchOptions.size());
+        for (QueryOptions searchOption : searchOptions)
+            results.add((ResultMessage.Rows) handler.processPrepared(statement, state, searchOption, getCustomPayload()));
+        return results;
+    }
+
+    /**
+     * @return the rows of every search, preceded by an int column holding the index of their search
+     */
+    private static ResultMessage.Rows merge(SelectStatement statement, List<ResultMessage.Rows> results)
+    {
+        List<ColumnSpecification> requested = results.get(0).result.metadata.requestNames();
+        List<ColumnSpecification> names = new ArrayList<>(requested.size() + 1);
+        names.add(new ColumnSpecification(statement.keyspace(),
+                                          statement.columnFamily(),
+                                          new ColumnIdentifier("[search]", true),
+                                          Int32Type.instance));
+        names.addAll(requested);
+
+        ResultSet merged = new ResultSet(names);
+        for (int i = 0; i < results.size(); i++)
+        {
+            ByteBuffer search = Int32Type.instance.decompose(i);
+            for (List<ByteBuffer> row : results.get(i).result.rows)
+            {
+                List<ByteBuffer> mergedRow = new ArrayList<>(names.size());
+                mergedRow.add(search);
+                mergedRow.addAll(row.subList(0, requested.size()));
+                merged.addRow(mergedRow);
+            }
+        }
+        return new ResultMessage.Rows(merged);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ANN_BATCH " + statementId + " of " + values.size() + " searches at consistency " + options.getConsistency();
+    }
+}
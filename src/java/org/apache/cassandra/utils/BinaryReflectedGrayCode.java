@@ -25,46 +25,30 @@ public class BinaryReflectedGrayCode implements Comparator<BitSet>
 {
     public int compare(BitSet gray1, BitSet gray2)
     {
-        long l1 = convert(BinaryReflectedGrayCodeUtil.grayToBinary(gray1));
-        long l2 = convert(BinaryReflectedGrayCodeUtil.grayToBinary(gray2));
+        long[] b1 = BinaryReflectedGrayCodeUtil.grayToBinary(gray1.toLongArray());
+        long[] b2 = BinaryReflectedGrayCodeUtil.grayToBinary(gray2.toLongArray());
 
-        if (l1 < l2)
-        {
-            return -1;
-        }
-        else if (l1 == l2)
-        {
-            return 0;
-        }
-        else
-        {
-            return 1;
-        }
+        return compareBinary(b1, b2);
     }
 
-    private static long convert(BitSet bits)
+    /**
+     * Compares two binary values packed into longs, least significant word first, as unsigned integers of any
+     * length. Words missing from the shorter value are zero.
+     */
+    public static int compareBinary(long[] b1, long[] b2)
     {
-        long value = 0L;
-        for (int i = 0; i < bits.length(); ++i)
+        for (int i = Math.max(b1.length, b2.length) - 1; i >= 0; i--)
         {
-            value += bits.get(i) ? (1L << i) : 0L;
+            long l1 = word(b1, i);
+            long l2 = word(b2, i);
+            if (l1 != l2)
+                return (l1 ^ Long.MIN_VALUE) < (l2 ^ Long.MIN_VALUE) ? -1 : 1;
         }
-        return value;
+        return 0;
     }
 
-    /*private static BitSet convert(long value)
+    private static long word(long[] words, int i)
     {
-        BitSet bits = new BitSet();
-        int index = 0;
-        while (value != 0L)
-        {
-            if (value % 2L != 0)
-            {
-                bits.set(index);
-            }
-            ++index;
-            value = value >>> 1;
-        }
-        return bits;
-    }*/
+        return i < words.length ? words[i] : 0L;
+    }
 }
@@ -58,4 +58,42 @@ public class BinaryReflectedGrayCodeUtil
             return binary;
         }
     }
+
+    /**
+     * Converts, in place, a Gray code packed into longs (least significant word first) to its binary value.
+     *
+     * Each bit of the binary value is the xor of all the Gray bits at or above it, which the shifts compute
+     * within a word in log2(64) steps; the parity of the higher words is then carried into the lower ones.
+     */
+    public static long[] grayToBinary(long[] words)
+    {
+        long carry = 0L;
+        for (int i = words.length - 1; i >= 0; i--)
+        {
+            long word = words[i];
+            word ^= word >>> 1;
+            word ^= word >>> 2;
+            word ^= word >>> 4;
+            word ^= word >>> 8;
+            word ^= word >>> 16;
+            word ^= word >>> 32;
+            word ^= carry;
+            words[i] = word;
+            carry = -(word & 1L);
+        }
+        return words;
+    }
+
+    /**
+     * Converts, in place, a binary value packed into longs (least significant word first) to its Gray code.
+     */
+    public static long[] binaryToGray(long[] words)
+    {
+        for (int i = 0; i < words.length; i++)
+        {
+            long higher = i + 1 < words.length ? words[i + 1] << 63 : 0L;
+            words[i] ^= (words[i] >>> 1) | higher;
+        }
+        return words;
+    }
 }
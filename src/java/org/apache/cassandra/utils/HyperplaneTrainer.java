@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Derives the hyperplanes of a {@link RandomHyperplaneHash} from a sample of keys, rather than drawing them at random.
+ *
+ * Random hyperplanes spend as many bits on directions the keys barely vary along as on the ones they spread over, so
+ * most keys share a few buckets. The trainer instead estimates the covariance of the keys in a single pass and cuts
+ * along their principal directions, the ones of largest variance.
+ *
+ * Since the hash only depends on the direction of a key, keys are normalized before being added. And since the
+ * hyperplanes all go through the origin, a direction shared by all the keys would put them on the same side of any
+ * hyperplane it is not parallel to: the mean of the keys is projected out of the covariance first, so that every
+ * hyperplane contains the mean and splits the keys around it.
+ *
+ * In {@link Mode#PCA} mode, hyperplane {@code j} is normal to the {@code j}th principal direction, so the first bits
+ * of the hash, hence the top of the ring, split the keys along their largest variations. In {@link Mode#BALANCED}
+ * mode, the principal directions are randomly rotated into orthogonal projections of similar variances, so that every
+ * bit is as informative as any other. In both modes, bits beyond the rank of the covariance get random combinations
+ * of the principal directions, weighted by their standard deviations.
+ */
+public class HyperplaneTrainer
+{
+    public enum Mode
+    {
+        PCA, BALANCED
+    }
+
+    // eigenvalues below this fraction of the largest one are rounding noise rather than directions of the keys
+    private static final double RANK_TOLERANCE = 1e-9;
+    private static final int MAX_SWEEPS = 100;
+
+    private final int dimension;
+    private final StreamingCovariance covariance;
+    private final double[] vector;
+
+    public HyperplaneTrainer(int dimension)
+    {
+        this.dimension = dimension;
+        this.covariance = new StreamingCovariance(dimension);
+        this.vector = new double[dimension];
+    }
+
+    /**
+     * @return the number of keys added so far
+     */
+    public long count()
+    {
+        return covariance.count();
+    }
+
+    /**
+     * Adds a key to the sample.
+     *
+     * @param key a vector, between its position and limit
+     * @param encoding the encoding of the key, that of its type
+     * @return {@code false} if the key was skipped, being of another size than a vector of the dimension, or zero
+     */
+    public boolean add(ByteBuffer key, VectorEncoding encoding)
+    {
+        if (key.remaining() != encoding.serializedSize(dimension))
+            return false;
+
+        for (int i = 0; i < dimension; i++)
+            vector[i] = encoding.get(key, key.position(), i);
+        return add(vector);
+    }
+
+    /**
+     * Adds a vector to the sample.
+     *
+     * @return {@code false} if the vector was skipped, being zero
+     */
+    public boolean add(double[] vector)
+    {
+        assert vector.length == dimension;
+        double norm = norm(vector);
+        if (norm == 0.0)
+            return false;
+
+        for (int i = 0; i < dimension; i++)
+            this.vector[i] = vector[i] / norm;
+        covariance.add(this.vector);
+        return true;
+    }
+
+    /**
+     * @param bits the number of hyperplanes, i.e. {@code identifier_length}
+     * @param mode how to derive the hyperplanes from the principal directions
+     * @param random the source of the rotations and of the hyperplanes beyond the rank of the covariance
+     * @return {@code bits} unit normals of hyperplanes
+     * @throws IllegalStateException if the keys added do not vary in any direction
+     */
+    public double[][] train(int bits, Mode mode, Random random)
+    {
+        if (bits <= 0)
+            throw new IllegalArgumentException("The number of hyperplanes must be positive: " + bits);
+        if (covariance.count() < 2)
+            throw new IllegalStateException("At least two non-zero keys are needed to train hyperplanes, got " + covariance.count());
+
+        double[][] matrix = covariance.covariance();
+        double[] mean = covariance.mean();
+        double meanNorm = norm(mean);
+        if (meanNorm > 0.0)
+        {
+            for (int i = 0; i < dimension; i++)
+                mean[i] /= meanNorm;
+            projectOut(matrix, mean);
+        }
+
+        double[] values = new double[dimension];
+        double[][] vectors = new double[dimension][dimension];
+        eigen(matrix, values, vectors);
+
+        // principal directions, by decreasing variance, as rows
+        Integer[] order = new Integer[dimension];
+        for (int i = 0; i < dimension; i++)
+            order[i] = i;
+        final double[] eigenvalues = values;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer i, Integer j)
+            {
+                return Double.compare(eigenvalues[j], eigenvalues[i]);
+            }
+        });
+
+        int rank = 0;
+        while (rank < dimension && values[order[rank]] > RANK_TOLERANCE * values[order[0]])
+            rank++;
+        if (rank == 0)
+            throw new IllegalStateException("The sampled keys all have the same direction, there is nothing to split");
+
+        double[][] principal = new double[rank][dimension];
+        double[] deviations = new double[rank];
+        for (int r = 0; r < rank; r++)
+        {
+            for (int i = 0; i < dimension; i++)
+                principal[r][i] = vectors[i][order[r]];
+            deviations[r] = Math.sqrt(values[order[r]]);
+        }
+
+        int k = Math.min(bits, rank);
+        double[][] hyperplanes = new double[bits][];
+        double[][] rotation = mode == Mode.BALANCED ? randomRotation(k, random) : null;
+        for (int j = 0; j < k; j++)
+        {
+            if (rotation == null)
+            {
+                hyperplanes[j] = principal[j].clone();
+            }
+            else
+            {
+                hyperplanes[j] = new double[dimension];
+                for (int r = 0; r < k; r++)
+                    addScaled(hyperplanes[j], principal[r], rotation[j][r]);
+            }
+        }
+        for (int j = k; j < bits; j++)
+        {
+            hyperplanes[j] = new double[dimension];
+            for (int r = 0; r < rank; r++)
+                addScaled(hyperplanes[j], principal[r], random.nextGaussian() * deviations[r]);
+        }
+
+        for (double[] hyperplane : hyperplanes)
+        {
+            double norm = norm(hyperplane);
+            for (int i = 0; i < dimension; i++)
+                hyperplane[i] /= norm;
+        }
+        return hyperplanes;
+    }
+
+    /**
+     * Replaces the symmetric matrix {@code C} by {@code PCP}, where {@code P = I - uu'} projects on the hyperplane
+     * normal to the unit vector {@code u}.
+     */
+    private static void projectOut(double[][] matrix, double[] u)
+    {
+        int n = u.length;
+        double[] cu = new double[n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                cu[i] += matrix[i][j] * u[j];
+        double ucu = 0.0;
+        for (int i = 0; i < n; i++)
+            ucu += u[i] * cu[i];
+
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                matrix[i][j] += ucu * u[i] * u[j] - u[i] * cu[j] - cu[i] * u[j];
+    }
+
+    /**
+     * Diagonalizes a symmetric matrix with the cyclic Jacobi eigenvalue algorithm, which is accurate and simple, and
+     * fast enough for the dimensions of vector keys. The matrix is overwritten.
+     *
+     * @param values receives the eigenvalues, in no particular order
+     * @param vectors receives the matching unit eigenvectors, as columns
+     */
+    static void eigen(double[][] matrix, double[] values, double[][] vectors)
+    {
+        int n = matrix.length;
+        for (int i = 0; i < n; i++)
+        {
+            Arrays.fill(vectors[i], 0.0);
+            vectors[i][i] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++)
+        {
+            double diagonal = 0.0, offDiagonal = 0.0;
+            for (int p = 0; p < n; p++)
+            {
+                diagonal += matrix[p][p] * matrix[p][p];
+                for (int q = p + 1; q < n; q++)
+                    offDiagonal += matrix[p][q] * matrix[p][q];
+            }
+            if (offDiagonal <= 1e-30 * diagonal)
+                break;
+
+            for (int p = 0; p < n; p++)
+            {
+                for (int q = p + 1; q < n; q++)
+                {
+                    if (matrix[p][q] == 0.0)
+                        continue;
+
+                    // the rotation by the smallest angle zeroing matrix[p][q]
+                    double theta = (matrix[q][q] - matrix[p][p]) / (2 * matrix[p][q]);
+                    double t = theta == 0.0 ? 1.0 : Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    double c = 1 / Math.sqrt(t * t + 1);
+                    double s = t * c;
+
+                    for (int k = 0; k < n; k++)
+                    {
+                        double kp = matrix[k][p], kq = matrix[k][q];
+                        matrix[k][p] = c * kp - s * kq;
+                        matrix[k][q] = s * kp + c * kq;
+                    }
+                    for (int k = 0; k < n; k++)
+                    {
+                        double pk = matrix[p][k], qk = matrix[q][k];
+                        matrix[p][k] = c * pk - s * qk;
+                        matrix[q][k] = s * pk + c * qk;
+                    }
+                    for (int k = 0; k < n; k++)
+                    {
+                        double kp = vectors[k][p], kq = vectors[k][q];
+                        vectors[k][p] = c * kp - s * kq;
+                        vectors[k][q] = s * kp + c * kq;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++)
+            values[i] = matrix[i][i];
+    }
+
+    /**
+     * @return a random orthogonal matrix, whose rows are orthonormalized gaussian vectors
+     */
+    private static double[][] randomRotation(int n, Random random)
+    {
+        double[][] rows = new double[n][n];
+        for (int i = 0; i < n; i++)
+        {
+            double norm;
+            do
+            {
+                for (int j = 0; j < n; j++)
+                    rows[i][j] = random.nextGaussian();
+                // Gram-Schmidt against the previous rows
+                for (int r = 0; r < i; r++)
+                    addScaled(rows[i], rows[r], -dot(rows[i], rows[r]));
+                norm = norm(rows[i]);
+            }
+            while (norm < 1e-6);
+
+            for (int j = 0; j < n; j++)
+                rows[i][j] /= norm;
+        }
+        return rows;
+    }
+
+    private static void addScaled(double[] to, double[] vector, double scale)
+    {
+        for (int i = 0; i < to.length; i++)
+            to[i] += vector[i] * scale;
+    }
+
+    private static double dot(double[] v1, double[] v2)
+    {
+        double sum = 0.0;
+        for (int i = 0; i < v1.length; i++)
+            sum += v1[i] * v2[i];
+        return sum;
+    }
+
+    private static double norm(double[] vector)
+    {
+        return Math.sqrt(dot(vector, vector));
+    }
+}
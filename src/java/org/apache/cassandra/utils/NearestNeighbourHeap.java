@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the {@code k} values offered with the smallest distances.
+ *
+ * The values are held in a binary max-heap on their distance, stored in two parallel arrays that grow up to
+ * {@code k} entries, so offering a value never boxes its distance and only allocates while the heap fills up. Once
+ * the heap is full, a value is only kept if it is closer than the farthest one held, which it then replaces.
+ */
+public class NearestNeighbourHeap<T>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    private double[] distances;
+    private Object[] values;
+    private int size;
+
+    /**
+     * @param k the number of values to keep
+     */
+    public NearestNeighbourHeap(int k)
+    {
+        if (k < 0)
+            throw new IllegalArgumentException("The number of values to keep must be positive, got " + k);
+
+        this.k = k;
+        this.distances = new double[Math.min(k, INITIAL_CAPACITY)];
+        this.values = new Object[distances.length];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the heap holds {@code k} values, so that only closer values can still be kept
+     */
+    public boolean isFull()
+    {
+        return size == k;
+    }
+
+    /**
+     * @return the distance of the farthest value held
+     */
+    public double farthest()
+    {
+        if (size == 0)
+            throw new IllegalStateException("The heap is empty");
+        return distances[0];
+    }
+
+    /**
+     * Offers a value to the heap.
+     *
+     * @return {@code true} if the value is among the {@code k} closest seen so far, {@code false} otherwise
+     */
+    public boolean offer(double distance, T value)
+    {
+        if (size < k)
+        {
+            if (size == distances.length)
+                grow();
+            siftUp(size++, distance, value);
+            return true;
+        }
+
+        if (size == 0 || distance >= distances[0])
+            return false;
+
+        siftDown(0, distance, value);
+        return true;
+    }
+
+    /**
+     * Empties the heap, returning the values it held ordered by increasing distance.
+     */
+    public List<T> drain()
+    {
+        int n = size;
+        // the heap sort leaves the farthest value at the end of the arrays
+        while (size > 1)
+        {
+            double distance = distances[--size];
+            Object value = values[size];
+            distances[size] = distances[0];
+            values[size] = values[0];
+            siftDown(0, distance, value);
+        }
+        size = 0;
+
+        List<T> sorted = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+        {
+            sorted.add(value(i));
+            values[i] = null;
+        }
+        return sorted;
+    }
+
+    private void grow()
+    {
+        int capacity = (int) Math.min(k, 2L * distances.length);
+        distances = Arrays.copyOf(distances, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int i)
+    {
+        return (T) values[i];
+    }
+
+    private void siftUp(int i, double distance, Object value)
+    {
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] >= distance)
+                break;
+            distances[i] = distances[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        distances[i] = distance;
+        values[i] = value;
+    }
+
+    private void siftDown(int i, double distance, Object value)
+    {
+        int half = size >>> 1;
+        while (i < half)
+        {
+            int child = (i << 1) + 1;
+            if (child + 1 < size && distances[child + 1] > distances[child])
+                child++;
+            if (distance >= distances[child])
+                break;
+            distances[i] = distances[child];
+            values[i] = values[child];
+            i = child;
+        }
+        distances[i] = distance;
+        values[i] = value;
+    }
+}
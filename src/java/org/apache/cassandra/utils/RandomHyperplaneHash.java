@@ -19,91 +19,270 @@
 package org.apache.cassandra.utils;
 
 import java.nio.ByteBuffer;
-import java.nio.DoubleBuffer;
 import java.util.BitSet;
 import java.util.Random;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 
+/**
+ * Random hyperplane (sign random projection) hash of a vector.
+ *
+ * Bit {@code j} of the hash is set when the key lies on the non-negative side of hyperplane {@code j}. The
+ * hyperplanes are flattened once, at construction, into a single row-major array, and keys are read in place
+ * from their ByteBuffer, so hashing a key allocates nothing beyond the words it returns. Keys can use any of the
+ * {@link VectorEncoding}s, told apart by their size: INT8 keys are hashed without being dequantized, since their
+ * non-negative scale does not change the sign of a dot product.
+ *
+ * The hash is packed into longs the same way {@link BitSet#toLongArray()} does: bit {@code j} lives in word
+ * {@code j / 64}, at position {@code j % 64}.
+ */
 public class RandomHyperplaneHash
 {
-    public BitSet rhh(ByteBuffer key)
+    private final int bits;
+    private final int dimension;
+    // hyperplane j occupies [j * dimension, (j + 1) * dimension)
+    private final double[] hyperplanes;
+    private final double[] norms;
+    private final long fingerprint;
+
+    public RandomHyperplaneHash()
     {
-        return rhh(key, DatabaseDescriptor.getIdentifierLength(), DatabaseDescriptor.getVectors());
+        this(DatabaseDescriptor.getVectors());
     }
 
-    private static BitSet rhh(ByteBuffer key, int bits, double[][] vectors)
+    public RandomHyperplaneHash(double[][] vectors)
     {
-        int dimension = key.capacity() / 8;
+        if (vectors.length == 0)
+            throw new IllegalArgumentException("At least one hyperplane is required");
 
-        double[] vectorKey = getVectorKey(key, dimension);
+        this.bits = vectors.length;
+        this.dimension = vectors[0].length;
+        this.hyperplanes = new double[bits * dimension];
+        this.norms = new double[bits];
 
-        BitSet hash = new BitSet(bits);
+        for (int j = 0; j < bits; j++)
+        {
+            if (vectors[j].length != dimension)
+                throw new IllegalArgumentException(String.format("Hyperplane %d has %d dimensions, expected %d",
+                                                                 j, vectors[j].length, dimension));
+            System.arraycopy(vectors[j], 0, hyperplanes, j * dimension, dimension);
+            double squared = 0.0;
+            for (double component : vectors[j])
+                squared += component * component;
+            norms[j] = Math.sqrt(squared);
+        }
+        this.fingerprint = fingerprint(bits, dimension, hyperplanes);
+    }
 
-        double sum;
+    private static long fingerprint(int bits, int dimension, double[] hyperplanes)
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(8 + hyperplanes.length * 8);
+        bytes.putInt(bits).putInt(dimension);
+        for (double component : hyperplanes)
+            bytes.putDouble(component);
+        long hash = MurmurHash.hash2_64(bytes, 0, bytes.capacity(), 0);
+        // zero stands for unknown hyperplanes
+        return hash == 0 ? 1 : hash;
+    }
 
-        int i = 0;
-        int j = 0;
+    /**
+     * @return the number of bits of the hash, one per hyperplane
+     */
+    public int bits()
+    {
+        return bits;
+    }
 
-        while (i < vectors.length)
-        {
-            sum = scalarProduct(vectorKey, vectors[i]);
-            if (sum >= 0.0)
-            {
-                hash.set(j, true);
-            }
-            else
-            {
-                hash.set(j, false);
-            }
-            i++;
-            j++;
-        }
+    /**
+     * @return the number of longs needed to hold a hash
+     */
+    public int words()
+    {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * @return the number of dimensions of the hyperplanes
+     */
+    public int dimension()
+    {
+        return dimension;
+    }
 
-        return hash;
+    /**
+     * @return a non-zero hash of the hyperplanes, telling apart the hashes keys were placed with
+     */
+    public long fingerprint()
+    {
+        return fingerprint;
+    }
+
+    public BitSet rhh(ByteBuffer key)
+    {
+        return BitSet.valueOf(hash(key));
     }
 
     public BitSet rhh()
     {
-        return rhh(DatabaseDescriptor.getIdentifierLength(), DatabaseDescriptor.getVectors());
+        return BitSet.valueOf(randomHash());
     }
 
-    private static BitSet rhh(int bits, double[][] vectors)
+    /**
+     * Hashes a key read as doubles, the way the {@link org.apache.cassandra.dht.SimilarityPartitioner} hashes every
+     * partition key since it does not know their types.
+     *
+     * @param key a vector of doubles, between its position and limit
+     * @return the packed hash of the key
+     */
+    public long[] hash(ByteBuffer key)
     {
-        Random seed = new Random();
-        // TODO get size of byte array dynamically, size 6
-        byte[] bytes = new byte[6 * 8];
-        seed.nextBytes(bytes);
-        ByteBuffer key = ByteBuffer.wrap(bytes);
+        return hash(key, VectorEncoding.DOUBLE);
+    }
 
-        return rhh(key, bits, vectors);
+    /**
+     * @param key a vector in the specified encoding, between its position and limit
+     * @param encoding the encoding of the key, that of its type
+     * @return the packed hash of the key
+     */
+    public long[] hash(ByteBuffer key, VectorEncoding encoding)
+    {
+        long[] words = new long[words()];
+        hash(key, encoding, words);
+        return words;
     }
 
-    private static double[] getVectorKey(ByteBuffer key, int dimension)
+    /**
+     * Writes the packed hash of the key into the given words, without modifying the key's position. Components of the
+     * key beyond the hyperplanes' dimension are ignored, missing ones are treated as zero.
+     *
+     * @param key a vector in the specified encoding, between its position and limit
+     * @param encoding the encoding of the key, that of its type
+     * @param words destination, of at least {@link #words()} longs
+     */
+    public void hash(ByteBuffer key, VectorEncoding encoding, long[] words)
     {
-        DoubleBuffer buffer = ((ByteBuffer) key.rewind()).asDoubleBuffer();
-        double[] vector = new double[dimension];
+        int n = Math.min(encoding.dimension(key.remaining()), dimension);
 
-        int i = 0;
-        while (buffer.hasRemaining())
+        long word = 0L;
+        for (int j = 0, offset = 0; j < bits; j++, offset += dimension)
         {
-            vector[i] = buffer.get();
-            i++;
+            if (project(key, encoding, n, offset) >= 0.0)
+                word |= 1L << j;
+
+            if ((j & 63) == 63)
+            {
+                words[j >>> 6] = word;
+                word = 0L;
+            }
         }
+        if ((bits & 63) != 0)
+            words[bits >>> 6] = word;
+    }
+
+    /**
+     * Returns the angles between a key read as doubles and each hyperplane.
+     *
+     * @see #angles(ByteBuffer, VectorEncoding)
+     */
+    public double[] angles(ByteBuffer key)
+    {
+        return angles(key, VectorEncoding.DOUBLE);
+    }
+
+    /**
+     * Returns the angle, in radians, between the key and each hyperplane. A vector whose hash differs from the key's
+     * in bit {@code j} lies on the other side of hyperplane {@code j}, hence at an angle of at least
+     * {@code angles[j]} from the key. The angles are 0 for a zero key.
+     *
+     * @param key a vector in the specified encoding, between its position and limit
+     * @param encoding the encoding of the key, that of its type
+     * @return the angles between the key and the hyperplanes, indexed like the bits of the hash
+     */
+    public double[] angles(ByteBuffer key, VectorEncoding encoding)
+    {
+        int n = Math.min(encoding.dimension(key.remaining()), dimension);
 
-        return vector;
+        // the components are read as project() reads them, so INT8 keys keep their common scale out of both sides
+        double norm = Math.sqrt(squaredNorm(key, encoding, n));
+        double[] angles = new double[bits];
+        if (norm == 0.0)
+            return angles;
+
+        for (int j = 0, offset = 0; j < bits; j++, offset += dimension)
+        {
+            if (norms[j] != 0.0)
+                angles[j] = Math.asin(Math.min(1.0, Math.abs(project(key, encoding, n, offset)) / (norm * norms[j])));
+        }
+        return angles;
     }
 
-    private static double scalarProduct(double[] v1, double[] v2)
+    private static double squaredNorm(ByteBuffer key, VectorEncoding encoding, int n)
     {
-        double scalarProduct = 0;
+        int position = key.position();
+        double sum = 0.0;
+        switch (encoding)
+        {
+            case DOUBLE:
+                for (int i = 0; i < n; i++)
+                {
+                    double x = key.getDouble(position + (i << 3));
+                    sum += x * x;
+                }
+                break;
+            case FLOAT:
+                for (int i = 0; i < n; i++)
+                {
+                    double x = key.getFloat(position + (i << 2));
+                    sum += x * x;
+                }
+                break;
+            case INT8:
+                position += 4;
+                for (int i = 0; i < n; i++)
+                {
+                    double x = key.get(position + i);
+                    sum += x * x;
+                }
+                break;
+        }
+        return sum;
+    }
 
-        for (int i = 0; i < v1.length; i++)
+    /**
+     * @return the dot product of the first {@code n} components of the key and of the hyperplane starting at
+     * {@code offset}, up to a positive factor
+     */
+    private double project(ByteBuffer key, VectorEncoding encoding, int n, int offset)
+    {
+        int position = key.position();
+        double sum = 0.0;
+        switch (encoding)
         {
-            scalarProduct = scalarProduct + (v1[i] * v2[i]);
+            case DOUBLE:
+                for (int i = 0; i < n; i++)
+                    sum += key.getDouble(position + (i << 3)) * hyperplanes[offset + i];
+                break;
+            case FLOAT:
+                for (int i = 0; i < n; i++)
+                    sum += key.getFloat(position + (i << 2)) * hyperplanes[offset + i];
+                break;
+            case INT8:
+                position += 4;
+                for (int i = 0; i < n; i++)
+                    sum += key.get(position + i) * hyperplanes[offset + i];
+                break;
         }
+        return sum;
+    }
 
-        return scalarProduct;
+    /**
+     * @return the packed hash of a random vector
+     */
+    public long[] randomHash()
+    {
+        byte[] bytes = new byte[dimension * 8];
+        new Random().nextBytes(bytes);
+        return hash(ByteBuffer.wrap(bytes));
     }
 
     /*private static double[][] getVectors(int bits, int dimension)
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+/**
+ * Mean and covariance matrix of a stream of vectors, updated one vector at a time in a single pass.
+ *
+ * The algorithm is Welford's online update, generalized to co-moments, which does not suffer from the cancellation
+ * of the naive sum of squares:
+ * B. P. Welford, "Note on a method for calculating corrected sums of squares and products" (1962)
+ *
+ * Only the upper triangle of the co-moment matrix is maintained, so adding a vector costs {@code d(d+1)/2}
+ * multiplications for {@code d} dimensions.
+ */
+public class StreamingCovariance
+{
+    private final int dimension;
+    private final double[] mean;
+    // co-moment of components i <= j at [i * dimension + j]
+    private final double[] comoments;
+    private final double[] delta;
+    private long count;
+
+    public StreamingCovariance(int dimension)
+    {
+        if (dimension <= 0)
+            throw new IllegalArgumentException("Dimension must be positive: " + dimension);
+        this.dimension = dimension;
+        this.mean = new double[dimension];
+        this.comoments = new double[dimension * dimension];
+        this.delta = new double[dimension];
+    }
+
+    public int dimension()
+    {
+        return dimension;
+    }
+
+    /**
+     * @return the number of vectors added so far
+     */
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * Adds a vector to the stream.
+     *
+     * @param vector a vector of {@link #dimension()} components
+     */
+    public void add(double[] vector)
+    {
+        assert vector.length == dimension;
+        count++;
+        for (int i = 0; i < dimension; i++)
+        {
+            // deviation from the mean before the update...
+            delta[i] = vector[i] - mean[i];
+            mean[i] += delta[i] / count;
+        }
+        for (int i = 0; i < dimension; i++)
+        {
+            int row = i * dimension;
+            // ...times the deviation from the mean after it
+            for (int j = i; j < dimension; j++)
+                comoments[row + j] += delta[i] * (vector[j] - mean[j]);
+        }
+    }
+
+    /**
+     * @return a copy of the mean of the vectors added so far
+     */
+    public double[] mean()
+    {
+        return mean.clone();
+    }
+
+    /**
+     * @return the sample covariance matrix of the vectors added so far, all zeros if less than two were added
+     */
+    public double[][] covariance()
+    {
+        double[][] covariance = new double[dimension][dimension];
+        if (count < 2)
+            return covariance;
+
+        for (int i = 0; i < dimension; i++)
+        {
+            for (int j = i; j < dimension; j++)
+            {
+                double c = comoments[i * dimension + j] / (count - 1);
+                covariance[i][j] = c;
+                covariance[j][i] = c;
+            }
+        }
+        return covariance;
+    }
+}
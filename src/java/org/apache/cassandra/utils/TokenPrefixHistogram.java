@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.ISerializer;
+import org.apache.cassandra.io.util.DataOutputPlus;
+
+/**
+ * Counts of keys by the most significant bits of their token, in ring order. A histogram can also sum a quantity
+ * other than the number of keys, such as their size.
+ *
+ * Histograms of the same number of prefix bits can be merged, so that the distribution of the keys of a table, or of
+ * a whole node, is the sum of the histograms of its sstables. The empty histogram, which has no bucket, stands for
+ * sstables whose partitioner does not keep one.
+ */
+public class TokenPrefixHistogram
+{
+    public static final TokenPrefixHistogramSerializer serializer = new TokenPrefixHistogramSerializer();
+
+    /**
+     * The number of prefix bits of the histograms kept in the sstable metadata
+     */
+    public static final int DEFAULT_PREFIX_BITS = 8;
+
+    private final long[] buckets;
+
+    public TokenPrefixHistogram(int prefixBits)
+    {
+        this(new long[1 << prefixBits]);
+    }
+
+    private TokenPrefixHistogram(long[] buckets)
+    {
+        this.buckets = buckets;
+    }
+
+    public static TokenPrefixHistogram empty()
+    {
+        return new TokenPrefixHistogram(new long[0]);
+    }
+
+    public boolean isEmpty()
+    {
+        return buckets.length == 0;
+    }
+
+    /**
+     * @return the number of buckets, {@code 2^prefixBits}
+     */
+    public int size()
+    {
+        return buckets.length;
+    }
+
+    public int prefixBits()
+    {
+        return Integer.numberOfTrailingZeros(buckets.length);
+    }
+
+    public long get(int prefix)
+    {
+        return buckets[prefix];
+    }
+
+    public void add(int prefix)
+    {
+        buckets[prefix]++;
+    }
+
+    public void add(int prefix, long value)
+    {
+        buckets[prefix] += value;
+    }
+
+    /**
+     * Adds the counts of another histogram of the same number of prefix bits to this one.
+     */
+    public TokenPrefixHistogram merge(TokenPrefixHistogram other)
+    {
+        assert other.buckets.length == buckets.length;
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] += other.buckets[i];
+        return this;
+    }
+
+    public long total()
+    {
+        long total = 0;
+        for (long count : buckets)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof TokenPrefixHistogram))
+            return false;
+
+        return Arrays.equals(buckets, ((TokenPrefixHistogram) o).buckets);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(buckets);
+    }
+
+    /**
+     * Only the non-empty buckets are serialized, as sstables seldom cover the whole ring evenly.
+     */
+    public static class TokenPrefixHistogramSerializer implements ISerializer<TokenPrefixHistogram>
+    {
+        public void serialize(TokenPrefixHistogram histogram, DataOutputPlus out) throws IOException
+        {
+            out.writeInt(histogram.buckets.length);
+            out.writeInt(nonEmptyBuckets(histogram));
+            for (int i = 0; i < histogram.buckets.length; i++)
+            {
+                if (histogram.buckets[i] == 0)
+                    continue;
+                out.writeInt(i);
+                out.writeLong(histogram.buckets[i]);
+            }
+        }
+
+        public TokenPrefixHistogram deserialize(DataInput in) throws IOException
+        {
+            long[] buckets = new long[in.readInt()];
+            int nonEmpty = in.readInt();
+            for (int i = 0; i < nonEmpty; i++)
+            {
+                int prefix = in.readInt();
+                buckets[prefix] = in.readLong();
+            }
+            return new TokenPrefixHistogram(buckets);
+        }
+
+        public long serializedSize(TokenPrefixHistogram histogram, TypeSizes typeSizes)
+        {
+            // size of entries = count * (4(int) + 8(long))
+            return typeSizes.sizeof(histogram.buckets.length) + typeSizes.sizeof(0) + nonEmptyBuckets(histogram) * (4L + 8L);
+        }
+
+        private static int nonEmptyBuckets(TokenPrefixHistogram histogram)
+        {
+            int count = 0;
+            for (long bucket : histogram.buckets)
+            {
+                if (bucket != 0)
+                    count++;
+            }
+            return count;
+        }
+    }
+}
@@ -79,6 +79,14 @@ public class TopKSampler<T>
         return new SamplerResult<T>(results, cardinality);
     }
 
+    /**
+     * @return true while samples are recorded, so that callers can skip building items that would be ignored
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
     public void addSample(T item)
     {
         addSample(item, item.hashCode(), 1);
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The ways a vector can be serialized, from the most precise to the most compact:
+ * <ul>
+ *   <li>{@code DOUBLE}: big-endian doubles, 8 bytes per component;</li>
+ *   <li>{@code FLOAT}: big-endian floats, 4 bytes per component;</li>
+ *   <li>{@code INT8}: a big-endian float scale followed by one signed byte per component, component {@code i} being
+ *   {@code byte[i] * scale}. Vectors are quantized symmetrically, their largest component in absolute value mapping
+ *   to 127.</li>
+ * </ul>
+ * A serialized vector does not tell its encoding, which is that of its type: see
+ * {@link org.apache.cassandra.db.marshal.VectorType#encodingOf}.
+ */
+public enum VectorEncoding
+{
+    DOUBLE
+    {
+        public int serializedSize(int dimension)
+        {
+            return dimension << 3;
+        }
+
+        public int dimension(int size)
+        {
+            return size >>> 3;
+        }
+
+        public double get(ByteBuffer bytes, int position, int i)
+        {
+            return bytes.getDouble(position + (i << 3));
+        }
+
+        public void encode(double[] vector, ByteBuffer bytes, int position)
+        {
+            for (int i = 0; i < vector.length; i++)
+                bytes.putDouble(position + (i << 3), vector[i]);
+        }
+    },
+    FLOAT
+    {
+        public int serializedSize(int dimension)
+        {
+            return dimension << 2;
+        }
+
+        public int dimension(int size)
+        {
+            return size >>> 2;
+        }
+
+        public double get(ByteBuffer bytes, int position, int i)
+        {
+            return bytes.getFloat(position + (i << 2));
+        }
+
+        public void encode(double[] vector, ByteBuffer bytes, int position)
+        {
+            for (int i = 0; i < vector.length; i++)
+                bytes.putFloat(position + (i << 2), (float) vector[i]);
+        }
+    },
+    INT8
+    {
+        public int serializedSize(int dimension)
+        {
+            return 4 + dimension;
+        }
+
+        public int dimension(int size)
+        {
+            return Math.max(size - 4, 0);
+        }
+
+        public double get(ByteBuffer bytes, int position, int i)
+        {
+            return bytes.get(position + 4 + i) * (double) bytes.getFloat(position);
+        }
+
+        public void encode(double[] vector, ByteBuffer bytes, int position)
+        {
+            double max = 0.0;
+            for (double component : vector)
+                max = Math.max(max, Math.abs(component));
+
+            float scale = (float) (max / 127);
+            bytes.putFloat(position, scale);
+            for (int i = 0; i < vector.length; i++)
+                bytes.put(position + 4 + i, scale == 0f ? 0 : (byte) Math.max(-127, Math.min(127, Math.round(vector[i] / scale))));
+        }
+    };
+
+    /**
+     * @return the size in bytes of a vector of the specified dimension
+     */
+    public abstract int serializedSize(int dimension);
+
+    /**
+     * @return the dimension of a vector serialized in the specified number of bytes
+     */
+    public abstract int dimension(int size);
+
+    /**
+     * Reads the {@code i}th component of a vector serialized from the specified position, without modifying the
+     * buffer position.
+     */
+    public abstract double get(ByteBuffer bytes, int position, int i);
+
+    /**
+     * Writes a vector from the specified position, without modifying the buffer position.
+     */
+    public abstract void encode(double[] vector, ByteBuffer bytes, int position);
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Exact distances between vectors of doubles serialized the way {@link RandomHyperplaneHash} reads them: big-endian
+ * doubles starting at the buffer position. Buffers are read in place and their positions are left untouched.
+ *
+ * When the two vectors have different lengths, only their common leading components are compared.
+ *
+ * The methods taking a dimension read each vector in the {@link VectorEncoding} of its type, and compare INT8
+ * vectors on their quantized components directly.
+ */
+public final class VectorUtil
+{
+    private VectorUtil()
+    {
+    }
+
+    /**
+     * @return the number of components of the vector held by the specified buffer
+     */
+    public static int dimension(ByteBuffer vector)
+    {
+        return vector.remaining() >>> 3;
+    }
+
+    public static double dot(ByteBuffer v1, ByteBuffer v2)
+    {
+        int p1 = v1.position();
+        int p2 = v2.position();
+        int n = Math.min(dimension(v1), dimension(v2));
+
+        double sum = 0.0;
+        for (int i = 0; i < n; i++)
+            sum += v1.getDouble(p1 + (i << 3)) * v2.getDouble(p2 + (i << 3));
+        return sum;
+    }
+
+    /**
+     * Returns the cosine distance, {@code 1 - cos(v1, v2)}, between two vectors. It ranges from 0 (same direction)
+     * to 2 (opposite directions) and is the distance approximated by random hyperplane hashing. A zero vector has
+     * no direction and is at distance 1 of any other vector.
+     */
+    public static double cosineDistance(ByteBuffer v1, ByteBuffer v2)
+    {
+        int p1 = v1.position();
+        int p2 = v2.position();
+        int n = Math.min(dimension(v1), dimension(v2));
+
+        double dot = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            double x = v1.getDouble(p1 + (i << 3));
+            double y = v2.getDouble(p2 + (i << 3));
+            dot += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0)
+            return 1.0;
+
+        return 1.0 - dot / Math.sqrt(norm1 * norm2);
+    }
+
+    /**
+     * Returns the cosine distance between two vectors of the specified dimension, each of them in the
+     * {@link VectorEncoding} of its type. The vectors are compared on their common dimension, up to {@code dimension}.
+     *
+     * @see #cosineDistance(ByteBuffer, ByteBuffer)
+     */
+    public static double cosineDistance(ByteBuffer v1, VectorEncoding e1, ByteBuffer v2, VectorEncoding e2, int dimension)
+    {
+        if (e1 == VectorEncoding.DOUBLE && e2 == VectorEncoding.DOUBLE)
+            return cosineDistance(v1, v2);
+        int n = Math.min(dimension, Math.min(e1.dimension(v1.remaining()), e2.dimension(v2.remaining())));
+        if (e1 == VectorEncoding.INT8 && e2 == VectorEncoding.INT8)
+            return int8CosineDistance(v1, v2, n);
+
+        int p1 = v1.position();
+        int p2 = v2.position();
+
+        double dot = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            double x = e1.get(v1, p1, i);
+            double y = e2.get(v2, p2, i);
+            dot += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0)
+            return 1.0;
+
+        return 1.0 - dot / Math.sqrt(norm1 * norm2);
+    }
+
+    /**
+     * The scales of two INT8 vectors cancel out of their cosine, which can thus be computed on integers.
+     */
+    private static double int8CosineDistance(ByteBuffer v1, ByteBuffer v2, int dimension)
+    {
+        int p1 = v1.position() + 4;
+        int p2 = v2.position() + 4;
+
+        long dot = 0;
+        long norm1 = 0;
+        long norm2 = 0;
+        for (int i = 0; i < dimension; i++)
+        {
+            int x = v1.get(p1 + i);
+            int y = v2.get(p2 + i);
+            dot += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+
+        if (norm1 == 0 || norm2 == 0)
+            return 1.0;
+
+        return 1.0 - dot / Math.sqrt((double) norm1 * norm2);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.test.microbench;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.locator.TokenMetadata;
+import org.apache.cassandra.serializers.BinarySerializer;
+import org.apache.cassandra.utils.RandomHyperplaneHash;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The primitives run for every key under the SimilarityPartitioner. Run with the gc profiler (the default of the
+ * microbench target) to get the bytes allocated per operation alongside the time:
+ * <pre>
+ * ant microbench -Dbenchmark.name=SimilarityPartitionerBench
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512M")
+@Threads(1)
+@State(Scope.Benchmark)
+public class SimilarityPartitionerBench
+{
+    @Param({"16", "128"})
+    private int dimension;
+
+    @Param({"32", "64", "256"})
+    private int identifierLength;
+
+    @Param({"1024", "65536"})
+    private int keyCount;
+
+    private final SimilarityPartitioner partitioner = SimilarityPartitioner.instance;
+    private final Token.TokenFactory factory = partitioner.getTokenFactory();
+
+    private RandomHyperplaneHash hyperplanes;
+    private ByteBuffer[] keys;
+    private Token[] tokens;
+    private ByteBuffer[] tokenBytes;
+    private BitSet[] hashes;
+    private List<Token> shuffledTokens;
+    private InetAddress endpoint;
+
+    private long[] words;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws UnknownHostException
+    {
+        Random random = new Random(42);
+
+        double[][] vectors = new double[identifierLength][dimension];
+        for (double[] vector : vectors)
+            for (int i = 0; i < dimension; i++)
+                vector[i] = random.nextGaussian();
+        DatabaseDescriptor.setVectors(vectors);
+        hyperplanes = DatabaseDescriptor.getHyperplaneHash();
+
+        keys = new ByteBuffer[keyCount];
+        tokens = new Token[keyCount];
+        tokenBytes = new ByteBuffer[keyCount];
+        hashes = new BitSet[keyCount];
+        for (int k = 0; k < keyCount; k++)
+        {
+            ByteBuffer key = ByteBuffer.allocate(dimension * 8);
+            for (int i = 0; i < dimension; i++)
+                key.putDouble(i * 8, random.nextGaussian());
+            keys[k] = key;
+            tokens[k] = partitioner.getToken(key);
+            tokenBytes[k] = factory.toByteArray(tokens[k]);
+            hashes[k] = hyperplanes.rhh(key);
+        }
+
+        shuffledTokens = new ArrayList<>(Arrays.asList(tokens));
+        Collections.shuffle(shuffledTokens, random);
+        endpoint = InetAddress.getByName("127.0.0.1");
+        words = new long[hyperplanes.words()];
+    }
+
+    /**
+     * Cycles through the keys, so that successive operations do not hit the same cache lines.
+     */
+    private int next()
+    {
+        int k = next;
+        next = k + 1 == keyCount ? 0 : k + 1;
+        return k;
+    }
+
+    @Benchmark
+    public BitSet rhh()
+    {
+        return hyperplanes.rhh(keys[next()]);
+    }
+
+    @Benchmark
+    public long[] hash()
+    {
+        return hyperplanes.hash(keys[next()]);
+    }
+
+    @Benchmark
+    public long[] hashInPlace()
+    {
+        hyperplanes.hash(keys[next()], words);
+        return words;
+    }
+
+    @Benchmark
+    public Token getToken()
+    {
+        return partitioner.getToken(keys[next()]);
+    }
+
+    @Benchmark
+    public int compareTo()
+    {
+        int k = next();
+        return tokens[k].compareTo(tokens[k + 1 == keyCount ? 0 : k + 1]);
+    }
+
+    @Benchmark
+    public Token midpoint()
+    {
+        int k = next();
+        Token left = tokens[k];
+        Token right = tokens[k + 1 == keyCount ? 0 : k + 1];
+        return left.compareTo(right) <= 0 ? partitioner.midpoint(left, right) : partitioner.midpoint(right, left);
+    }
+
+    @Benchmark
+    public ByteBuffer toByteArray()
+    {
+        return factory.toByteArray(tokens[next()]);
+    }
+
+    @Benchmark
+    public Token fromByteArray()
+    {
+        return factory.fromByteArray(tokenBytes[next()]);
+    }
+
+    @Benchmark
+    public String binaryToString()
+    {
+        return BinarySerializer.instance.toString(hashes[next()]);
+    }
+
+    /**
+     * Sorts every token once: the time per operation covers keyCount tokens.
+     */
+    @Benchmark
+    public List<Token> sortTokens()
+    {
+        List<Token> sorted = new ArrayList<>(shuffledTokens);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Builds the ring of a node owning every token: the time per operation covers keyCount tokens.
+     */
+    @Benchmark
+    public List<Token> tokenMetadataSortedTokens()
+    {
+        TokenMetadata metadata = new TokenMetadata();
+        metadata.updateNormalTokens(shuffledTokens, endpoint);
+        return metadata.sortedTokens();
+    }
+}
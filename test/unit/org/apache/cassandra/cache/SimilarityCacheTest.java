@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner.BinaryToken;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.Pair;
+
+import static org.junit.Assert.*;
+
+public class SimilarityCacheTest
+{
+    private static Token token(long binary)
+    {
+        return new BinaryToken(new long[]{ binary ^ (binary >>> 1) });
+    }
+
+    private static Range<Token> range(long left, long right)
+    {
+        return new Range<>(token(left), token(right));
+    }
+
+    @Test
+    public void testPrefixes()
+    {
+        assertArrayEquals(new int[]{ 3, 4, 5 }, SimilarityCache.prefixes(Collections.singletonList(range(3, 5))));
+        assertArrayEquals(new int[]{ 3, 4, 5, 8, 9 }, SimilarityCache.prefixes(Arrays.asList(range(8, 9), range(4, 5), range(3, 4))));
+        assertArrayEquals(new int[]{ 0, 1, 254, 255 }, SimilarityCache.prefixes(Collections.singletonList(range(254, 1))));
+        Range<Token> ring = new Range<Token>(SimilarityPartitioner.MINIMUM, SimilarityPartitioner.MINIMUM);
+        assertEquals(256, SimilarityCache.prefixes(Collections.singletonList(ring)).length);
+    }
+
+    @Test
+    public void testInvalidation()
+    {
+        SimilarityCache cache = new SimilarityCache(ConcurrentLinkedHashCache.<SimilarityCacheKey, SimilarityCacheEntry>create(1 << 20));
+        UUID cfId = UUID.randomUUID();
+        SimilarityCacheKey key = new SimilarityCacheKey(Pair.create("ks", "cf"),
+                                                        cfId,
+                                                        ByteBufferUtil.bytes("bucket"),
+                                                        1,
+                                                        ConsistencyLevel.ONE,
+                                                        ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        List<Row> candidates = Collections.singletonList(new Row(new BufferDecoratedKey(token(4), ByteBufferUtil.bytes("key")), null));
+        int[] prefixes = SimilarityCache.prefixes(Collections.singletonList(range(3, 5)));
+
+        long writes = cache.writes(cfId, prefixes);
+        cache.put(key, prefixes, writes, candidates);
+        assertSame(candidates, cache.get(key));
+
+        // writes to other prefixes or other tables leave the entry
+        cache.invalidate(cfId, token(9));
+        cache.invalidate(UUID.randomUUID(), token(4));
+        assertSame(candidates, cache.get(key));
+
+        cache.invalidate(cfId, token(4));
+        assertNull(cache.get(key));
+
+        // a write racing with the read of the candidates is counted before the entry is cached
+        cache.put(key, prefixes, writes, candidates);
+        assertNull(cache.get(key));
+
+        cache.put(key, prefixes, cache.writes(cfId, prefixes), candidates);
+        assertSame(candidates, cache.get(key));
+        cache.invalidate(cfId);
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3.functions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.ByteType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.ListType;
+import org.apache.cassandra.db.marshal.VectorType;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class VectorFctsTest
+{
+    private static final VectorType doubles = VectorType.getInstance(DoubleType.instance, 3);
+    private static final VectorType floats = VectorType.getInstance(FloatType.instance, 3);
+    private static final VectorType int8s = VectorType.getInstance(ByteType.instance, 3);
+
+    @Test
+    public void testBlobs() throws InvalidRequestException
+    {
+        ByteBuffer v1 = doubles.fromString("[1, 2, 3]");
+        ByteBuffer v2 = doubles.fromString("[4, -5, 6]");
+
+        assertEquals(12.0, executeFunction(VectorFcts.dotProductFct, v1, v2), 0.0);
+        assertEquals(9.0 + 49.0 + 9.0, executeFunction(VectorFcts.squaredL2DistanceFct, v1, v2), 0.0);
+        assertEquals(12.0 / Math.sqrt(14.0 * 77.0), executeFunction(VectorFcts.cosineSimilarityFct, v1, v2), 1e-12);
+        assertEquals(0.0, executeFunction(VectorFcts.cosineSimilarityFct, v1, doubles.fromString("[0, 0, 0]")), 0.0);
+        assertNull(((ScalarFunction) VectorFcts.dotProductFct).execute(Server.CURRENT_VERSION, Arrays.asList(v1, null)));
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testBlobsOfDifferentDimensions() throws InvalidRequestException
+    {
+        executeFunction(VectorFcts.dotProductFct, doubles.fromString("[1, 2, 3]"), ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void testVectors() throws InvalidRequestException
+    {
+        Function dotProduct = VectorFcts.getInstance(VectorFcts.DOT_PRODUCT, types(floats, int8s));
+        assertSame(dotProduct, VectorFcts.getInstance(VectorFcts.DOT_PRODUCT, types(floats, int8s)));
+        assertEquals(1.0 - 2.0 - 3.0,
+                     executeFunction(dotProduct, floats.fromString("[1, 2, -3]"), int8s.fromString("[1, -1, 1]")),
+                     1e-6);
+
+        // a blob is read as doubles, as vectors were stored before vector types
+        Function cosine = VectorFcts.getInstance(VectorFcts.COSINE_SIMILARITY, types(floats, BytesType.instance));
+        assertEquals(1.0, executeFunction(cosine, floats.fromString("[1, 2, 3]"), doubles.fromString("[2, 4, 6]")), 1e-12);
+
+        // no instance is needed when no argument is a vector
+        assertNull(VectorFcts.getInstance(VectorFcts.DOT_PRODUCT, types(BytesType.instance, BytesType.instance)));
+        assertNull(VectorFcts.getInstance(FunctionName.nativeFunction("now"), types(floats, floats)));
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testBlobOfOtherEncoding() throws InvalidRequestException
+    {
+        Function cosine = VectorFcts.getInstance(VectorFcts.COSINE_SIMILARITY, types(floats, BytesType.instance));
+        executeFunction(cosine, floats.fromString("[1, 2, 3]"), floats.fromString("[2, 4, 6]"));
+    }
+
+    @Test
+    public void testInvalidSizeMessage()
+    {
+        Function dotProduct = VectorFcts.getInstance(VectorFcts.DOT_PRODUCT, types(floats, int8s));
+        try
+        {
+            executeFunction(dotProduct, ByteBuffer.allocate(8), int8s.fromString("[1, -1, 1]"));
+            fail("Expected a float vector of 8 bytes to be rejected");
+        }
+        catch (InvalidRequestException e)
+        {
+            assertEquals("dot_product() expects a vector of dimension 3 encoded as FLOAT, i.e. 12 bytes (got 8 bytes)", e.getMessage());
+        }
+
+        try
+        {
+            executeFunction(dotProduct, floats.fromString("[1, 2, 3]"), ByteBuffer.allocate(3));
+            fail("Expected an int8 vector of 3 bytes to be rejected");
+        }
+        catch (InvalidRequestException e)
+        {
+            assertEquals("dot_product() expects a vector of dimension 3 encoded as INT8, i.e. 7 bytes (got 3 bytes)", e.getMessage());
+        }
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testVectorsOfDifferentDimensions() throws InvalidRequestException
+    {
+        VectorFcts.getInstance(VectorFcts.DOT_PRODUCT, types(floats, VectorType.getInstance(FloatType.instance, 4)));
+    }
+
+    @Test
+    public void testHammingDistance() throws InvalidRequestException
+    {
+        ByteBuffer b1 = ByteBufferUtil.hexToBytes("ff00ff00ff00ff00ff");
+        ByteBuffer b2 = ByteBufferUtil.hexToBytes("0f00ff00ff00ff01");
+        // 4 bits of the first byte, 1 of the eighth and the 8 bits of the byte missing from the second value
+        assertEquals(4 + 1 + 8, Int32Type.instance.compose(execute(VectorFcts.hammingDistanceFct, b1, b2)).intValue());
+        assertEquals(4 + 1 + 8, Int32Type.instance.compose(execute(VectorFcts.hammingDistanceFct, b2, b1)).intValue());
+        assertEquals(0, Int32Type.instance.compose(execute(VectorFcts.hammingDistanceFct, b1, b1)).intValue());
+    }
+
+    @Test
+    public void testTopKByDistance() throws InvalidRequestException
+    {
+        AggregateFunction topK = (AggregateFunction) VectorFcts.getInstance(VectorFcts.TOP_K_BY_DISTANCE, types(floats, floats));
+        assertEquals(ListType.getInstance(floats, false), topK.returnType());
+
+        ByteBuffer query = floats.fromString("[1, 0, 0]");
+        ByteBuffer k = Int32Type.instance.decompose(2);
+        AggregateFunction.Aggregate aggregate = topK.newAggregate();
+        for (String vector : new String[]{ "[0, 1, 0]", "[1, 1, 0]", "[-1, 0, 0]", "[1, 0.1, 0]", "[0, 0, 1]" })
+            aggregate.addInput(Server.CURRENT_VERSION, Arrays.asList(floats.fromString(vector), query, k));
+
+        List<?> nearest = ListType.getInstance(floats, false).compose(aggregate.compute(Server.CURRENT_VERSION));
+        assertEquals(2, nearest.size());
+        assertArrayEquals(new double[]{ 1, 0.1, 0 }, (double[]) nearest.get(0), 1e-6);
+        assertArrayEquals(new double[]{ 1, 1, 0 }, (double[]) nearest.get(1), 1e-6);
+
+        aggregate.reset();
+        assertEquals(0, ListType.getInstance(floats, false).compose(aggregate.compute(Server.CURRENT_VERSION)).size());
+    }
+
+    private static List<AbstractType<?>> types(AbstractType<?>... types)
+    {
+        return Arrays.<AbstractType<?>>asList(types);
+    }
+
+    private static ByteBuffer execute(Function function, ByteBuffer... inputs) throws InvalidRequestException
+    {
+        return ((ScalarFunction) function).execute(Server.CURRENT_VERSION, Arrays.asList(inputs));
+    }
+
+    private static double executeFunction(Function function, ByteBuffer... inputs) throws InvalidRequestException
+    {
+        return DoubleType.instance.compose(execute(function, inputs));
+    }
+}
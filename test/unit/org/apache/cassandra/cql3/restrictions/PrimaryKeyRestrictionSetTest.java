@@ -845,6 +845,20 @@ public class PrimaryKeyRestrictionSetTest
         assertComposite(bounds.get(0), value1, value2, value3, value4, EOC.END);
     }
 
+    @Test(expected = InvalidRequestException.class)
+    public void testMergeWithANNRestriction() throws InvalidRequestException
+    {
+        CFMetaData cfMetaData = newCFMetaData(1);
+
+        ByteBuffer value1 = ByteBufferUtil.bytes(1);
+
+        // clustering_0 = 1 AND clustering_0 ANN OF 1
+        Restriction eq = newSingleEq(cfMetaData, 0, value1);
+        Restriction ann = new SingleColumnRestriction.ANN(getClusteringColumnDefinition(cfMetaData, 0), toTerm(value1));
+        PrimaryKeyRestrictions restrictions = new PrimaryKeyRestrictionSet(cfMetaData.comparator);
+        restrictions.mergeWith(eq).mergeWith(ann);
+    }
+
     /**
      * Asserts that the specified <code>Composite</code> is an empty one.
      *
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3.validation.operations;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnSpecification;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.RangeSliceCommand;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.VectorType;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.VectorUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SelectANNTest extends CQLTester
+{
+    private static final VectorType type = VectorType.getInstance(DoubleType.instance, 6);
+
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setPartitioner(SimilarityPartitioner.instance);
+    }
+
+    /**
+     * Checks that an ANN OF search returns the partitions of the bucket of the query vector, closest first.
+     */
+    @Test
+    public void testNearest() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k vector<double, 6> PRIMARY KEY, v int)");
+
+        Random random = new Random(42);
+        final ByteBuffer query = vector(random, null, 1.0);
+        List<ByteBuffer> candidates = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+        {
+            // half of the vectors are close to the query vector, the other half anywhere
+            ByteBuffer key = vector(random, i % 2 == 0 ? query : null, 0.05);
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", key, i);
+            if (SimilarityPartitioner.instance.getToken(key).equals(SimilarityPartitioner.instance.getToken(query)))
+                candidates.add(key);
+        }
+        assertTrue(candidates.size() >= 3);
+
+        Collections.sort(candidates, new Comparator<ByteBuffer>()
+        {
+            public int compare(ByteBuffer v1, ByteBuffer v2)
+            {
+                return Double.compare(VectorUtil.cosineDistance(v1, query), VectorUtil.cosineDistance(v2, query));
+            }
+        });
+
+        Object[][] rows = new Object[candidates.size()][];
+        for (int i = 0; i < candidates.size(); i++)
+            rows[i] = row(candidates.get(i));
+
+        assertRows(execute("SELECT k FROM %s WHERE k ANN OF ?", query), rows);
+        assertRows(execute("SELECT k FROM %s WHERE k ANN OF ? LIMIT 3", query), rows[0], rows[1], rows[2]);
+        assertRows(execute("SELECT count(*) FROM %s WHERE k ANN OF ?", query), row((long) candidates.size()));
+
+        // a deleted partition is not one of the nearest anymore
+        execute("DELETE FROM %s WHERE k = ?", candidates.get(0));
+        assertRows(execute("SELECT k FROM %s WHERE k ANN OF ? LIMIT 2", query), rows[1], rows[2]);
+    }
+
+    @Test
+    public void testInvalidANN() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k vector<double, 6> PRIMARY KEY, v int, w vector<double, 6>)");
+        ByteBuffer query = vector(new Random(42), null, 1.0);
+
+        assertInvalidMessage("ANN OF relations are only supported on the partition key (w is not)",
+                             "SELECT * FROM %s WHERE w ANN OF ? ALLOW FILTERING", query);
+        assertInvalidMessage("k cannot be restricted by more than one relation if it includes an ANN OF",
+                             "SELECT * FROM %s WHERE k ANN OF ? AND k = ?", query, query);
+        assertInvalidMessage("k cannot be restricted by more than one relation if it includes an ANN OF",
+                             "SELECT * FROM %s WHERE k = ? AND k ANN OF ?", query, query);
+        assertInvalidMessage("ORDER BY is not supported with ANN OF",
+                             "SELECT * FROM %s WHERE k ANN OF ? ORDER BY k", query);
+        assertInvalidMessage("Invalid operator ANN OF for PRIMARY KEY part k",
+                             "UPDATE %s SET v = 1 WHERE k ANN OF ?", query);
+        assertInvalidMessage("Invalid operator ANN OF for PRIMARY KEY part k",
+                             "DELETE FROM %s WHERE k ANN OF ?", query);
+    }
+
+    /**
+     * Checks that each search of an ANN OF batch returns what it returns on its own, whether the searches probe the
+     * same buckets or not, and that the searches of a batch must share their consistency level.
+     */
+    @Test
+    public void testBatch() throws Throwable
+    {
+        requireNetwork();
+        createTable("CREATE TABLE %s (k vector<double, 6> PRIMARY KEY, v int)");
+
+        Random random = new Random(42);
+        ByteBuffer query = vector(random, null, 1.0);
+        double[] opposite = type.compose(query);
+        for (int i = 0; i < opposite.length; i++)
+            opposite[i] = -opposite[i];
+        for (int i = 0; i < 60; i++)
+        {
+            // a third of the vectors are close to the query vector, a third to its opposite
+            ByteBuffer center = i % 3 == 0 ? query : i % 3 == 1 ? type.decompose(opposite) : null;
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", vector(random, center, 0.05), i);
+        }
+
+        List<ByteBuffer> vectors = new ArrayList<>();
+        vectors.add(query);
+        // the same bucket as the query vector
+        vectors.add(vector(random, query, 0.0001));
+        // the buckets of the opposite vector, disjoint from those of the query vector
+        vectors.add(type.decompose(opposite));
+        // another bucket, possibly empty
+        vectors.add(vector(random, null, 1.0));
+
+        String table = KEYSPACE + "." + currentTable();
+        assertBatch("SELECT k, v FROM " + table + " WHERE k ANN OF ?", vectors);
+        assertBatch("SELECT k FROM " + table + " WHERE k ANN OF ? LIMIT 3", vectors);
+        assertBatch("SELECT count(*), max(v) FROM " + table + " WHERE k ANN OF ?", vectors);
+
+        SelectStatement select = (SelectStatement) QueryProcessor.getStatement("SELECT k FROM " + table + " WHERE k ANN OF ?", ClientState.forInternalCalls()).statement;
+        List<QueryOptions> options = new ArrayList<>();
+        options.add(QueryOptions.forInternalCalls(ConsistencyLevel.ONE, Collections.singletonList(vectors.get(0))));
+        options.add(QueryOptions.forInternalCalls(ConsistencyLevel.QUORUM, Collections.singletonList(vectors.get(1))));
+        try
+        {
+            QueryProcessor.instance.processANNBatch(select, QueryState.forInternalCalls(), options);
+            fail("Expected the searches of different consistency levels to be rejected");
+        }
+        catch (InvalidRequestException e)
+        {
+            assertEquals("All the searches of an ANN OF batch must use the same consistency level", e.getMessage());
+        }
+    }
+
+    private static void assertBatch(String query, List<ByteBuffer> vectors) throws Throwable
+    {
+        SelectStatement select = (SelectStatement) QueryProcessor.getStatement(query, ClientState.forInternalCalls()).statement;
+        List<QueryOptions> options = new ArrayList<>();
+        for (ByteBuffer vector : vectors)
+            options.add(QueryOptions.forInternalCalls(ConsistencyLevel.ONE, Collections.singletonList(vector)));
+
+        List<ResultMessage.Rows> batch = QueryProcessor.instance.processANNBatch(select, QueryState.forInternalCalls(), options);
+        assertEquals(vectors.size(), batch.size());
+        for (int i = 0; i < vectors.size(); i++)
+        {
+            UntypedResultSet expected = UntypedResultSet.create(select.execute(QueryState.forInternalCalls(), options.get(i)).result);
+            UntypedResultSet actual = UntypedResultSet.create(batch.get(i).result);
+            assertEquals(query + " #" + i, expected.size(), actual.size());
+
+            Iterator<UntypedResultSet.Row> rows = actual.iterator();
+            for (UntypedResultSet.Row row : expected)
+            {
+                UntypedResultSet.Row other = rows.next();
+                for (ColumnSpecification column : row.getColumns())
+                    assertEquals(query + " #" + i, row.getBytes(column.name.toString()), other.getBytes(column.name.toString()));
+            }
+        }
+    }
+
+    /**
+     * Checks that the LIMIT of an ANN search is only pushed to the replicas when a single one of them is read.
+     */
+    @Test
+    public void testReplicaLimit() throws Throwable
+    {
+        List<ByteBuffer> values = Collections.singletonList(vector(new Random(42), null, 1.0));
+
+        createTable("CREATE TABLE %s (k vector<double, 6> PRIMARY KEY, v int)");
+        SelectStatement select = prepare(KEYSPACE + "." + currentTable());
+        assertReplicaLimit(select, ConsistencyLevel.ONE, values, 3);
+        assertReplicaLimit(select, ConsistencyLevel.QUORUM, values, 3);
+
+        String keyspace = "select_ann_rf3";
+        schemaChange("CREATE KEYSPACE IF NOT EXISTS " + keyspace + " WITH replication = {'class': 'SimpleStrategy', 'replication_factor': '3'}");
+        try
+        {
+            schemaChange("CREATE TABLE " + keyspace + ".t (k vector<double, 6> PRIMARY KEY, v int)");
+            select = prepare(keyspace + ".t");
+            assertReplicaLimit(select, ConsistencyLevel.ONE, values, 3);
+            assertReplicaLimit(select, ConsistencyLevel.LOCAL_ONE, values, 3);
+            assertReplicaLimit(select, ConsistencyLevel.TWO, values, Integer.MAX_VALUE);
+            assertReplicaLimit(select, ConsistencyLevel.QUORUM, values, Integer.MAX_VALUE);
+            assertReplicaLimit(select, ConsistencyLevel.ALL, values, Integer.MAX_VALUE);
+        }
+        finally
+        {
+            schemaChange("DROP KEYSPACE IF EXISTS " + keyspace);
+        }
+    }
+
+    private static SelectStatement prepare(String table)
+    {
+        String query = "SELECT k FROM " + table + " WHERE k ANN OF ? LIMIT 3";
+        return (SelectStatement) QueryProcessor.getStatement(query, ClientState.forInternalCalls()).statement;
+    }
+
+    private static void assertReplicaLimit(SelectStatement select, ConsistencyLevel cl, List<ByteBuffer> values, int maxResults) throws Throwable
+    {
+        for (RangeSliceCommand command : select.getANNCommands(QueryOptions.forInternalCalls(cl, values)))
+        {
+            assertEquals(cl.name(), maxResults, command.maxResults);
+            // the query vector is only sent along with the LIMIT
+            assertEquals(cl.name(), maxResults == Integer.MAX_VALUE, command.rowFilter.isEmpty());
+        }
+    }
+
+    /**
+     * Checks that the partitioner, which reads every key as doubles, only accepts vector partition keys of doubles.
+     */
+    @Test
+    public void testVectorKeyTypes() throws Throwable
+    {
+        for (String keyType : new String[]{ "vector<float, 6>", "vector<tinyint, 6>", "vector<double, 5>" })
+        {
+            try
+            {
+                createTableMayThrow("CREATE TABLE %s (k " + keyType + " PRIMARY KEY, v int)");
+                fail("Expected a " + keyType + " partition key to be rejected");
+            }
+            catch (InvalidRequestException e)
+            {
+                assertTrue(e.getMessage(), e.getMessage().contains("the SimilarityPartitioner hashes vector<double, 6> keys"));
+            }
+        }
+    }
+
+    /**
+     * @return a random vector of the table dimension, within {@code scale} of {@code center} if it is not {@code null}
+     */
+    private static ByteBuffer vector(Random random, ByteBuffer center, double scale)
+    {
+        double[] values = center == null ? new double[6] : type.compose(center);
+        for (int i = 0; i < values.length; i++)
+            values[i] += (random.nextDouble() * 2 - 1) * scale;
+        return type.decompose(values);
+    }
+}
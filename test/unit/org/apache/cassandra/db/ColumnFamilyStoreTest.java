@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -75,6 +76,7 @@ import org.apache.cassandra.db.marshal.IntegerType;
 import org.apache.cassandra.db.marshal.LexicalUUIDType;
 import org.apache.cassandra.db.marshal.LongType;
 import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.AbstractBounds;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.ExcludingBounds;
 import org.apache.cassandra.dht.IPartitioner;
@@ -2318,4 +2320,30 @@ public class ColumnFamilyStoreTest
         
         PerRowSecondaryIndexTest.TestIndex.reset();
     }
+
+    @Test
+    public void testSplitForSamples()
+    {
+        List<DecoratedKey> samples = new ArrayList<>();
+        for (int i = 9; i >= 0; i--)
+            samples.add(dk("k" + i));
+        samples.add(dk("z"));
+
+        // the samples in the range are k1 to k9
+        Range<RowPosition> range = Util.range("k0", "k9");
+        List<AbstractBounds<RowPosition>> splits = ColumnFamilyStore.splitForSamples(range, samples, 3);
+        assertEquals(3, splits.size());
+        assertEquals(Util.range("k0", "k4"), splits.get(0));
+        assertEquals(Util.range("k4", "k7"), splits.get(1));
+        assertEquals(Util.range("k7", "k9"), splits.get(2));
+
+        // repeated samples do not make empty splits
+        samples = Collections.nCopies(10, dk("k5"));
+        splits = ColumnFamilyStore.splitForSamples(range, samples, 4);
+        assertEquals(2, splits.size());
+        assertEquals(Util.range("k0", "k5"), splits.get(0));
+        assertEquals(Util.range("k5", "k9"), splits.get(1));
+
+        assertEquals(Collections.singletonList(range), ColumnFamilyStore.splitForSamples(range, Collections.<DecoratedKey>emptyList(), 4));
+    }
 }
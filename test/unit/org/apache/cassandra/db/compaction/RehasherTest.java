@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.KSMetaData;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.locator.SimpleStrategy;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class RehasherTest
+{
+    private static final String KEYSPACE1 = "RehasherTest";
+    private static final String CF = "Standard1";
+
+    private static double[][] vectors;
+
+    @BeforeClass
+    public static void defineSchema() throws ConfigurationException
+    {
+        DatabaseDescriptor.setPartitioner(SimilarityPartitioner.instance);
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE1,
+                                    SimpleStrategy.class,
+                                    KSMetaData.optsWithRF(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE1, CF));
+        StorageService.instance.getTokenMetadata().updateNormalToken(SimilarityPartitioner.instance.getRandomToken(), FBUtilities.getBroadcastAddress());
+        vectors = DatabaseDescriptor.getVectors();
+    }
+
+    @After
+    public void resetVectors()
+    {
+        DatabaseDescriptor.setVectors(vectors);
+        DatabaseDescriptor.setPreviousVectors(null);
+    }
+
+    /**
+     * Checks that the partitions of an sstable written with the previous hyperplanes are read once each, at their
+     * current position and merged with the updates written since, before, while and after they are re-hashed.
+     */
+    @Test
+    public void testRehash() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF);
+        cfs.disableAutoCompaction();
+
+        Random random = new Random(42);
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            ByteBuffer key = vector(random);
+            keys.add(key);
+            write(key, "value" + i, 0);
+        }
+        cfs.forceBlockingFlush();
+
+        // the configured hyperplanes become the previous ones, and the sstable is loaded again with them
+        double[][] replacement = new double[vectors.length][];
+        for (int j = 0; j < vectors.length; j++)
+            replacement[j] = vectors[vectors.length - 1 - j];
+        DatabaseDescriptor.setPreviousVectors(vectors);
+        DatabaseDescriptor.setVectors(replacement);
+        cfs.clearUnsafe();
+        cfs.loadNewSSTables();
+
+        SSTableReader pending = Iterables.getOnlyElement(cfs.getRehashPendingSSTables());
+        assertTrue(pending.isRehashPending());
+
+        // an update and a deletion written at the current position of their partitions
+        write(keys.get(0), "updated", 1);
+        Mutation mutation = new Mutation(KEYSPACE1, keys.get(1));
+        mutation.delete(CF, 1);
+        mutation.applyUnsafe();
+        assertRows(cfs, keys);
+
+        Rehasher rehasher = new Rehasher(cfs, pending, RateLimiter.create(Double.MAX_VALUE));
+        assertEquals(keys.size(), rehasher.rehash());
+        // the partitions are both in the memtable and in the sstable until it is marked as re-hashed
+        assertRows(cfs, keys);
+
+        cfs.markRehashed(pending);
+        assertTrue(cfs.getRehashPendingSSTables().isEmpty());
+        assertFalse(cfs.getSSTables().contains(pending));
+        assertRows(cfs, keys);
+    }
+
+    /**
+     * Checks that a whole ring range slice returns every key once, in ring order, the first one updated and the
+     * second one deleted.
+     */
+    private static void assertRows(ColumnFamilyStore cfs, List<ByteBuffer> keys)
+    {
+        List<Row> rows = Util.getRangeSlice(cfs);
+        Map<ByteBuffer, ColumnFamily> partitions = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++)
+        {
+            Row row = rows.get(i);
+            assertEquals(StorageService.getPartitioner().decorateKey(row.key.getKey()), row.key);
+            if (i > 0)
+                assertTrue(rows.get(i - 1).key.compareTo(row.key) < 0);
+            partitions.put(row.key.getKey(), row.cf);
+        }
+        assertEquals(rows.size(), partitions.size());
+
+        for (int i = 0; i < keys.size(); i++)
+        {
+            ColumnFamily cf = partitions.get(keys.get(i));
+            Cell cell = cf == null ? null : cf.getColumn(Util.cellname("c"));
+            if (i == 1)
+            {
+                assertTrue(cell == null || !cell.isLive());
+                continue;
+            }
+            assertNotNull(cell);
+            assertEquals(ByteBufferUtil.bytes(i == 0 ? "updated" : "value" + i), cell.value());
+        }
+    }
+
+    private static void write(ByteBuffer key, String value, long timestamp)
+    {
+        Mutation mutation = new Mutation(KEYSPACE1, key);
+        mutation.add(CF, Util.cellname("c"), ByteBufferUtil.bytes(value), timestamp);
+        mutation.applyUnsafe();
+    }
+
+    /**
+     * @return a random key of the dimension of the hyperplanes, hashed as doubles by the partitioner
+     */
+    private static ByteBuffer vector(Random random)
+    {
+        ByteBuffer key = ByteBuffer.allocate(8 * vectors[0].length);
+        for (int i = 0; i < vectors[0].length; i++)
+            key.putDouble(i * 8, random.nextDouble() * 2 - 1);
+        return key;
+    }
+}
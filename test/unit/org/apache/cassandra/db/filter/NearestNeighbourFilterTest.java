@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.filter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.composites.CellNames;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.utils.VectorEncoding;
+
+import static org.apache.cassandra.utils.ByteBufferUtil.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NearestNeighbourFilterTest
+{
+    private static final CFMetaData cfm = CFMetaData.denseCFMetaData("Keyspace1", "Standard1", BytesType.instance);
+
+    // a vector of the plane at the given angle, in degrees, from the query vector
+    private static ByteBuffer vector(double degrees)
+    {
+        double radians = Math.toRadians(degrees);
+        ByteBuffer bytes = ByteBuffer.allocate(VectorEncoding.DOUBLE.serializedSize(2));
+        VectorEncoding.DOUBLE.encode(new double[]{ Math.cos(radians), Math.sin(radians) }, bytes, 0);
+        return bytes;
+    }
+
+    private static Row row(double degrees, boolean live)
+    {
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(cfm);
+        if (live)
+            cf.addColumn(new BufferCell(CellNames.simpleDense(bytes("c")), bytes("v"), 1));
+        else
+            cf.delete(new DeletionInfo(1, 0));
+        return new Row(SimilarityPartitioner.instance.decorateKey(vector(degrees)), cf);
+    }
+
+    @Test
+    public void testNearest()
+    {
+        NearestNeighbourFilter filter = new NearestNeighbourFilter(vector(0), VectorEncoding.DOUBLE, 2, 3);
+        List<Row> rows = new ArrayList<>();
+        for (int degrees = 0; degrees < 180; degrees += 10)
+            rows.add(row(degrees, degrees != 10 && degrees != 60));
+        // the order rows are added in does not matter
+        Collections.shuffle(rows, new Random(1));
+
+        for (Row row : rows)
+            filter.add(row, 0);
+
+        // the 3 nearest live partitions, and the dead one closer than the farthest of them
+        List<Row> nearest = filter.rows();
+        assertEquals(4, nearest.size());
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (int i = 0; i < nearest.size(); i++)
+        {
+            keys.add(nearest.get(i).key.getKey());
+            if (i > 0)
+                assertTrue(nearest.get(i - 1).key.compareTo(nearest.get(i).key) < 0);
+        }
+        for (int degrees : new int[]{ 0, 10, 20, 30 })
+            assertTrue(keys.contains(vector(degrees)));
+
+        assertTrue(filter.mayBeNearest(vector(-30)));
+        assertFalse(filter.mayBeNearest(vector(40)));
+        assertFalse(filter.mayBeNearest(vector(90)));
+    }
+
+    @Test
+    public void testDeadDoNotCount()
+    {
+        NearestNeighbourFilter filter = new NearestNeighbourFilter(vector(0), VectorEncoding.DOUBLE, 2, 2);
+        filter.add(row(0, false), 0);
+        filter.add(row(10, false), 0);
+        assertTrue(filter.mayBeNearest(vector(170)));
+
+        filter.add(row(20, true), 0);
+        filter.add(row(50, true), 0);
+        filter.add(row(40, true), 0);
+        assertFalse(filter.mayBeNearest(vector(45)));
+        assertEquals(4, filter.rows().size());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException
+    {
+        final NearestNeighbourFilter filter = new NearestNeighbourFilter(vector(0), VectorEncoding.DOUBLE, 2, 5);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int offset = t;
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    for (int degrees = offset; degrees < 180; degrees += threads.length)
+                        filter.add(row(degrees, true), 0);
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (Row row : filter.rows())
+            keys.add(row.key.getKey());
+        assertEquals(5, keys.size());
+        for (int degrees = 0; degrees < 5; degrees++)
+            assertTrue(keys.contains(vector(degrees)));
+        assertFalse(filter.mayBeNearest(vector(5)));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.index.lsh;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.apache.cassandra.utils.RandomHyperplaneHash;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LSHIndexTest
+{
+    private static ByteBuffer vector(double... components)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(components.length * 8);
+        for (double component : components)
+            buffer.putDouble(component);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testFamiliesAreDeterministic()
+    {
+        RandomHyperplaneHash[] f1 = LSHIndex.createFamilies(4, 16, 42, 6);
+        RandomHyperplaneHash[] f2 = LSHIndex.createFamilies(4, 16, 42, 6);
+        ByteBuffer key = vector(0.5, -1.0, 2.0, 0.25, -3.0, 1.5);
+
+        assertEquals(4, f1.length);
+        for (int i = 0; i < f1.length; i++)
+        {
+            assertEquals(16, f1[i].bits());
+            assertEquals(6, f1[i].dimension());
+            assertArrayEquals(f1[i].hash(key), f2[i].hash(key));
+        }
+    }
+
+    @Test
+    public void testFamiliesAreIndependent()
+    {
+        RandomHyperplaneHash[] families = LSHIndex.createFamilies(4, 64, 0, 6);
+        ByteBuffer key = vector(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+
+        // with 64 bits, two families hashing a key identically would mean they share their hyperplanes
+        for (int i = 1; i < families.length; i++)
+            assertFalse(Arrays.equals(families[0].hash(key), families[i].hash(key)));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.marshal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.apache.cassandra.serializers.MarshalException;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.VectorEncoding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class VectorTypeTest
+{
+    private static final VectorType doubles = VectorType.getInstance(DoubleType.instance, 3);
+    private static final VectorType floats = VectorType.getInstance(FloatType.instance, 3);
+
+    @Test
+    public void testFromString()
+    {
+        ByteBuffer bytes = doubles.fromString("[0.5, 1, -2]");
+        assertEquals(24, bytes.remaining());
+        assertArrayEquals(new double[]{ 0.5, 1, -2 }, doubles.compose(bytes), 0.0);
+
+        assertEquals(bytes, doubles.fromString("0.5,1,-2"));
+        assertEquals(bytes, doubles.fromString("0x" + ByteBufferUtil.bytesToHex(bytes)));
+        assertEquals(12, floats.fromString("[0.5, 1, -2]").remaining());
+        assertEquals(0, doubles.fromString("").remaining());
+    }
+
+    @Test
+    public void testQuantized()
+    {
+        VectorType bytes = VectorType.getInstance(ByteType.instance, 3);
+        assertEquals(VectorEncoding.INT8, bytes.encoding());
+        assertEquals("vector<tinyint, 3>", bytes.asCQL3Type().toString());
+
+        ByteBuffer value = bytes.fromString("[0.5, 1, -2]");
+        assertEquals(4 + 3, value.remaining());
+        assertEquals(2.0f / 127, value.getFloat(0), 0.0);
+        assertEquals(-127, value.get(4 + 2));
+        assertArrayEquals(new double[]{ 0.5, 1, -2 }, bytes.compose(value), 2.0 / 127);
+    }
+
+    @Test(expected = MarshalException.class)
+    public void testFromStringWrongDimension()
+    {
+        doubles.fromString("[1, 2]");
+    }
+
+    @Test(expected = MarshalException.class)
+    public void testValidateWrongLength()
+    {
+        doubles.validate(ByteBuffer.allocate(12));
+    }
+
+    @Test
+    public void testReadsInPlace()
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(4 + 12);
+        bytes.putFloat(42f).putFloat(0.5f).putFloat(1f).putFloat(-2f);
+        bytes.position(4);
+
+        assertEquals(-2.0, floats.getSerializer().get(bytes, 2), 0.0);
+        assertEquals(0.5f, floats.getSerializer().asFloatBuffer(bytes).get(0), 0.0);
+        assertEquals(4, bytes.position());
+    }
+
+    @Test
+    public void testToString()
+    {
+        assertEquals("[0.1, 2.0, -3.0]", floats.getSerializer().toString(floats.compose(floats.fromString("0.1, 2, -3"))));
+        assertEquals("vector<float, 3>", floats.asCQL3Type().toString());
+    }
+
+    @Test
+    public void testParse()
+    {
+        assertSame(doubles, TypeParser.parse(doubles.toString()));
+        assertSame(floats, TypeParser.parse("VectorType(FloatType, 3)"));
+        assertEquals(Arrays.asList("vector<double, 3>"), AbstractType.asCQLTypeStringList(Arrays.<AbstractType<?>>asList(doubles)));
+    }
+}
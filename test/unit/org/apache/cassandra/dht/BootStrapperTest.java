@@ -20,6 +20,7 @@ package org.apache.cassandra.dht;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -39,6 +40,7 @@ import org.apache.cassandra.gms.IFailureDetectionEventListener;
 import org.apache.cassandra.gms.IFailureDetector;
 import org.apache.cassandra.locator.TokenMetadata;
 import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.TokenPrefixHistogram;
 
 import static org.junit.Assert.*;
 
@@ -110,6 +112,30 @@ public class BootStrapperTest
         return s;
     }
 
+    @Test
+    public void testDataAwareTokens() throws UnknownHostException
+    {
+        // two nodes at 0 and 128 on the 8 bits ring, and 100 keys at each of 50, 100, 150 and 200
+        TokenMetadata tmd = new TokenMetadata();
+        tmd.updateNormalToken(binaryToken(0), InetAddress.getByName("127.0.0.2"));
+        tmd.updateNormalToken(binaryToken(128), InetAddress.getByName("127.0.0.3"));
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(8);
+        for (int prefix = 50; prefix <= 200; prefix += 50)
+        {
+            for (int i = 0; i < 100; i++)
+                histogram.add(prefix);
+        }
+
+        // each of the 4 tokens should own 100 keys: the new ones take the first keys of each existing range
+        Collection<Token> tokens = BootStrapper.getDataAwareTokens(tmd, histogram, 2);
+        assertEquals(new HashSet<>(Arrays.asList(binaryToken(51), binaryToken(151))), tokens);
+    }
+
+    private static Token binaryToken(long value)
+    {
+        return SimilarityPartitioner.BinaryToken.fromBinary(new long[]{ value });
+    }
+
     private void generateFakeEndpoints(int numOldNodes) throws UnknownHostException
     {
         TokenMetadata tmd = StorageService.instance.getTokenMetadata();
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.dht;
+
+import org.junit.Test;
+
+import org.apache.cassandra.utils.TokenPrefixHistogram;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeyDistributionTest
+{
+    private static final Token MIN = SimilarityPartitioner.MINIMUM;
+
+    private static Token token(long value)
+    {
+        return SimilarityPartitioner.BinaryToken.fromBinary(new long[]{ value });
+    }
+
+    @Test
+    public void testCount()
+    {
+        // the test configuration has an 8 bits ring: every token is a prefix of its own
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(8);
+        histogram.add(10);
+        histogram.add(10);
+        histogram.add(200);
+        KeyDistribution distribution = new KeyDistribution(histogram);
+
+        assertEquals(3, distribution.total(), 0.0);
+        assertEquals(3, distribution.count(MIN, MIN), 0.0);
+        assertEquals(2, distribution.count(token(5), token(11)), 0.0);
+        assertEquals(0, distribution.count(token(11), token(200)), 0.0);
+        // wrapping around the ring
+        assertEquals(3, distribution.count(token(150), token(100)), 0.0);
+        assertEquals(1, distribution.count(token(150), MIN), 0.0);
+    }
+
+    @Test
+    public void testUniform()
+    {
+        KeyDistribution distribution = new KeyDistribution(new TokenPrefixHistogram(8));
+        assertEquals(256, distribution.total(), 0.0);
+        assertEquals(64, distribution.count(token(0), token(64)), 0.0);
+        assertEquals(token(192), distribution.tokenAfter(token(128), 64));
+    }
+
+    @Test
+    public void testTokenAfter()
+    {
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(8);
+        histogram.add(10);
+        histogram.add(200);
+        KeyDistribution distribution = new KeyDistribution(histogram);
+
+        // the token ending the range holding the keys at 10, skipping the empty prefixes
+        assertEquals(token(11), distribution.tokenAfter(MIN, 1));
+        assertEquals(token(201), distribution.tokenAfter(token(11), 1));
+        // wrapping around the ring
+        assertEquals(token(11), distribution.tokenAfter(token(220), 1));
+    }
+}
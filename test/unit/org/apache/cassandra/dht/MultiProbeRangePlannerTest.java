@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.dht;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiProbeRangePlannerTest
+{
+    private final Token.TokenFactory factory = SimilarityPartitioner.instance.getTokenFactory();
+
+    @Test
+    public void testSingleBucket()
+    {
+        // Gray code of 3, whose predecessor on the ring is 2
+        List<Range<Token>> ranges = MultiProbeRangePlanner.getRanges(factory.fromString("00000010"), 0);
+
+        assertEquals(1, ranges.size());
+        assertEquals("00000011", ranges.get(0).left.toString());
+        assertEquals("00000010", ranges.get(0).right.toString());
+    }
+
+    @Test
+    public void testMergeAdjacentBuckets()
+    {
+        // The neighbours of 0 within one bit are 1, 3, 7, ..., 255: only 0 and 1 are adjacent on the ring
+        List<Range<Token>> ranges = MultiProbeRangePlanner.getRanges(factory.fromString("00000000"), 1);
+
+        assertEquals(8, ranges.size());
+        assertTrue(ranges.get(0).left.isMinimum());
+        assertEquals("00000001", ranges.get(0).right.toString());
+        for (int i = 1; i < ranges.size(); i++)
+        {
+            assertTrue(ranges.get(i - 1).right.compareTo(ranges.get(i).left) < 0);
+            assertEquals(ranges.get(i).right, next(ranges.get(i).left));
+        }
+    }
+
+    @Test
+    public void testCoversHammingNeighbourhood()
+    {
+        String query = "10101110";
+        List<Range<Token>> ranges = MultiProbeRangePlanner.getRanges(factory.fromString(query), 2);
+
+        int covered = 0;
+        for (int value = 0; value < 256; value++)
+        {
+            String hash = toString(value);
+            Token token = factory.fromString(hash);
+
+            int containing = 0;
+            for (Range<Token> range : ranges)
+                if (range.contains(token))
+                    containing++;
+
+            assertEquals(hash, distance(query, hash) <= 2 ? 1 : 0, containing);
+            covered += containing;
+        }
+        assertEquals(1 + 8 + 28, covered);
+    }
+
+    @Test
+    public void testProbeAngles()
+    {
+        double[] angles = { 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8 };
+        List<MultiProbeRangePlanner.Probe> probes = MultiProbeRangePlanner.getProbes(factory.fromString("00000000"), 1, angles);
+
+        // 0 and 1, merged, hold the query bucket; flipping Gray bit i gives 2^(i+1) - 1 on the ring
+        assertEquals(8, probes.size());
+        assertEquals(0.0, probes.get(0).angle, 0.0);
+        for (int i = 1; i < probes.size(); i++)
+            assertEquals(angles[i], probes.get(i).angle, 0.0);
+
+        // a bucket two bits away is bounded by the larger angle of its flipped bits
+        String query = "10101110";
+        probes = MultiProbeRangePlanner.getProbes(factory.fromString(query), 2, angles);
+        for (MultiProbeRangePlanner.Probe probe : probes)
+        {
+            double angle = Double.MAX_VALUE;
+            for (int value = 0; value < 256; value++)
+            {
+                String hash = toString(value);
+                if (probe.range.contains(factory.fromString(hash)))
+                {
+                    double bucketAngle = 0.0;
+                    for (int i = 0; i < hash.length(); i++)
+                        if (hash.charAt(hash.length() - 1 - i) != query.charAt(query.length() - 1 - i))
+                            bucketAngle = Math.max(bucketAngle, angles[i]);
+                    angle = Math.min(angle, bucketAngle);
+                }
+            }
+            assertEquals(angle, probe.angle, 0.0);
+        }
+    }
+
+    @Test
+    public void testRadiusLargerThanHash()
+    {
+        List<Range<Token>> ranges = MultiProbeRangePlanner.getRanges(factory.fromString("01100101"), 20);
+
+        assertEquals(1, ranges.size());
+        assertTrue(ranges.get(0).left.isMinimum());
+        // Gray code of 255, the last position of the ring
+        assertEquals("10000000", ranges.get(0).right.toString());
+    }
+
+    @Test
+    public void testTooManyProbes()
+    {
+        assertEquals(1, MultiProbeRangePlanner.probeCount(8, 0));
+        assertEquals(1 + 8 + 28, MultiProbeRangePlanner.probeCount(8, 2));
+        assertEquals(256, MultiProbeRangePlanner.probeCount(8, 20));
+        assertEquals(Long.MAX_VALUE, MultiProbeRangePlanner.probeCount(1024, 16));
+
+        int maxProbes = DatabaseDescriptor.getSimilarityMaxProbes();
+        DatabaseDescriptor.setSimilarityMaxProbes(1 + 8);
+        try
+        {
+            assertEquals(8, MultiProbeRangePlanner.getRanges(factory.fromString("00000000"), 1).size());
+
+            // the 37 buckets within 2 bits are read by a scan of the whole ring
+            List<MultiProbeRangePlanner.Probe> probes = MultiProbeRangePlanner.getProbes(factory.fromString("10101110"), 2, new double[8]);
+            assertEquals(1, probes.size());
+            assertTrue(probes.get(0).range.left.isMinimum());
+            assertTrue(probes.get(0).range.right.isMinimum());
+            assertEquals(0.0, probes.get(0).angle, 0.0);
+        }
+        finally
+        {
+            DatabaseDescriptor.setSimilarityMaxProbes(maxProbes);
+        }
+    }
+
+    /**
+     * The token following the specified one on the ring
+     */
+    private Token next(Token left)
+    {
+        long[] binary = ((SimilarityPartitioner.BinaryToken) left).token.clone();
+        binary[0]++;
+        return SimilarityPartitioner.BinaryToken.fromBinary(binary);
+    }
+
+    private static String toString(int value)
+    {
+        String bits = Integer.toBinaryString(value);
+        while (bits.length() < 8)
+            bits = "0" + bits;
+        return bits;
+    }
+
+    private static int distance(String h1, String h2)
+    {
+        int distance = 0;
+        for (int i = 0; i < h1.length(); i++)
+            if (h1.charAt(i) != h2.charAt(i))
+                distance++;
+        return distance;
+    }
+}
@@ -143,13 +143,7 @@ public abstract class PartitionerTestCase
 
     private void testDescribeOwnershipWith(int numTokens)
     {
-        List<Token> tokens = new ArrayList<Token>();
-        while (tokens.size() < numTokens)
-        {
-            Token randomToken = partitioner.getRandomToken();
-            if (!tokens.contains(randomToken))
-                tokens.add(randomToken);
-        }
+        List<Token> tokens = distinctTokens(numTokens);
         Collections.sort(tokens);
         Map<Token, Float> owns = partitioner.describeOwnership(tokens);
 
@@ -158,4 +152,19 @@ public abstract class PartitionerTestCase
             totalOwnership += ownership;
         assertEquals(1.0, totalOwnership, 0.001);
     }
+
+    /**
+     * @return {@code numTokens} distinct random tokens of the partitioner
+     */
+    protected List<Token> distinctTokens(int numTokens)
+    {
+        List<Token> tokens = new ArrayList<Token>();
+        while (tokens.size() < numTokens)
+        {
+            Token randomToken = partitioner.getRandomToken();
+            if (!tokens.contains(randomToken))
+                tokens.add(randomToken);
+        }
+        return tokens;
+    }
 }
@@ -2,14 +2,18 @@ package org.apache.cassandra.dht;
 
 import java.nio.ByteBuffer;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import org.apache.cassandra.db.marshal.BinaryType;
+import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.utils.ObjectSizes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -64,7 +68,51 @@ public class SimilarityPartitionerInitialTest
     @Test
     public void testMidpoint() throws Exception
     {
+        Token.TokenFactory factory = partitioner.getTokenFactory();
+        // Gray codes of 0 and 3
+        Token left = factory.fromString("00000000");
+        Token right = factory.fromString("00000010");
 
+        assertEquals("00000001", partitioner.midpoint(left, right).toString());
+        // wraps around the 8 bits ring, to 129
+        assertEquals("11000001", partitioner.midpoint(right, left).toString());
+        // the minimum token acts as zero, so this is the middle of the ring, 128
+        Token min = partitioner.getMinimumToken();
+        assertEquals("11000000", partitioner.midpoint(min, min).toString());
+    }
+
+    @Test
+    public void testSplitRange() throws Exception
+    {
+        SimilarityPartitioner similarity = (SimilarityPartitioner) partitioner;
+        Token.TokenFactory factory = partitioner.getTokenFactory();
+        Token min = partitioner.getMinimumToken();
+
+        // the whole ring, in quarters: 64, 128 and 192
+        List<Range<Token>> quarters = similarity.splitRange(new Range<>(min, min), 4);
+        assertEquals(4, quarters.size());
+        assertEquals(new Range<>(min, factory.fromString("01100000")), quarters.get(0));
+        assertEquals(new Range<>(factory.fromString("01100000"), factory.fromString("11000000")), quarters.get(1));
+        assertEquals(new Range<>(factory.fromString("11000000"), factory.fromString("10100000")), quarters.get(2));
+        assertEquals(new Range<>(factory.fromString("10100000"), min), quarters.get(3));
+
+        // (0, 10] holds 10 tokens: split at 3 and 6
+        Token left = factory.fromString("00000000");
+        Token right = factory.fromString("00001111");
+        List<Range<Token>> thirds = similarity.splitRange(new Range<>(left, right), 3);
+        assertEquals(factory.fromString("00000010"), thirds.get(0).right);
+        assertEquals(factory.fromString("00000101"), thirds.get(1).right);
+        assertEquals(right, thirds.get(2).right);
+
+        assertEquals(Collections.singletonList(new Range<>(left, right)), similarity.splitRange(new Range<>(left, right), 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitRangeTooSmall() throws Exception
+    {
+        Token.TokenFactory factory = partitioner.getTokenFactory();
+        // (0, 2] holds 2 tokens only
+        ((SimilarityPartitioner) partitioner).splitRange(new Range<>(factory.fromString("00000000"), factory.fromString("00000011")), 3);
     }
 
     @Test
@@ -90,13 +138,29 @@ public class SimilarityPartitionerInitialTest
         assertEquals(partitioner, token.getPartitioner());
         // getHeapSize
         assertEquals(ObjectSizes.measure(new SimilarityPartitioner.BinaryToken(new BitSet())) +
-                     ObjectSizes.sizeOfArray(keyHash.toByteArray()), token.getHeapSize());
+                     ObjectSizes.sizeOfArray(keyHash.toLongArray()), token.getHeapSize());
         // getTokenValue
         assertEquals(keyHash, token.getTokenValue());
         // toString
         assertEquals("10101110", token.toString());
     }
 
+    @Test
+    public void testTokenEquality() throws Exception
+    {
+        Token token = partitioner.getToken(key);
+        Token same = new SimilarityPartitioner.BinaryToken(new long[]{ keyHash.toLongArray()[0], 0L });
+        assertEquals(token, same);
+        assertEquals(token.hashCode(), same.hashCode());
+
+        // a key hashing to zero still sorts after the minimum token
+        Token zero = new SimilarityPartitioner.BinaryToken(new long[1]);
+        assertFalse(zero.equals(partitioner.getMinimumToken()));
+        assertFalse(zero.isMinimum());
+        assertEquals(1, zero.compareTo(partitioner.getMinimumToken()));
+        assertEquals(-1, zero.compareTo(token));
+    }
+
     @Test
     public void testGetRandomToken() throws Exception
     {
@@ -125,6 +189,56 @@ public class SimilarityPartitionerInitialTest
         assertEquals(0, token.compareTo(factory.fromString("10101110")));
     }
 
+    @Test
+    public void testTokenFactoryMultipleWords() throws Exception
+    {
+        Token.TokenFactory factory = partitioner.getTokenFactory();
+
+        StringBuilder sb = new StringBuilder("11");
+        for (int i = 0; i < 64; i++)
+            sb.append('0');
+        sb.append('1');
+        for (int i = 0; i < 62; i++)
+            sb.append('0');
+        sb.append('1');
+        String bits = sb.toString();
+
+        Token token = factory.fromString(bits);
+        assertEquals(bits, factory.toString(token));
+        assertEquals(17, factory.toByteArray(token).remaining());
+        assertEquals(token, factory.fromByteArray(factory.toByteArray(token)));
+        assertEquals(1, token.compareTo(partitioner.getToken(key)));
+        assertEquals(-1, token.compareTo(factory.fromString("1" + bits)));
+    }
+
+    @Test
+    public void testTokenFactoryZero() throws Exception
+    {
+        Token.TokenFactory factory = partitioner.getTokenFactory();
+
+        Token zero = factory.fromString("00000000");
+        assertFalse(zero.isMinimum());
+        assertEquals(1, factory.toByteArray(zero).remaining());
+        assertEquals(zero, factory.fromByteArray(factory.toByteArray(zero)));
+
+        Token min = partitioner.getMinimumToken();
+        assertEquals(0, factory.toByteArray(min).remaining());
+        assertTrue(factory.fromByteArray(factory.toByteArray(min)).isMinimum());
+        assertTrue(factory.fromString(factory.toString(min)).isMinimum());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testValidateNotBinary() throws Exception
+    {
+        partitioner.getTokenFactory().validate("10201");
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testValidateTooLong() throws Exception
+    {
+        partitioner.getTokenFactory().validate("101010101");
+    }
+
     @Test
     public void testPreservesOrder() throws Exception
     {
@@ -1,5 +1,20 @@
 package org.apache.cassandra.dht;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.utils.FastByteOperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
 public class SimilarityPartitionerTest extends PartitionerTestCase
 {
     public void initPartitioner()
@@ -21,4 +36,86 @@ public class SimilarityPartitionerTest extends PartitionerTestCase
     {
 //        super.testMidpointWrapping();
     }
-}
\ No newline at end of file
+
+    /**
+     * Random tokens are hashes of random vectors, and the 8 hyperplanes of the test configuration only split its
+     * 6-dimensional space into 240 regions, fewer than the 256 distinct tokens the ownership test needs. The tokens
+     * are thus drawn among every identifier instead.
+     */
+    @Override
+    protected List<Token> distinctTokens(int numTokens)
+    {
+        List<Token> identifiers = new ArrayList<>();
+        for (long i = 0; i < 1L << DatabaseDescriptor.getIdentifierLength(); i++)
+            identifiers.add(new SimilarityPartitioner.BinaryToken(new long[]{ i }));
+        Collections.shuffle(identifiers, new Random(numTokens));
+        return new ArrayList<>(identifiers.subList(0, numTokens));
+    }
+
+    @Test
+    public void testTopBits()
+    {
+        long[] binary = { 0xF000000000000001L, 0x5L };
+        assertEquals(0x5L, SimilarityPartitioner.topBits(binary, 67, 3));
+        assertEquals(0xBL, SimilarityPartitioner.topBits(binary, 67, 4));
+        assertEquals(0x5FL, SimilarityPartitioner.topBits(binary, 67, 7));
+        assertEquals(0x1L, SimilarityPartitioner.topBits(binary, 1, 1));
+        // missing words are zero
+        assertEquals(0L, SimilarityPartitioner.topBits(new long[0], 67, 8));
+    }
+
+    @Test
+    public void testComparableBytes()
+    {
+        assertEquals(0, SimilarityPartitioner.toComparableBytes(SimilarityPartitioner.MINIMUM).length);
+        assertEquals(SimilarityPartitioner.MINIMUM, SimilarityPartitioner.fromComparableBytes(ByteBuffer.allocate(0)));
+
+        Token[] tokens = new Token[200];
+        for (int i = 0; i < tokens.length; i++)
+            tokens[i] = i == 0 ? partitioner.getMinimumToken() : partitioner.getRandomToken();
+        for (Token t1 : tokens)
+        {
+            byte[] b1 = SimilarityPartitioner.toComparableBytes(t1);
+            assertEquals(t1, SimilarityPartitioner.fromComparableBytes(ByteBuffer.wrap(b1)));
+            for (Token t2 : tokens)
+            {
+                byte[] b2 = SimilarityPartitioner.toComparableBytes(t2);
+                // the bytes sort as the tokens do
+                assertEquals(Integer.signum(t1.compareTo(t2)),
+                             Integer.signum(FastByteOperations.compareUnsigned(b1, 0, b1.length, b2, 0, b2.length)));
+            }
+        }
+    }
+
+    @Test
+    public void testPrevious()
+    {
+        assertNull(SimilarityPartitioner.previous());
+
+        // the previous hyperplanes are the configured ones in reverse order
+        double[][] vectors = DatabaseDescriptor.getVectors();
+        double[][] previousVectors = new double[vectors.length][];
+        for (int j = 0; j < vectors.length; j++)
+            previousVectors[j] = vectors[vectors.length - 1 - j];
+
+        DatabaseDescriptor.setPreviousVectors(previousVectors);
+        try
+        {
+            SimilarityPartitioner previous = SimilarityPartitioner.previous();
+            assertSame(previous, SimilarityPartitioner.previous());
+            assertSame(DatabaseDescriptor.getPreviousHyperplaneHash(), previous.hyperplanes());
+            assertSame(DatabaseDescriptor.getHyperplaneHash(), SimilarityPartitioner.instance.hyperplanes());
+
+            ByteBuffer key = ByteBuffer.allocate(8 * vectors[0].length);
+            for (int i = 0; i < vectors[0].length; i++)
+                key.putDouble(i << 3, i + 1.0);
+            long[] words = DatabaseDescriptor.getPreviousHyperplaneHash().hash(key);
+            assertEquals(new SimilarityPartitioner.BinaryToken(words), previous.getToken(key));
+        }
+        finally
+        {
+            DatabaseDescriptor.setPreviousVectors(null);
+        }
+        assertNull(SimilarityPartitioner.previous());
+    }
+}
@@ -18,10 +18,12 @@
 package org.apache.cassandra.io.sstable;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 import com.google.common.collect.ImmutableMap;
@@ -38,6 +40,8 @@ import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.service.StorageService;
@@ -304,4 +308,84 @@ public class CQLSSTableWriterTest
         UntypedResultSet rs = QueryProcessor.executeInternal("SELECT * FROM cql_keyspace2.table2;");
         assertEquals(threads.length * NUMBER_WRITES_IN_RUNNABLE, rs.size());
     }
+
+    @Test
+    public void testBulkWriter() throws Exception
+    {
+        final String KS = "cql_keyspace3";
+        final String TABLE = "table3";
+
+        File tempdir = Files.createTempDir();
+        File dataDir = new File(tempdir.getAbsolutePath() + File.separator + KS + File.separator + TABLE);
+        assert dataDir.mkdirs();
+
+        String schema = "CREATE TABLE cql_keyspace3.table3 ("
+                      + "  k int,"
+                      + "  c int,"
+                      + "  v blob,"
+                      + "  PRIMARY KEY (k, c)"
+                      + ")";
+        String insert = "INSERT INTO cql_keyspace3.table3 (k, c, v) VALUES (?, ?, ?)";
+        IPartitioner partitioner = StorageService.getPartitioner();
+        List<Token> splitTokens = Arrays.asList(partitioner.getToken(Int32Type.instance.decompose(50)),
+                                                partitioner.getToken(Int32Type.instance.decompose(150)));
+        CQLSSTableWriter writer = CQLSSTableWriter.builder()
+                                                  .inDirectory(dataDir)
+                                                  .forTable(schema)
+                                                  .withPartitioner(partitioner)
+                                                  .using(insert)
+                                                  .withBufferSizeInMB(1)
+                                                  .bulk(4)
+                                                  .splitAt(splitTokens)
+                                                  .build();
+
+        // each clustering is in another buffer, so that the partitions are merged from several runs
+        ByteBuffer val = ByteBuffer.allocate(1024 * 10);
+        for (int c = 0; c < 2; c++)
+        {
+            for (int k = 0; k < 200; k++)
+                writer.addRow(k, c, val);
+        }
+        writer.close();
+
+        // one sstable per range, and no run left behind
+        FilenameFilter filterDataFiles = new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith("-Data.db");
+            }
+        };
+        assertEquals(Arrays.toString(dataDir.list()), 2, dataDir.list(filterDataFiles).length);
+        assertEquals(Arrays.toString(dataDir.list()), 0, dataDir.listFiles(new FileFilter()
+        {
+            public boolean accept(File file)
+            {
+                return file.isDirectory();
+            }
+        }).length);
+
+        SSTableLoader loader = new SSTableLoader(dataDir, new SSTableLoader.Client()
+        {
+            private String keyspace;
+
+            public void init(String keyspace)
+            {
+                this.keyspace = keyspace;
+                for (Range<Token> range : StorageService.instance.getLocalRanges(KS))
+                    addRangeForEndpoint(range, FBUtilities.getBroadcastAddress());
+                setPartitioner(StorageService.getPartitioner());
+            }
+
+            public CFMetaData getTableMetadata(String tableName)
+            {
+                return Schema.instance.getCFMetaData(keyspace, tableName);
+            }
+        }, new OutputHandler.SystemOutput(false, false));
+
+        loader.stream().get();
+
+        UntypedResultSet rs = QueryProcessor.executeInternal("SELECT * FROM cql_keyspace3.table3;");
+        assertEquals(400, rs.size());
+    }
 }
@@ -30,6 +30,7 @@ import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.FileUtils;
@@ -93,6 +94,64 @@ public class IndexSummaryTest
         random.right.close();
     }
 
+    @Test
+    public void testBinarySearchComparableTokens() throws IOException
+    {
+        IPartitioner p = SimilarityPartitioner.instance;
+        int dimension = DatabaseDescriptor.getVectors()[0].length;
+        Random random = new Random(0);
+        List<DecoratedKey> keys = Lists.newArrayList();
+        for (int i = 0; i < 500; i++)
+        {
+            ByteBuffer key = ByteBuffer.allocate(8 * dimension);
+            for (int j = 0; j < dimension; j++)
+                key.putDouble(j << 3, random.nextGaussian());
+            keys.add(p.decorateKey(key));
+        }
+        Collections.sort(keys);
+
+        try (IndexSummaryBuilder builder = new IndexSummaryBuilder(keys.size(), 1, BASE_SAMPLING_LEVEL))
+        {
+            for (int i = 0; i < keys.size(); i++)
+                builder.maybeAddEntry(keys.get(i), i);
+            try (IndexSummary built = builder.build(p))
+            {
+                // the tokens the keys were decorated with, or the ones of the keys once loaded
+                assertNotNull(built.getTokens());
+                testComparableTokens(built, keys);
+
+                DataOutputBuffer dos = new DataOutputBuffer();
+                IndexSummary.serializer.serialize(built, dos, true);
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(dos.toByteArray()));
+                try (IndexSummary loaded = IndexSummary.serializer.deserialize(dis, p, true, 1, 1))
+                {
+                    assertNotNull(loaded.getTokens());
+                    assertEquals(built.getOffHeapSize(), loaded.getOffHeapSize());
+                    testComparableTokens(loaded, keys);
+                }
+
+                try (IndexSummary downsampled = downsample(built, BASE_SAMPLING_LEVEL / 2, 1, p))
+                {
+                    assertNotNull(downsampled.getTokens());
+                    testPosition(built, downsampled, keys);
+                }
+            }
+        }
+    }
+
+    private static void testComparableTokens(IndexSummary summary, List<DecoratedKey> keys)
+    {
+        for (int i = 0; i < keys.size(); i++)
+        {
+            DecoratedKey key = keys.get(i);
+            assertEquals(i, summary.binarySearch(key));
+            for (RowPosition bound : Arrays.asList(key.getToken().minKeyBound(), key.getToken().maxKeyBound()))
+                assertEquals(Collections.binarySearch(keys, bound), summary.binarySearch(bound));
+        }
+        RowPosition minimum = SimilarityPartitioner.MINIMUM.minKeyBound();
+        assertEquals(-1, summary.binarySearch(minimum));
+    }
+
     @Test
     public void testAddEmptyKey() throws Exception
     {
@@ -31,14 +31,19 @@ import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.composites.SimpleDenseCellNameType;
 import org.apache.cassandra.db.marshal.BytesType;
 import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.SimilarityPartitioner;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.Version;
+import org.apache.cassandra.io.sstable.format.big.BigFormat;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
 import org.apache.cassandra.io.util.RandomAccessReader;
 import org.apache.cassandra.utils.EstimatedHistogram;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MetadataSerializerTest
 {
@@ -68,23 +73,56 @@ public class MetadataSerializerTest
         double bfFpChance = 0.1;
         Map<MetadataType, MetadataComponent> originalMetadata = collector.finalizeMetadata(partitioner, bfFpChance, 0);
 
+        Map<MetadataType, MetadataComponent> deserialized = serializeAndDeserialize(originalMetadata, BigFormat.latestVersion);
+        for (MetadataType type : MetadataType.values())
+        {
+            assertEquals(originalMetadata.get(type), deserialized.get(type));
+        }
+    }
+
+    /**
+     * Checks that the token prefix histograms and the hyperplanes are only written by the similarity version, so that
+     * the sstables of the stock version stay readable by stock nodes.
+     */
+    @Test
+    public void testSimilarityMetadata() throws IOException
+    {
+        MetadataCollector collector = new MetadataCollector(new SimpleDenseCellNameType(BytesType.instance));
+        for (long i = 0; i < 10; i++)
+            collector.addToken(new SimilarityPartitioner.BinaryToken(new long[]{ i << 56 }), 100 + i);
+        Map<MetadataType, MetadataComponent> originalMetadata = collector.finalizeMetadata(SimilarityPartitioner.class.getCanonicalName(), 0.1, 0);
+        StatsMetadata original = (StatsMetadata) originalMetadata.get(MetadataType.STATS);
+        assertEquals(10, original.tokenPrefixHistogram.total());
+        assertTrue(original.hyperplanes != 0);
+
+        StatsMetadata stats = (StatsMetadata) serializeAndDeserialize(originalMetadata, BigFormat.similarityVersion).get(MetadataType.STATS);
+        assertEquals(original, stats);
+
+        stats = (StatsMetadata) serializeAndDeserialize(originalMetadata, BigFormat.latestVersion).get(MetadataType.STATS);
+        assertTrue(stats.tokenPrefixHistogram.isEmpty());
+        assertTrue(stats.tokenPrefixSizes.isEmpty());
+        assertEquals(0, stats.hyperplanes);
+        assertEquals(original.estimatedRowSize, stats.estimatedRowSize);
+    }
+
+    private static Map<MetadataType, MetadataComponent> serializeAndDeserialize(Map<MetadataType, MetadataComponent> metadata, Version version) throws IOException
+    {
         MetadataSerializer serializer = new MetadataSerializer();
         // Serialize to tmp file
         File statsFile = File.createTempFile(Component.STATS.name, null);
         try (DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(statsFile)))
         {
-            serializer.serialize(originalMetadata, out);
+            serializer.serialize(metadata, version, out);
         }
 
-        Descriptor desc = new Descriptor( statsFile.getParentFile(), "", "", 0, Descriptor.Type.FINAL);
+        Descriptor desc = new Descriptor(version, statsFile.getParentFile(), "", "", 0, Descriptor.Type.FINAL, SSTableFormat.Type.BIG);
         try (RandomAccessReader in = RandomAccessReader.open(statsFile))
         {
-            Map<MetadataType, MetadataComponent> deserialized = serializer.deserialize(desc, in, EnumSet.allOf(MetadataType.class));
-
-            for (MetadataType type : MetadataType.values())
-            {
-                assertEquals(originalMetadata.get(type), deserialized.get(type));
-            }
+            return serializer.deserialize(desc, in, EnumSet.allOf(MetadataType.class));
+        }
+        finally
+        {
+            statsFile.delete();
         }
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularDataSupport;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.KSMetaData;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.filter.QueryFilter;
+import org.apache.cassandra.dht.SimilarityPartitioner;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.locator.SimpleStrategy;
+import org.apache.cassandra.metrics.ColumnFamilyMetrics.Sampler;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenPrefixOccupancyTest
+{
+    private static final String KEYSPACE1 = "TokenPrefixOccupancyTest";
+    private static final String CF = "Standard1";
+
+    @BeforeClass
+    public static void defineSchema() throws ConfigurationException
+    {
+        DatabaseDescriptor.setPartitioner(SimilarityPartitioner.instance);
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE1,
+                                    SimpleStrategy.class,
+                                    KSMetaData.optsWithRF(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE1, CF));
+    }
+
+    /**
+     * Checks that the bucket gauges follow the sstables added and removed from the tracker by flushes, compactions
+     * and truncations.
+     */
+    @Test
+    public void testBucketGauges() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF);
+        cfs.disableAutoCompaction();
+        cfs.truncateBlocking();
+
+        Random random = new Random(42);
+        long[] expected = new long[1 << SimilarityPartitioner.histogramPrefixBits()];
+        for (int flush = 0; flush < 2; flush++)
+        {
+            for (int i = 0; i < 20; i++)
+            {
+                ByteBuffer key = vector(random);
+                write(key);
+                expected[SimilarityPartitioner.prefix(StorageService.getPartitioner().getToken(key), SimilarityPartitioner.histogramPrefixBits())]++;
+            }
+            cfs.forceBlockingFlush();
+            assertGauges(cfs, expected);
+        }
+
+        // the partitions of the compacted sstables are counted once
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getSSTables().size());
+        assertGauges(cfs, expected);
+
+        cfs.truncateBlocking();
+        assertGauges(cfs, new long[expected.length]);
+    }
+
+    /**
+     * Checks that the BUCKETS sampler counts the partitions read from each bucket.
+     */
+    @Test
+    public void testBucketSampler() throws Exception
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF);
+        cfs.truncateBlocking();
+
+        Random random = new Random(7);
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            ByteBuffer key = vector(random);
+            write(key);
+            keys.add(StorageService.getPartitioner().decorateKey(key));
+        }
+
+        cfs.beginLocalSampling(Sampler.BUCKETS.name(), 256);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++)
+        {
+            // the first keys are read twice
+            for (int j = 0; j < (i < 3 ? 2 : 1); j++)
+            {
+                DecoratedKey key = keys.get(i);
+                cfs.getColumnFamily(QueryFilter.getIdentityFilter(key, CF, System.currentTimeMillis()));
+                String bucket = key.getToken().toString();
+                expected.put(bucket, expected.containsKey(bucket) ? expected.get(bucket) + 1 : 1L);
+            }
+        }
+
+        CompositeData sampling = cfs.finishLocalSampling(Sampler.BUCKETS.name(), 256);
+        Map<String, Long> sampled = new HashMap<>();
+        for (Object value : ((TabularDataSupport) sampling.get("partitions")).values())
+        {
+            CompositeData entry = (CompositeData) value;
+            sampled.put(entry.get("string").toString(), (Long) entry.get("count"));
+        }
+        assertEquals(expected, sampled);
+    }
+
+    private static void assertGauges(ColumnFamilyStore cfs, long[] expected)
+    {
+        long max = 0;
+        for (long partitions : expected)
+            max = Math.max(max, partitions);
+
+        assertArrayEquals(expected, cfs.metric.bucketPartitions.getValue());
+        assertEquals(max, cfs.metric.maxBucketPartitions.getValue().longValue());
+
+        long[] bytes = cfs.metric.bucketBytes.getValue();
+        assertEquals(expected.length, bytes.length);
+        long maxBytes = 0;
+        for (int i = 0; i < bytes.length; i++)
+        {
+            // every partition is one row of a single cell
+            assertTrue(expected[i] == 0 ? bytes[i] == 0 : bytes[i] >= expected[i]);
+            maxBytes = Math.max(maxBytes, bytes[i]);
+        }
+        assertEquals(maxBytes, cfs.metric.maxBucketBytes.getValue().longValue());
+    }
+
+    private static void write(ByteBuffer key)
+    {
+        Mutation mutation = new Mutation(KEYSPACE1, key);
+        mutation.add(CF, Util.cellname("c"), ByteBufferUtil.bytes("value"), 0);
+        mutation.applyUnsafe();
+    }
+
+    /**
+     * @return a random key of the dimension of the hyperplanes, hashed as doubles by the partitioner
+     */
+    private static ByteBuffer vector(Random random)
+    {
+        int dimension = DatabaseDescriptor.getHyperplaneHash().dimension();
+        ByteBuffer key = ByteBuffer.allocate(8 * dimension);
+        for (int i = 0; i < dimension; i++)
+            key.putDouble(i * 8, random.nextDouble() * 2 - 1);
+        return key;
+    }
+}
@@ -52,10 +52,13 @@ public class BinarySerializerTest
     public void testToString() throws Exception
     {
         assertTrue(serializer.toString(null).isEmpty());
-        assertEquals("1111", serializer.toString(value));
+        // padded to the identifier_length of the test configuration
+        assertEquals("00001111", serializer.toString(value));
         assertEquals("1000000000000000000000000000000000000000000000000000000000000000", serializer.toString(BitSet.valueOf(new long[]{Long.MIN_VALUE})));
         assertEquals("1010011010", serializer.toString(BitSet.valueOf(new long[]{666L})));
         assertEquals("111111111111111111111111111111111111111111111111111111111111111", serializer.toString(BitSet.valueOf(new long[]{Long.MAX_VALUE})));
+        assertEquals("11" + "0000000000000000000000000000000000000000000000000000000000000000" + "1000000000000000000000000000000000000000000000000000000000000001",
+                     serializer.toString(BitSet.valueOf(new long[]{Long.MIN_VALUE + 1, 0L, 3L})));
     }
 
     @Test
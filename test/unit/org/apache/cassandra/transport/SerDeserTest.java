@@ -31,7 +31,9 @@ import org.apache.cassandra.serializers.CollectionSerializer;
 import org.apache.cassandra.transport.Event.TopologyChange;
 import org.apache.cassandra.transport.Event.SchemaChange;
 import org.apache.cassandra.transport.Event.StatusChange;
+import org.apache.cassandra.transport.messages.ANNBatchMessage;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.MD5Digest;
 import org.apache.cassandra.utils.Pair;
 
 import static org.junit.Assert.assertEquals;
@@ -258,4 +260,30 @@ public class SerDeserTest
 
         assertEquals(decodedMeta, decodedMetaWithoutIndexes);
     }
+
+    @Test
+    public void annBatchSerDeserTest()
+    {
+        MD5Digest id = MD5Digest.compute("SELECT * FROM ks.cf WHERE k ANN OF ?");
+        List<List<ByteBuffer>> values = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            values.add(Collections.singletonList(bytes((double) i)));
+        QueryOptions options = QueryOptions.create(ConsistencyLevel.QUORUM, Collections.<ByteBuffer>emptyList(), false, -1, null, null);
+        ANNBatchMessage msg = new ANNBatchMessage(id, values, options);
+
+        ByteBuf buf = Unpooled.buffer(ANNBatchMessage.codec.encodedSize(msg, Server.VERSION_4));
+        ANNBatchMessage.codec.encode(msg, buf, Server.VERSION_4);
+        ANNBatchMessage decoded = ANNBatchMessage.codec.decode(buf, Server.VERSION_4);
+
+        assertEquals(id, decoded.statementId);
+        assertEquals(values, decoded.values);
+        assertEquals(ConsistencyLevel.QUORUM, decoded.options.getConsistency());
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void annBatchBeforeVersion4Test()
+    {
+        ANNBatchMessage.codec.decode(Unpooled.buffer(), Server.VERSION_3);
+    }
 }
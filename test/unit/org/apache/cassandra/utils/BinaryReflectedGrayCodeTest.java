@@ -42,8 +42,31 @@ public class BinaryReflectedGrayCodeTest
     @Test
     public void testCompareTo() throws Exception
     {
-        assertEquals(-1, binaryReflectedGrayCode.compare(MIN, ZERO));
+        // the decoded values are unsigned: MIN decodes to 2^63, past the middle of the 64 bits ring
+        assertEquals(1, binaryReflectedGrayCode.compare(MIN, ZERO));
         assertEquals(0, binaryReflectedGrayCode.compare(ZERO, ZERO));
         assertEquals(1, binaryReflectedGrayCode.compare(MAX, ZERO));
+        assertEquals(1, binaryReflectedGrayCode.compare(MIN, MAX));
+    }
+
+    @Test
+    public void testCompareMultipleWords() throws Exception
+    {
+        // 2^64 and 2^64 + 1 in Gray code
+        BitSet above = BitSet.valueOf(new long[]{ Long.MIN_VALUE, 1L });
+        BitSet next = BitSet.valueOf(new long[]{ Long.MIN_VALUE + 1, 1L });
+
+        assertEquals(1, binaryReflectedGrayCode.compare(above, MIN));
+        assertEquals(-1, binaryReflectedGrayCode.compare(above, next));
+        assertEquals(0, binaryReflectedGrayCode.compare(next, next));
+    }
+
+    @Test
+    public void testCompareBinary() throws Exception
+    {
+        assertEquals(0, BinaryReflectedGrayCode.compareBinary(new long[]{ 5L }, new long[]{ 5L, 0L }));
+        assertEquals(-1, BinaryReflectedGrayCode.compareBinary(new long[]{ -1L }, new long[]{ 0L, 1L }));
+        assertEquals(1, BinaryReflectedGrayCode.compareBinary(new long[]{ -1L }, new long[]{ Long.MAX_VALUE }));
+        assertEquals(0, BinaryReflectedGrayCode.compareBinary(new long[0], new long[]{ 0L }));
     }
 }
\ No newline at end of file
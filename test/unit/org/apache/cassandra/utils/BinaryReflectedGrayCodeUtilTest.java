@@ -22,6 +22,7 @@ import java.util.BitSet;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class BinaryReflectedGrayCodeUtilTest
@@ -70,4 +71,27 @@ public class BinaryReflectedGrayCodeUtilTest
         assertEquals(FIVE, BinaryReflectedGrayCodeUtil.grayToBinary(SEVEN));
         assertEquals(B_MAX, BinaryReflectedGrayCodeUtil.grayToBinary(MAX));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGrayToBinaryWords() throws Exception
+    {
+        assertArrayEquals(B_MIN.toLongArray(), BinaryReflectedGrayCodeUtil.grayToBinary(MIN.toLongArray()));
+        assertArrayEquals(SEVEN.toLongArray(), BinaryReflectedGrayCodeUtil.grayToBinary(FOUR.toLongArray()));
+        assertArrayEquals(B_MAX.toLongArray(), BinaryReflectedGrayCodeUtil.grayToBinary(MAX.toLongArray()));
+        assertArrayEquals(new long[0], BinaryReflectedGrayCodeUtil.grayToBinary(new long[0]));
+
+        // the parity of the higher words flips every bit of the lower ones
+        assertArrayEquals(new long[]{ -1L, 1L }, BinaryReflectedGrayCodeUtil.grayToBinary(new long[]{ 0L, 1L }));
+        assertArrayEquals(new long[]{ -2L, 1L }, BinaryReflectedGrayCodeUtil.grayToBinary(new long[]{ 1L, 1L }));
+    }
+
+    @Test
+    public void testBinaryToGrayWords() throws Exception
+    {
+        assertArrayEquals(G_MIN.toLongArray(), BinaryReflectedGrayCodeUtil.binaryToGray(MIN.toLongArray()));
+        assertArrayEquals(SIX.toLongArray(), BinaryReflectedGrayCodeUtil.binaryToGray(FOUR.toLongArray()));
+        assertArrayEquals(G_MAX.toLongArray(), BinaryReflectedGrayCodeUtil.binaryToGray(MAX.toLongArray()));
+        assertArrayEquals(new long[]{ 0L, 1L }, BinaryReflectedGrayCodeUtil.binaryToGray(new long[]{ -1L, 1L }));
+        assertArrayEquals(new long[]{ 1L, 1L }, BinaryReflectedGrayCodeUtil.binaryToGray(new long[]{ -2L, 1L }));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperplaneTrainerTest
+{
+    private static final int DIMENSION = 6;
+
+    // keys around 5 * e0, spread along e1 and e2, barely along the other axes
+    private static double[] key(Random random)
+    {
+        double[] key = new double[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++)
+            key[i] = random.nextGaussian() * 0.05;
+        key[0] += 5;
+        key[1] += random.nextGaussian() * 3;
+        key[2] += random.nextGaussian() * 1;
+        return key;
+    }
+
+    private static double dot(double[] v1, double[] v2)
+    {
+        double sum = 0;
+        for (int i = 0; i < v1.length; i++)
+            sum += v1[i] * v2[i];
+        return sum;
+    }
+
+    @Test
+    public void testCovariance()
+    {
+        Random random = new Random(1);
+        double[][] vectors = new double[1000][];
+        StreamingCovariance covariance = new StreamingCovariance(DIMENSION);
+        for (int n = 0; n < vectors.length; n++)
+        {
+            vectors[n] = key(random);
+            covariance.add(vectors[n]);
+        }
+
+        double[] mean = new double[DIMENSION];
+        for (double[] vector : vectors)
+            for (int i = 0; i < DIMENSION; i++)
+                mean[i] += vector[i] / vectors.length;
+
+        double[][] streamed = covariance.covariance();
+        assertEquals(vectors.length, covariance.count());
+        for (int i = 0; i < DIMENSION; i++)
+        {
+            assertEquals(mean[i], covariance.mean()[i], 1e-9);
+            for (int j = 0; j < DIMENSION; j++)
+            {
+                double expected = 0;
+                for (double[] vector : vectors)
+                    expected += (vector[i] - mean[i]) * (vector[j] - mean[j]) / (vectors.length - 1);
+                assertEquals(expected, streamed[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testEigen()
+    {
+        double[][] matrix = { { 4, 1, 2 }, { 1, 3, 0 }, { 2, 0, 5 } };
+        double[][] copy = new double[3][];
+        for (int i = 0; i < 3; i++)
+            copy[i] = matrix[i].clone();
+
+        double[] values = new double[3];
+        double[][] vectors = new double[3][3];
+        HyperplaneTrainer.eigen(copy, values, vectors);
+
+        for (int k = 0; k < 3; k++)
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                double product = 0;
+                for (int j = 0; j < 3; j++)
+                    product += matrix[i][j] * vectors[j][k];
+                assertEquals(values[k] * vectors[i][k], product, 1e-9);
+            }
+        }
+        assertEquals(12, values[0] + values[1] + values[2], 1e-9);
+    }
+
+    @Test
+    public void testPrincipalDirections()
+    {
+        Random random = new Random(2);
+        HyperplaneTrainer trainer = new HyperplaneTrainer(DIMENSION);
+        for (int n = 0; n < 10000; n++)
+            assertTrue(trainer.add(key(random)));
+        assertEquals(false, trainer.add(new double[DIMENSION]));
+
+        double[][] hyperplanes = trainer.train(4, HyperplaneTrainer.Mode.PCA, random);
+        assertEquals(4, hyperplanes.length);
+        for (double[] hyperplane : hyperplanes)
+        {
+            assertEquals(1, dot(hyperplane, hyperplane), 1e-9);
+            // every hyperplane contains the mean direction of the keys
+            assertEquals(0, hyperplane[0], 0.05);
+        }
+        // the directions of largest variance come first
+        assertEquals(1, Math.abs(hyperplanes[0][1]), 0.05);
+        assertEquals(1, Math.abs(hyperplanes[1][2]), 0.05);
+        for (int j = 0; j < 4; j++)
+            for (int k = j + 1; k < 4; k++)
+                assertEquals(0, dot(hyperplanes[j], hyperplanes[k]), 1e-9);
+    }
+
+    @Test
+    public void testBalancedBuckets()
+    {
+        Random random = new Random(3);
+        HyperplaneTrainer trainer = new HyperplaneTrainer(DIMENSION);
+        for (int n = 0; n < 10000; n++)
+        {
+            double[] key = key(random);
+            ByteBuffer bytes = ByteBuffer.allocate(VectorEncoding.FLOAT.serializedSize(DIMENSION));
+            VectorEncoding.FLOAT.encode(key, bytes, 0);
+            assertTrue(trainer.add(bytes, VectorEncoding.FLOAT));
+        }
+        assertEquals(10000, trainer.count());
+        // keys of another size than their encoding's for the dimension are skipped
+        assertEquals(false, trainer.add(ByteBuffer.allocate(VectorEncoding.FLOAT.serializedSize(DIMENSION)), VectorEncoding.DOUBLE));
+
+        // more bits than the keys have dimensions
+        RandomHyperplaneHash hash = new RandomHyperplaneHash(trainer.train(8, HyperplaneTrainer.Mode.BALANCED, random));
+        int[] set = new int[hash.bits()];
+        int keys = 10000;
+        for (int n = 0; n < keys; n++)
+        {
+            double[] key = key(random);
+            ByteBuffer bytes = ByteBuffer.allocate(VectorEncoding.DOUBLE.serializedSize(DIMENSION));
+            VectorEncoding.DOUBLE.encode(key, bytes, 0);
+            long word = hash.hash(bytes)[0];
+            for (int j = 0; j < set.length; j++)
+                set[j] += (word >>> j) & 1;
+        }
+        // each hyperplane splits the keys around their mean
+        for (int j = 0; j < set.length; j++)
+            assertEquals("bit " + j, 0.5, set[j] / (double) keys, 0.1);
+    }
+}
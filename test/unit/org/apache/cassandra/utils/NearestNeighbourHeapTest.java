@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NearestNeighbourHeapTest
+{
+    @Test
+    public void testKeepsClosest()
+    {
+        NearestNeighbourHeap<String> heap = new NearestNeighbourHeap<>(3);
+        assertTrue(heap.offer(5.0, "e"));
+        assertTrue(heap.offer(1.0, "a"));
+        assertTrue(heap.offer(4.0, "d"));
+        assertTrue(heap.offer(2.0, "b"));
+        assertFalse(heap.offer(6.0, "f"));
+        assertTrue(heap.offer(3.0, "c"));
+
+        assertEquals(3, heap.size());
+        List<String> expected = new ArrayList<>();
+        Collections.addAll(expected, "a", "b", "c");
+        assertEquals(expected, heap.drain());
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    public void testFewerValuesThanK()
+    {
+        NearestNeighbourHeap<Integer> heap = new NearestNeighbourHeap<>(10);
+        heap.offer(0.5, 2);
+        heap.offer(0.25, 1);
+
+        List<Integer> drained = heap.drain();
+        assertEquals(2, drained.size());
+        assertEquals(1, (int) drained.get(0));
+        assertEquals(2, (int) drained.get(1));
+    }
+
+    @Test
+    public void testFarthest()
+    {
+        NearestNeighbourHeap<Integer> heap = new NearestNeighbourHeap<>(2);
+        heap.offer(0.5, 1);
+        assertFalse(heap.isFull());
+        heap.offer(0.75, 2);
+        assertTrue(heap.isFull());
+        assertEquals(0.75, heap.farthest(), 0.0);
+        heap.offer(0.25, 3);
+        assertEquals(0.5, heap.farthest(), 0.0);
+    }
+
+    @Test
+    public void testUnboundedK()
+    {
+        // the arrays grow with the values offered, not with k
+        NearestNeighbourHeap<Integer> heap = new NearestNeighbourHeap<>(Integer.MAX_VALUE);
+        for (int i = 100; i > 0; i--)
+            heap.offer(i, i);
+        assertFalse(heap.isFull());
+
+        List<Integer> drained = heap.drain();
+        assertEquals(100, drained.size());
+        for (int i = 0; i < 100; i++)
+            assertEquals(i + 1, (int) drained.get(i));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        NearestNeighbourHeap<Integer> heap = new NearestNeighbourHeap<>(0);
+        assertFalse(heap.offer(0.0, 1));
+        assertTrue(heap.drain().isEmpty());
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random random = new Random(42);
+        for (int k = 1; k < 50; k += 7)
+        {
+            NearestNeighbourHeap<Double> heap = new NearestNeighbourHeap<>(k);
+            List<Double> all = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+            {
+                double distance = random.nextDouble();
+                all.add(distance);
+                heap.offer(distance, distance);
+            }
+            Collections.sort(all);
+            assertEquals(all.subList(0, k), heap.drain());
+        }
+    }
+}
@@ -24,8 +24,10 @@ import java.util.BitSet;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class RandomHyperplaneHashTest
 {
@@ -41,6 +43,7 @@ public class RandomHyperplaneHashTest
         for (int i = 0; i < object.length; i++) {
             key.putDouble(object[i]);
         }
+        key.rewind();
 
         hash = new BitSet(8);
         hash.set(7, true);
@@ -60,6 +63,99 @@ public class RandomHyperplaneHashTest
         assertEquals(hash, rhh);
     }
 
+    @Test
+    public void testHash() throws Exception
+    {
+        RandomHyperplaneHash rhh = new RandomHyperplaneHash();
+        assertEquals(1, rhh.words());
+        assertArrayEquals(hash.toLongArray(), rhh.hash(key));
+
+        // the key is read in place, from its position
+        ByteBuffer shifted = ByteBuffer.allocate(8 + key.capacity());
+        shifted.putDouble(-1.0).put(key.duplicate()).position(8);
+        long[] words = new long[rhh.words()];
+        rhh.hash(shifted, VectorEncoding.DOUBLE, words);
+        assertArrayEquals(hash.toLongArray(), words);
+        assertEquals(8, shifted.position());
+    }
+
+    @Test
+    public void testHashMultipleWords() throws Exception
+    {
+        double[][] vectors = new double[130][1];
+        for (int j = 0; j < vectors.length; j++)
+            vectors[j][0] = j % 3 == 0 ? 1.0 : -1.0;
+
+        RandomHyperplaneHash rhh = new RandomHyperplaneHash(vectors);
+        assertEquals(3, rhh.words());
+
+        long[] words = rhh.hash(ByteBuffer.allocate(8).putDouble(0, 2.0));
+        for (int j = 0; j < vectors.length; j++)
+            assertEquals(j % 3 == 0, BitSet.valueOf(words).get(j));
+    }
+
+    @Test
+    public void testHashEncodings() throws Exception
+    {
+        RandomHyperplaneHash rhh = new RandomHyperplaneHash();
+
+        // the components are exact floats
+        ByteBuffer floats = ByteBuffer.allocate(VectorEncoding.FLOAT.serializedSize(object.length));
+        VectorEncoding.FLOAT.encode(object, floats, 0);
+        assertArrayEquals(hash.toLongArray(), rhh.hash(floats, VectorEncoding.FLOAT));
+
+        // without its type, as by the partitioner, a key is read as doubles whatever its size
+        ByteBuffer halved = ByteBuffer.allocate(VectorEncoding.DOUBLE.serializedSize(object.length));
+        for (int i = 0; i < object.length / 2; i++)
+            halved.putLong(i << 3, floats.getLong(i << 3));
+        assertArrayEquals(rhh.hash(halved), rhh.hash(floats));
+
+        // quantized keys hash like the vector they stand for
+        ByteBuffer bytes = ByteBuffer.allocate(VectorEncoding.INT8.serializedSize(object.length));
+        VectorEncoding.INT8.encode(object, bytes, 0);
+        ByteBuffer dequantized = ByteBuffer.allocate(VectorEncoding.DOUBLE.serializedSize(object.length));
+        for (int i = 0; i < object.length; i++)
+            dequantized.putDouble(i << 3, VectorEncoding.INT8.get(bytes, 0, i));
+        assertArrayEquals(rhh.hash(dequantized), rhh.hash(bytes, VectorEncoding.INT8));
+    }
+
+    @Test
+    public void testFingerprint() throws Exception
+    {
+        double[][] vectors = { { 1.0, 0.0 }, { 0.0, 1.0 } };
+        long fingerprint = new RandomHyperplaneHash(vectors).fingerprint();
+        assertTrue(fingerprint != 0);
+        assertEquals(fingerprint, new RandomHyperplaneHash(new double[][]{ { 1.0, 0.0 }, { 0.0, 1.0 } }).fingerprint());
+        // the order of the hyperplanes is the order of the bits
+        assertTrue(fingerprint != new RandomHyperplaneHash(new double[][]{ { 0.0, 1.0 }, { 1.0, 0.0 } }).fingerprint());
+    }
+
+    @Test
+    public void testAngles() throws Exception
+    {
+        RandomHyperplaneHash rhh = new RandomHyperplaneHash(new double[][]{ { 1.0, 0.0 }, { 1.0, 1.0 }, { 0.0, 2.0 } });
+        ByteBuffer vector = ByteBuffer.allocate(16).putDouble(0, 3.0).putDouble(8, 0.0);
+
+        double[] angles = rhh.angles(vector);
+        assertEquals(Math.PI / 2, angles[0], 1e-9);
+        assertEquals(Math.PI / 4, angles[1], 1e-9);
+        assertEquals(0.0, angles[2], 1e-9);
+
+        // quantized vectors are at the same angles as the vectors they stand for
+        ByteBuffer bytes = ByteBuffer.allocate(VectorEncoding.INT8.serializedSize(2));
+        VectorEncoding.INT8.encode(new double[]{ 3.0, 0.0 }, bytes, 0);
+        assertArrayEquals(angles, rhh.angles(bytes, VectorEncoding.INT8), 1e-9);
+
+        // a zero vector is on every hyperplane
+        assertArrayEquals(new double[3], rhh.angles(ByteBuffer.allocate(16)), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedDimensions() throws Exception
+    {
+        new RandomHyperplaneHash(new double[][]{ { 1.0, 0.0 }, { 1.0 } });
+    }
+
     @Test
     public void testRhhWithoutKey() throws Exception
     {
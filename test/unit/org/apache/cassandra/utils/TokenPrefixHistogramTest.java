@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenPrefixHistogramTest
+{
+    @Test
+    public void testMerge()
+    {
+        TokenPrefixHistogram h1 = new TokenPrefixHistogram(4);
+        assertEquals(16, h1.size());
+        assertEquals(4, h1.prefixBits());
+        h1.add(0);
+        h1.add(15);
+        h1.add(15);
+
+        TokenPrefixHistogram h2 = new TokenPrefixHistogram(4);
+        h2.add(15);
+        h2.add(7);
+
+        h1.merge(h2);
+        assertEquals(1, h1.get(0));
+        assertEquals(1, h1.get(7));
+        assertEquals(3, h1.get(15));
+        assertEquals(5, h1.total());
+    }
+
+    @Test
+    public void testAddValue()
+    {
+        TokenPrefixHistogram sizes = new TokenPrefixHistogram(2);
+        sizes.add(1, 100);
+        sizes.add(1, 50);
+        sizes.add(3, 7);
+        assertEquals(0, sizes.get(0));
+        assertEquals(150, sizes.get(1));
+        assertEquals(7, sizes.get(3));
+        assertEquals(157, sizes.total());
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        TokenPrefixHistogram histogram = new TokenPrefixHistogram(TokenPrefixHistogram.DEFAULT_PREFIX_BITS);
+        histogram.add(3);
+        histogram.add(3);
+        histogram.add(200);
+
+        for (TokenPrefixHistogram expected : new TokenPrefixHistogram[]{ histogram, TokenPrefixHistogram.empty() })
+        {
+            DataOutputBuffer out = new DataOutputBuffer();
+            TokenPrefixHistogram.serializer.serialize(expected, out);
+            byte[] bytes = out.toByteArray();
+            // only the non-empty buckets are written
+            assertEquals(TokenPrefixHistogram.serializer.serializedSize(expected, TypeSizes.NATIVE), bytes.length);
+
+            TokenPrefixHistogram deserialized = TokenPrefixHistogram.serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+            assertEquals(expected, deserialized);
+        }
+        assertEquals(8 + 2 * 12, TokenPrefixHistogram.serializer.serializedSize(histogram, TypeSizes.NATIVE));
+        assertTrue(TokenPrefixHistogram.empty().isEmpty());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VectorUtilTest
+{
+    private static final double DELTA = 1e-12;
+
+    private static ByteBuffer vector(double... components)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(components.length * 8);
+        for (double component : components)
+            buffer.putDouble(component);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testDot()
+    {
+        assertEquals(32.0, VectorUtil.dot(vector(1, 2, 3), vector(4, 5, 6)), DELTA);
+        assertEquals(0.0, VectorUtil.dot(vector(1, 0), vector(0, 1)), DELTA);
+    }
+
+    @Test
+    public void testCosineDistance()
+    {
+        assertEquals(0.0, VectorUtil.cosineDistance(vector(1, 2, 3), vector(2, 4, 6)), DELTA);
+        assertEquals(1.0, VectorUtil.cosineDistance(vector(1, 0), vector(0, 5)), DELTA);
+        assertEquals(2.0, VectorUtil.cosineDistance(vector(1, 1), vector(-1, -1)), DELTA);
+        assertEquals(1.0, VectorUtil.cosineDistance(vector(0, 0), vector(1, 1)), DELTA);
+    }
+
+    private static ByteBuffer encode(VectorEncoding encoding, double... components)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(encoding.serializedSize(components.length));
+        encoding.encode(components, buffer, 0);
+        return buffer;
+    }
+
+    @Test
+    public void testCosineDistanceEncodings()
+    {
+        VectorEncoding d = VectorEncoding.DOUBLE;
+        VectorEncoding f = VectorEncoding.FLOAT;
+        VectorEncoding q = VectorEncoding.INT8;
+        ByteBuffer doubles = vector(1, 2, 3);
+        ByteBuffer floats = encode(f, 1, 2, 3);
+        ByteBuffer bytes = encode(q, 1, 2, 3);
+
+        assertEquals(0.0, VectorUtil.cosineDistance(doubles, d, floats, f, 3), DELTA);
+        assertEquals(0.0, VectorUtil.cosineDistance(floats, f, floats, f, 3), DELTA);
+        assertEquals(0.0, VectorUtil.cosineDistance(bytes, q, bytes, q, 3), DELTA);
+        assertEquals(2.0, VectorUtil.cosineDistance(bytes, q, encode(q, -2, -4, -6), q, 3), DELTA);
+        assertEquals(1.0, VectorUtil.cosineDistance(encode(q, 0, 0, 0), q, bytes, q, 3), DELTA);
+
+        // quantization only loses a little precision
+        assertEquals(0.0, VectorUtil.cosineDistance(doubles, d, bytes, q, 3), 1e-4);
+        assertEquals(VectorUtil.cosineDistance(doubles, vector(3, -1, 0.5)),
+                     VectorUtil.cosineDistance(bytes, q, encode(q, 3, -1, 0.5), q, 3),
+                     1e-2);
+
+        // the encoding is that of the type: a blob of the size of 3 floats is read as 1.5 doubles
+        ByteBuffer blob = encode(f, 1, 0, 0);
+        assertEquals(VectorUtil.cosineDistance(blob, vector(1, 0, 0)), VectorUtil.cosineDistance(blob, d, vector(1, 0, 0), d, 3), 0.0);
+        assertEquals(1.0, VectorUtil.cosineDistance(blob, d, vector(0, 1, 0), d, 3), DELTA);
+    }
+
+    @Test
+    public void testReadsInPlace()
+    {
+        ByteBuffer shifted = ByteBuffer.allocate(32);
+        shifted.putDouble(42).putDouble(1).putDouble(2).putDouble(3);
+        shifted.position(8);
+
+        assertEquals(0.0, VectorUtil.cosineDistance(shifted, vector(1, 2, 3)), DELTA);
+        assertEquals(14.0, VectorUtil.dot(shifted, vector(1, 2, 3)), DELTA);
+        assertEquals(8, shifted.position());
+        assertEquals(3, VectorUtil.dimension(shifted));
+    }
+}
@@ -226,6 +226,8 @@ public class StressMetrics
         output.println(String.format("latency max               : %.1f %s", history.maxLatency(), opHistory.maxLatencies()));
         output.println(String.format("Total partitions          : %d %s",   history.partitionCount, opHistory.partitionCounts()));
         output.println(String.format("Total errors              : %d %s",   history.errorCount, opHistory.errorCounts()));
+        if (history.recallCount > 0)
+            output.println(String.format("recall mean               : %.3f %s", history.recall(), opHistory.recalls()));
         output.println(String.format("total gc count            : %.0f", totalGcStats.count));
         output.println(String.format("total gc mb               : %.0f", totalGcStats.bytes / (1 << 20)));
         output.println(String.format("total gc time (s)         : %.0f", totalGcStats.summs / 1000));
@@ -43,6 +43,8 @@ import org.apache.cassandra.stress.generate.*;
 import org.apache.cassandra.stress.generate.values.*;
 import org.apache.cassandra.stress.operations.userdefined.SchemaInsert;
 import org.apache.cassandra.stress.operations.userdefined.SchemaQuery;
+import org.apache.cassandra.stress.operations.userdefined.SchemaStatement;
+import org.apache.cassandra.stress.operations.userdefined.SimilarityQuery;
 import org.apache.cassandra.stress.operations.userdefined.ValidatingSchemaQuery;
 import org.apache.cassandra.stress.settings.*;
 import org.apache.cassandra.stress.util.JavaDriverClient;
@@ -50,6 +52,7 @@ import org.apache.cassandra.stress.util.ThriftClient;
 import org.apache.cassandra.stress.util.Timer;
 import org.apache.cassandra.thrift.Compression;
 import org.apache.cassandra.thrift.ThriftConversion;
+import org.apache.cassandra.utils.VectorEncoding;
 import org.apache.thrift.TException;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
@@ -64,6 +67,7 @@ public class StressProfile implements Serializable
     public String keyspaceName;
     public String tableName;
     private Map<String, GeneratorConfig> columnConfigs;
+    private Map<String, Vectors.Spec> vectorSpecs;
     private Map<String, StressYaml.QueryDef> queries;
     private Map<String, String> insert;
 
@@ -81,6 +85,7 @@ public class StressProfile implements Serializable
     transient volatile Map<String, SchemaQuery.ArgSelect> argSelects;
     transient volatile Map<String, PreparedStatement> queryStatements;
     transient volatile Map<String, Integer> thriftQueryIds;
+    transient volatile SimilarityQuery.GroundTruth groundTruth;
 
     private void init(StressYaml yaml) throws RequestValidationException
     {
@@ -131,6 +136,7 @@ public class StressProfile implements Serializable
         }
 
         columnConfigs = new HashMap<>();
+        vectorSpecs = new HashMap<>();
 
         if (yaml.columnspec != null)
         {
@@ -141,6 +147,7 @@ public class StressProfile implements Serializable
                 DistributionFactory population = !spec.containsKey("population") ? null : OptionDistribution.get((String) spec.remove("population"));
                 DistributionFactory size = !spec.containsKey("size") ? null : OptionDistribution.get((String) spec.remove("size"));
                 DistributionFactory clustering = !spec.containsKey("cluster") ? null : OptionDistribution.get((String) spec.remove("cluster"));
+                Vectors.Spec vector = !spec.containsKey("dimension") ? null : vectorSpec(spec);
 
                 if (!spec.isEmpty())
                     throw new IllegalArgumentException("Unrecognised option(s) in column spec: " + spec);
@@ -149,10 +156,22 @@ public class StressProfile implements Serializable
 
                 GeneratorConfig config = new GeneratorConfig(seedStr + name, clustering, size, population);
                 columnConfigs.put(name, config);
+                if (vector != null)
+                    vectorSpecs.put(name, vector);
             }
         }
     }
 
+    // the options of a column of dense vectors, drawn from a mixture of gaussians
+    private static Vectors.Spec vectorSpec(Map<String, Object> spec)
+    {
+        int dimension = Integer.parseInt(spec.remove("dimension").toString());
+        int clusters = !spec.containsKey("clusters") ? 16 : Integer.parseInt(spec.remove("clusters").toString());
+        double spread = !spec.containsKey("spread") ? 0.1 : Double.parseDouble(spec.remove("spread").toString());
+        VectorEncoding encoding = !spec.containsKey("encoding") ? VectorEncoding.DOUBLE : VectorEncoding.valueOf(spec.remove("encoding").toString().toUpperCase());
+        return new Vectors.Spec(dimension, clusters, spread, encoding);
+    }
+
     public void maybeCreateSchema(StressSettings settings)
     {
         JavaDriverClient client = settings.getJavaDriverClient(false);
@@ -232,7 +251,7 @@ public class StressProfile implements Serializable
         }
     }
 
-    public SchemaQuery getQuery(String name, Timer timer, PartitionGenerator generator, SeedManager seeds, StressSettings settings)
+    public SchemaStatement getQuery(String name, Timer timer, PartitionGenerator generator, SeedManager seeds, StressSettings settings)
     {
         if (queryStatements == null)
         {
@@ -277,10 +296,60 @@ public class StressProfile implements Serializable
         name = name.toLowerCase();
         if (!queryStatements.containsKey(name))
             throw new IllegalArgumentException("No query defined with name " + name);
+        Integer neighbours = neighbours(name);
+        if (neighbours != null)
+            return new SimilarityQuery(timer, settings, generator, seeds, thriftQueryIds.get(name), queryStatements.get(name),
+                                       ThriftConversion.fromThrift(settings.command.consistencyLevel), getGroundTruth(settings), neighbours);
         return new SchemaQuery(timer, settings, generator, seeds, thriftQueryIds.get(name), queryStatements.get(name),
                                ThriftConversion.fromThrift(settings.command.consistencyLevel), argSelects.get(name));
     }
 
+    private Integer neighbours(String name)
+    {
+        for (Map.Entry<String, StressYaml.QueryDef> e : queries.entrySet())
+        {
+            if (e.getKey().equalsIgnoreCase(name))
+                return e.getValue().neighbours;
+        }
+        return null;
+    }
+
+    private SimilarityQuery.GroundTruth getGroundTruth(StressSettings settings)
+    {
+        if (groundTruth == null)
+        {
+            synchronized (this)
+            {
+                if (groundTruth == null)
+                {
+                    maybeLoadSchemaInfo(settings);
+
+                    List<ColumnMetadata> partitionKey = tableMetaData.getPartitionKey();
+                    String name = partitionKey.get(0).getName();
+                    if (partitionKey.size() != 1 || !vectorSpecs.containsKey(name))
+                        throw new IllegalArgumentException("Similarity queries require a single partition key column with a vector dimension in its column spec");
+
+                    long minSeed, maxSeed;
+                    if (settings.generate.sequence != null)
+                    {
+                        minSeed = settings.generate.sequence[0];
+                        maxSeed = settings.generate.sequence[1];
+                    }
+                    else
+                    {
+                        Distribution seeds = settings.generate.distribution.get();
+                        minSeed = seeds.minValue();
+                        maxSeed = seeds.maxValue();
+                    }
+
+                    System.out.printf("Computing the vectors of seeds [%d..%d] to measure the recall of similarity queries%n", minSeed, maxSeed);
+                    groundTruth = new SimilarityQuery.GroundTruth(name, columnConfigs.get(name), vectorSpecs.get(name), minSeed, maxSeed);
+                }
+            }
+        }
+        return groundTruth;
+    }
+
     public SchemaInsert getInsert(Timer timer, PartitionGenerator generator, SeedManager seedManager, StressSettings settings)
     {
         if (insertStatement == null)
@@ -458,12 +527,12 @@ public class StressProfile implements Serializable
             Set<ColumnMetadata> keyColumns = com.google.common.collect.Sets.newHashSet(tableMetaData.getPrimaryKey());
 
             for (ColumnMetadata metadata : tableMetaData.getPartitionKey())
-                partitionKeys.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName())));
+                partitionKeys.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName()), vectorSpecs.get(metadata.getName())));
             for (ColumnMetadata metadata : tableMetaData.getClusteringColumns())
-                clusteringColumns.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName())));
+                clusteringColumns.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName()), vectorSpecs.get(metadata.getName())));
             for (ColumnMetadata metadata : tableMetaData.getColumns())
                 if (!keyColumns.contains(metadata))
-                    valueColumns.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName())));
+                    valueColumns.add(new ColumnInfo(metadata.getName(), metadata.getType(), columnConfigs.get(metadata.getName()), vectorSpecs.get(metadata.getName())));
         }
 
         PartitionGenerator newGenerator(StressSettings settings)
@@ -485,16 +554,21 @@ public class StressProfile implements Serializable
         final String name;
         final DataType type;
         final GeneratorConfig config;
+        final Vectors.Spec vector;
 
-        ColumnInfo(String name, DataType type, GeneratorConfig config)
+        ColumnInfo(String name, DataType type, GeneratorConfig config, Vectors.Spec vector)
         {
             this.name = name;
             this.type = type;
             this.config = config;
+            this.vector = vector;
         }
 
         Generator getGenerator()
         {
+            // vectors are blobs, or custom types the driver does not know about
+            if (vector != null)
+                return new Vectors(name, config, vector);
             return getGenerator(name, type, config);
         }
 
@@ -38,6 +38,7 @@ public class StressYaml
     {
         public String cql;
         public String fields;
+        public Integer neighbours;
     }
 
 }
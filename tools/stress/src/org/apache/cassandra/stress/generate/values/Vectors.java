@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.cassandra.stress.generate.values;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.stress.generate.FasterRandom;
+import org.apache.cassandra.utils.VectorEncoding;
+
+/**
+ * Generates dense vectors drawn from a mixture of gaussians: each identity picks one of {@code clusters} centroids,
+ * whose components are standard normal, and adds gaussian noise of standard deviation {@code spread} to each of
+ * them. The centroids only depend on the column seed, so that every generator of a column, and every stress client,
+ * draws from the same mixture.
+ */
+public class Vectors extends Generator<ByteBuffer>
+{
+    public static class Spec implements Serializable
+    {
+        public final int dimension;
+        public final int clusters;
+        public final double spread;
+        public final VectorEncoding encoding;
+
+        public Spec(int dimension, int clusters, double spread, VectorEncoding encoding)
+        {
+            if (dimension <= 0)
+                throw new IllegalArgumentException("Vector dimension must be positive: " + dimension);
+            if (clusters <= 0)
+                throw new IllegalArgumentException("Vector clusters must be positive: " + clusters);
+            if (spread < 0)
+                throw new IllegalArgumentException("Vector spread cannot be negative: " + spread);
+            this.dimension = dimension;
+            this.clusters = clusters;
+            this.spread = spread;
+            this.encoding = encoding;
+        }
+
+        public ByteBuffer encode(double[] vector)
+        {
+            ByteBuffer bytes = ByteBuffer.allocate(encoding.serializedSize(vector.length));
+            encoding.encode(vector, bytes, 0);
+            return bytes;
+        }
+    }
+
+    public final Spec spec;
+    public final GeneratorConfig config;
+    private final double[][] centroids;
+    private final double[] vector;
+    private final FasterRandom rand = new FasterRandom();
+
+    public Vectors(String name, GeneratorConfig config, Spec spec)
+    {
+        super(BytesType.instance, config, name, ByteBuffer.class);
+        this.spec = spec;
+        this.config = config;
+        this.vector = new double[spec.dimension];
+        this.centroids = new double[spec.clusters][spec.dimension];
+        rand.setSeed(salt);
+        for (double[] centroid : centroids)
+            for (int i = 0; i < centroid.length; i++)
+                centroid[i] = rand.nextGaussian();
+    }
+
+    @Override
+    public ByteBuffer generate()
+    {
+        return generate(identityDistribution.next());
+    }
+
+    /**
+     * @return the serialized vector of the specified identity
+     */
+    public ByteBuffer generate(long identity)
+    {
+        return spec.encode(vector(identity, vector));
+    }
+
+    /**
+     * Writes the components of the next vector into {@code into}, i.e. the vector {@link #generate()} would have
+     * serialized.
+     *
+     * @return {@code into}
+     */
+    public double[] nextVector(double[] into)
+    {
+        return vector(identityDistribution.next(), into);
+    }
+
+    /**
+     * Writes the components of the vector of the specified identity into {@code into}.
+     *
+     * @return {@code into}
+     */
+    public double[] vector(long identity, double[] into)
+    {
+        rand.setSeed(~identity);
+        double[] centroid = centroids[rand.nextInt(centroids.length)];
+        for (int i = 0; i < into.length; i++)
+            into[i] = centroid[i] + rand.nextGaussian() * spec.spread;
+        return into;
+    }
+}
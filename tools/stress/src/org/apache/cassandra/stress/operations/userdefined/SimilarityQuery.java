@@ -0,0 +1,268 @@
+package org.apache.cassandra.stress.operations.userdefined;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.stress.generate.*;
+import org.apache.cassandra.stress.generate.values.GeneratorConfig;
+import org.apache.cassandra.stress.generate.values.Vectors;
+import org.apache.cassandra.stress.settings.StressSettings;
+import org.apache.cassandra.stress.util.JavaDriverClient;
+import org.apache.cassandra.stress.util.ThriftClient;
+import org.apache.cassandra.stress.util.Timer;
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlResult;
+import org.apache.cassandra.thrift.CqlRow;
+import org.apache.cassandra.thrift.ThriftConversion;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * An <code>ANN OF</code> query on a vector partition key, bound to a fresh vector of the key's mixture. The keys it
+ * returns are compared with the {@link GroundTruth} nearest neighbours of that vector, to report the recall.
+ */
+public class SimilarityQuery extends SchemaStatement
+{
+    final GroundTruth groundTruth;
+    final Vectors vectors;
+    final ByteBuffer keyName;
+    final int neighbours;
+    final double[] query;
+    final Random random = new Random();
+
+    public SimilarityQuery(Timer timer, StressSettings settings, PartitionGenerator generator, SeedManager seedManager, Integer thriftId, PreparedStatement statement, ConsistencyLevel cl, GroundTruth groundTruth, int neighbours)
+    {
+        super(timer, settings, new DataSpec(generator, seedManager, new DistributionFixed(1), 1), statement, thriftId, cl);
+        if (argumentIndex.length != 1 || argumentIndex[0] != generator.indexOf(groundTruth.name))
+            throw new IllegalArgumentException("A similarity query must only bind the ANN OF vector of " + groundTruth.name + ": " + statement.getQueryString());
+        if (neighbours <= 0)
+            throw new IllegalArgumentException("The number of neighbours of a similarity query must be positive: " + neighbours);
+        this.groundTruth = groundTruth;
+        this.vectors = groundTruth.newGenerator();
+        this.keyName = ByteBufferUtil.bytes(groundTruth.name);
+        this.neighbours = neighbours;
+        this.query = new double[vectors.spec.dimension];
+    }
+
+    private class JavaDriverRun extends Runner
+    {
+        final JavaDriverClient client;
+        final ByteBuffer vector;
+        final Set<ByteBuffer> nearest;
+
+        private JavaDriverRun(JavaDriverClient client, ByteBuffer vector, Set<ByteBuffer> nearest)
+        {
+            this.client = client;
+            this.vector = vector;
+            this.nearest = nearest;
+        }
+
+        public boolean run() throws Exception
+        {
+            List<Row> rows = client.getSession().execute(statement.bind(vector.duplicate())).all();
+            Set<ByteBuffer> found = new HashSet<>();
+            for (Row row : rows)
+                found.add(row.getBytesUnsafe(groundTruth.name));
+            rowCount = rows.size();
+            partitionCount = found.size();
+            timer.recall(recall(found, nearest));
+            return true;
+        }
+    }
+
+    private class ThriftRun extends Runner
+    {
+        final ThriftClient client;
+        final ByteBuffer vector;
+        final Set<ByteBuffer> nearest;
+
+        private ThriftRun(ThriftClient client, ByteBuffer vector, Set<ByteBuffer> nearest)
+        {
+            this.client = client;
+            this.vector = vector;
+            this.nearest = nearest;
+        }
+
+        public boolean run() throws Exception
+        {
+            CqlResult rs = client.execute_prepared_cql3_query(thriftId, vector, Collections.singletonList(vector.duplicate()), ThriftConversion.toThrift(cl));
+            Set<ByteBuffer> found = new HashSet<>();
+            for (CqlRow row : rs.getRows())
+            {
+                for (Column column : row.getColumns())
+                {
+                    if (keyName.equals(column.bufferForName()))
+                        found.add(column.bufferForValue());
+                }
+            }
+            rowCount = rs.getRowsSize();
+            partitionCount = found.size();
+            timer.recall(recall(found, nearest));
+            return true;
+        }
+    }
+
+    private static double recall(Set<ByteBuffer> found, Set<ByteBuffer> nearest)
+    {
+        int hits = 0;
+        for (ByteBuffer key : found)
+        {
+            if (nearest.contains(key))
+                hits++;
+        }
+        return nearest.isEmpty() ? 1d : hits / (double) nearest.size();
+    }
+
+    // the ground truth is computed before the query is timed, so that it does not count in the latencies
+    private ByteBuffer nextQuery(Set<ByteBuffer> nearest)
+    {
+        vectors.vector(random.nextLong(), query);
+        nearest.addAll(groundTruth.nearest(query, neighbours));
+        return vectors.spec.encode(query);
+    }
+
+    @Override
+    public void run(JavaDriverClient client) throws IOException
+    {
+        Set<ByteBuffer> nearest = new HashSet<>();
+        ByteBuffer vector = nextQuery(nearest);
+        timeWithRetry(new JavaDriverRun(client, vector, nearest));
+    }
+
+    @Override
+    public void run(ThriftClient client) throws IOException
+    {
+        Set<ByteBuffer> nearest = new HashSet<>();
+        ByteBuffer vector = nextQuery(nearest);
+        timeWithRetry(new ThriftRun(client, vector, nearest));
+    }
+
+    /**
+     * The vectors of a whole population of partition seeds, which are searched exhaustively for the nearest
+     * neighbours of a query vector by cosine distance, as the <code>ANN OF</code> queries rank them. The population
+     * should have been written entirely before the recall is measured, for instance by a previous insert run with the
+     * same population.
+     */
+    public static class GroundTruth
+    {
+        final String name;
+        final GeneratorConfig config;
+        final Vectors.Spec spec;
+        final double[] components;
+        final double[] norms;
+
+        public GroundTruth(String name, GeneratorConfig config, Vectors.Spec spec, long minSeed, long maxSeed)
+        {
+            long count = 1 + maxSeed - minSeed;
+            if (count <= 0 || count > Integer.MAX_VALUE / spec.dimension)
+                throw new IllegalArgumentException(String.format("Cannot compute the nearest neighbours of a population of %d %d-dimensional vectors; reduce the population to measure the recall", count, spec.dimension));
+
+            this.name = name;
+            this.config = config;
+            this.spec = spec;
+            this.components = new double[(int) count * spec.dimension];
+            this.norms = new double[(int) count];
+
+            Vectors vectors = newGenerator();
+            double[] vector = new double[spec.dimension];
+            for (int i = 0; i < norms.length; i++)
+            {
+                // the same sequence as the partition iterators, so that we get the written partition keys
+                vectors.setSeed(minSeed + i);
+                vectors.nextVector(vector);
+                System.arraycopy(vector, 0, components, i * spec.dimension, spec.dimension);
+                norms[i] = norm(vector, 0, spec.dimension);
+            }
+        }
+
+        Vectors newGenerator()
+        {
+            return new Vectors(name, config, spec);
+        }
+
+        /**
+         * @return the serialized {@code k} nearest neighbours of the specified vector
+         */
+        public Set<ByteBuffer> nearest(double[] vector, int k)
+        {
+            k = Math.min(k, norms.length);
+            int[] indexes = new int[k];
+            double[] distances = new double[k];
+            int size = 0;
+
+            double norm = norm(vector, 0, vector.length);
+            for (int i = 0; i < norms.length; i++)
+            {
+                double distance = distance(vector, norm, i);
+                if (size == k && distance >= distances[k - 1])
+                    continue;
+
+                // insertion sort into the closest neighbours found so far
+                int j = size < k ? size++ : k - 1;
+                for (; j > 0 && distances[j - 1] > distance; j--)
+                {
+                    distances[j] = distances[j - 1];
+                    indexes[j] = indexes[j - 1];
+                }
+                distances[j] = distance;
+                indexes[j] = i;
+            }
+
+            Set<ByteBuffer> nearest = new HashSet<>();
+            double[] neighbour = new double[spec.dimension];
+            for (int i = 0; i < size; i++)
+            {
+                System.arraycopy(components, indexes[i] * spec.dimension, neighbour, 0, spec.dimension);
+                nearest.add(spec.encode(neighbour));
+            }
+            return nearest;
+        }
+
+        private double distance(double[] vector, double norm, int i)
+        {
+            if (norm == 0 || norms[i] == 0)
+                return 1;
+
+            double dot = 0;
+            for (int c = 0, offset = i * spec.dimension; c < vector.length; c++)
+                dot += vector[c] * components[offset + c];
+            return 1 - dot / (norm * norms[i]);
+        }
+
+        private static double norm(double[] vector, int offset, int length)
+        {
+            double sum = 0;
+            for (int i = offset; i < offset + length; i++)
+                sum += vector[i] * vector[i];
+            return Math.sqrt(sum);
+        }
+    }
+}
@@ -42,6 +42,8 @@ public final class Timer
     private long errorCount;
     private long partitionCount;
     private long rowCount;
+    private long recallCount;
+    private double recallSum;
     private long total;
     private long max;
     private long maxStart;
@@ -100,6 +102,13 @@ public final class Timer
         upToDateAsOf = now;
     }
 
+    // records the recall of the operation about to be stopped
+    public void recall(double recall)
+    {
+        recallCount += 1;
+        recallSum += recall;
+    }
+
     private int index(int count)
     {
         return count & (sample.length - 1);
@@ -112,11 +121,13 @@ public final class Timer
                         new SampleOfLongs(Arrays.copyOfRange(sample, index(opCount), Math.min(opCount, sample.length)), p(opCount) - 1)
                 );
         final TimingInterval report = new TimingInterval(lastSnap, upToDateAsOf, max, maxStart, max, partitionCount,
-                rowCount, total, opCount, errorCount, SampleOfLongs.merge(rnd, sampleLatencies, Integer.MAX_VALUE));
+                rowCount, total, opCount, errorCount, recallCount, recallSum, SampleOfLongs.merge(rnd, sampleLatencies, Integer.MAX_VALUE));
         // reset counters
         opCount = 0;
         partitionCount = 0;
         rowCount = 0;
+        recallCount = 0;
+        recallSum = 0;
         total = 0;
         max = 0;
         errorCount = 0;
@@ -40,6 +40,8 @@ public final class TimingInterval
     public final long rowCount;
     public final long operationCount;
     public final long errorCount;
+    public final long recallCount;
+    public final double recallSum;
 
     final SampleOfLongs sample;
 
@@ -54,13 +56,15 @@ public final class TimingInterval
     {
         start = end = time;
         maxLatency = totalLatency = 0;
-        partitionCount = rowCount = operationCount = errorCount = 0;
+        partitionCount = rowCount = operationCount = errorCount = recallCount = 0;
+        recallSum = 0;
         pauseStart = pauseLength = 0;
         sample = new SampleOfLongs(new long[0], 1d);
     }
 
     TimingInterval(long start, long end, long maxLatency, long pauseStart, long pauseLength, long partitionCount,
-                   long rowCount, long totalLatency, long operationCount, long errorCount, SampleOfLongs sample)
+                   long rowCount, long totalLatency, long operationCount, long errorCount, long recallCount, double recallSum,
+                   SampleOfLongs sample)
     {
         this.start = start;
         this.end = Math.max(end, start);
@@ -70,6 +74,8 @@ public final class TimingInterval
         this.totalLatency = totalLatency;
         this.errorCount = errorCount;
         this.operationCount = operationCount;
+        this.recallCount = recallCount;
+        this.recallSum = recallSum;
         this.pauseStart = pauseStart;
         this.pauseLength = pauseLength;
         this.sample = sample;
@@ -79,7 +85,8 @@ public final class TimingInterval
     static TimingInterval merge(Iterable<TimingInterval> intervals, int maxSamples, long start)
     {
         ThreadLocalRandom rnd = ThreadLocalRandom.current();
-        long operationCount = 0, partitionCount = 0, rowCount = 0, errorCount = 0;
+        long operationCount = 0, partitionCount = 0, rowCount = 0, errorCount = 0, recallCount = 0;
+        double recallSum = 0;
         long maxLatency = 0, totalLatency = 0;
         List<SampleOfLongs> latencies = new ArrayList<>();
         long end = 0;
@@ -95,6 +102,8 @@ public final class TimingInterval
                 partitionCount += interval.partitionCount;
                 rowCount += interval.rowCount;
                 errorCount += interval.errorCount;
+                recallCount += interval.recallCount;
+                recallSum += interval.recallSum;
                 latencies.addAll(Arrays.asList(interval.sample));
                 if (interval.pauseLength > 0)
                 {
@@ -110,7 +119,7 @@ public final class TimingInterval
         }
 
         return new TimingInterval(start, end, maxLatency, pauseStart, pauseEnd - pauseStart, partitionCount, rowCount,
-                                  totalLatency, operationCount, errorCount, SampleOfLongs.merge(rnd, latencies, maxSamples));
+                                  totalLatency, operationCount, errorCount, recallCount, recallSum, SampleOfLongs.merge(rnd, latencies, maxSamples));
 
     }
 
@@ -155,6 +164,12 @@ public final class TimingInterval
         return sample.rankLatency(rank);
     }
 
+    // mean recall of the operations measuring it, NaN if none did
+    public double recall()
+    {
+        return recallCount == 0 ? Double.NaN : recallSum / recallCount;
+    }
+
     public long runTime()
     {
         return (end - start) / 1000000;
@@ -173,7 +188,7 @@ public final class TimingInterval
     public static enum TimingParameter
     {
         OPRATE, ROWRATE, ADJROWRATE, PARTITIONRATE, MEANLATENCY, MAXLATENCY, MEDIANLATENCY, RANKLATENCY,
-        ERRORCOUNT, PARTITIONCOUNT
+        ERRORCOUNT, PARTITIONCOUNT, RECALL
     }
 
     String getStringValue(TimingParameter value)
@@ -195,6 +210,7 @@ public final class TimingInterval
             case RANKLATENCY:    return String.format("%.1f", rankLatency(rank));
             case ERRORCOUNT:     return String.format("%d", errorCount);
             case PARTITIONCOUNT: return String.format("%d", partitionCount);
+            case RECALL:         return String.format("%.3f", recall());
             default:             throw new IllegalStateException();
         }
     }